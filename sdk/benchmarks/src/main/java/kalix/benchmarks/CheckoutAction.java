@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks;
+
+import kalix.javasdk.Metadata;
+import kalix.javasdk.action.Action;
+import kalix.javasdk.impl.action.ActionEffectImpl;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+/**
+ * A Spring action with HTTP endpoints, the target of component client calls and routed commands.
+ * Effects are built without an action context, since none is set outside of a running service.
+ */
+public class CheckoutAction extends Action {
+
+  @PostMapping("/cart/checkout")
+  public Action.Effect<ShoppingCart> checkout(@RequestBody ShoppingCart cart) {
+    return ActionEffectImpl.builder(Metadata.EMPTY).reply(cart);
+  }
+
+  @PostMapping("/cart/{cartId}/items")
+  public Action.Effect<String> addItem(
+      @PathVariable String cartId, @RequestBody ShoppingCart.LineItem item) {
+    return ActionEffectImpl.builder(Metadata.EMPTY).reply(cartId);
+  }
+}
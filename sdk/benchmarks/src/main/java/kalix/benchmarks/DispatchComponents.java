@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks;
+
+import kalix.javasdk.Metadata;
+import kalix.javasdk.action.Action;
+import kalix.javasdk.eventsourcedentity.EventSourcedEntity;
+import kalix.javasdk.impl.action.ActionEffectImpl;
+import kalix.javasdk.valueentity.ValueEntity;
+
+/** Minimal components with the handler shapes dispatched by the Spring SDK. */
+public final class DispatchComponents {
+
+  private DispatchComponents() {}
+
+  public static final class CartAction extends Action {
+    private final Action.Effect<String> reply =
+        ActionEffectImpl.builder(Metadata.EMPTY).reply("ok");
+
+    public Action.Effect<String> checkout(ShoppingCart cart) {
+      return reply;
+    }
+  }
+
+  public static final class CartValueEntity extends ValueEntity<ShoppingCart> {
+    public ValueEntity.Effect<String> update(ShoppingCart cart) {
+      return effects().reply("ok");
+    }
+  }
+
+  public static final class CartEventSourcedEntity
+      extends EventSourcedEntity<ShoppingCart, ShoppingCart.LineItem> {
+    private final ShoppingCart state = ShoppingCart.withItems(1);
+
+    public EventSourcedEntity.Effect<String> addItem(ShoppingCart.LineItem item) {
+      return effects().reply("ok");
+    }
+
+    public ShoppingCart itemAdded(ShoppingCart.LineItem item) {
+      return state;
+    }
+  }
+}
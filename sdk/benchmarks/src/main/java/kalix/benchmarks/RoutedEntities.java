@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks;
+
+import kalix.javasdk.annotations.EventHandler;
+import kalix.javasdk.annotations.Id;
+import kalix.javasdk.annotations.TypeId;
+import kalix.javasdk.eventsourcedentity.EventSourcedEntity;
+import kalix.javasdk.valueentity.ValueEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+/** Entities with HTTP endpoints, for routing commands through the reflective entity routers. */
+public final class RoutedEntities {
+
+  private RoutedEntities() {}
+
+  @Id("cartId")
+  @TypeId("cart")
+  @RequestMapping("/cart/{cartId}")
+  public static class CartEntity extends ValueEntity<ShoppingCart> {
+    @PostMapping("/update")
+    public ValueEntity.Effect<String> update(@RequestBody ShoppingCart cart) {
+      return effects().reply("ok");
+    }
+  }
+
+  @Id("cartId")
+  @TypeId("event-sourced-cart")
+  @RequestMapping("/event-sourced-cart/{cartId}")
+  public static class CartEventSourcedEntity
+      extends EventSourcedEntity<ShoppingCart, ShoppingCart.LineItem> {
+    @PostMapping("/add")
+    public EventSourcedEntity.Effect<String> addItem(@RequestBody ShoppingCart.LineItem item) {
+      return effects().reply("ok");
+    }
+
+    @EventHandler
+    public ShoppingCart itemAdded(ShoppingCart.LineItem item) {
+      return currentState();
+    }
+  }
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record ShoppingCart(String cartId, String customerId, List<LineItem> items, boolean checkedOut) {
+
+  public record LineItem(String productId, String name, int quantity, double price) {}
+
+  public static ShoppingCart withItems(int numberOfItems) {
+    List<LineItem> items = new ArrayList<>(numberOfItems);
+    for (int i = 0; i < numberOfItems; i++) {
+      items.add(new LineItem("product-" + i, "Product number " + i, i + 1, 9.99 * (i + 1)));
+    }
+    return new ShoppingCart("cart-1", "customer-1", items, false);
+  }
+}
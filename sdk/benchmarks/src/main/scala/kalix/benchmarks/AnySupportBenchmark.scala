@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import com.google.protobuf.StructProto
+import com.google.protobuf.Timestamp
+import com.google.protobuf.TimestampProto
+import com.google.protobuf.Value
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import kalix.javasdk.impl.AnySupport
+import org.openjdk.jmh.annotations._
+
+/**
+ * Encoding and decoding of protobuf messages and primitives with the protobuf SDK codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class AnySupportBenchmark {
+
+  private val anySupport =
+    new AnySupport(Array(TimestampProto.getDescriptor, StructProto.getDescriptor), getClass.getClassLoader)
+
+  private val timestamp = Timestamp.newBuilder().setSeconds(1700000000L).setNanos(42).build()
+  private val value = Value.newBuilder().setStringValue("some text value").build()
+  private val string = "some text value"
+
+  private val encodedTimestamp = anySupport.encodeScala(timestamp)
+  private val encodedValue = anySupport.encodeScala(value)
+  private val encodedString = anySupport.encodeScala(string)
+  private val encodedJson =
+    ScalaPbAny.fromJavaProto(kalix.javasdk.JsonSupport.encodeJson(ShoppingCart.withItems(1)))
+
+  @Benchmark
+  def encodeMessage(): ScalaPbAny =
+    anySupport.encodeScala(timestamp)
+
+  @Benchmark
+  def encodeString(): ScalaPbAny =
+    anySupport.encodeScala(string)
+
+  @Benchmark
+  def decodeMessage(): Any =
+    anySupport.decodeMessage(encodedTimestamp)
+
+  @Benchmark
+  def decodeMessageWithNestedTypes(): Any =
+    anySupport.decodeMessage(encodedValue)
+
+  @Benchmark
+  def decodeString(): Any =
+    anySupport.decodeMessage(encodedString)
+
+  @Benchmark
+  def decodeJsonPassThrough(): Any =
+    anySupport.decodeMessage(encodedJson)
+}
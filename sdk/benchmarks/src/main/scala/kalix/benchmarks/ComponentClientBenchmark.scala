@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks
+
+import java.nio.ByteOrder
+import java.util.concurrent.TimeUnit
+
+import scala.concurrent.Await
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.model.ContentType
+import akka.http.scaladsl.model.ContentTypes
+import akka.http.scaladsl.model.HttpEntity
+import akka.http.scaladsl.model.HttpMethods
+import akka.http.scaladsl.model.HttpRequest
+import akka.http.scaladsl.model.HttpResponse
+import akka.http.scaladsl.model.MediaType
+import akka.http.scaladsl.model.headers.RawHeader
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import com.google.protobuf.{ Any => JavaPbAny }
+import com.typesafe.config.ConfigFactory
+import io.grpc.ManagedChannel
+import io.grpc.ManagedChannelBuilder
+import kalix.javasdk.JsonSupport
+import kalix.javasdk.impl.ComponentDescriptor
+import kalix.javasdk.impl.JsonMessageCodec
+import kalix.spring.impl.GrpcComponentCalls
+import kalix.spring.impl.RestKalixClientImpl
+import org.openjdk.jmh.annotations._
+import org.springframework.web.reactive.function.client.WebClient
+
+/**
+ * Compares component client calls over the HTTP endpoint of the runtime, through the Spring web client, with calls over
+ * its gRPC endpoint. A local HTTP/2 server stands in for the runtime and replies to both with the same cart, so the
+ * difference is the cost of the transport and of decoding the reply. The sample time mode gives the p99 latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput, Mode.SampleTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class ComponentClientBenchmark {
+
+  @Param(Array("1", "100"))
+  var numberOfItems: Int = _
+
+  private var system: ActorSystem = _
+  private var binding: Http.ServerBinding = _
+  private var channel: ManagedChannel = _
+  private var httpClient: RestKalixClientImpl = _
+  private var grpcClient: RestKalixClientImpl = _
+  private var cart: ShoppingCart = _
+
+  @Setup
+  def setup(): Unit = {
+    system = ActorSystem(
+      "ComponentClientBenchmark",
+      ConfigFactory.parseString("akka.http.server.enable-http2 = on").withFallback(ConfigFactory.load()))
+    cart = ShoppingCart.withItems(numberOfItems)
+    binding = Await.result(Http()(system).newServerAt("127.0.0.1", 0).bind(RuntimeStandIn(cart)(system)), 10.seconds)
+    val port = binding.localAddress.getPort
+
+    val messageCodec = new JsonMessageCodec
+    val descriptor = ComponentDescriptor.descriptorFor(classOf[CheckoutAction], messageCodec).serviceDescriptor
+
+    httpClient = new RestKalixClientImpl(messageCodec)
+    httpClient.registerComponent(descriptor)
+    httpClient.setWebClient(WebClient.builder().baseUrl(s"http://127.0.0.1:$port").build())
+
+    channel = ManagedChannelBuilder.forAddress("127.0.0.1", port).usePlaintext().build()
+    grpcClient = new RestKalixClientImpl(messageCodec)
+    grpcClient.registerComponent(descriptor)
+    grpcClient.setGrpcTransport(new GrpcComponentCalls(() => channel))
+  }
+
+  @TearDown
+  def tearDown(): Unit = {
+    channel.shutdownNow()
+    Await.result(binding.unbind(), 10.seconds)
+    Await.result(system.terminate(), 10.seconds)
+  }
+
+  private def checkout(client: RestKalixClientImpl): ShoppingCart =
+    client
+      .runWithBody(HttpMethods.POST, "/cart/checkout", Map.empty, Map.empty, Some(cart), classOf[ShoppingCart])
+      .execute()
+      .toCompletableFuture
+      .get(10, TimeUnit.SECONDS)
+
+  @Benchmark
+  def httpTransport(): ShoppingCart =
+    checkout(httpClient)
+
+  @Benchmark
+  def grpcTransport(): ShoppingCart =
+    checkout(grpcClient)
+}
+
+/**
+ * Replies to every request with the given cart, as JSON for HTTP requests and as a framed `Any` followed by an OK
+ * status for gRPC requests, the way the runtime replies for a Spring component.
+ */
+object RuntimeStandIn {
+  private val GrpcContentType =
+    ContentType(MediaType.customBinary("application", "grpc", MediaType.NotCompressible))
+
+  def apply(cart: ShoppingCart)(implicit system: ActorSystem): HttpRequest => Future[HttpResponse] = {
+    val json = JsonSupport.getObjectMapper.writerFor(classOf[ShoppingCart]).writeValueAsBytes(cart)
+    val restResponse = HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, json))
+
+    val reply: JavaPbAny = JsonSupport.encodeJson(cart, classOf[ShoppingCart].getName)
+    val message = reply.toByteArray
+    // uncompressed flag and length prefix of a gRPC message
+    val frame = ByteString.newBuilder
+      .putByte(0)
+      .putInt(message.length)(ByteOrder.BIG_ENDIAN)
+      .putBytes(message)
+      .result()
+    val grpcResponse = HttpResponse(entity = HttpEntity.Chunked(
+      GrpcContentType,
+      Source(List(HttpEntity.Chunk(frame), HttpEntity.LastChunk(trailer = List(RawHeader("grpc-status", "0")))))))
+
+    request => {
+      request.discardEntityBytes(system)
+      if (request.entity.contentType.mediaType.value.startsWith("application/grpc")) Future.successful(grpcResponse)
+      else Future.successful(restResponse)
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks
+
+import java.lang.reflect.Method
+import java.util.concurrent.TimeUnit
+
+import kalix.benchmarks.DispatchComponents._
+import kalix.javasdk.impl.InvocationContext
+import kalix.javasdk.impl.MethodInvoker
+import kalix.javasdk.impl.reflection.ParameterExtractor
+import org.openjdk.jmh.annotations._
+
+/**
+ * Compares dispatching commands and events to Spring components through [[MethodInvoker]] with the previous
+ * `Method.invoke` path, which built an argument array for every call. Parameters are already decoded, so only the
+ * dispatch itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class DispatchBenchmark {
+
+  private val cart = ShoppingCart.withItems(1)
+  private val item = cart.items().get(0)
+
+  private val action = new CartAction
+  private val valueEntity = new CartValueEntity
+  private val eventSourcedEntity = new CartEventSourcedEntity
+
+  private def extractor(value: AnyRef): ParameterExtractor[InvocationContext, AnyRef] =
+    new ParameterExtractor[InvocationContext, AnyRef] {
+      override def extract(context: InvocationContext): AnyRef = value
+    }
+
+  private def invoker(method: Method, parameter: AnyRef): MethodInvoker =
+    MethodInvoker(method, extractor(parameter))
+
+  private val actionMethod = classOf[CartAction].getMethod("checkout", classOf[ShoppingCart])
+  private val valueEntityMethod = classOf[CartValueEntity].getMethod("update", classOf[ShoppingCart])
+  private val commandMethod = classOf[CartEventSourcedEntity].getMethod("addItem", classOf[ShoppingCart.LineItem])
+  private val eventMethod = classOf[CartEventSourcedEntity].getMethod("itemAdded", classOf[ShoppingCart.LineItem])
+
+  private val actionInvoker = invoker(actionMethod, cart)
+  private val valueEntityInvoker = invoker(valueEntityMethod, cart)
+  private val commandInvoker = invoker(commandMethod, item)
+  private val eventInvoker = invoker(eventMethod, item)
+
+  @Benchmark
+  def actionCommand(): AnyRef =
+    actionInvoker.invoke(action, null)
+
+  @Benchmark
+  def actionCommandReflective(): AnyRef =
+    ReflectiveDispatch.invoke(actionInvoker, action)
+
+  @Benchmark
+  def valueEntityCommand(): AnyRef =
+    valueEntityInvoker.invoke(valueEntity, null)
+
+  @Benchmark
+  def valueEntityCommandReflective(): AnyRef =
+    ReflectiveDispatch.invoke(valueEntityInvoker, valueEntity)
+
+  @Benchmark
+  def eventSourcedEntityCommand(): AnyRef =
+    commandInvoker.invoke(eventSourcedEntity, null)
+
+  @Benchmark
+  def eventSourcedEntityCommandReflective(): AnyRef =
+    ReflectiveDispatch.invoke(commandInvoker, eventSourcedEntity)
+
+  @Benchmark
+  def eventSourcedEntityEvent(): AnyRef =
+    eventInvoker.invokeDirectly(eventSourcedEntity, item)
+
+  @Benchmark
+  def eventSourcedEntityEventReflective(): AnyRef =
+    eventMethod.invoke(eventSourcedEntity, item)
+}
+
+/**
+ * The dispatch path as it was before method handles, kept here as the baseline.
+ */
+object ReflectiveDispatch {
+
+  def invoke(invoker: MethodInvoker, componentInstance: AnyRef): AnyRef =
+    invoker.method.invoke(componentInstance, invoker.parameterExtractors.map(e => e.extract(null)): _*)
+}
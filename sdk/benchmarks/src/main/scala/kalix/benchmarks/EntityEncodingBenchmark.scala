@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import com.google.protobuf.Timestamp
+import com.google.protobuf.TimestampProto
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import kalix.javasdk.Metadata
+import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.JsonMessageCodec
+import kalix.javasdk.impl.MessageCodec
+import kalix.javasdk.impl.MetadataImpl
+import kalix.javasdk.impl.effect.MessageReplyImpl
+import kalix.protocol.component.ClientAction
+import kalix.protocol.component.Reply
+import org.openjdk.jmh.annotations._
+
+/**
+ * Encodes events, snapshots and replies of entities to the protocol `Any` with `encodeJavaAsScala`, compared with the
+ * previous path through a Java protobuf `Any` that was then copied into a Scala one. Run with `-prof gc` to compare the
+ * allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class EntityEncodingBenchmark {
+
+  @Param(Array("1", "100"))
+  var numberOfItems: Int = _
+
+  private val jsonCodec = new JsonMessageCodec
+  private val anySupport = new AnySupport(Array(TimestampProto.getDescriptor), getClass.getClassLoader)
+
+  private val timestamp = Timestamp.newBuilder().setSeconds(1700000000L).setNanos(42).build()
+  private var cart: ShoppingCart = _
+  private var item: ShoppingCart.LineItem = _
+
+  @Setup
+  def setup(): Unit = {
+    cart = ShoppingCart.withItems(numberOfItems)
+    item = cart.items().get(0)
+  }
+
+  @Benchmark
+  def jsonEvent(): ScalaPbAny =
+    jsonCodec.encodeJavaAsScala(item)
+
+  @Benchmark
+  def jsonEventViaJavaAny(): ScalaPbAny =
+    JavaAnyEncoding.encode(jsonCodec, item)
+
+  @Benchmark
+  def jsonSnapshot(): ScalaPbAny =
+    jsonCodec.encodeJavaAsScala(cart)
+
+  @Benchmark
+  def jsonSnapshotViaJavaAny(): ScalaPbAny =
+    JavaAnyEncoding.encode(jsonCodec, cart)
+
+  @Benchmark
+  def jsonReply(): Option[ClientAction] =
+    MessageReplyImpl(jsonCodec.encodeJavaAsScala(cart), Metadata.EMPTY, Vector.empty).replyToClientAction(jsonCodec, 1L)
+
+  @Benchmark
+  def jsonReplyViaJavaAny(): Option[ClientAction] =
+    JavaAnyEncoding.reply(jsonCodec, cart)
+
+  @Benchmark
+  def protobufEvent(): ScalaPbAny =
+    anySupport.encodeJavaAsScala(timestamp)
+
+  @Benchmark
+  def protobufEventViaJavaAny(): ScalaPbAny =
+    JavaAnyEncoding.encode(anySupport, timestamp)
+}
+
+/**
+ * The encoding of entity events, snapshots and replies as it was before, kept here as the baseline.
+ */
+object JavaAnyEncoding {
+
+  def encode(messageCodec: MessageCodec, value: Any): ScalaPbAny =
+    ScalaPbAny.fromJavaProto(messageCodec.encodeJava(value))
+
+  def reply(messageCodec: MessageCodec, value: Any): Option[ClientAction] = {
+    val reply = Reply(Some(encode(messageCodec, value)), MetadataImpl.toProtocol(Metadata.EMPTY))
+    Some(ClientAction(ClientAction.Action.Reply(reply)))
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks
+
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.TimeUnit
+
+import com.google.protobuf.CodedOutputStream
+import com.google.protobuf.UnsafeByteOperations
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import com.google.protobuf.{ Any => JavaPbAny }
+import kalix.javasdk.JsonSupport
+import kalix.javasdk.impl.JsonMessageCodec
+import org.openjdk.jmh.annotations._
+
+/**
+ * Compares the streaming JSON codec path of [[JsonSupport]] with the previous one, where the payload was copied into a
+ * new array at every step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class JsonSupportBenchmark {
+
+  @Param(Array("1", "100"))
+  var numberOfItems: Int = _
+
+  private val typeName = classOf[ShoppingCart].getName
+  private val messageCodec = new JsonMessageCodec
+
+  private var cart: ShoppingCart = _
+  private var encoded: JavaPbAny = _
+
+  @Setup
+  def setup(): Unit = {
+    cart = ShoppingCart.withItems(numberOfItems)
+    encoded = JsonSupport.encodeJson(cart, typeName)
+  }
+
+  @Benchmark
+  def encodeStreaming(): JavaPbAny =
+    JsonSupport.encodeJson(cart, typeName)
+
+  @Benchmark
+  def encodeCopying(): JavaPbAny =
+    CopyingJsonCodec.encode(cart, typeName)
+
+  @Benchmark
+  def decodeStreaming(): ShoppingCart =
+    JsonSupport.decodeJson(classOf[ShoppingCart], encoded)
+
+  @Benchmark
+  def decodeCopying(): ShoppingCart =
+    CopyingJsonCodec.decode(classOf[ShoppingCart], encoded)
+
+  @Benchmark
+  def messageCodecEncode(): ScalaPbAny =
+    messageCodec.encodeScala(cart)
+}
+
+/**
+ * The JSON codec path as it was before streaming, kept here as the baseline.
+ */
+object CopyingJsonCodec {
+
+  def encode(value: AnyRef, jsonType: String): JavaPbAny = {
+    val json = JsonSupport.getObjectMapper.writerFor(value.getClass).writeValueAsBytes(value)
+    val baos = new ByteArrayOutputStream()
+    val stream = CodedOutputStream.newInstance(baos)
+    stream.writeBytes(1, UnsafeByteOperations.unsafeWrap(json))
+    stream.flush()
+    JavaPbAny
+      .newBuilder()
+      .setTypeUrl(JsonSupport.KALIX_JSON + jsonType)
+      .setValue(UnsafeByteOperations.unsafeWrap(baos.toByteArray))
+      .build()
+  }
+
+  def decode[T](valueClass: Class[T], any: JavaPbAny): T = {
+    val stream = any.getValue.newCodedInput()
+    stream.readTag()
+    val json = stream.readBytes()
+    JsonSupport.getObjectMapper.readValue(json.toByteArray, valueClass)
+  }
+}
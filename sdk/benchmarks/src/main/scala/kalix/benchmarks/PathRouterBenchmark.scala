@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import kalix.javasdk.impl.http.PathRouter
+import kalix.javasdk.impl.http.PathTemplateParser
+import kalix.javasdk.impl.http.PathTemplateParser.ParsedTemplate
+import org.openjdk.jmh.annotations._
+
+/**
+ * Compares picking the endpoint for a path with a [[PathRouter]] with trying the regex of each endpoint in turn, the
+ * way the component client did before. Each service has four endpoints and the paths are for the last service added,
+ * the worst case for trying them in turn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class PathRouterBenchmark {
+
+  @Param(Array("10", "100"))
+  var numberOfServices: Int = _
+
+  private var routes: Seq[(ParsedTemplate, String)] = _
+  private var router: PathRouter[String] = _
+  private var literalPath: String = _
+  private var variablePath: String = _
+  private var restPath: String = _
+
+  @Setup
+  def setup(): Unit = {
+    routes = (0 until numberOfServices).flatMap { service =>
+      Seq(
+        s"/service$service/items",
+        s"/service$service/items/{itemId}",
+        s"/service$service/carts/{cartId}/items/{itemId}",
+        s"/service$service/files/{path=**}").map(path => PathTemplateParser.parse(path) -> path)
+    }
+    router = PathRouter(routes)
+    val last = numberOfServices - 1
+    literalPath = s"/service$last/items"
+    variablePath = s"/service$last/carts/cart-1/items/item-1"
+    restPath = s"/service$last/files/a/b/c"
+  }
+
+  @Benchmark
+  def literal(): AnyRef =
+    router.find(literalPath)(_ => true)
+
+  @Benchmark
+  def literalRegex(): AnyRef =
+    RegexRouting.find(routes, literalPath)
+
+  @Benchmark
+  def variables(): AnyRef =
+    router.find(variablePath)(_ => true)
+
+  @Benchmark
+  def variablesRegex(): AnyRef =
+    RegexRouting.find(routes, variablePath)
+
+  @Benchmark
+  def restOfPath(): AnyRef =
+    router.find(restPath)(_ => true)
+
+  @Benchmark
+  def restOfPathRegex(): AnyRef =
+    RegexRouting.find(routes, restPath)
+}
+
+/**
+ * The routing as it was before the path router, kept here as the baseline. The path is matched against the regex of
+ * each template in turn and the variables are read from the groups of the matcher.
+ */
+object RegexRouting {
+
+  def find(routes: Seq[(ParsedTemplate, String)], path: String): Option[(String, Array[String])] =
+    routes.find { case (template, _) => template.regex.pattern.matcher(path).matches() }.map { case (template, route) =>
+      val matcher = template.regex.pattern.matcher(path)
+      matcher.find()
+      route -> Array.tabulate(matcher.groupCount())(group => matcher.group(group + 1))
+    }
+}
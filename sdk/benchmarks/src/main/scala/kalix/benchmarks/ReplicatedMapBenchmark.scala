@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import com.google.protobuf.Descriptors
+import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.replicatedentity.ReplicatedCounterMapImpl
+import kalix.javasdk.impl.replicatedentity.ReplicatedMultiMapImpl
+import kalix.protocol.replicated_entity.ReplicatedEntityDelta
+import org.openjdk.jmh.annotations._
+
+/**
+ * What a replicated entity does after each command that changes one key of a large map: check for a delta, get it and
+ * reset it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ReplicatedMapBenchmark {
+
+  @Param(Array("1000", "100000"))
+  var size: Int = _
+
+  private val anySupport = new AnySupport(Array.empty[Descriptors.FileDescriptor], getClass.getClassLoader)
+
+  private var counterMap: ReplicatedCounterMapImpl[String] = _
+  private var multiMap: ReplicatedMultiMapImpl[String, String] = _
+
+  @Setup
+  def setup(): Unit = {
+    counterMap = (0 until size)
+      .foldLeft(new ReplicatedCounterMapImpl[String](anySupport)) { (map, i) => map.increment(s"key-$i", 1) }
+      .resetDelta()
+    multiMap = (0 until size)
+      .foldLeft(new ReplicatedMultiMapImpl[String, String](anySupport)) { (map, i) =>
+        map.put(s"key-$i", "a").put(s"key-$i", "b")
+      }
+      .resetDelta()
+  }
+
+  @Benchmark
+  def counterMapSingleKeyChange(): ReplicatedEntityDelta.Delta = {
+    val changed = counterMap.increment("key-1", 1)
+    val delta = if (changed.hasDelta) changed.getDelta else ReplicatedEntityDelta.Delta.Empty
+    counterMap = changed.resetDelta()
+    delta
+  }
+
+  @Benchmark
+  def multiMapSingleKeyChange(): ReplicatedEntityDelta.Delta = {
+    val changed =
+      if (multiMap.containsValue("key-1", "c")) multiMap.remove("key-1", "c")
+      else multiMap.put("key-1", "c")
+    val delta = if (changed.hasDelta) changed.getDelta else ReplicatedEntityDelta.Delta.Empty
+    multiMap = changed.resetDelta()
+    delta
+  }
+
+  @Benchmark
+  def multiMapSize(): Int =
+    multiMap.size
+
+  @Benchmark
+  def unchangedHasDelta(): Boolean =
+    counterMap.hasDelta || multiMap.hasDelta
+}
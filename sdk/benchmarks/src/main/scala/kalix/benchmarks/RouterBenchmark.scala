@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import akka.stream.Materializer
+import com.google.protobuf.DynamicMessage
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import kalix.benchmarks.RoutedEntities._
+import kalix.javasdk.JsonSupport
+import kalix.javasdk.Metadata
+import kalix.javasdk.action.MessageEnvelope
+import kalix.javasdk.eventsourcedentity
+import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.ComponentDescriptor
+import kalix.javasdk.impl.InvocationContext
+import kalix.javasdk.impl.JsonMessageCodec
+import kalix.javasdk.impl.action.ReflectiveActionRouter
+import kalix.javasdk.impl.eventsourcedentity.ReflectiveEventSourcedEntityRouter
+import kalix.javasdk.impl.valueentity.ReflectiveValueEntityRouter
+import kalix.javasdk.valueentity
+import org.openjdk.jmh.annotations._
+
+/**
+ * Routes commands with a JSON body to Spring components the way the runtime sends them, as the encoded synthetic input
+ * message of the method. Bodies are decoded straight from the incoming bytes, `materializeMessage` measures the
+ * `DynamicMessage` that was built for every command before and is now only built for handlers with path or query
+ * parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class RouterBenchmark {
+
+  @Param(Array("1", "100"))
+  var numberOfItems: Int = _
+
+  private val messageCodec = new JsonMessageCodec
+
+  private val actionDescriptor = ComponentDescriptor.descriptorFor(classOf[CheckoutAction], messageCodec)
+  private val valueEntityDescriptor = ComponentDescriptor.descriptorFor(classOf[CartEntity], messageCodec)
+  private val eventSourcedEntityDescriptor =
+    ComponentDescriptor.descriptorFor(classOf[CartEventSourcedEntity], messageCodec)
+
+  private val actionRouter =
+    new ReflectiveActionRouter(new CheckoutAction, actionDescriptor.commandHandlers, ignoreUnknown = false)
+  private val valueEntityRouter =
+    new ReflectiveValueEntityRouter[ShoppingCart, CartEntity](new CartEntity, valueEntityDescriptor.commandHandlers)
+  private val eventSourcedEntityRouter =
+    new ReflectiveEventSourcedEntityRouter[ShoppingCart, ShoppingCart.LineItem, CartEventSourcedEntity](
+      new CartEventSourcedEntity,
+      eventSourcedEntityDescriptor.commandHandlers,
+      Map.empty,
+      messageCodec)
+
+  private val context = new BenchmarkCommandContext
+
+  private var cart: ShoppingCart = _
+  private var checkout: MessageEnvelope[Any] = _
+  private var addItemToAction: MessageEnvelope[Any] = _
+  private var update: ScalaPbAny = _
+  private var addItem: ScalaPbAny = _
+
+  /** The input message of a method, with the body and path parameters set like the runtime does */
+  private def command(
+      descriptor: ComponentDescriptor,
+      commandName: String,
+      body: AnyRef,
+      pathParams: (String, String)*): ScalaPbAny = {
+    val inputType = descriptor.commandHandlers(commandName).requestMessageDescriptor
+    val builder = DynamicMessage.newBuilder(inputType)
+    builder.setField(inputType.findFieldByName("json_body"), JsonSupport.encodeJson(body))
+    pathParams.foreach { case (name, value) => builder.setField(inputType.findFieldByName(name), value) }
+    ScalaPbAny(AnySupport.DefaultTypeUrlPrefix + "/" + inputType.getFullName, builder.build().toByteString)
+  }
+
+  @Setup
+  def setup(): Unit = {
+    cart = ShoppingCart.withItems(numberOfItems)
+    val item = cart.items().get(0)
+    checkout = MessageEnvelope.of[Any](command(actionDescriptor, "Checkout", cart), Metadata.EMPTY)
+    addItemToAction =
+      MessageEnvelope.of[Any](command(actionDescriptor, "AddItem", item, "cartId" -> "cart-1"), Metadata.EMPTY)
+    update = command(valueEntityDescriptor, "Update", cart, "cartId" -> "cart-1")
+    addItem = command(eventSourcedEntityDescriptor, "AddItem", item, "cartId" -> "cart-1")
+  }
+
+  @Benchmark
+  def actionBody(): AnyRef =
+    actionRouter.handleUnary("Checkout", checkout)
+
+  @Benchmark
+  def actionBodyAndPathParameter(): AnyRef =
+    actionRouter.handleUnary("AddItem", addItemToAction)
+
+  @Benchmark
+  def valueEntityCommand(): AnyRef =
+    valueEntityRouter._internalHandleCommand("Update", update, context)
+
+  @Benchmark
+  def eventSourcedEntityCommand(): AnyRef =
+    eventSourcedEntityRouter.handleCommand("AddItem", cart, addItem, context)
+
+  @Benchmark
+  def materializeMessage(): AnyRef =
+    InvocationContext(update, valueEntityDescriptor.commandHandlers("Update").requestMessageDescriptor).message
+}
+
+/** The parts of a command context used when routing a command, outside of a running service */
+final class BenchmarkCommandContext extends valueentity.CommandContext with eventsourcedentity.CommandContext {
+  override def commandName(): String = "benchmark"
+  override def commandId(): Long = 1L
+  override def sequenceNumber(): Long = 0L
+  override def entityId(): String = "cart-1"
+  override def metadata(): Metadata = Metadata.EMPTY
+  override def materializer(): Materializer =
+    throw new UnsupportedOperationException("No materializer when benchmarking")
+}
@@ -19,12 +19,13 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
-import com.google.protobuf.UnsafeByteOperations;
 import kalix.javasdk.annotations.Migration;
 import kalix.javasdk.impl.AnySupport;
 import kalix.javasdk.impl.ByteStringEncoding;
@@ -33,6 +34,7 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class JsonSupport {
 
@@ -40,6 +42,17 @@ public final class JsonSupport {
 
   private static final ObjectMapper objectMapper = new ObjectMapper();
 
+  // readers and writers are immutable and thread safe, creating them for every message is not free
+  private static final ConcurrentHashMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  private static final int OUTPUT_BUFFER_INITIAL_SIZE = 256;
+
+  // JSON is written straight into a per-thread output and handed out as ByteString without further copies,
+  // a null value means the output of the thread is in use (encoding was re-entered from a custom serializer)
+  private static final ThreadLocal<ByteString.Output> outputs =
+      ThreadLocal.withInitial(() -> ByteString.newOutput(OUTPUT_BUFFER_INITIAL_SIZE));
+
   static {
     // Date/time in ISO-8601 (rfc3339) yyyy-MM-dd'T'HH:mm:ss.SSSZ format
     // as defined by com.fasterxml.jackson.databind.util.StdDateFormat
@@ -70,7 +83,9 @@ public final class JsonSupport {
 
   /**
    * The Jackson ObjectMapper that is used for encoding and decoding JSON. You may adjust it's
-   * configuration, but that must only be performed before starting {@link Kalix}
+   * configuration, but that must only be performed before starting {@link Kalix}. Readers and
+   * writers derived from it are cached per class, later changes are not picked up for classes
+   * that have already been encoded or decoded.
    */
   public static ObjectMapper getObjectMapper() {
     return objectMapper;
@@ -107,10 +122,23 @@ public final class JsonSupport {
    * @throws IllegalArgumentException if the given value cannot be turned into JSON
    */
   public static <T> Any encodeJson(T value, String jsonType) {
+    return Any.newBuilder()
+        .setTypeUrl(KALIX_JSON + jsonType)
+        .setValue(_internalEncodeJsonValue(value))
+        .build();
+  }
+
+  /**
+   * INTERNAL API
+   *
+   * <p>The value of the Any returned by {@link #encodeJson(Object, String)}, so that it can be put
+   * in other Any types without building a Java protobuf Any first.
+   */
+  public static <T> ByteString _internalEncodeJsonValue(T value) {
     try {
       ByteString bytes = encodeToBytes(value);
-      ByteString encodedBytes = ByteStringEncoding.encodePrimitiveBytes(bytes);
-      return Any.newBuilder().setTypeUrl(KALIX_JSON + jsonType).setValue(encodedBytes).build();
+      // only prepends the primitive tag and length, the JSON bytes are not copied
+      return ByteStringEncoding.encodePrimitiveBytes(bytes);
     } catch (JsonProcessingException ex) {
       throw new IllegalArgumentException(
           "Could not encode [" + value.getClass().getName() + "] as JSON", ex);
@@ -118,8 +146,35 @@ public final class JsonSupport {
   }
 
   public static <T> ByteString encodeToBytes(T value) throws JsonProcessingException {
-    return UnsafeByteOperations.unsafeWrap(
-        objectMapper.writerFor(value.getClass()).writeValueAsBytes(value));
+    ByteString.Output output = outputs.get();
+    boolean pooled = output != null;
+    if (pooled) {
+      outputs.set(null);
+    } else {
+      output = ByteString.newOutput(OUTPUT_BUFFER_INITIAL_SIZE);
+    }
+    try {
+      writerFor(value.getClass()).writeValue(output, value);
+      return output.toByteString();
+    } catch (JsonProcessingException e) {
+      throw e;
+    } catch (IOException e) {
+      // ByteString.Output never fails on write
+      throw new IllegalStateException(e);
+    } finally {
+      if (pooled) {
+        output.reset();
+        outputs.set(output);
+      }
+    }
+  }
+
+  private static ObjectWriter writerFor(Class<?> valueClass) {
+    return writers.computeIfAbsent(valueClass, objectMapper::writerFor);
+  }
+
+  private static ObjectReader readerFor(Class<?> valueClass) {
+    return readers.computeIfAbsent(valueClass, objectMapper::readerFor);
   }
 
   /**
@@ -133,28 +188,33 @@ public final class JsonSupport {
    * @throws IllegalArgumentException if the given value cannot be decoded to a T
    */
   public static <T> T decodeJson(Class<T> valueClass, Any any) {
-    if (!(AnySupport.isJsonTypeUrl(any.getTypeUrl()))) {
-      throw new IllegalArgumentException(
-          "Protobuf bytes with type url ["
-              + any.getTypeUrl()
-              + "] cannot be decoded as JSON, must start with ["
-              + KALIX_JSON
-              + "] or [" + AnySupport.AkkaJsonTypeUrlPrefix() + "]");
+    return _internalDecodeJson(valueClass, any.getTypeUrl(), any.getValue());
+  }
+
+  /**
+   * INTERNAL API
+   *
+   * <p>Same as {@link #decodeJson(Class, Any)}, for a type URL and value that are not wrapped in an
+   * Any, so that they can be decoded straight from the bytes of an incoming message.
+   */
+  public static <T> T _internalDecodeJson(Class<T> valueClass, String typeUrl, ByteString value) {
+    if (!(AnySupport.isJsonTypeUrl(typeUrl))) {
+      throw notJsonException(typeUrl);
     } else {
       try {
-        ByteString decodedBytes = ByteStringEncoding.decodePrimitiveBytes(any.getValue());
+        ByteString decodedBytes = ByteStringEncoding.decodePrimitiveBytes(value);
         if (valueClass.getAnnotation(Migration.class) != null) {
           JsonMigration migration = valueClass.getAnnotation(Migration.class)
               .value()
               .getConstructor()
               .newInstance();
-          int fromVersion = parseVersion(any.getTypeUrl());
+          int fromVersion = parseVersion(typeUrl);
           int currentVersion = migration.currentVersion();
           int supportedForwardVersion = migration.supportedForwardVersion();
           if (fromVersion < currentVersion) {
             return migrate(valueClass, decodedBytes, fromVersion, migration);
           } else if (fromVersion == currentVersion) {
-            return parseBytes(decodedBytes.toByteArray(), valueClass);
+            return parseBytes(decodedBytes, valueClass);
           } else if (fromVersion <= supportedForwardVersion) {
             return migrate(valueClass, decodedBytes, fromVersion, migration);
           } else {
@@ -162,35 +222,51 @@ public final class JsonSupport {
                 "behind version " + fromVersion + " of deserialized type [" + valueClass.getName() + "]");
           }
         } else {
-          return parseBytes(decodedBytes.toByteArray(), valueClass);
+          return parseBytes(decodedBytes, valueClass);
         }
       } catch (JsonProcessingException e) {
-        throw jsonProcessingException(valueClass, any, e);
+        throw jsonProcessingException(valueClass, typeUrl, e);
       } catch (IOException | NoSuchMethodException | InstantiationException | IllegalAccessException |
                InvocationTargetException e) {
-        throw genericDecodeException(valueClass, any, e);
+        throw genericDecodeException(valueClass, typeUrl, e);
       }
     }
   }
 
   public static <T> T parseBytes(byte[] bytes, Class<T> valueClass) throws IOException {
-    return objectMapper.readValue(bytes, valueClass);
+    return readerFor(valueClass).readValue(bytes);
+  }
+
+  private static <T> T parseBytes(ByteString bytes, Class<T> valueClass) throws IOException {
+    // streams from the (possibly aliased) protobuf bytes instead of copying them to an array first
+    return readerFor(valueClass).readValue(bytes.newInput());
   }
 
-  private static <T> IllegalArgumentException jsonProcessingException(Class<T> valueClass, Any any, JsonProcessingException e) {
+  private static IllegalArgumentException notJsonException(String typeUrl) {
+    return new IllegalArgumentException(
+        "Protobuf bytes with type url ["
+            + typeUrl
+            + "] cannot be decoded as JSON, must start with ["
+            + KALIX_JSON
+            + "] or ["
+            + AnySupport.AkkaJsonTypeUrlPrefix()
+            + "]");
+  }
+
+  private static <T> IllegalArgumentException jsonProcessingException(Class<T> valueClass, String typeUrl, JsonProcessingException e) {
     return new IllegalArgumentException(
         "JSON with type url ["
-            + any.getTypeUrl()
+            + typeUrl
             + "] could not be decoded into a ["
             + valueClass.getName()
             + "]. Make sure that changes are backwards compatible or apply a @Migration mechanism (https://docs.kalix.io/java/serialization.html#_schema_evolution).",
         e);
   }
 
-  private static <T> IllegalArgumentException genericDecodeException(Class<T> valueClass, Any any, Exception e) {
+  private static <T> IllegalArgumentException genericDecodeException(Class<T> valueClass, String typeUrl, Exception e) {
     return new IllegalArgumentException(
         "JSON with type url ["
-            + any.getTypeUrl()
+            + typeUrl
             + "] could not be decoded into a ["
             + valueClass.getName()
             + "]",
@@ -198,7 +274,7 @@ public final class JsonSupport {
   }
 
   private static <T> T migrate(Class<T> valueClass, ByteString decodedBytes, int fromVersion, JsonMigration jsonMigration) throws IOException {
-    JsonNode jsonNode = objectMapper.readTree(decodedBytes.toByteArray());
+    JsonNode jsonNode = objectMapper.readTree(decodedBytes.newInput());
     JsonNode newJsonNode = jsonMigration.transform(fromVersion, jsonNode);
     return objectMapper.treeToValue(newJsonNode, valueClass);
   }
@@ -214,24 +290,28 @@ public final class JsonSupport {
   }
 
   public static <T, C extends Collection<T>> C decodeJsonCollection(Class<T> valueClass, Class<C> collectionType, Any any) {
-    if (!(AnySupport.isJsonTypeUrl(any.getTypeUrl()))) {
-      throw new IllegalArgumentException(
-          "Protobuf bytes with type url ["
-              + any.getTypeUrl()
-              + "] cannot be decoded as JSON, must start with ["
-              + KALIX_JSON
-              + "] or ["
-              + AnySupport.AkkaJsonTypeUrlPrefix()
-              + "]");
+    return _internalDecodeJsonCollection(valueClass, collectionType, any.getTypeUrl(), any.getValue());
+  }
+
+  /**
+   * INTERNAL API
+   *
+   * <p>Same as {@link #decodeJsonCollection(Class, Class, Any)}, for a type URL and value that are
+   * not wrapped in an Any.
+   */
+  public static <T, C extends Collection<T>> C _internalDecodeJsonCollection(
+      Class<T> valueClass, Class<C> collectionType, String typeUrl, ByteString value) {
+    if (!(AnySupport.isJsonTypeUrl(typeUrl))) {
+      throw notJsonException(typeUrl);
     } else {
       try {
-        ByteString decodedBytes = ByteStringEncoding.decodePrimitiveBytes(any.getValue());
+        ByteString decodedBytes = ByteStringEncoding.decodePrimitiveBytes(value);
         var typeRef = objectMapper.getTypeFactory().constructCollectionType(collectionType, valueClass);
-        return objectMapper.readValue(decodedBytes.toByteArray(), typeRef);
+        return objectMapper.readerFor(typeRef).readValue(decodedBytes.newInput());
       } catch (JsonProcessingException e) {
-        throw jsonProcessingException(valueClass, any, e);
+        throw jsonProcessingException(valueClass, typeUrl, e);
       } catch (IOException e) {
-        throw genericDecodeException(valueClass, any, e);
+        throw genericDecodeException(valueClass, typeUrl, e);
       }
     }
   }
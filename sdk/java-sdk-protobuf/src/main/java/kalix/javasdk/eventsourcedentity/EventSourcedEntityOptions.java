@@ -9,6 +9,7 @@ import kalix.javasdk.PassivationStrategy;
 import kalix.javasdk.impl.eventsourcedentity.EventSourcedEntityOptionsImpl;
 
 import java.util.Collections;
+import java.util.Optional;
 import java.util.Set;
 
 /** Root entity options for all event sourcing entities. */
@@ -27,6 +28,24 @@ public interface EventSourcedEntityOptions extends EntityOptions {
    */
   EventSourcedEntityOptions withSnapshotEvery(int numberOfEvents);
 
+  /** The snapshot policy, if one was set it is used instead of {@link #snapshotEvery()}. */
+  default Optional<SnapshotPolicy> snapshotPolicy() {
+    return Optional.empty();
+  }
+
+  /**
+   * Specifies when snapshots of the entity state should be made, replacing the number of events
+   * from {@link #withSnapshotEvery(int)} or the configuration file. Policies can be combined with
+   * {@link SnapshotPolicy#or(SnapshotPolicy)}.
+   *
+   * <p>Implementations of these options that predate snapshot policies do not support them, and
+   * throw an {@link UnsupportedOperationException}.
+   */
+  default EventSourcedEntityOptions withSnapshotPolicy(SnapshotPolicy policy) {
+    throw new UnsupportedOperationException(
+        getClass().getName() + " does not support snapshot policies");
+  }
+
   @Override
   EventSourcedEntityOptions withForwardHeaders(Set<String> headers);
 
@@ -36,6 +55,6 @@ public interface EventSourcedEntityOptions extends EntityOptions {
    * @return the entity option
    */
   static EventSourcedEntityOptions defaults() {
-    return new EventSourcedEntityOptionsImpl(0, Collections.emptySet());
+    return new EventSourcedEntityOptionsImpl(0, Collections.emptySet(), Optional.empty());
   }
 }
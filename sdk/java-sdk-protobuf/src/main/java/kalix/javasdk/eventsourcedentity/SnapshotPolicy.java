@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.eventsourcedentity;
+
+import kalix.javasdk.impl.eventsourcedentity.SnapshotPolicyImpl;
+
+import java.time.Duration;
+
+/**
+ * Decides when a snapshot of the entity state should be stored. A snapshot is stored together with
+ * the events of the command after which the policy triggers, and everything counted by the policy
+ * starts over from that snapshot.
+ */
+public interface SnapshotPolicy {
+
+  /**
+   * Create a policy that stores a snapshot once the given number of events have been persisted
+   * since the last snapshot.
+   *
+   * @param numberOfEvents the number of events between snapshots, must be greater than zero
+   * @return the snapshot policy
+   */
+  static SnapshotPolicy everyNumberOfEvents(int numberOfEvents) {
+    return SnapshotPolicyImpl.everyNumberOfEvents(numberOfEvents);
+  }
+
+  /**
+   * Create a policy that stores a snapshot once the serialized events persisted since the last
+   * snapshot add up to the given number of bytes. Useful for entities with large events, where a
+   * count of events says little about how much has to be read back on recovery.
+   *
+   * @param bytes the serialized size of events between snapshots, must be greater than zero
+   * @return the snapshot policy
+   */
+  static SnapshotPolicy everyEventBytes(long bytes) {
+    return SnapshotPolicyImpl.everyEventBytes(bytes);
+  }
+
+  /**
+   * Create a policy that stores a snapshot once replaying the events persisted since the last
+   * snapshot is estimated to take longer than the given duration. The estimate is based on the time
+   * the event handlers of the entity took when events were last replayed, so it does not trigger
+   * before the entity has been recovered from events at least once. Combine it with another policy
+   * to bound the number of events for new entities.
+   *
+   * @param replayTime the estimated time to replay events between snapshots, must be positive
+   * @return the snapshot policy
+   */
+  static SnapshotPolicy whenReplayTimeExceeds(Duration replayTime) {
+    return SnapshotPolicyImpl.whenReplayTimeExceeds(replayTime);
+  }
+
+  /**
+   * Combine this policy with another one, a snapshot is stored as soon as either of them triggers.
+   *
+   * @param other the other policy
+   * @return the combined snapshot policy
+   */
+  SnapshotPolicy or(SnapshotPolicy other);
+}
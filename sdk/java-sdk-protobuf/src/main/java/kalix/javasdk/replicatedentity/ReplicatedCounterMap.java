@@ -6,6 +6,7 @@ package kalix.javasdk.replicatedentity;
 
 import kalix.replicatedentity.ReplicatedData;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * A Map of counters. Uses {@link kalix.javasdk.replicatedentity.ReplicatedCounter}'s as values.
@@ -87,4 +88,40 @@ public interface ReplicatedCounterMap<K> extends ReplicatedData {
    * @return the keys contained in this counter map
    */
   Set<K> keySet();
+
+  /**
+   * Apply several changes to this counter map at once. The changes are made to a mutable view of
+   * the map that is only valid while the given function runs, and the resulting map is created once
+   * at the end. Many increments of the same counter only create one new counter.
+   *
+   * @param changes function making the changes, the mutator must not be used after it returns
+   * @return a new counter map with the changes applied, or this unchanged counter map
+   */
+  ReplicatedCounterMap<K> mutate(Consumer<Mutator<K>> changes);
+
+  /**
+   * Changes one counter map in place, see {@link ReplicatedCounterMap#mutate(Consumer)}.
+   *
+   * @param <K> type of the keys
+   */
+  interface Mutator<K> {
+
+    /**
+     * @return the value of the counter for the key, including the changes made so far, or 0 if
+     *     there is no counter for the key
+     */
+    long get(K key);
+
+    /** Increment the counter at the given key, creating it if it is not already in the map. */
+    void increment(K key, long amount);
+
+    /** Decrement the counter at the given key, creating it if it is not already in the map. */
+    void decrement(K key, long amount);
+
+    /** Remove the counter at the given key if it is present. */
+    void remove(K key);
+
+    /** Remove all counters from the map. */
+    void clear();
+  }
 }
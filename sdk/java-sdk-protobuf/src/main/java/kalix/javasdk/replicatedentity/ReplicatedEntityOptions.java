@@ -8,6 +8,7 @@ import kalix.javasdk.EntityOptions;
 import kalix.javasdk.PassivationStrategy;
 import kalix.javasdk.impl.replicatedentity.ReplicatedEntityOptionsImpl;
 
+import java.time.Duration;
 import java.util.Collections;
 
 /** Root entity options for all Replicated Entities. */
@@ -32,6 +33,49 @@ public interface ReplicatedEntityOptions extends EntityOptions {
    */
   ReplicatedEntityOptions withWriteConsistency(WriteConsistency writeConsistency);
 
+  /**
+   * Get the window in which the changes of consecutive commands are combined into one delta, see
+   * {@link #withDeltaCoalescing(Duration, int)}.
+   *
+   * @return the delta coalescing window, zero when every command sends its own delta
+   */
+  default Duration deltaCoalescingWindow() {
+    return Duration.ZERO;
+  }
+
+  /**
+   * Get the maximum number of commands whose changes are combined into one delta.
+   *
+   * @return the maximum number of commands for one delta
+   */
+  default int deltaCoalescingMaxCommands() {
+    return 1;
+  }
+
+  /**
+   * Combine the changes of consecutive commands into one delta. Once a command changes the
+   * replicated data, its reply and the replies of the commands that follow are held back until the
+   * window has passed or the given number of commands have been handled. They are then sent
+   * together, in order and with their command ids, and the first of them carries one delta with
+   * all the changes.
+   *
+   * <p>This reduces the number of deltas to replicate for entities receiving bursts of updates,
+   * such as a counter incremented by many clients, at the cost of delaying replies by up to the
+   * window. Held replies are sent right away when a delta from another replica arrives or the
+   * entity is deleted.
+   *
+   * <p>Implementations of these options that predate delta coalescing do not support it, and throw
+   * an {@link UnsupportedOperationException}.
+   *
+   * @param window how long replies are held after the first change, zero disables coalescing
+   * @param maxCommands the maximum number of commands for one delta, must be greater than zero
+   * @return new replicated entity options with delta coalescing
+   */
+  default ReplicatedEntityOptions withDeltaCoalescing(Duration window, int maxCommands) {
+    throw new UnsupportedOperationException(
+        getClass().getName() + " does not support delta coalescing");
+  }
+
   /**
    * Create default Replicated Entity options.
    *
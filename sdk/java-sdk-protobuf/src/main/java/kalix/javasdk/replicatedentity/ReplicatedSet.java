@@ -6,6 +6,7 @@ package kalix.javasdk.replicatedentity;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Consumer;
 import kalix.replicatedentity.ReplicatedData;
 /**
  * A Replicated Set that allows both the addition and removal of elements in a set.
@@ -116,4 +117,52 @@ public interface ReplicatedSet<E> extends ReplicatedData, Iterable<E> {
    * @return a new empty set
    */
   ReplicatedSet<E> clear();
+
+  /**
+   * Apply several changes to this set at once. The changes are made to a mutable view of the set
+   * that is only valid while the given function runs, and the resulting set is created once at the
+   * end. This avoids creating a new set for every single change when changing many elements in one
+   * command.
+   *
+   * @param changes function making the changes, the mutator must not be used after it returns
+   * @return a new set with the changes applied, or this unchanged set
+   */
+  ReplicatedSet<E> mutate(Consumer<Mutator<E>> changes);
+
+  /**
+   * Changes one set in place, see {@link ReplicatedSet#mutate(Consumer)}.
+   *
+   * @param <E> type of the elements
+   */
+  interface Mutator<E> {
+
+    /** @return the number of elements in the set, including the changes made so far */
+    int size();
+
+    /** @return {@code true} if the set contains the element, including the changes made so far */
+    boolean contains(E element);
+
+    /**
+     * Add an element to the set if it is not already present.
+     *
+     * @return {@code true} if the element was added
+     */
+    boolean add(E element);
+
+    /**
+     * Remove an element from the set if it is present.
+     *
+     * @return {@code true} if the element was removed
+     */
+    boolean remove(E element);
+
+    /** Add all the given elements that are not already present. */
+    void addAll(Collection<E> elements);
+
+    /** Remove all the given elements that are present. */
+    void removeAll(Collection<E> elements);
+
+    /** Remove all elements from the set. */
+    void clear();
+  }
 }
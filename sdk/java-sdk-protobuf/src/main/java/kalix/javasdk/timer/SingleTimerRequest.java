@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.timer;
+
+import kalix.javasdk.DeferredCall;
+
+import java.time.Duration;
+
+/**
+ * A single timer to schedule together with others through {@link
+ * TimerScheduler#startSingleTimers(java.util.List)}.
+ */
+public final class SingleTimerRequest {
+
+  private final String name;
+  private final Duration delay;
+  private final int maxRetries;
+  private final DeferredCall<?, ?> deferredCall;
+
+  private SingleTimerRequest(
+      String name, Duration delay, int maxRetries, DeferredCall<?, ?> deferredCall) {
+    this.name = name;
+    this.delay = delay;
+    this.maxRetries = maxRetries;
+    this.deferredCall = deferredCall;
+  }
+
+  /**
+   * @param name unique name for the timer
+   * @param delay delay, starting from now, in which the timer should be triggered
+   * @param deferredCall a call to component that will be executed when the timer is triggered
+   */
+  public static SingleTimerRequest of(
+      String name, Duration delay, DeferredCall<?, ?> deferredCall) {
+    return new SingleTimerRequest(name, delay, 0, deferredCall);
+  }
+
+  /**
+   * @param name unique name for the timer
+   * @param delay delay, starting from now, in which the timer should be triggered
+   * @param maxRetries Retry up to this many times before giving up
+   * @param deferredCall a call to component that will be executed when the timer is triggered
+   */
+  public static SingleTimerRequest of(
+      String name, Duration delay, int maxRetries, DeferredCall<?, ?> deferredCall) {
+    return new SingleTimerRequest(name, delay, maxRetries, deferredCall);
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public Duration delay() {
+    return delay;
+  }
+
+  public int maxRetries() {
+    return maxRetries;
+  }
+
+  public DeferredCall<?, ?> deferredCall() {
+    return deferredCall;
+  }
+}
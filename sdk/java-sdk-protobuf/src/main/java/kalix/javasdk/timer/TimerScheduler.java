@@ -8,6 +8,8 @@ import akka.Done;
 import kalix.javasdk.DeferredCall;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 public interface TimerScheduler {
@@ -55,6 +57,26 @@ public interface TimerScheduler {
   <I, O> CompletionStage<Done> startSingleTimer(
       String name, Duration delay, int maxRetries, DeferredCall<I, O> deferredCall);
 
+  /**
+   * Schedule several single timers in Kalix at once, see {@link #startSingleTimer(String, Duration,
+   * int, DeferredCall)}. Prefer this over one call per timer when scheduling many timers, so that
+   * they can be registered together.
+   *
+   * @param timers the timers to schedule
+   * @return completes when all timers have been registered
+   */
+  default CompletionStage<Done> startSingleTimers(List<SingleTimerRequest> timers) {
+    CompletableFuture<?>[] registrations =
+        timers.stream()
+            .map(
+                timer ->
+                    startSingleTimer(
+                            timer.name(), timer.delay(), timer.maxRetries(), timer.deferredCall())
+                        .toCompletableFuture())
+            .toArray(CompletableFuture<?>[]::new);
+    return CompletableFuture.allOf(registrations).thenApply(__ -> Done.getInstance());
+  }
+
   /**
    * Cancel an existing timer. This completes successfully if not timer is registered for the passed
    * name.
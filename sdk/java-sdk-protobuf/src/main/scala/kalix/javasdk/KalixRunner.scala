@@ -26,6 +26,7 @@ import com.typesafe.config.ConfigFactory
 import kalix.devtools.impl.DevModeSettings
 import kalix.devtools.impl.DockerComposeUtils
 import kalix.javasdk.impl.DiscoveryImpl
+import kalix.javasdk.impl.GrpcClients
 import kalix.javasdk.impl.Service
 import kalix.javasdk.impl.action.ActionService
 import kalix.javasdk.impl.action.ActionsImpl
@@ -59,7 +60,10 @@ object KalixRunner {
       userFunctionPort: Int,
       snapshotEvery: Int,
       cleanupDeletedEventSourcedEntityAfter: Duration,
-      cleanupDeletedValueEntityAfter: Duration) {
+      cleanupDeletedValueEntityAfter: Duration,
+      asyncSnapshotEncoding: Boolean = false,
+      replayDecodeParallelism: Int = 4,
+      replayBufferSize: Int = 64) {
     validate()
     def this(config: Config) = {
       this(
@@ -67,12 +71,16 @@ object KalixRunner {
         userFunctionPort = config.getInt("user-function-port"),
         snapshotEvery = config.getInt("event-sourced-entity.snapshot-every"),
         cleanupDeletedEventSourcedEntityAfter = config.getDuration("event-sourced-entity.cleanup-deleted-after"),
-        cleanupDeletedValueEntityAfter = config.getDuration("value-entity.cleanup-deleted-after"))
+        cleanupDeletedValueEntityAfter = config.getDuration("value-entity.cleanup-deleted-after"),
+        asyncSnapshotEncoding = config.getBoolean("event-sourced-entity.async-snapshot-encoding"),
+        replayDecodeParallelism = config.getInt("event-sourced-entity.replay.decode-parallelism"),
+        replayBufferSize = config.getInt("event-sourced-entity.replay.buffer-size"))
     }
 
     private def validate(): Unit = {
       require(userFunctionInterface.nonEmpty, s"user-function-interface must not be empty")
       require(userFunctionPort > 0, s"user-function-port must be greater than 0")
+      require(replayBufferSize > 0, s"event-sourced-entity.replay.buffer-size must be greater than 0")
     }
   }
 
@@ -111,6 +119,9 @@ final class KalixRunner private[javasdk] (
     serviceName -> factory(system)
   }.toMap
 
+  if (finalConfig.getBoolean("kalix.cross-service.warm-up-clients"))
+    GrpcClients(system).prepareWarmUp(services.values.map(_.descriptor))
+
   /**
    * Creates a KalixRunner from the given services. Use the default config to create the internal ActorSystem.
    */
@@ -6,6 +6,7 @@ package kalix.javasdk.impl
 
 import java.io.ByteArrayOutputStream
 import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
 import scala.collection.concurrent.TrieMap
 import scala.jdk.CollectionConverters._
 import scala.reflect.ClassTag
@@ -130,7 +131,19 @@ object AnySupport {
    * INTERNAL API
    */
   private[kalix] def encodePrimitiveBytes(bytes: ByteString): ByteString =
-    primitiveToBytes(BytesPrimitive, bytes)
+    if (bytes.isEmpty) ByteString.EMPTY
+    else {
+      // same wire format as primitiveToBytes, but only the tag and length are written,
+      // the bytes themselves are concatenated (not copied) when large enough
+      val prefix = new Array[Byte](
+        CodedOutputStream.computeTagSize(KalixPrimitiveFieldNumber) +
+        CodedOutputStream.computeUInt32SizeNoTag(bytes.size()))
+      val stream = CodedOutputStream.newInstance(prefix)
+      stream.writeTag(KalixPrimitiveFieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+      stream.writeUInt32NoTag(bytes.size())
+      stream.checkNoSpaceLeft()
+      UnsafeByteOperations.unsafeWrap(prefix).concat(bytes)
+    }
 
   /**
    * INTERNAL API
@@ -149,6 +162,8 @@ object AnySupport {
 
   private def bytesToPrimitive[T](primitive: Primitive[T], bytes: ByteString) = {
     val stream = bytes.newCodedInput()
+    // ByteString is immutable, so read bytes can be views on the source rather than copies
+    stream.enableAliasing(true)
     if (LazyList
         .continually(stream.readTag())
         .takeWhile(_ != 0)
@@ -212,6 +227,27 @@ class AnySupport(
 
   private val reflectionCache = TrieMap.empty[String, Try[ResolvedType[Any]]]
 
+  // full type url to decoder for every type known up front, so that decoding those is a single lookup
+  // instead of a chain of prefix checks, splitting the type url and resolving the type name
+  private val knownTypeDecoders: Map[String, ScalaPbAny => Any] = {
+    val messageDecoders = allTypes.map { case (typeName, descriptor) =>
+      val knownType = new KnownMessageType(descriptor)
+      (typeUrlPrefix + "/" + typeName) -> ((any: ScalaPbAny) => parseMessage(knownType.resolvedType, any))
+    }
+    messageDecoders ++ Map(
+      BytesPrimitive.fullName -> ((any: ScalaPbAny) => decodeBytesValue(any)),
+      StringPrimitive.fullName -> ((any: ScalaPbAny) => decodeStringValue(any)))
+  }
+
+  private final class KnownMessageType(descriptor: Descriptors.Descriptor) {
+    // resolved on first use, not all described types have a class on the classpath
+    lazy val resolvedType: ResolvedType[Any] = resolveTypeDescriptor(descriptor)
+  }
+
+  // full name of the message type to the type url it is encoded with, by name and not by class since every
+  // DynamicMessage has the same class whatever its type
+  private val encodedTypeUrls = new ConcurrentHashMap[String, String]()
+
   private def strippedFileName(fileName: String) =
     fileName.split(Array('/', '\\')).last.stripSuffix(".proto")
 
@@ -346,6 +382,9 @@ class AnySupport(
       case _                      => ScalaPbAny.toJavaProto(encodeScala(value))
     }
 
+  // encodeJava is encodeScala converted to a Java protobuf Any
+  override def encodeJavaAsScala(value: Any): ScalaPbAny = encodeScala(value)
+
   def encodeScala(value: Any): ScalaPbAny =
     value match {
       case javaPbAny: JavaPbAny   => ScalaPbAny.fromJavaProto(javaPbAny)
@@ -367,11 +406,13 @@ class AnySupport(
 
       case javaProtoMessage: com.google.protobuf.Message =>
         ScalaPbAny(
-          typeUrlPrefix + "/" + javaProtoMessage.getDescriptorForType.getFullName,
+          encodedTypeUrl(javaProtoMessage.getDescriptorForType.getFullName),
           javaProtoMessage.toByteString)
 
       case scalaPbMessage: GeneratedMessage =>
-        ScalaPbAny(typeUrlPrefix + "/" + scalaPbMessage.companion.scalaDescriptor.fullName, scalaPbMessage.toByteString)
+        ScalaPbAny(
+          encodedTypeUrl(scalaPbMessage.companion.scalaDescriptor.fullName),
+          scalaPbMessage.toByteString)
 
       case null =>
         throw NullSerializationException
@@ -416,21 +457,10 @@ class AnySupport(
    */
   def decodeMessage(any: ScalaPbAny): Any = {
     val typeUrl = any.typeUrl
-    if (typeUrl.equals(BytesPrimitive.fullName)) {
-      // raw byte strings we turn into BytesValue and expect service method to accept
-      val bytes = bytesToPrimitive(BytesPrimitive, any.value)
-      if (prefer == PREFER_JAVA)
-        com.google.protobuf.BytesValue.of(bytes)
-      else
-        com.google.protobuf.wrappers.BytesValue.of(bytes)
-
-    } else if (typeUrl.equals(StringPrimitive.fullName)) {
-      // strings as StringValue
-      val string = bytesToPrimitive(StringPrimitive, any.value)
-      if (prefer == PREFER_JAVA)
-        com.google.protobuf.StringValue.of(string)
-      else
-        com.google.protobuf.wrappers.StringValue.of(string)
+    val knownTypeDecoder = knownTypeDecoders.getOrElse(typeUrl, null)
+    if (knownTypeDecoder ne null) {
+      // concrete protobuf message with the configured prefix or raw bytes and strings
+      knownTypeDecoder(any)
 
     } else if (isJsonTypeUrl(typeUrl)) {
       // we do not actually parse JSON here but returns it as is and let the user
@@ -464,19 +494,49 @@ class AnySupport(
       }
 
       resolveTypeUrl(typeName) match {
-        case Some(parser) =>
-          try {
-            parser.parseFrom(any.value)
-          } catch {
-            case ex: scalapb.validate.FieldValidationException =>
-              throw BadRequestException(ex.getMessage)
-          }
+        case Some(parser) => parseMessage(parser, any)
         case None =>
           throw SerializationException("Unable to find descriptor for type: " + typeUrl)
       }
     }
   }
 
+  private def parseMessage(parser: ResolvedType[_], any: ScalaPbAny): Any =
+    try {
+      parser.parseFrom(any.value)
+    } catch {
+      case ex: scalapb.validate.FieldValidationException =>
+        throw BadRequestException(ex.getMessage)
+    }
+
+  // raw byte strings we turn into BytesValue and expect service method to accept
+  private def decodeBytesValue(any: ScalaPbAny): Any = {
+    val bytes = bytesToPrimitive(BytesPrimitive, any.value)
+    if (prefer == PREFER_JAVA)
+      com.google.protobuf.BytesValue.of(bytes)
+    else
+      com.google.protobuf.wrappers.BytesValue.of(bytes)
+  }
+
+  // strings as StringValue
+  private def decodeStringValue(any: ScalaPbAny): Any = {
+    val string = bytesToPrimitive(StringPrimitive, any.value)
+    if (prefer == PREFER_JAVA)
+      com.google.protobuf.StringValue.of(string)
+    else
+      com.google.protobuf.wrappers.StringValue.of(string)
+  }
+
+  private def encodedTypeUrl(fullName: String): String = {
+    val cached = encodedTypeUrls.get(fullName)
+    if (cached ne null) cached
+    else {
+      val typeUrl = typeUrlPrefix + "/" + fullName
+      encodedTypeUrls.put(fullName, typeUrl)
+      typeUrl
+    }
+  }
+
   override def typeUrlFor(clz: Class[_]): String = clz.getName
 }
 
@@ -502,4 +562,11 @@ trait MessageCodec {
   def encodeScala(value: Any): ScalaPbAny
   def encodeJava(value: Any): JavaPbAny
   def typeUrlFor(clz: Class[_]): String
+
+  /**
+   * Encodes the value exactly as [[encodeJava]] does, into the Scala protobuf Any used by the protocol. Used for the
+   * state, events and replies of entities, that have always been encoded with [[encodeJava]]. Codecs override it to
+   * skip the Java protobuf Any when the result is the same.
+   */
+  def encodeJavaAsScala(value: Any): ScalaPbAny = ScalaPbAny.fromJavaProto(encodeJava(value))
 }
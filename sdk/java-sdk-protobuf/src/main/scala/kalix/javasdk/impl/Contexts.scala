@@ -15,6 +15,7 @@ import kalix.javasdk.Context
 private[impl] trait ActivatableContext extends Context {
   private final var active = true
   final def deactivate(): Unit = active = false
+  final def activate(): Unit = active = true
   final def checkActive(): Unit = if (!active) throw new IllegalStateException("Context no longer active!")
 }
 
@@ -112,6 +112,9 @@ class DiscoveryImpl(
       val runtimeTerminatedPromise = if (in.devMode) Promise.successful[Done](Done) else Promise[Done]()
       runtimeTerminatedRef.getAndSet(runtimeTerminatedPromise).trySuccess(Done)
 
+      // the runtime address is known now, clients for calls between components can be created before the first call
+      GrpcClients(system).warmUp()
+
       log.debug(s"Supported sidecar entity types: {}", in.supportedEntityTypes.mkString("[", ",", "]"))
 
       val unsupportedServices = services.values.filterNot { service =>
@@ -6,11 +6,19 @@ package kalix.javasdk.impl
 
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.LongAccumulator
+import java.util.concurrent.atomic.LongAdder
 
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
 import scala.jdk.CollectionConverters._
+import scala.jdk.DurationConverters._
 import scala.jdk.FutureConverters._
+import scala.util.Failure
+import scala.util.Success
+import scala.util.Try
 
 import akka.Done
 import akka.actor.ActorSystem
@@ -23,8 +31,19 @@ import akka.actor.ExtensionIdProvider
 import akka.grpc.GrpcClientSettings
 import akka.grpc.javadsl.{ AkkaGrpcClient => AkkaGrpcJavaClient }
 import akka.grpc.scaladsl.{ AkkaGrpcClient => AkkaGrpcScalaClient }
+import com.google.protobuf.Descriptors
 import io.grpc.CallCredentials
+import io.grpc.CallOptions
+import io.grpc.Channel
+import io.grpc.ClientCall
+import io.grpc.ClientInterceptor
+import io.grpc.ForwardingClientCall
+import io.grpc.ForwardingClientCallListener
+import io.grpc.ManagedChannel
+import io.grpc.ManagedChannelBuilder
 import io.grpc.Metadata
+import io.grpc.MethodDescriptor
+import io.grpc.Status
 import org.slf4j.LoggerFactory
 
 /**
@@ -39,7 +58,106 @@ object GrpcClients extends ExtensionId[GrpcClients] with ExtensionIdProvider {
     new GrpcClients(system)
   override def lookup: ExtensionId[_ <: Extension] = this
 
-  final private case class Key(serviceClass: Class[_], service: String, port: Int, addHeader: Option[(String, String)])
+  /** One client for a target, the channel is its index in the pool of clients for the target */
+  final private case class Key(
+      serviceClass: Class[_],
+      service: String,
+      port: Int,
+      addHeader: Option[(String, String)],
+      channel: Int = 0)
+
+  /** Calls made through the channel of one pooled client */
+  private[impl] final class ChannelLoad {
+    private val _inFlight = new AtomicInteger
+    private val peak = new LongAccumulator((a, b) => math.max(a, b), 0L)
+    private val calls = new LongAdder
+
+    def inFlight: Int = _inFlight.get()
+
+    def callStarted(): Unit = {
+      calls.increment()
+      peak.accumulate(_inFlight.incrementAndGet())
+    }
+
+    def callCompleted(): Unit = _inFlight.decrementAndGet()
+
+    def callsThenReset(): Long = calls.sumThenReset()
+
+    def peakThenReset(): Long = peak.getThenReset()
+  }
+
+  /** Counts the calls in flight on a channel, for picking the least loaded channel of a pool */
+  private[impl] final class InFlightInterceptor(load: ChannelLoad) extends ClientInterceptor {
+    override def interceptCall[Req, Res](
+        method: MethodDescriptor[Req, Res],
+        callOptions: CallOptions,
+        next: Channel): ClientCall[Req, Res] =
+      new ForwardingClientCall.SimpleForwardingClientCall[Req, Res](next.newCall(method, callOptions)) {
+        override def start(responseListener: ClientCall.Listener[Res], headers: Metadata): Unit = {
+          load.callStarted()
+          val listener = new ForwardingClientCallListener.SimpleForwardingClientCallListener[Res](responseListener) {
+            override def onClose(status: Status, trailers: Metadata): Unit = {
+              load.callCompleted()
+              super.onClose(status, trailers)
+            }
+          }
+          try super.start(listener, headers)
+          catch {
+            case e: Throwable =>
+              load.callCompleted()
+              throw e
+          }
+        }
+      }
+  }
+
+  /** Adds the given credentials to every call, for channels that are not created from client settings */
+  final private class CallCredentialsInterceptor(credentials: CallCredentials) extends ClientInterceptor {
+    override def interceptCall[Req, Res](
+        method: MethodDescriptor[Req, Res],
+        callOptions: CallOptions,
+        next: Channel): ClientCall[Req, Res] =
+      next.newCall(method, callOptions.withCallCredentials(credentials))
+  }
+
+  /** Call credentials adding the given header, used to identify the calling service */
+  private def headerCredentials(header: (String, String)): CallCredentials = {
+    val headers = new Metadata()
+    headers.put(Metadata.Key.of(header._1, Metadata.ASCII_STRING_MARSHALLER), header._2)
+    new CallCredentials {
+      override def applyRequestMetadata(
+          requestInfo: CallCredentials.RequestInfo,
+          appExecutor: Executor,
+          applier: CallCredentials.MetadataApplier): Unit = {
+        applier.apply(headers)
+      }
+      override def thisUsesUnstableApi(): Unit = ()
+    }
+  }
+
+  /** Creates a client from its settings, resolved once per service class */
+  private type ClientFactory = GrpcClientSettings => AnyRef
+
+  /** Where clients for services in the same deployable connect to, derived from the proxy info of one generation */
+  final private class LocalTarget(
+      val generation: Long,
+      val host: String,
+      val port: Int,
+      val addHeader: Option[(String, String)])
+
+  /**
+   * The names the generated service interface of a gRPC service descriptor can have, with Java and with Scala code
+   * generation.
+   */
+  private[impl] def serviceClassNames(descriptor: Descriptors.ServiceDescriptor): Seq[String] = {
+    val file = descriptor.getFile
+    val basePackages =
+      Seq(if (file.getOptions.hasJavaPackage) file.getOptions.getJavaPackage else "", file.getPackage).distinct
+    // unless generated with flat_package, ScalaPB puts the service in a package named after the proto file
+    val fileName = file.getName.split('/').last.stripSuffix(".proto")
+    val packages = basePackages ++ basePackages.map(pkg => if (pkg.isEmpty) fileName else pkg + "." + fileName)
+    packages.distinct.map(pkg => if (pkg.isEmpty) descriptor.getName else pkg + "." + descriptor.getName)
+  }
 }
 
 /**
@@ -52,10 +170,40 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
   private val proxyInfoHolder = ProxyInfoHolder(system)
   private implicit val ec: ExecutionContext = system.dispatcher
   private val clients = new ConcurrentHashMap[Key, AnyRef]()
+  private val clientFactories = new ConcurrentHashMap[Class[_], ClientFactory]()
+  @volatile private var localTarget: LocalTarget = _
+  // keyed like the pooled clients, with Channel as the service class
+  private val proxyChannels = new ConcurrentHashMap[Key, ManagedChannel]()
+  @volatile private var warmUpClasses: Seq[Class[_]] = Nil
+
+  private val createdCounter = new LongAdder
+  private val creationNanos = new LongAdder
+  private val closedCounter = new LongAdder
   private val MaxCrossServiceResponseContentLength =
     system.settings.config.getBytes("kalix.cross-service.max-content-length").toInt
 
-  CoordinatedShutdown(system).addTask(CoordinatedShutdown.PhaseServiceStop, "stop-grpc-clients")(() =>
+  private val channelPoolSettings = system.settings.config.getConfig("kalix.cross-service.channel-pool")
+  private val poolSize = channelPoolSettings.getInt("size")
+  require(poolSize > 0, s"kalix.cross-service.channel-pool.size must be greater than 0, was [$poolSize]")
+  private val pickLeastLoaded = channelPoolSettings.getString("picker") match {
+    case "least-loaded" => true
+    case "round-robin"  => false
+    case other =>
+      throw new IllegalArgumentException(
+        s"Unknown kalix.cross-service.channel-pool.picker [$other], must be round-robin or least-loaded")
+  }
+  private val maxConcurrentStreams = channelPoolSettings.getInt("max-concurrent-streams")
+  private val channelLoads = new ConcurrentHashMap[Key, ChannelLoad]()
+  private val nextChannel = new ConcurrentHashMap[Key, AtomicInteger]()
+
+  if (poolSize > 1 && log.isDebugEnabled) {
+    val interval = channelPoolSettings.getDuration("metrics-log-interval")
+    if (!interval.isZero)
+      system.scheduler.scheduleWithFixedDelay(interval.toScala, interval.toScala)(() => logChannelLoads())
+  }
+
+  CoordinatedShutdown(system).addTask(CoordinatedShutdown.PhaseServiceStop, "stop-grpc-clients") { () =>
+    proxyChannels.values().forEach(_.shutdown())
     Future
       .traverse(clients.values().asScala) {
         case javaClient: AkkaGrpcJavaClient   => javaClient.close().asScala
@@ -64,7 +212,68 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
           // should never happen, but needs to make compiler happy
           throw new IllegalStateException("Unknown gRPC client")
       }
-      .map(_ => Done))
+      .map(_ => Done)
+  }
+
+  /** Number of clients created so far */
+  def clientsCreated: Long = createdCounter.sum()
+
+  /** Total time spent creating clients, including looking up the generated client classes */
+  def clientCreationMillis: Long = TimeUnit.NANOSECONDS.toMillis(creationNanos.sum())
+
+  /** Number of clients that were closed, by shutdown or because their channel failed */
+  def clientsClosed: Long = closedCounter.sum()
+
+  /** Number of clients that are currently open and reused for calls */
+  def openClients: Int = clients.size
+
+  /** The calls in flight on the channel of the given pooled client, if it is one */
+  private[impl] def channelLoadOf(client: AnyRef): Option[ChannelLoad] =
+    clients.asScala.collectFirst { case (key, pooled) if pooled eq client => key }.flatMap(key =>
+      Option(channelLoads.get(key)))
+
+  /**
+   * Resolve the generated clients of the given services, so that the clients for them can be created by [[warmUp]]
+   * before the first call. Services without a generated client on the classpath are skipped.
+   */
+  def prepareWarmUp(descriptors: Iterable[Descriptors.ServiceDescriptor]): Unit = {
+    val serviceClasses = descriptors.toSeq.distinct.flatMap { descriptor =>
+      serviceClassNames(descriptor).iterator
+        .map(name => system.dynamicAccess.getClassFor[AnyRef](name).toOption)
+        .collectFirst { case Some(serviceClass) if Try(clientFactory(serviceClass)).isSuccess => serviceClass }
+        .orElse {
+          log.debug("No generated gRPC client found for [{}], not warming it up", descriptor.getFullName)
+          None
+        }
+    }
+    warmUpClasses = serviceClasses
+  }
+
+  /**
+   * Create the clients for the services given to [[prepareWarmUp]], to be called once the runtime has announced its
+   * address through discovery.
+   */
+  def warmUp(): Future[Done] = {
+    val serviceClasses = warmUpClasses
+    if (serviceClasses.isEmpty) Future.successful(Done)
+    else
+      Future {
+        val startTime = System.nanoTime()
+        serviceClasses.foreach { serviceClass =>
+          try getLocalGrpcClient(serviceClass)
+          catch {
+            case e: Exception =>
+              log.debug("Failed to warm up gRPC client for [{}]: {}", serviceClass.getName, e.getMessage)
+          }
+        }
+        log.debug(
+          "Warmed up gRPC clients for [{}] services in [{}] ms, [{}] clients open",
+          serviceClasses.size,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+          openClients)
+        Done
+      }
+  }
 
   def getComponentGrpcClient[T](serviceClass: Class[T]): T = {
     getProxyGrpcClient(serviceClass)
@@ -73,6 +282,50 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
     getLocalGrpcClient(serviceClass)
   }
 
+  /**
+   * A plain gRPC channel to the runtime, for calls to components of this service that are not made through a generated
+   * client. The channels are shared by all callers, picked from a pool like the clients, and add the local
+   * identification header to every call.
+   */
+  def getProxyChannel(): Channel = {
+    val target = currentLocalTarget()
+    val key = Key(classOf[Channel], target.host, target.port, target.addHeader)
+    val channelKey = if (poolSize == 1) key else pickChannel(key)
+    proxyChannels.computeIfAbsent(channelKey, createProxyChannel(_))
+  }
+
+  private def createProxyChannel(key: Key): ManagedChannel = {
+    log.debug("Creating gRPC channel [{}] to the runtime at [{}:{}]", key.channel, key.service, key.port)
+    val builder = ManagedChannelBuilder
+      .forAddress(key.service, key.port)
+      // (TLS is handled for us by Kalix infra)
+      .usePlaintext()
+      .maxInboundMessageSize(MaxCrossServiceResponseContentLength)
+    key.addHeader.foreach(header => builder.intercept(new CallCredentialsInterceptor(headerCredentials(header))))
+    if (poolSize > 1) {
+      val load = channelLoads.computeIfAbsent(key, _ => new ChannelLoad)
+      builder.intercept(new InFlightInterceptor(load))
+    }
+    builder.build()
+  }
+
+  /** Shut down the channels to a runtime address that is no longer the current one, calls in progress are completed */
+  private def shutdownStaleProxyChannels(target: LocalTarget): Unit =
+    proxyChannels.forEach { (key, channel) =>
+      if (key.service != target.host || key.port != target.port || key.addHeader != target.addHeader) {
+        if (proxyChannels.remove(key, channel)) {
+          log.debug(
+            "Shutting down gRPC channel [{}] to the previous runtime at [{}:{}]",
+            key.channel,
+            key.service,
+            key.port)
+          channel.shutdown()
+        }
+        channelLoads.remove(key)
+        nextChannel.remove(key.copy(channel = 0))
+      }
+    }
+
   /**
    * This gets called from the action context to get a client to another service, and hence needs to add a service
    * identification header (in dev/test mode) to ensure calls get associated with this service.
@@ -84,20 +337,36 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
 
   /** gRPC clients point to services (user components or Kalix services) in the same deployable */
   private def getLocalGrpcClient[T](serviceClass: Class[T]): T = {
+    val target = currentLocalTarget()
+    getGrpcClient(serviceClass, target.host, target.port, target.addHeader)
+  }
+
+  private def currentLocalTarget(): LocalTarget = {
+    val generation = proxyInfoHolder.generation
+    var target = localTarget
+    if ((target eq null) || target.generation != generation) {
+      target = resolveLocalTarget(generation)
+      localTarget = target
+      shutdownStaleProxyChannels(target)
+    }
+    target
+  }
+
+  private def resolveLocalTarget(generation: Long): LocalTarget = {
 
     val localAddHeader = proxyInfoHolder.localIdentificationHeader
 
     (proxyInfoHolder.proxyHostname, proxyInfoHolder.proxyPort) match {
       case (Some(internalProxyHostname), Some(port)) =>
-        getGrpcClient(serviceClass, internalProxyHostname, port, localAddHeader)
+        new LocalTarget(generation, internalProxyHostname, port, localAddHeader)
       case (Some("localhost"), None) =>
         // for backward compatibility with proxy 1.0.14 or older.
         log.warn("you are using an old version of the Kalix Runtime")
-        getGrpcClient(serviceClass, "localhost", proxyInfoHolder.proxyPort.getOrElse(9000), localAddHeader)
+        new LocalTarget(generation, "localhost", proxyInfoHolder.proxyPort.getOrElse(9000), localAddHeader)
       case (Some(proxyHostname), None) =>
         // for backward compatibility with proxy 1.0.14 or older
         log.warn("you are using an old version of the Kalix Runtime")
-        getGrpcClient(serviceClass, proxyHostname, 80, localAddHeader)
+        new LocalTarget(generation, proxyHostname, 80, localAddHeader)
       case _ =>
         throw new IllegalStateException(
           "Service proxy hostname and port are not set by proxy at discovery, too old proxy version?")
@@ -117,10 +386,56 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
       service: String,
       port: Int,
       addHeader: Option[(String, String)]) = {
-    clients.computeIfAbsent(Key(serviceClass, service, port, addHeader), createClient(_)).asInstanceOf[T]
+    val key = Key(serviceClass, service, port, addHeader)
+    val channelKey = if (poolSize == 1) key else pickChannel(key)
+    clients.computeIfAbsent(channelKey, createClient(_)).asInstanceOf[T]
   }
 
+  /** Pick the pooled client for a call to the given target, the key of the target is the one of its first channel */
+  private def pickChannel(target: Key): Key =
+    if (pickLeastLoaded) {
+      var leastLoaded: Key = null
+      var leastInFlight = Int.MaxValue
+      var firstUnused = -1
+      var channel = 0
+      while (channel < poolSize) {
+        val key = if (channel == 0) target else target.copy(channel = channel)
+        val load = channelLoads.get(key)
+        if (load eq null) {
+          if (firstUnused == -1) firstUnused = channel
+        } else if (load.inFlight < leastInFlight) {
+          leastLoaded = key
+          leastInFlight = load.inFlight
+        }
+        channel += 1
+      }
+      // another channel is only opened once all open ones carry as many calls as one connection should
+      if ((leastLoaded eq null) || (leastInFlight >= maxConcurrentStreams && firstUnused != -1))
+        target.copy(channel = math.max(firstUnused, 0))
+      else leastLoaded
+    } else {
+      val counter = nextChannel.computeIfAbsent(target, _ => new AtomicInteger)
+      target.copy(channel = Math.floorMod(counter.getAndIncrement(), poolSize))
+    }
+
+  private def logChannelLoads(): Unit =
+    channelLoads.forEach { (key, load) =>
+      val calls = load.callsThenReset()
+      val peak = load.peakThenReset()
+      if (calls > 0)
+        log.debug(
+          "gRPC channel [{}] to [{}:{}] for [{}] started [{}] calls, [{}] in flight, peak [{}]",
+          key.channel,
+          key.service,
+          key.port,
+          key.serviceClass.getName,
+          calls,
+          load.inFlight,
+          peak)
+    }
+
   private def createClient(key: Key): AnyRef = {
+    val startTime = System.nanoTime()
     val settings =
       if (!system.settings.config.hasPath(s"""akka.grpc.client."${key.service}"""")) {
         // "service" is not present in the config, treat it as an Akka gRPC inter-service call
@@ -138,38 +453,21 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
       }
 
     val settingsWithCallCredentials = key.addHeader match {
-      case Some((key, value)) =>
-        val headers = new Metadata()
-        headers.put(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER), value)
-        settings.withCallCredentials(new CallCredentials {
-          override def applyRequestMetadata(
-              requestInfo: CallCredentials.RequestInfo,
-              appExecutor: Executor,
-              applier: CallCredentials.MetadataApplier): Unit = {
-            applier.apply(headers)
-          }
-          override def thisUsesUnstableApi(): Unit = ()
-        })
-      case None => settings
+      case Some(header) => settings.withCallCredentials(headerCredentials(header))
+      case None         => settings
     }
 
-    // expected to have a ServiceNameClient generated in the same package, so look that up through reflection
-    val clientClass = system.dynamicAccess.getClassFor[AnyRef](key.serviceClass.getName + "Client").get
-    val client =
-      if (classOf[AkkaGrpcJavaClient].isAssignableFrom(clientClass)) {
-        // Java API - static create
-        val create = clientClass.getMethod("create", classOf[GrpcClientSettings], classOf[ClassicActorSystemProvider])
-        create.invoke(null, settingsWithCallCredentials, system)
-      } else if (classOf[AkkaGrpcScalaClient].isAssignableFrom(clientClass)) {
-        // Scala API - companion object apply
-        val companion = system.dynamicAccess.getObjectFor[AnyRef](key.serviceClass.getName + "Client").get
-        val create =
-          companion.getClass.getMethod("apply", classOf[GrpcClientSettings], classOf[ClassicActorSystemProvider])
-        create.invoke(companion, settingsWithCallCredentials, system)
-      } else {
-        throw new IllegalArgumentException(s"Expected an AkkaGrpcClient but was [${clientClass.getName}]")
+    val pooledSettings =
+      if (poolSize == 1) settingsWithCallCredentials
+      else {
+        val load = channelLoads.computeIfAbsent(key, _ => new ChannelLoad)
+        val overrides = settingsWithCallCredentials.channelBuilderOverrides
+        settingsWithCallCredentials.withChannelBuilderOverrides(channelBuilder =>
+          overrides(channelBuilder).intercept(new InFlightInterceptor(load)))
       }
 
+    val client = clientFactory(key.serviceClass)(pooledSettings)
+
     val closeDone = client match {
       case javaClient: AkkaGrpcJavaClient =>
         javaClient.closed().asScala
@@ -179,13 +477,52 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
         // should never happen, but needs to make compiler happy
         throw new IllegalStateException("Unknown gRPC client")
     }
-    closeDone.foreach { _ =>
+    closeDone.onComplete { result =>
       // if the client is closed, remove it from the pool
-      log.debug("gRPC client for service [{}] was closed", key.service)
+      closedCounter.increment()
+      result match {
+        case Success(_) => log.debug("gRPC client for service [{}] was closed", key.service)
+        case Failure(e) => log.debug("gRPC client for service [{}] failed: {}", key.service, e.getMessage)
+      }
       clients.remove(key)
+      channelLoads.remove(key)
+      // the round-robin position of a target is only kept while the target has clients
+      val target = key.copy(channel = 0)
+      if ((0 until poolSize).forall(channel => !clients.containsKey(target.copy(channel = channel))))
+        nextChannel.remove(target)
     }
 
+    val nanos = System.nanoTime() - startTime
+    createdCounter.increment()
+    creationNanos.add(nanos)
+    log.debug(
+      "Created gRPC client [{}] for service [{}] in [{}] µs",
+      key.serviceClass.getName,
+      key.service,
+      TimeUnit.NANOSECONDS.toMicros(nanos))
+
     client
   }
 
+  private def clientFactory(serviceClass: Class[_]): ClientFactory =
+    clientFactories.computeIfAbsent(serviceClass, resolveClientFactory(_))
+
+  private def resolveClientFactory(serviceClass: Class[_]): ClientFactory = {
+    // expected to have a ServiceNameClient generated in the same package, so look that up through reflection
+    val clientClass = system.dynamicAccess.getClassFor[AnyRef](serviceClass.getName + "Client").get
+    if (classOf[AkkaGrpcJavaClient].isAssignableFrom(clientClass)) {
+      // Java API - static create
+      val create = clientClass.getMethod("create", classOf[GrpcClientSettings], classOf[ClassicActorSystemProvider])
+      settings => create.invoke(null, settings, system)
+    } else if (classOf[AkkaGrpcScalaClient].isAssignableFrom(clientClass)) {
+      // Scala API - companion object apply
+      val companion = system.dynamicAccess.getObjectFor[AnyRef](serviceClass.getName + "Client").get
+      val create =
+        companion.getClass.getMethod("apply", classOf[GrpcClientSettings], classOf[ClassicActorSystemProvider])
+      settings => create.invoke(companion, settings, system)
+    } else {
+      throw new IllegalArgumentException(s"Expected an AkkaGrpcClient but was [${clientClass.getName}]")
+    }
+  }
+
 }
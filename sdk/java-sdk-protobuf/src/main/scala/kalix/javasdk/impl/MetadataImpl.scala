@@ -27,49 +27,56 @@ import java.nio.ByteBuffer
 import java.time.ZonedDateTime
 import java.time.format.DateTimeFormatter
 import java.util
+import java.util.Locale
 import java.util.Objects
 import java.util.Optional
 import scala.compat.java8.OptionConverters._
 import scala.jdk.CollectionConverters._
 
-private[kalix] class MetadataImpl private (val entries: Seq[MetadataEntry]) extends Metadata with CloudEvent {
+/**
+ * Entries are kept in a Vector, so that adding entries shares the existing ones instead of copying them. Lookups go
+ * through an index by lower case key that is only built when the metadata is first queried.
+ */
+private[kalix] class MetadataImpl private (val entries: Vector[MetadataEntry]) extends Metadata with CloudEvent {
+
+  private lazy val entriesByKey: Map[String, Vector[MetadataEntry]] =
+    entries.groupBy(entry => MetadataImpl.lowerCase(entry.key))
+
+  private def entriesFor(key: String): Vector[MetadataEntry] =
+    entriesByKey.getOrElse(MetadataImpl.lowerCase(key), Vector.empty)
 
-  override def has(key: String): Boolean = entries.exists(_.key.equalsIgnoreCase(key))
+  override def has(key: String): Boolean = entriesByKey.contains(MetadataImpl.lowerCase(key))
 
   override def get(key: String): Optional[String] =
     getScala(key).asJava
 
   private[kalix] def getScala(key: String): Option[String] =
-    entries.collectFirst {
-      case MetadataEntry(k, MetadataEntry.Value.StringValue(value), _) if key.equalsIgnoreCase(k) =>
-        value
+    entriesFor(key).collectFirst { case MetadataEntry(_, MetadataEntry.Value.StringValue(value), _) =>
+      value
     }
 
   override def getAll(key: String): util.List[String] =
     getAllScala(key).asJava
 
   private[kalix] def getAllScala(key: String): Seq[String] =
-    entries.collect {
-      case MetadataEntry(k, MetadataEntry.Value.StringValue(value), _) if key.equalsIgnoreCase(k) =>
-        value
+    entriesFor(key).collect { case MetadataEntry(_, MetadataEntry.Value.StringValue(value), _) =>
+      value
     }
 
   override def getBinary(key: String): Optional[ByteBuffer] =
     getBinaryScala(key).asJava
 
   private[kalix] def getBinaryScala(key: String): Option[ByteBuffer] =
-    entries.collectFirst {
-      case MetadataEntry(k, MetadataEntry.Value.BytesValue(value), _) if key.equalsIgnoreCase(k) =>
-        value.asReadOnlyByteBuffer()
+    entriesFor(key).collectFirst { case MetadataEntry(_, MetadataEntry.Value.BytesValue(value), _) =>
+      value.asReadOnlyByteBuffer()
     }
 
   override def getBinaryAll(key: String): util.List[ByteBuffer] =
     getBinaryAllScala(key).asJava
 
   private[kalix] def getBinaryAllScala(key: String): Seq[ByteBuffer] =
-    entries.collect {
-      case MetadataEntry(k, MetadataEntry.Value.BytesValue(value), _) if key.equalsIgnoreCase(k) =>
-        value.asReadOnlyByteBuffer()
+    entriesFor(key).collect { case MetadataEntry(_, MetadataEntry.Value.BytesValue(value), _) =>
+      value.asReadOnlyByteBuffer()
     }
 
   override def getAllKeys: util.List[String] = getAllKeysScala.asJava
@@ -78,28 +85,39 @@ private[kalix] class MetadataImpl private (val entries: Seq[MetadataEntry]) exte
   override def set(key: String, value: String): MetadataImpl = {
     Objects.requireNonNull(key, "Key must not be null")
     Objects.requireNonNull(value, "Value must not be null")
-    MetadataImpl.of(removeKey(key) :+ MetadataEntry(key, MetadataEntry.Value.StringValue(value)))
+    new MetadataImpl(
+      remove(key).entries :+ MetadataImpl.withDefaultKey(MetadataEntry(key, MetadataEntry.Value.StringValue(value))))
   }
 
   override def setBinary(key: String, value: ByteBuffer): MetadataImpl = {
     Objects.requireNonNull(key, "Key must not be null")
     Objects.requireNonNull(value, "Value must not be null")
-    MetadataImpl.of(removeKey(key) :+ MetadataEntry(key, MetadataEntry.Value.BytesValue(ByteString.copyFrom(value))))
+    new MetadataImpl(
+      remove(key).entries :+ MetadataImpl.withDefaultKey(
+        MetadataEntry(key, MetadataEntry.Value.BytesValue(ByteString.copyFrom(value)))))
   }
 
   override def add(key: String, value: String): MetadataImpl = {
     Objects.requireNonNull(key, "Key must not be null")
     Objects.requireNonNull(value, "Value must not be null")
-    MetadataImpl.of(entries :+ MetadataEntry(key, MetadataEntry.Value.StringValue(value)))
+    addEntries(Seq(MetadataEntry(key, MetadataEntry.Value.StringValue(value))))
   }
 
   override def addBinary(key: String, value: ByteBuffer): MetadataImpl = {
     Objects.requireNonNull(key, "Key must not be null")
     Objects.requireNonNull(value, "Value must not be null")
-    MetadataImpl.of(entries :+ MetadataEntry(key, MetadataEntry.Value.BytesValue(ByteString.copyFrom(value))))
+    addEntries(Seq(MetadataEntry(key, MetadataEntry.Value.BytesValue(ByteString.copyFrom(value)))))
   }
 
-  override def remove(key: String): MetadataImpl = MetadataImpl.of(removeKey(key))
+  /**
+   * Appends the entries, sharing the existing ones rather than copying and re-checking them.
+   */
+  private[kalix] def addEntries(newEntries: Seq[MetadataEntry]): MetadataImpl =
+    if (newEntries.isEmpty) this
+    else new MetadataImpl(entries :++ newEntries.map(MetadataImpl.withDefaultKey))
+
+  override def remove(key: String): MetadataImpl =
+    if (has(key)) new MetadataImpl(removeKey(key)) else this
 
   override def clear(): MetadataImpl = MetadataImpl.Empty
 
@@ -118,7 +136,10 @@ private[kalix] class MetadataImpl private (val entries: Seq[MetadataEntry]) exte
 
   private def removeKey(key: String) = entries.filterNot(_.key.equalsIgnoreCase(key))
 
-  def isCloudEvent: Boolean = MetadataImpl.CeRequired.forall(h => has(h))
+  // checked once, the metadata is immutable
+  private lazy val cloudEvent: Boolean = MetadataImpl.CeRequired.forall(h => has(h))
+
+  def isCloudEvent: Boolean = cloudEvent
 
   override def asCloudEvent(): MetadataImpl =
     if (!isCloudEvent) {
@@ -135,11 +156,7 @@ private[kalix] class MetadataImpl private (val entries: Seq[MetadataEntry]) exte
         MetadataEntry(MetadataImpl.CeType, MetadataEntry.Value.StringValue(`type`))))
 
   private def getRequiredCloudEventField(key: String) =
-    entries
-      .collectFirst {
-        case MetadataEntry(k, MetadataEntry.Value.StringValue(value), _) if key.equalsIgnoreCase(k) =>
-          value
-      }
+    getScala(key)
       .getOrElse {
         throw new IllegalStateException(s"Metadata is not a CloudEvent because it does not have required field $key")
       }
@@ -235,11 +252,16 @@ private[kalix] class MetadataImpl private (val entries: Seq[MetadataEntry]) exte
       }
     }
 
-    override def traceParent(): Optional[String] = getScala(TraceInstrumentation.TRACE_PARENT_KEY).asJava
+    override def traceParent(): Optional[String] = traceParentScala.asJava
 
     override def traceState(): Optional[String] = getScala(TraceInstrumentation.TRACE_STATE_KEY).asJava
   }
 
+  /**
+   * The W3C trace parent, looked up once and shared by span building and the command context.
+   */
+  private[kalix] lazy val traceParentScala: Option[String] = getScala(TraceInstrumentation.TRACE_PARENT_KEY)
+
   private[kalix] def allJwtClaimNames: Iterable[String] =
     entries.view.collect {
       case MetadataEntry(key, MetadataEntry.Value.StringValue(_), _) if key.startsWith(JwtClaimPrefix) => key
@@ -300,16 +322,21 @@ object MetadataImpl {
     }
 
   def of(entries: Seq[MetadataEntry]): MetadataImpl = {
-    val transformedEntries =
-      entries.map { entry =>
-        // is incoming ce key in one of the alternative formats?
-        // if so, convert key to our internal default key format
-        alternativeKeyFormats.get(entry.key) match {
-          case Some(defaultKey) => MetadataEntry(defaultKey, entry.value)
-          case _                => entry
-        }
-      }
-
-    new MetadataImpl(transformedEntries)
+    // protocol metadata entries already are a Vector, in which case this does not copy
+    val vector = entries.toVector
+    if (vector.exists(entry => alternativeKeyFormats.contains(entry.key))) new MetadataImpl(vector.map(withDefaultKey))
+    else new MetadataImpl(vector)
   }
+
+  /**
+   * Is the key in one of the alternative formats? If so, convert key to our internal default key format.
+   */
+  private def withDefaultKey(entry: MetadataEntry): MetadataEntry =
+    alternativeKeyFormats.get(entry.key) match {
+      case Some(defaultKey) => MetadataEntry(defaultKey, entry.value)
+      case _                => entry
+    }
+
+  // returns the same string when it already is lower case, which is the common case for metadata keys
+  private def lowerCase(key: String): String = key.toLowerCase(Locale.ROOT)
 }
@@ -14,6 +14,7 @@ import kalix.protocol.discovery.IdentificationInfo
 import kalix.protocol.discovery.ProxyInfo
 import org.slf4j.LoggerFactory
 
+import java.util.concurrent.atomic.AtomicLong
 import java.util.concurrent.atomic.AtomicReference
 
 object ProxyInfoHolder extends ExtensionId[ProxyInfoHolder] with ExtensionIdProvider {
@@ -35,6 +36,8 @@ class ProxyInfoHolder extends Extension {
   private val _proxyPort = new AtomicReference[Int](-1)
   @volatile private var _identificationInfo: Option[IdentificationInfo] = None
   @volatile private var _proxyTracingCollectorEndpoint: Option[String] = None
+  // bumped whenever the runtime address or identification changes, so that what is derived from them can be cached
+  private val _generation = new AtomicLong()
 
   def setProxyInfo(proxyInfo: ProxyInfo): Unit = {
 
@@ -51,6 +54,7 @@ class ProxyInfoHolder extends Extension {
     _proxyPort.compareAndSet(-1, proxyInfo.proxyPort)
     _identificationInfo = proxyInfo.identificationInfo
     _proxyTracingCollectorEndpoint = Some(proxyInfo.tracingCollectorEndpoint)
+    _generation.incrementAndGet()
 
     log.debug("Runtime hostname: [{}]", chosenProxyName)
     log.debug("Runtime port to: [{}]", proxyInfo.proxyPort)
@@ -60,6 +64,11 @@ class ProxyInfoHolder extends Extension {
 
   def proxyHostname: Option[String] = Option(_proxyHostname.get())
 
+  /**
+   * INTERNAL API
+   */
+  private[kalix] def generation: Long = _generation.get()
+
   def proxyTracingCollectorEndpoint: Option[String] = _proxyTracingCollectorEndpoint
 
   def identificationInfo: Option[IdentificationInfo] = _identificationInfo
@@ -92,14 +101,18 @@ class ProxyInfoHolder extends Extension {
    *
    * INTERNAL API
    */
-  private[kalix] def overridePort(port: Int): Unit =
+  private[kalix] def overridePort(port: Int): Unit = {
     _proxyPort.set(port)
+    _generation.incrementAndGet()
+  }
 
   /**
    * INTERNAL API
    */
-  private[kalix] def overrideProxyHost(host: String): Unit =
+  private[kalix] def overrideProxyHost(host: String): Unit = {
     _proxyHostname.set(host)
+    _generation.incrementAndGet()
+  }
 
   private[kalix] def overrideTracingCollectorEndpoint(endpoint: String): Unit =
     _proxyTracingCollectorEndpoint = Some(endpoint)
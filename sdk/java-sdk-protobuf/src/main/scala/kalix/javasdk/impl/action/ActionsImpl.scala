@@ -25,6 +25,7 @@ import kalix.protocol.component.{ Failure, MetadataEntry }
 import org.slf4j.{ Logger, LoggerFactory, MDC }
 
 import java.util.Optional
+import scala.collection.mutable
 import scala.compat.java8.OptionConverters.RichOptionForJava8
 import scala.concurrent.Future
 import scala.jdk.CollectionConverters.SeqHasAsJava
@@ -175,11 +176,13 @@ private[javasdk] final class ActionsImpl(_system: ActorSystem, services: Map[Str
   override def handleUnary(in: ActionCommand): Future[ActionResponse] =
     services.get(in.serviceName) match {
       case Some(service) =>
-        val span = telemetries(service.serviceName).buildSpan(service, in)
+        val metadata = MetadataImpl.of(in.metadata.map(_.entries).getOrElse(Nil))
+        val span = telemetries(service.serviceName).buildSpan(service, in, metadata)
         span.foreach(s => MDC.put(Telemetry.TRACE_ID, s.getSpanContext.getTraceId))
         val fut =
           try {
-            val context = createContext(in, service.messageCodec, span.map(_.getSpanContext), service.serviceName)
+            val context =
+              createContext(metadata, service.messageCodec, span.map(_.getSpanContext), service.serviceName)
             val decodedPayload = service.messageCodec.decodeMessage(
               in.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
             val effect = service.factory
@@ -224,13 +227,13 @@ private[javasdk] final class ActionsImpl(_system: ActorSystem, services: Map[Str
           services.get(call.serviceName) match {
             case Some(service) =>
               try {
-                val context = createContext(call, service.messageCodec, None, service.serviceName)
+                val context = createContext(call, service.messageCodec, service.serviceName)
                 val effect = service.factory
                   .create(context)
                   .handleStreamedIn(
                     call.name,
                     messages.map { message =>
-                      val metadata = MetadataImpl.of(message.metadata.map(_.entries.toVector).getOrElse(Nil))
+                      val metadata = MetadataImpl.of(message.metadata.map(_.entries).getOrElse(Nil))
                       val decodedPayload = service.messageCodec.decodeMessage(
                         message.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
                       MessageEnvelope.of(decodedPayload, metadata)
@@ -259,7 +262,7 @@ private[javasdk] final class ActionsImpl(_system: ActorSystem, services: Map[Str
     services.get(in.serviceName) match {
       case Some(service) =>
         try {
-          val context = createContext(in, service.messageCodec, None, service.serviceName)
+          val context = createContext(in, service.messageCodec, service.serviceName)
           val decodedPayload = service.messageCodec.decodeMessage(
             in.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
           service.factory
@@ -304,13 +307,13 @@ private[javasdk] final class ActionsImpl(_system: ActorSystem, services: Map[Str
           services.get(call.serviceName) match {
             case Some(service) =>
               try {
-                val context = createContext(call, service.messageCodec, None, service.serviceName)
+                val context = createContext(call, service.messageCodec, service.serviceName)
                 service.factory
                   .create(context)
                   .handleStreamed(
                     call.name,
                     messages.map { message =>
-                      val metadata = MetadataImpl.of(message.metadata.map(_.entries.toVector).getOrElse(Nil))
+                      val metadata = MetadataImpl.of(message.metadata.map(_.entries).getOrElse(Nil))
                       val decodedPayload = service.messageCodec.decodeMessage(
                         message.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
                       MessageEnvelope.of(decodedPayload, metadata)
@@ -336,29 +339,33 @@ private[javasdk] final class ActionsImpl(_system: ActorSystem, services: Map[Str
           }
       }
 
+  private def createContext(in: ActionCommand, messageCodec: MessageCodec, serviceName: String): ActionContext =
+    createContext(MetadataImpl.of(in.metadata.map(_.entries).getOrElse(Nil)), messageCodec, None, serviceName)
+
   private def createContext(
-      in: ActionCommand,
+      metadata: MetadataImpl,
       messageCodec: MessageCodec,
       spanContext: Option[SpanContext],
       serviceName: String): ActionContext = {
-    val metadata = MetadataImpl.of(in.metadata.map(_.entries.toVector).getOrElse(Nil))
     val updatedMetadata = spanContext.map(metadataWithTracing(metadata, _)).getOrElse(metadata)
     new ActionContextImpl(updatedMetadata, messageCodec, system, telemetries(serviceName))
   }
 
   private def metadataWithTracing(metadata: MetadataImpl, spanContext: SpanContext): Metadata = {
-    // remove parent traceparent and tracestate from the metadata so they can be reinjected with current span context
-    val l = metadata.entries.filter(m => m.key != TRACE_PARENT_KEY && m.key != TRACE_STATE_KEY).toBuffer
-
+    val traceEntries = mutable.Buffer.empty[MetadataEntry]
     W3CTraceContextPropagator
       .getInstance()
-      .inject(io.opentelemetry.context.Context.current().`with`(Span.wrap(spanContext)), l, TraceInstrumentation.setter)
+      .inject(
+        io.opentelemetry.context.Context.current().`with`(Span.wrap(spanContext)),
+        traceEntries,
+        TraceInstrumentation.setter)
 
     if (log.isTraceEnabled)
-      log.trace(
-        "Updated metadata with trace context: [{}]",
-        l.toList.filter(m => m.key == TRACE_PARENT_KEY || m.key == TRACE_STATE_KEY))
-    MetadataImpl.of(l.toSeq)
+      log.trace("Updated metadata with trace context: [{}]", traceEntries.toList)
+
+    // remove parent traceparent and tracestate from the metadata so they can be reinjected with current span context,
+    // the other entries are shared with the incoming metadata
+    metadata.remove(TRACE_PARENT_KEY).remove(TRACE_STATE_KEY).addEntries(traceEntries.toSeq)
   }
 
 }
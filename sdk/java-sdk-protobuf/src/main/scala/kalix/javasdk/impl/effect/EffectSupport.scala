@@ -5,7 +5,7 @@
 package kalix.javasdk.impl.effect
 
 import com.google.protobuf.any.{ Any => ScalaPbAny }
-import com.google.protobuf.{ Any => JavaPbAny }
+import kalix.javasdk.Metadata
 import kalix.javasdk.SideEffect
 import kalix.javasdk.impl.GrpcDeferredCall
 import kalix.javasdk.impl.MessageCodec
@@ -15,10 +15,11 @@ import kalix.protocol.component
 
 object EffectSupport {
 
-  def asProtocol(messageReply: MessageReplyImpl[JavaPbAny]): component.Reply =
-    component.Reply(
-      Some(ScalaPbAny.fromJavaProto(messageReply.message)),
-      MetadataImpl.toProtocol(messageReply.metadata))
+  def asProtocol(messageReply: MessageReplyImpl[ScalaPbAny]): component.Reply =
+    asProtocol(messageReply.message, messageReply.metadata)
+
+  def asProtocol(message: ScalaPbAny, metadata: Metadata): component.Reply =
+    component.Reply(Some(message), MetadataImpl.toProtocol(metadata))
 
   def asProtocol(messageCodec: MessageCodec, forward: ForwardReplyImpl[_]): component.Forward = {
     forward match {
@@ -56,7 +57,11 @@ object EffectSupport {
   def sideEffectsFrom(
       messageCodec: MessageCodec,
       secondaryEffect: SecondaryEffectImpl): Vector[component.SideEffect] = {
-    secondaryEffect.sideEffects.map(asProtocol(messageCodec, _))
+    sideEffectsFrom(messageCodec, secondaryEffect.sideEffects)
   }
 
+  def sideEffectsFrom(messageCodec: MessageCodec, sideEffects: Vector[SideEffect]): Vector[component.SideEffect] =
+    if (sideEffects.isEmpty) Vector.empty
+    else sideEffects.map(asProtocol(messageCodec, _))
+
 }
@@ -6,11 +6,16 @@ package kalix.javasdk.impl.eventsourcedentity
 
 import akka.NotUsed
 import akka.actor.ActorSystem
+import akka.stream.FlowShape
+import akka.stream.OverflowStrategy
+import akka.stream.scaladsl.Broadcast
+import akka.stream.scaladsl.Concat
 import akka.stream.scaladsl.Flow
+import akka.stream.scaladsl.GraphDSL
 import akka.stream.scaladsl.Source
 import com.google.protobuf.Descriptors
-import com.google.protobuf.any.{ Any => ScalaPbAny }
 import io.grpc.Status
+import io.opentelemetry.api.trace.Span
 import kalix.javasdk.KalixRunner.Configuration
 import kalix.javasdk.Metadata
 import kalix.javasdk.eventsourcedentity._
@@ -36,6 +41,9 @@ import kalix.protocol.event_sourced_entity.EventSourcedStreamOut.Message.{ Snaps
 import kalix.protocol.event_sourced_entity._
 import org.slf4j.{ LoggerFactory, MDC }
 
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.jdk.OptionConverters._
 import scala.util.control.NonFatal
 
 final class EventSourcedEntityService(
@@ -66,6 +74,9 @@ final class EventSourcedEntityService(
 
   override final val componentType = EventSourcedEntities.name
 
+  val snapshotPolicy: Option[SnapshotPolicyImpl] =
+    entityOptions.flatMap(_.snapshotPolicy().toScala).map(SnapshotPolicyImpl(_))
+
   def withSnapshotEvery(snapshotEvery: Int): EventSourcedEntityService =
     if (snapshotEvery != this.snapshotEvery)
       new EventSourcedEntityService(
@@ -82,16 +93,37 @@ final class EventSourcedEntityService(
   override def componentOptions: Option[ComponentOptions] = entityOptions
 }
 
+private object EventSourcedEntitiesImpl {
+
+  /** What the command handling stage emits for each incoming message that gets a response. */
+  sealed trait ReplyStep
+  final case class Ready(message: EventSourcedStreamOut.Message) extends ReplyStep
+
+  /** An incoming message, with the event already decoded if it was decoded ahead during replay. */
+  final case class Incoming(message: EventSourcedStreamIn.Message, decodedEvent: Option[AnyRef])
+
+  /** A reply still missing the snapshot, which is serialized after the command handling stage. */
+  final case class SnapshotPending(reply: EventSourcedReply, state: Any, sequence: Long, span: Option[Span])
+      extends ReplyStep
+
+  /**
+   * Maximum number of replies in flight when snapshots are encoded asynchronously, the commands after a command with a
+   * snapshot are handled while the snapshot is encoded until this many replies are waiting to be sent.
+   */
+  val SnapshotEncodingParallelism = 8
+}
+
 final class EventSourcedEntitiesImpl(
     system: ActorSystem,
     _services: Map[String, EventSourcedEntityService],
     configuration: Configuration)
     extends EventSourcedEntities {
+  import EventSourcedEntitiesImpl._
   import kalix.javasdk.impl.EntityExceptions._
 
   private val log = LoggerFactory.getLogger(this.getClass)
   private final val services = _services.iterator.map { case (name, service) =>
-    if (service.snapshotEvery < 0)
+    if (service.snapshotPolicy.isEmpty && service.snapshotEvery < 0)
       log.warn("Snapshotting disabled for entity [{}], this is not recommended.", service.serviceName)
     // FIXME overlay configuration provided by _system
     (name, if (service.snapshotEvery == 0) service.withSnapshotEvery(configuration.snapshotEvery) else service)
@@ -104,6 +136,12 @@ final class EventSourcedEntitiesImpl(
   private val pbCleanupDeletedEventSourcedEntityAfter =
     Some(com.google.protobuf.duration.Duration(configuration.cleanupDeletedEventSourcedEntityAfter))
 
+  private val snapshotEncodingDispatcher: Option[ExecutionContext] =
+    if (configuration.asyncSnapshotEncoding) Some(system.dispatcher) else None
+
+  private val replayDecodeParallelism = configuration.replayDecodeParallelism
+  private val replayBufferSize = configuration.replayBufferSize
+
   /**
    * The stream. One stream will be established per active entity. Once established, the first message sent will be
    * Init, which contains the entity ID, and, if the entity has previously persisted a snapshot, it will contain that
@@ -154,28 +192,92 @@ final class EventSourcedEntitiesImpl(
       router._internalHandleSnapshot(service.messageCodec.decodeMessage(any))
       snapshotSequence
     }).getOrElse(0L)
-    Flow[EventSourcedStreamIn]
-      .map(_.message)
-      .scan[(Long, Option[EventSourcedStreamOut.Message])]((startingSequenceNumber, None)) {
-        case (_, InEvent(event)) =>
+    // the policy replaces snapshotEvery, when there is one the router is told to never snapshot by itself
+    val snapshotTracker = service.snapshotPolicy.map(new SnapshotTracker(_))
+    val routerSnapshotEvery = if (snapshotTracker.isDefined) 0 else service.snapshotEvery
+
+    def decodeEvent(event: EventSourcedEvent): AnyRef =
+      service.messageCodec
+        .decodeMessage(event.payload.get)
+        .asInstanceOf[AnyRef] // FIXME empty?
+
+    // the events replayed before the first command are decoded ahead in parallel, but still applied one by one and
+    // in order by the scan below, everything from the first command on goes straight to the scan
+    val incoming: Flow[EventSourcedStreamIn, Incoming, NotUsed] =
+      if (replayDecodeParallelism > 1) {
+        implicit val ec: ExecutionContext = system.dispatcher
+        val replay = Flow[EventSourcedStreamIn]
+          .takeWhile(_.message.isEvent)
+          .mapAsync(replayDecodeParallelism) { in =>
+            val event = in.message.event.get
+            Future(Incoming(in.message, Some(decodeEvent(event))))
+          }
+          .buffer(replayBufferSize, OverflowStrategy.backpressure)
+        val live = Flow[EventSourcedStreamIn]
+          .dropWhile(_.message.isEvent)
+          .map(in => Incoming(in.message, None))
+
+        Flow.fromGraph(GraphDSL.create() { implicit builder =>
+          import GraphDSL.Implicits._
+          val broadcast = builder.add(Broadcast[EventSourcedStreamIn](2))
+          // detached, so that the live branch keeps dropping replayed events while the replay branch is drained
+          val concat = builder.add(Concat[Incoming](2, detachedInputs = true))
+          broadcast ~> replay ~> concat
+          broadcast ~> live ~> concat
+          FlowShape(broadcast.in, concat.out)
+        })
+      } else {
+        Flow[EventSourcedStreamIn].map(in => Incoming(in.message, None))
+      }
+
+    var replayStartNanos = 0L
+    var replayedEvents = 0L
+    def replayCompleted(): Unit =
+      if (replayedEvents > 0) {
+        if (log.isDebugEnabled) {
+          val replayNanos = math.max(System.nanoTime() - replayStartNanos, 1L)
+          log.debug(
+            "Replayed [{}] events for [{}] entity [{}] in [{}] ms, [{}] events/s",
+            replayedEvents,
+            service.serviceName,
+            thisEntityId,
+            replayNanos / 1000000,
+            replayedEvents * 1000000000L / replayNanos)
+        }
+        replayedEvents = 0L
+      }
+
+    val replySteps = incoming
+      .scan[(Long, Option[ReplyStep])]((startingSequenceNumber, None)) {
+        case (_, Incoming(InEvent(event), decodedEvent)) =>
           // Note that these only come on replay
+          if (replayedEvents == 0) replayStartNanos = System.nanoTime()
+          replayedEvents += 1
           val context = new EventContextImpl(thisEntityId, event.sequence)
-          val ev =
-            service.messageCodec
-              .decodeMessage(event.payload.get)
-              .asInstanceOf[AnyRef] // FIXME empty?
-          router._internalHandleEvent(ev, context)
+          val payload = event.payload.get
+          val ev = decodedEvent.getOrElse(decodeEvent(event))
+          snapshotTracker match {
+            case Some(tracker) =>
+              val start = System.nanoTime()
+              router._internalHandleEvent(ev, context)
+              tracker.eventReplayed(payload.serializedSize, System.nanoTime() - start)
+            case None =>
+              router._internalHandleEvent(ev, context)
+          }
           (event.sequence, None)
-        case ((sequence, _), InCommand(command)) =>
+        case ((sequence, _), Incoming(InCommand(command), _)) =>
+          replayCompleted()
           if (thisEntityId != command.entityId)
             throw ProtocolException(command, "Receiving entity is not the intended recipient of command")
-          val span = instrumentations(service.serviceName).buildSpan(service, command)
+          val metadata = MetadataImpl.of(command.metadata.map(_.entries).getOrElse(Nil))
+          val span = instrumentations(service.serviceName).buildSpan(service, command, metadata)
           span.foreach(s => MDC.put(Telemetry.TRACE_ID, s.getSpanContext.getTraceId))
+          // when there is a snapshot it is encoded in a later stage, that stage ends the span
+          var spanHandedOver = false
           try {
             val cmd =
               service.messageCodec.decodeMessage(
                 command.payload.getOrElse(throw ProtocolException(command, "No command payload")))
-            val metadata = MetadataImpl.of(command.metadata.map(_.entries.toVector).getOrElse(Nil))
             val context =
               new CommandContextImpl(thisEntityId, sequence, command.name, command.id, metadata)
 
@@ -190,7 +292,7 @@ final class EventSourcedEntitiesImpl(
                   command.name,
                   cmd,
                   context,
-                  service.snapshotEvery,
+                  routerSnapshotEvery,
                   seqNr => new EventContextImpl(thisEntityId, seqNr))
               } catch {
                 case BadRequestException(msg) =>
@@ -206,7 +308,7 @@ final class EventSourcedEntitiesImpl(
 
             val serializedSecondaryEffect = secondaryEffect match {
               case MessageReplyImpl(message, metadata, sideEffects) =>
-                MessageReplyImpl(service.messageCodec.encodeJava(message), metadata, sideEffects)
+                MessageReplyImpl(service.messageCodec.encodeJavaAsScala(message), metadata, sideEffects)
               case other => other
             }
 
@@ -216,43 +318,74 @@ final class EventSourcedEntitiesImpl(
               case _: ErrorReplyImpl[_] => // error
                 (
                   endSequenceNumber,
-                  Some(OutReply(EventSourcedReply(commandId = command.id, clientAction = clientAction))))
+                  Some(Ready(OutReply(EventSourcedReply(commandId = command.id, clientAction = clientAction)))))
               case _ => // non-error
-                val serializedEvents =
-                  events.map(event => ScalaPbAny.fromJavaProto(service.messageCodec.encodeJava(event)))
-                val serializedSnapshot =
-                  snapshot.map(state => ScalaPbAny.fromJavaProto(service.messageCodec.encodeJava(state)))
+                val serializedEvents = events.map(service.messageCodec.encodeJavaAsScala)
+                val snapshotState = snapshotTracker match {
+                  case Some(tracker) =>
+                    tracker.eventsPersisted(serializedEvents.size, serializedEvents.foldLeft(0L)(_ + _.serializedSize))
+                    // like snapshotEvery, only snapshot the state resulting from new events
+                    if (serializedEvents.nonEmpty && tracker.isDue) {
+                      tracker.snapshotTaken()
+                      Some(router._stateOrEmpty())
+                    } else None
+                  case None => snapshot
+                }
                 val delete = if (deleteEntity) pbCleanupDeletedEventSourcedEntityAfter else None
-                (
-                  endSequenceNumber,
-                  Some(
-                    OutReply(
-                      EventSourcedReply(
-                        command.id,
-                        clientAction,
-                        EffectSupport.sideEffectsFrom(service.messageCodec, serializedSecondaryEffect),
-                        serializedEvents,
-                        serializedSnapshot,
-                        delete))))
+                val reply =
+                  EventSourcedReply(
+                    command.id,
+                    clientAction,
+                    EffectSupport.sideEffectsFrom(service.messageCodec, serializedSecondaryEffect),
+                    serializedEvents,
+                    None,
+                    delete)
+                snapshotState match {
+                  case None =>
+                    (endSequenceNumber, Some(Ready(OutReply(reply))))
+                  case Some(state) =>
+                    spanHandedOver = true
+                    (endSequenceNumber, Some(SnapshotPending(reply, state, endSequenceNumber, span)))
+                }
             }
           } finally {
             span.foreach { s =>
               MDC.remove(Telemetry.TRACE_ID)
-              s.end()
+              if (!spanHandedOver) s.end()
             }
           }
-        case ((sequence, _), InSnapshotRequest(request)) =>
+        case ((sequence, _), Incoming(InSnapshotRequest(request), _)) =>
+          replayCompleted()
           val reply =
             EventSourcedSnapshotReply(request.requestId, Some(service.messageCodec.encodeScala(router._stateOrEmpty())))
-          (sequence, Some(OutSnapshotReply(reply)))
-        case (_, InInit(_)) =>
+          (sequence, Some(Ready(OutSnapshotReply(reply))))
+        case (_, Incoming(InInit(_), _)) =>
           throw ProtocolException(init, "Entity already initiated")
-        case (_, InEmpty) =>
+        case (_, Incoming(InEmpty, _)) =>
           throw ProtocolException(init, "Received empty/unknown message")
       }
-      .collect { case (_, Some(message)) =>
-        EventSourcedStreamOut(message)
-      }
+      .collect { case (_, Some(step)) => step }
+
+    def withSnapshot(pending: SnapshotPending): EventSourcedStreamOut =
+      try EventSourcedStreamOut(encodeSnapshot(service, thisEntityId, pending))
+      finally pending.span.foreach(_.end())
+
+    val replies = snapshotEncodingDispatcher match {
+      case Some(dispatcher) =>
+        // mapAsync emits in the order of the commands whatever order the futures complete in, so a reply is never
+        // sent before the snapshot of an earlier command, while the next commands are handled during the encoding
+        replySteps.mapAsync(SnapshotEncodingParallelism) {
+          case Ready(message)           => Future.successful(EventSourcedStreamOut(message))
+          case pending: SnapshotPending => Future(withSnapshot(pending))(dispatcher)
+        }
+      case None =>
+        replySteps.map {
+          case Ready(message)           => EventSourcedStreamOut(message)
+          case pending: SnapshotPending => withSnapshot(pending)
+        }
+    }
+
+    replies
       .recover { case error =>
         // only "unexpected" exceptions should end up here
         ErrorHandling.withCorrelationId { correlationId =>
@@ -263,6 +396,28 @@ final class EventSourcedEntitiesImpl(
       .async
   }
 
+  private def encodeSnapshot(
+      service: EventSourcedEntityService,
+      entityId: String,
+      pending: SnapshotPending): EventSourcedStreamOut.Message = {
+    val start = System.nanoTime()
+    val serializedSnapshot = service.messageCodec.encodeJavaAsScala(pending.state)
+    val encodeMicros = (System.nanoTime() - start) / 1000
+    val size = serializedSnapshot.serializedSize
+    pending.span.foreach { s =>
+      s.setAttribute("snapshot.size_bytes", size.toLong)
+      s.setAttribute("snapshot.encode_time_us", encodeMicros)
+    }
+    if (log.isDebugEnabled)
+      log.debug(
+        "Snapshot of entity [{}] at sequence [{}] is [{}] bytes, encoded in [{}] µs",
+        entityId,
+        pending.sequence,
+        size,
+        encodeMicros)
+    OutReply(pending.reply.withSnapshot(serializedSnapshot))
+  }
+
   private class CommandContextImpl(
       override val entityId: String,
       override val sequenceNumber: Long,
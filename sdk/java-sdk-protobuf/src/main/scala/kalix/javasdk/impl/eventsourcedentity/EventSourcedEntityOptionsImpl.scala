@@ -5,18 +5,24 @@
 package kalix.javasdk.impl.eventsourcedentity
 
 import kalix.javasdk.eventsourcedentity.EventSourcedEntityOptions
+import kalix.javasdk.eventsourcedentity.SnapshotPolicy
 
 import java.util
 import java.util.Collections
+import java.util.Optional
 
 private[impl] final case class EventSourcedEntityOptionsImpl(
     override val snapshotEvery: Int,
-    override val forwardHeaders: java.util.Set[String])
+    override val forwardHeaders: java.util.Set[String],
+    override val snapshotPolicy: Optional[SnapshotPolicy])
     extends EventSourcedEntityOptions {
 
   override def withSnapshotEvery(numberOfEvents: Int): EventSourcedEntityOptions =
     copy(snapshotEvery = numberOfEvents)
 
+  override def withSnapshotPolicy(policy: SnapshotPolicy): EventSourcedEntityOptions =
+    copy(snapshotPolicy = Optional.of(policy))
+
   override def withForwardHeaders(headers: util.Set[String]): EventSourcedEntityOptions =
     copy(forwardHeaders = Collections.unmodifiableSet(new util.HashSet(headers)));
 
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.eventsourcedentity
+
+import kalix.javasdk.eventsourcedentity.SnapshotPolicy
+
+import java.time.Duration
+
+/**
+ * INTERNAL API
+ */
+private[kalix] object SnapshotPolicyImpl {
+
+  def everyNumberOfEvents(numberOfEvents: Int): SnapshotPolicy = {
+    require(numberOfEvents > 0, s"numberOfEvents must be greater than 0, was [$numberOfEvents]")
+    EveryNumberOfEvents(numberOfEvents)
+  }
+
+  def everyEventBytes(bytes: Long): SnapshotPolicy = {
+    require(bytes > 0, s"bytes must be greater than 0, was [$bytes]")
+    EveryEventBytes(bytes)
+  }
+
+  def whenReplayTimeExceeds(replayTime: Duration): SnapshotPolicy = {
+    require(!replayTime.isNegative && !replayTime.isZero, s"replayTime must be positive, was [$replayTime]")
+    WhenReplayTimeExceeds(replayTime.toNanos)
+  }
+
+  def apply(policy: SnapshotPolicy): SnapshotPolicyImpl = policy match {
+    case impl: SnapshotPolicyImpl => impl
+    case other                    => throw new IllegalArgumentException(s"Unsupported snapshot policy [$other]")
+  }
+
+  final case class EveryNumberOfEvents(numberOfEvents: Int) extends SnapshotPolicyImpl {
+    override def isDue(tracker: SnapshotTracker): Boolean =
+      tracker.eventsSinceSnapshot >= numberOfEvents
+  }
+
+  final case class EveryEventBytes(bytes: Long) extends SnapshotPolicyImpl {
+    override def isDue(tracker: SnapshotTracker): Boolean =
+      tracker.bytesSinceSnapshot >= bytes
+  }
+
+  final case class WhenReplayTimeExceeds(nanos: Long) extends SnapshotPolicyImpl {
+    override def isDue(tracker: SnapshotTracker): Boolean =
+      tracker.estimatedReplayNanos >= nanos
+  }
+
+  final case class AnyOf(policies: Vector[SnapshotPolicyImpl]) extends SnapshotPolicyImpl {
+    override def isDue(tracker: SnapshotTracker): Boolean =
+      policies.exists(_.isDue(tracker))
+  }
+}
+
+/**
+ * INTERNAL API
+ */
+private[kalix] sealed trait SnapshotPolicyImpl extends SnapshotPolicy {
+  import SnapshotPolicyImpl.AnyOf
+
+  def isDue(tracker: SnapshotTracker): Boolean
+
+  override def or(other: SnapshotPolicy): SnapshotPolicy = {
+    def flatten(policy: SnapshotPolicyImpl): Vector[SnapshotPolicyImpl] = policy match {
+      case AnyOf(policies) => policies
+      case single          => Vector(single)
+    }
+    AnyOf(flatten(this) ++ flatten(SnapshotPolicyImpl(other)))
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Keeps track of what has been persisted since the last snapshot of one entity instance, only accessed from the stream
+ * stage running that entity.
+ */
+private[kalix] final class SnapshotTracker(policy: SnapshotPolicyImpl) {
+  private var _eventsSinceSnapshot = 0L
+  private var _bytesSinceSnapshot = 0L
+  // measured while replaying, the best estimate of what it costs to replay one event on recovery
+  private var replayedEvents = 0L
+  private var replayNanos = 0L
+
+  def eventsSinceSnapshot: Long = _eventsSinceSnapshot
+
+  def bytesSinceSnapshot: Long = _bytesSinceSnapshot
+
+  def estimatedReplayNanos: Long =
+    if (replayedEvents == 0) 0L
+    else _eventsSinceSnapshot * (replayNanos / replayedEvents)
+
+  def eventReplayed(bytes: Long, nanos: Long): Unit = {
+    _eventsSinceSnapshot += 1
+    _bytesSinceSnapshot += bytes
+    replayedEvents += 1
+    replayNanos += nanos
+  }
+
+  def eventsPersisted(count: Int, bytes: Long): Unit = {
+    _eventsSinceSnapshot += count
+    _bytesSinceSnapshot += bytes
+  }
+
+  def isDue: Boolean = _eventsSinceSnapshot > 0 && policy.isDue(this)
+
+  def snapshotTaken(): Unit = {
+    _eventsSinceSnapshot = 0L
+    _bytesSinceSnapshot = 0L
+  }
+}
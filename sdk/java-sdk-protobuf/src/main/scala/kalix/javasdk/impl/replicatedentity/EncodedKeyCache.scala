@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.replicatedentity
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import kalix.javasdk.impl.AnySupport
+
+private[kalix] object EncodedKeyCache {
+  // keeps the keys of a service that are seen most often in deltas, starts over when full
+  val MaxEntries = 10000
+
+  private val NoCache = new EncodedKeyCache[Any](maxEntries = 0)
+
+  /** Encodes and decodes every key, for collections that are not part of an entity */
+  def none[K]: EncodedKeyCache[K] = NoCache.as[K]
+}
+
+/**
+ * INTERNAL API
+ *
+ * Encoded form of the keys (or elements) of the replicated collections of one service, shared by all entities of the
+ * service and the values nested in their collections, so that keys which are in every delta are only encoded and
+ * decoded once.
+ */
+private[kalix] final class EncodedKeyCache[K](maxEntries: Int = EncodedKeyCache.MaxEntries) {
+
+  private val encodedKeys = new ConcurrentHashMap[Any, ScalaPbAny]()
+  private val decodedKeys = new ConcurrentHashMap[ScalaPbAny, Any]()
+  private val hitCounter = new LongAdder
+  private val missCounter = new LongAdder
+
+  def encode(key: K, anySupport: AnySupport): ScalaPbAny =
+    if (maxEntries == 0) anySupport.encodeScala(key)
+    else {
+      val cached = encodedKeys.get(key)
+      if (cached ne null) {
+        hitCounter.increment()
+        cached
+      } else {
+        missCounter.increment()
+        val encoded = anySupport.encodeScala(key)
+        put(key, encoded)
+        encoded
+      }
+    }
+
+  def decode(encoded: ScalaPbAny, anySupport: AnySupport): K =
+    if (maxEntries == 0) anySupport.decodePossiblyPrimitive(encoded).asInstanceOf[K]
+    else {
+      val cached = decodedKeys.get(encoded)
+      if (cached != null) {
+        hitCounter.increment()
+        cached.asInstanceOf[K]
+      } else {
+        missCounter.increment()
+        val key = anySupport.decodePossiblyPrimitive(encoded)
+        put(key, encoded)
+        key.asInstanceOf[K]
+      }
+    }
+
+  private def put(key: Any, encoded: ScalaPbAny): Unit = {
+    if (encodedKeys.size >= maxEntries) {
+      encodedKeys.clear()
+      decodedKeys.clear()
+    }
+    encodedKeys.put(key, encoded)
+    decodedKeys.put(encoded, key)
+  }
+
+  /** Number of keys that were already encoded or decoded */
+  def hits: Long = hitCounter.sum()
+
+  /** Number of keys that had to be encoded or decoded */
+  def misses: Long = missCounter.sum()
+
+  /** The same cache for keys of another type, the encoded form does not depend on the collection */
+  def as[T]: EncodedKeyCache[T] = this.asInstanceOf[EncodedKeyCache[T]]
+
+  /** Returns the number of hits and misses since the last call and starts counting again */
+  def takeCounts(): (Long, Long) = (hitCounter.sumThenReset(), missCounter.sumThenReset())
+}
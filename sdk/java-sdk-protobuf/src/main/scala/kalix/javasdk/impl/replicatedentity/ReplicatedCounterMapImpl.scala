@@ -4,6 +4,9 @@
 
 package kalix.javasdk.impl.replicatedentity
 
+import java.util.function.Consumer
+
+import scala.collection.mutable
 import scala.jdk.CollectionConverters._
 
 import kalix.javasdk.impl.AnySupport
@@ -16,7 +19,9 @@ private[kalix] final class ReplicatedCounterMapImpl[K](
     anySupport: AnySupport,
     counters: Map[K, ReplicatedCounterImpl] = Map.empty[K, ReplicatedCounterImpl],
     removed: Set[K] = Set.empty[K],
-    cleared: Boolean = false)
+    cleared: Boolean = false,
+    dirty: Set[K] = Set.empty[K],
+    keyCache: EncodedKeyCache[K] = EncodedKeyCache.none[K])
     extends ReplicatedCounterMap[K]
     with InternalReplicatedData {
 
@@ -33,7 +38,13 @@ private[kalix] final class ReplicatedCounterMapImpl[K](
   override def increment(key: K, amount: Long): ReplicatedCounterMapImpl[K] = {
     val counter = counters.getOrElse(key, new ReplicatedCounterImpl)
     val incremented = counter.increment(amount)
-    new ReplicatedCounterMapImpl(anySupport, counters.updated(key, incremented), removed, cleared)
+    new ReplicatedCounterMapImpl(
+      anySupport,
+      counters.updated(key, incremented),
+      removed,
+      cleared,
+      dirty + key,
+      keyCache)
   }
 
   override def decrement(key: K, amount: Long): ReplicatedCounterMapImpl[K] = increment(key, -amount)
@@ -42,17 +53,45 @@ private[kalix] final class ReplicatedCounterMapImpl[K](
     if (!counters.contains(key)) {
       this
     } else {
-      new ReplicatedCounterMapImpl(anySupport, counters.removed(key), removed + key, cleared)
+      new ReplicatedCounterMapImpl(anySupport, counters.removed(key), removed + key, cleared, dirty - key, keyCache)
     }
   }
 
   override def clear(): ReplicatedCounterMapImpl[K] =
-    new ReplicatedCounterMapImpl[K](anySupport, cleared = true)
+    new ReplicatedCounterMapImpl[K](anySupport, cleared = true, keyCache = keyCache)
 
   override def size: Int = counters.size
 
   override def isEmpty: Boolean = counters.isEmpty
 
+  override def mutate(changes: Consumer[ReplicatedCounterMap.Mutator[K]]): ReplicatedCounterMapImpl[K] =
+    mutateWith(changes.accept)
+
+  /** for Scala SDK */
+  def mutateWith(changes: ReplicatedCounterMapImpl.Mutator[K] => Unit): ReplicatedCounterMapImpl[K] = {
+    val mutator = new ReplicatedCounterMapImpl.Mutator[K](counters)
+    try changes(mutator)
+    finally mutator.close()
+    if (!mutator.changed) this
+    else {
+      val (baseCounters, baseRemoved, baseDirty) =
+        if (mutator.cleared) (Map.empty[K, ReplicatedCounterImpl], mutator.removedKeys.toSet, Set.empty[K])
+        else (counters -- mutator.removedKeys, removed ++ mutator.removedKeys, dirty -- mutator.removedKeys)
+      val (updatedCounters, updatedDirty) =
+        mutator.increments.foldLeft((baseCounters, baseDirty)) { case ((map, changedKeys), (key, increment)) =>
+          val counter = if (increment.counter eq null) new ReplicatedCounterImpl else increment.counter
+          (map.updated(key, counter.increment(increment.amount)), changedKeys + key)
+        }
+      new ReplicatedCounterMapImpl(
+        anySupport,
+        updatedCounters,
+        baseRemoved,
+        cleared || mutator.cleared,
+        updatedDirty,
+        keyCache)
+    }
+  }
+
   /** for Scala SDK */
   def forall(predicate: ((K, Long)) => Boolean): Boolean =
     counters.view.mapValues(_.getValue).forall(predicate)
@@ -64,36 +103,116 @@ private[kalix] final class ReplicatedCounterMapImpl[K](
   /** for Scala SDK */
   def keys: Set[K] = counters.keySet
 
-  override def hasDelta: Boolean = cleared || removed.nonEmpty || counters.values.exists(_.hasDelta)
+  // only the counters of keys that have been changed since the last reset can have a delta
+  override def hasDelta: Boolean =
+    cleared || removed.nonEmpty || dirty.exists(key => counters.get(key).exists(_.hasDelta))
 
   override def getDelta: ReplicatedEntityDelta.Delta =
     ReplicatedEntityDelta.Delta.ReplicatedCounterMap(
       ReplicatedCounterMapDelta(
         cleared = cleared,
-        removed = removed.map(anySupport.encodeScala).toSeq,
-        updated = counters.collect {
-          case (key, counter) if counter.hasDelta =>
-            ReplicatedCounterMapEntryDelta(Some(anySupport.encodeScala(key)), counter.getDelta.counter)
+        removed = removed.map(keyCache.encode(_, anySupport)).toSeq,
+        updated = dirty.iterator.flatMap { key =>
+          counters.get(key).collect {
+            case counter if counter.hasDelta =>
+              ReplicatedCounterMapEntryDelta(Some(keyCache.encode(key, anySupport)), counter.getDelta.counter)
+          }
         }.toSeq))
 
   override def resetDelta(): ReplicatedCounterMapImpl[K] =
-    if (hasDelta) new ReplicatedCounterMapImpl(anySupport, counters.view.mapValues(_.resetDelta()).toMap) else this
+    if (hasDelta) {
+      val resetCounters = dirty.foldLeft(counters) { (map, key) =>
+        map.get(key).fold(map)(counter => map.updated(key, counter.resetDelta()))
+      }
+      new ReplicatedCounterMapImpl(anySupport, resetCounters, keyCache = keyCache)
+    } else this
 
   override val applyDelta: PartialFunction[ReplicatedEntityDelta.Delta, ReplicatedCounterMapImpl[K]] = {
     case ReplicatedEntityDelta.Delta.ReplicatedCounterMap(ReplicatedCounterMapDelta(cleared, removed, updated, _)) =>
       val reducedCounters =
         if (cleared) Map.empty[K, ReplicatedCounterImpl]
-        else counters -- removed.map(key => anySupport.decodePossiblyPrimitive(key).asInstanceOf[K])
+        else counters -- removed.map(key => keyCache.decode(key, anySupport))
       val updatedCounters = updated.foldLeft(reducedCounters) {
         case (map, ReplicatedCounterMapEntryDelta(Some(encodedKey), Some(delta), _)) =>
-          val key = anySupport.decodePossiblyPrimitive(encodedKey).asInstanceOf[K]
+          val key = keyCache.decode(encodedKey, anySupport)
           val counter = map.getOrElse(key, new ReplicatedCounterImpl)
           map.updated(key, counter.applyDelta(ReplicatedEntityDelta.Delta.Counter(delta)))
         case (map, _) => map
       }
-      new ReplicatedCounterMapImpl(anySupport, updatedCounters)
+      // counters updated by the delta lose their own delta, the other changed ones keep it
+      new ReplicatedCounterMapImpl(
+        anySupport,
+        updatedCounters,
+        dirty = dirty.filter(updatedCounters.contains),
+        keyCache = keyCache)
   }
 
   override def toString: String = s"ReplicatedCounterMap(${counters.map { case (k, v) => s"$k->$v" }.mkString(",")})"
 
 }
+
+private[kalix] object ReplicatedCounterMapImpl {
+
+  /** The counter a key had before the changes, null for a new counter, and the sum of all changes to it. */
+  private final class Increment(val counter: ReplicatedCounterImpl) {
+    var amount = 0L
+  }
+
+  /**
+   * Sums up the changes to each counter, so that every changed counter is only replaced once.
+   */
+  final class Mutator[K] private[ReplicatedCounterMapImpl] (counters: Map[K, ReplicatedCounterImpl])
+      extends ReplicatedCounterMap.Mutator[K] {
+
+    private[ReplicatedCounterMapImpl] val increments = mutable.LinkedHashMap.empty[K, Increment]
+    private[ReplicatedCounterMapImpl] val removedKeys = mutable.HashSet.empty[K]
+    private[ReplicatedCounterMapImpl] var cleared = false
+    private[ReplicatedCounterMapImpl] var changed = false
+    private var closed = false
+
+    private def checkOpen(): Unit =
+      if (closed) throw new IllegalStateException("ReplicatedCounterMap mutator used after mutate has returned")
+
+    // the counter before the changes, if it is still in the map
+    private def original(key: K): Option[ReplicatedCounterImpl] =
+      if (cleared || removedKeys.contains(key)) None else counters.get(key)
+
+    override def get(key: K): Long = {
+      checkOpen()
+      increments.get(key) match {
+        case Some(increment) =>
+          (if (increment.counter eq null) 0L else increment.counter.getValue) + increment.amount
+        case None => original(key).fold(0L)(_.getValue)
+      }
+    }
+
+    override def increment(key: K, amount: Long): Unit = {
+      checkOpen()
+      val increment = increments.getOrElseUpdate(key, new Increment(original(key).orNull))
+      increment.amount += amount
+      changed = true
+    }
+
+    override def decrement(key: K, amount: Long): Unit = increment(key, -amount)
+
+    override def remove(key: K): Unit = {
+      checkOpen()
+      increments.remove(key)
+      // a key that was only added by these changes is not in the map, so its removal isn't part of the delta
+      if (original(key).isDefined) {
+        removedKeys += key
+        changed = true
+      }
+    }
+
+    override def clear(): Unit = {
+      checkOpen()
+      increments.clear()
+      removedKeys.clear()
+      cleared = true
+      changed = true
+    }
+
+    private[ReplicatedCounterMapImpl] def close(): Unit = closed = true
+  }
+}
@@ -8,28 +8,32 @@ import kalix.javasdk.replicatedentity._
 import kalix.javasdk.impl.AnySupport
 import kalix.replicatedentity.ReplicatedData
 
-final class ReplicatedDataFactoryImpl(anySupport: AnySupport) extends ReplicatedDataFactory {
+final class ReplicatedDataFactoryImpl(
+    anySupport: AnySupport,
+    keyCache: EncodedKeyCache[Any] = EncodedKeyCache.none[Any])
+    extends ReplicatedDataFactory {
 
   override def newCounter(): ReplicatedCounter =
     new ReplicatedCounterImpl
 
   override def newReplicatedCounterMap[K](): ReplicatedCounterMap[K] =
-    new ReplicatedCounterMapImpl[K](anySupport)
+    new ReplicatedCounterMapImpl[K](anySupport, keyCache = keyCache.as[K])
 
   override def newReplicatedSet[T](): ReplicatedSet[T] =
-    new ReplicatedSetImpl[T](anySupport)
+    new ReplicatedSetImpl[T](anySupport, keyCache = keyCache.as[T])
 
   override def newRegister[T](value: T): ReplicatedRegister[T] =
     new ReplicatedRegisterImpl[T](anySupport, value, Option(value).map(anySupport.encodeScala))
 
   override def newReplicatedRegisterMap[K, V](): ReplicatedRegisterMap[K, V] =
-    new ReplicatedRegisterMapImpl[K, V](anySupport)
+    new ReplicatedRegisterMapImpl[K, V](anySupport, keyCache = keyCache.as[K])
 
   override def newReplicatedMultiMap[K, V](): ReplicatedMultiMap[K, V] =
-    new ReplicatedMultiMapImpl[K, V](anySupport)
+    new ReplicatedMultiMapImpl[K, V](anySupport, keyCache = keyCache.as[K])
 
   override def newReplicatedMap[K, V <: ReplicatedData](): ReplicatedMap[K, V] =
-    new ReplicatedMapImpl[K, InternalReplicatedData](anySupport).asInstanceOf[ReplicatedMap[K, V]]
+    new ReplicatedMapImpl[K, InternalReplicatedData](anySupport, keyCache = keyCache.as[K])
+      .asInstanceOf[ReplicatedMap[K, V]]
 
   override def newVote(): ReplicatedVote =
     new ReplicatedVoteImpl
@@ -4,12 +4,17 @@
 
 package kalix.javasdk.impl.replicatedentity
 
+import java.util.concurrent.atomic.LongAdder
+
 import akka.NotUsed
 import akka.actor.ActorSystem
+import akka.stream.{ Attributes, FlowShape, Inlet, Outlet }
 import akka.stream.scaladsl.{ Flow, Source }
+import akka.stream.stage.{ GraphStage, GraphStageLogic, InHandler, OutHandler, TimerGraphStageLogic }
 import kalix.javasdk.impl._
 import kalix.javasdk.impl.effect.{ EffectSupport, ErrorReplyImpl, MessageReplyImpl }
 import kalix.javasdk.impl.replicatedentity.ReplicatedEntityEffectImpl.DeleteEntity
+import kalix.javasdk.impl.replicatedentity.ReplicatedEntityEffectImpl.UpdateData
 import kalix.javasdk.impl.replicatedentity.ReplicatedEntityRouter.CommandResult
 import kalix.javasdk.replicatedentity._
 import kalix.javasdk.Metadata
@@ -19,9 +24,13 @@ import kalix.protocol.replicated_entity.ReplicatedEntityStreamOut.{ Message => O
 import kalix.protocol.replicated_entity._
 import com.google.protobuf.Descriptors
 
+import scala.collection.mutable
+import scala.concurrent.duration.FiniteDuration
+import scala.jdk.DurationConverters._
 import scala.util.control.NonFatal
 import kalix.javasdk.impl.ReplicatedEntityFactory
 import kalix.protocol.component.Failure
+import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
 final class ReplicatedEntityService(
@@ -51,6 +60,9 @@ final class ReplicatedEntityService(
     }
 
   override def componentOptions: Option[ComponentOptions] = entityOptions
+
+  /** INTERNAL API */
+  private[kalix] val keyCache = new EncodedKeyCache[Any]
 }
 
 final class ReplicatedEntitiesImpl(system: ActorSystem, services: Map[String, ReplicatedEntityService])
@@ -61,6 +73,23 @@ final class ReplicatedEntitiesImpl(system: ActorSystem, services: Map[String, Re
 
   private val log = LoggerFactory.getLogger(this.getClass)
 
+  private val coalescingMetrics: Map[String, CoalescingMetrics] = {
+    val interval = system.settings.config.getDuration("kalix.replicated-entity.metrics-log-interval")
+    if (!log.isDebugEnabled || interval.isZero) Map.empty
+    else {
+      val metrics = services.collect {
+        case (name, service) if service.entityOptions.exists(!_.deltaCoalescingWindow.isZero) =>
+          name -> new CoalescingMetrics(name, log)
+      }
+      if (services.nonEmpty)
+        system.scheduler.scheduleWithFixedDelay(interval.toScala, interval.toScala) { () =>
+          metrics.values.foreach(_.logAndReset())
+          services.foreach { case (name, service) => logKeyCache(name, service.keyCache, log) }
+        }(system.dispatcher)
+      metrics
+    }
+  }
+
   /**
    * After invoking handle, the first message sent will always be a ReplicatedEntityInit message, containing the entity
    * ID, and, if it exists or is available, the current state of the entity. After that, one or more commands may be
@@ -95,28 +124,25 @@ final class ReplicatedEntitiesImpl(system: ActorSystem, services: Map[String, Re
       services.getOrElse(init.serviceName, throw ProtocolException(init, s"Service not found: ${init.serviceName}"))
 
     val initialData = init.delta.map { delta =>
-      ReplicatedEntityDeltaTransformer.create(delta, service.anySupport)
+      ReplicatedEntityDeltaTransformer.create(delta, service.anySupport, service.keyCache)
     }
 
     val runner = new EntityRunner(service, init.entityId, initialData, system)
 
-    Flow[ReplicatedEntityStreamIn]
-      .mapConcat { in =>
-        in.message match {
-          case In.Command(command) =>
-            List(runner.handleCommand(command))
-          case In.Delta(delta) =>
-            runner.handleDelta(delta)
-            Nil
-          case In.Delete(_) =>
-            // ???
-            Nil
-          case In.Init(_) =>
-            throw ProtocolException(init, "Replicated Entity received additional init message")
-          case In.Empty =>
-            throw ProtocolException(init, "Replicated Entity received empty or unknown message")
-        }
-      }
+    val handling = service.entityOptions.filterNot(_.deltaCoalescingWindow.isZero) match {
+      case Some(options) =>
+        val coalescer =
+          new DeltaCoalescer(runner, options.deltaCoalescingMaxCommands, coalescingMetrics.get(init.serviceName))
+        Flow.fromGraph(
+          new CoalescingStage(
+            coalescer,
+            options.deltaCoalescingWindow.toScala,
+            in => handleMessage(init, runner, Some(coalescer), in)))
+      case None =>
+        Flow[ReplicatedEntityStreamIn].mapConcat(in => handleMessage(init, runner, None, in))
+    }
+
+    handling
       .recover { case error =>
         ErrorHandling.withCorrelationId { correlationId =>
           LoggerFactory.getLogger(runner.router.entityClass).error(failureMessageForLog(error), error)
@@ -124,6 +150,31 @@ final class ReplicatedEntitiesImpl(system: ActorSystem, services: Map[String, Re
         }
       }
   }
+
+  private def handleMessage(
+      init: ReplicatedEntityInit,
+      runner: EntityRunner,
+      coalescer: Option[DeltaCoalescer],
+      in: ReplicatedEntityStreamIn): List[ReplicatedEntityStreamOut] =
+    in.message match {
+      case In.Command(command) =>
+        coalescer match {
+          case Some(c) => c.handleCommand(command)
+          case None    => List(runner.handleCommand(command))
+        }
+      case In.Delta(delta) =>
+        // applying a delta from another replica drops the changes that have not been sent yet
+        val held = coalescer.fold(List.empty[ReplicatedEntityStreamOut])(_.flush())
+        runner.handleDelta(delta)
+        held
+      case In.Delete(_) =>
+        // the held replies are still owed to the callers, and their changes are written before the delete
+        coalescer.fold(List.empty[ReplicatedEntityStreamOut])(_.flush())
+      case In.Init(_) =>
+        throw ProtocolException(init, "Replicated Entity received additional init message")
+      case In.Empty =>
+        throw ProtocolException(init, "Replicated Entity received empty or unknown message")
+    }
 }
 
 object ReplicatedEntitiesImpl {
@@ -144,13 +195,26 @@ object ReplicatedEntitiesImpl {
       }
     }
 
-    router._internalInitialData(initialData, service.anySupport)
+    router._internalInitialData(initialData, service.anySupport, service.keyCache)
 
     def handleDelta(delta: ReplicatedEntityDelta): Unit = {
       router._internalApplyDelta(entityId, delta)
     }
 
-    def handleCommand(command: Command): ReplicatedEntityStreamOut = {
+    def hasDelta: Boolean = router._internalHasDelta
+
+    def takeDelta(): ReplicatedEntityStateAction =
+      ReplicatedEntityStateAction(
+        ReplicatedEntityStateAction.Action.Update(ReplicatedEntityDelta(router._internalGetAndResetDelta)))
+
+    def handleCommand(command: Command): ReplicatedEntityStreamOut =
+      replyOut(runCommand(command, coalescing = false).reply)
+
+    /**
+     * Runs the command and builds its reply. When coalescing, the delta is left in the replicated data to be combined
+     * with the changes of the following commands.
+     */
+    def runCommand(command: Command, coalescing: Boolean): CommandOutcome = {
       if (entityId != command.entityId)
         throw ProtocolException(command, "Entity is not the intended recipient of command")
 
@@ -170,7 +234,7 @@ object ReplicatedEntitiesImpl {
 
       val serializedSecondaryEffect = effect.secondaryEffect match {
         case MessageReplyImpl(message, metadata, sideEffects) =>
-          MessageReplyImpl(service.anySupport.encodeJava(message), metadata, sideEffects)
+          MessageReplyImpl(service.anySupport.encodeJavaAsScala(message), metadata, sideEffects)
         case other => other
       }
 
@@ -179,36 +243,153 @@ object ReplicatedEntitiesImpl {
 
       serializedSecondaryEffect match {
         case _: ErrorReplyImpl[_] =>
-          if (router._internalHasDelta)
+          // when coalescing, the delta may still hold the changes of earlier commands
+          if (!coalescing && router._internalHasDelta)
             throw EntityException(command, s"Replicated entity was changed for a failed command, this is not allowed.")
-          ReplicatedEntityStreamOut(
-            ReplicatedEntityStreamOut.Message.Reply(
-              ReplicatedEntityReply(commandId = command.id, clientAction = clientAction)))
+          CommandOutcome(ReplicatedEntityReply(commandId = command.id, clientAction = clientAction), changed = false)
 
         case _ => // non-error
           val stateAction: Option[ReplicatedEntityStateAction] = effect.primaryEffect match {
             case DeleteEntity =>
               Some(ReplicatedEntityStateAction(ReplicatedEntityStateAction.Action.Delete(ReplicatedEntityDelete())))
             case _ =>
-              if (router._internalHasDelta) {
-                val delta = router._internalGetAndResetDelta
-                Some(
-                  ReplicatedEntityStateAction(ReplicatedEntityStateAction.Action.Update(ReplicatedEntityDelta(delta))))
-              } else {
-                None
-              }
+              if (!coalescing && router._internalHasDelta) Some(takeDelta())
+              else None
           }
-          ReplicatedEntityStreamOut(
-            ReplicatedEntityStreamOut.Message.Reply(
-              ReplicatedEntityReply(
-                command.id,
-                clientAction,
-                EffectSupport.sideEffectsFrom(service.anySupport, serializedSecondaryEffect),
-                stateAction)))
+          val reply = ReplicatedEntityReply(
+            command.id,
+            clientAction,
+            EffectSupport.sideEffectsFrom(service.anySupport, serializedSecondaryEffect),
+            stateAction)
+          CommandOutcome(reply, changed = effect.primaryEffect.isInstanceOf[UpdateData])
       }
     }
   }
 
+  private final case class CommandOutcome(reply: ReplicatedEntityReply, changed: Boolean) {
+    def deletes: Boolean = reply.stateAction.exists(_.action.isDelete)
+  }
+
+  /**
+   * Deltas sent by entities of one service with delta coalescing, and the deltas that were saved by combining the
+   * changes of several commands into one, reported and reset at every log interval.
+   */
+  private final class CoalescingMetrics(serviceName: String, log: Logger) {
+    private val sent = new LongAdder
+    private val saved = new LongAdder
+
+    def recordDelta(changedCommands: Int): Unit = {
+      sent.increment()
+      saved.add(changedCommands - 1)
+    }
+
+    def logAndReset(): Unit = {
+      val sentCount = sent.sumThenReset()
+      val savedCount = saved.sumThenReset()
+      if (sentCount > 0)
+        log.debug(
+          "Replicated entity [{}] sent [{}] deltas for [{}] changing commands, [{}] deltas saved by coalescing",
+          serviceName,
+          sentCount,
+          sentCount + savedCount,
+          savedCount)
+    }
+  }
+
+  private def logKeyCache(serviceName: String, keyCache: EncodedKeyCache[Any], log: Logger): Unit = {
+    val (hits, misses) = keyCache.takeCounts()
+    if (hits + misses > 0)
+      log.debug(
+        "Replicated entity [{}] found [{}] of [{}] encoded and decoded keys in the key cache",
+        serviceName,
+        hits,
+        hits + misses)
+  }
+
+  private def replyOut(reply: ReplicatedEntityReply): ReplicatedEntityStreamOut =
+    ReplicatedEntityStreamOut(ReplicatedEntityStreamOut.Message.Reply(reply))
+
+  /**
+   * Holds back the replies of consecutive commands of one entity while it has changes that have not been sent, so that
+   * the changes of all of them are sent as one delta. Only accessed from the stream stage running the entity.
+   */
+  private final class DeltaCoalescer(runner: EntityRunner, maxCommands: Int, metrics: Option[CoalescingMetrics]) {
+    private val held = mutable.ArrayBuffer.empty[ReplicatedEntityReply]
+    private var changedCommands = 0
+
+    def isHolding: Boolean = held.nonEmpty
+
+    def handleCommand(command: Command): List[ReplicatedEntityStreamOut] = {
+      val outcome = runner.runCommand(command, coalescing = true)
+      if (outcome.deletes) {
+        flush() :+ replyOut(outcome.reply)
+      } else if (held.isEmpty && !runner.hasDelta) {
+        List(replyOut(outcome.reply))
+      } else {
+        // replies of commands that did not change anything are held too, they may have seen the unsent changes
+        held += outcome.reply
+        if (outcome.changed) changedCommands += 1
+        if (held.size >= maxCommands) flush() else Nil
+      }
+    }
+
+    def flush(): List[ReplicatedEntityStreamOut] =
+      if (held.isEmpty) Nil
+      else {
+        if (runner.hasDelta) {
+          metrics.foreach(_.recordDelta(math.max(changedCommands, 1)))
+          // on the first reply, so that the changes are written before any of the held replies is sent
+          held(0) = held(0).withStateAction(runner.takeDelta())
+        }
+        val replies = held.iterator.map(replyOut).toList
+        held.clear()
+        changedCommands = 0
+        replies
+      }
+  }
+
+  /**
+   * Runs the messages of one entity with delta coalescing, sending the held replies once the window has passed since
+   * the first of them was held.
+   */
+  private final class CoalescingStage(
+      coalescer: DeltaCoalescer,
+      window: FiniteDuration,
+      handle: ReplicatedEntityStreamIn => List[ReplicatedEntityStreamOut])
+      extends GraphStage[FlowShape[ReplicatedEntityStreamIn, ReplicatedEntityStreamOut]] {
+
+    private val in = Inlet[ReplicatedEntityStreamIn]("CoalescingStage.in")
+    private val out = Outlet[ReplicatedEntityStreamOut]("CoalescingStage.out")
+
+    override val shape: FlowShape[ReplicatedEntityStreamIn, ReplicatedEntityStreamOut] = FlowShape(in, out)
+
+    override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
+      new TimerGraphStageLogic(shape) with InHandler with OutHandler {
+        private val FlushTimer = "flush"
+
+        override def onPush(): Unit = {
+          val replies = handle(grab(in))
+          if (!coalescer.isHolding) cancelTimer(FlushTimer)
+          else if (!isTimerActive(FlushTimer)) scheduleOnce(FlushTimer, window)
+          if (replies.isEmpty) pull(in)
+          else emitMultiple(out, replies)
+        }
+
+        override def onPull(): Unit =
+          if (!hasBeenPulled(in)) pull(in)
+
+        override def onUpstreamFinish(): Unit = {
+          emitMultiple(out, coalescer.flush())
+          complete(out)
+        }
+
+        override protected def onTimer(timerKey: Any): Unit =
+          emitMultiple(out, coalescer.flush())
+
+        setHandlers(in, out, this)
+      }
+  }
+
   private final class ReplicatedEntityCreationContext(override val entityId: String, system: ActorSystem)
       extends AbstractContext(system)
       with ReplicatedEntityContext
@@ -226,7 +407,7 @@ object ReplicatedEntitiesImpl {
 
     override val commandName: String = command.name
 
-    override val metadata: Metadata = MetadataImpl.of(command.metadata.map(_.entries.toVector).getOrElse(Nil))
+    override val metadata: Metadata = MetadataImpl.of(command.metadata.map(_.entries).getOrElse(Nil))
 
   }
 }
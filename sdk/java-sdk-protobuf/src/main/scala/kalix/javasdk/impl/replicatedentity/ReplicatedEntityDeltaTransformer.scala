@@ -9,22 +9,25 @@ import kalix.protocol.replicated_entity.ReplicatedEntityDelta
 
 private[replicatedentity] object ReplicatedEntityDeltaTransformer {
 
-  def create(delta: ReplicatedEntityDelta, anySupport: AnySupport): InternalReplicatedData = {
+  def create(
+      delta: ReplicatedEntityDelta,
+      anySupport: AnySupport,
+      keyCache: EncodedKeyCache[Any] = EncodedKeyCache.none[Any]): InternalReplicatedData = {
     val data = delta.delta match {
       case ReplicatedEntityDelta.Delta.Counter(_) =>
         new ReplicatedCounterImpl
       case ReplicatedEntityDelta.Delta.ReplicatedSet(_) =>
-        new ReplicatedSetImpl[Any](anySupport)
+        new ReplicatedSetImpl[Any](anySupport, keyCache = keyCache)
       case ReplicatedEntityDelta.Delta.Register(_) =>
         new ReplicatedRegisterImpl[Any](anySupport)
       case ReplicatedEntityDelta.Delta.ReplicatedMap(_) =>
-        new ReplicatedMapImpl[Any, InternalReplicatedData](anySupport)
+        new ReplicatedMapImpl[Any, InternalReplicatedData](anySupport, keyCache = keyCache)
       case ReplicatedEntityDelta.Delta.ReplicatedCounterMap(_) =>
-        new ReplicatedCounterMapImpl[Any](anySupport)
+        new ReplicatedCounterMapImpl[Any](anySupport, keyCache = keyCache)
       case ReplicatedEntityDelta.Delta.ReplicatedRegisterMap(_) =>
-        new ReplicatedRegisterMapImpl[Any, Any](anySupport)
+        new ReplicatedRegisterMapImpl[Any, Any](anySupport, keyCache = keyCache)
       case ReplicatedEntityDelta.Delta.ReplicatedMultiMap(_) =>
-        new ReplicatedMultiMapImpl[Any, Any](anySupport)
+        new ReplicatedMultiMapImpl[Any, Any](anySupport, keyCache = keyCache)
       case ReplicatedEntityDelta.Delta.Vote(_) =>
         new ReplicatedVoteImpl
       case _ =>
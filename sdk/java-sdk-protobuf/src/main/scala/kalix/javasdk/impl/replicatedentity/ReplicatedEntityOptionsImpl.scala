@@ -7,21 +7,36 @@ package kalix.javasdk.impl.replicatedentity
 import kalix.javasdk.PassivationStrategy
 import kalix.javasdk.replicatedentity.{ ReplicatedEntityOptions, WriteConsistency }
 
+import java.time.Duration
 import java.util.Collections
 import java.util
 
 private[impl] case class ReplicatedEntityOptionsImpl(
     override val passivationStrategy: PassivationStrategy,
     override val forwardHeaders: java.util.Set[String],
-    override val writeConsistency: WriteConsistency)
+    override val writeConsistency: WriteConsistency,
+    override val deltaCoalescingWindow: Duration,
+    override val deltaCoalescingMaxCommands: Int)
     extends ReplicatedEntityOptions {
 
+  def this(
+      passivationStrategy: PassivationStrategy,
+      forwardHeaders: java.util.Set[String],
+      writeConsistency: WriteConsistency) =
+    this(passivationStrategy, forwardHeaders, writeConsistency, Duration.ZERO, 1)
+
   override def withPassivationStrategy(strategy: PassivationStrategy): ReplicatedEntityOptions =
     copy(passivationStrategy = strategy)
 
   override def withWriteConsistency(writeConsistency: WriteConsistency): ReplicatedEntityOptions =
     copy(writeConsistency = writeConsistency)
 
+  override def withDeltaCoalescing(window: Duration, maxCommands: Int): ReplicatedEntityOptions = {
+    require(!window.isNegative, s"window must not be negative, was [$window]")
+    require(maxCommands > 0, s"maxCommands must be greater than 0, was [$maxCommands]")
+    copy(deltaCoalescingWindow = window, deltaCoalescingMaxCommands = maxCommands)
+  }
+
   override def withForwardHeaders(headers: util.Set[String]): ReplicatedEntityOptions =
     copy(forwardHeaders = Collections.unmodifiableSet(new util.HashSet(headers)));
 }
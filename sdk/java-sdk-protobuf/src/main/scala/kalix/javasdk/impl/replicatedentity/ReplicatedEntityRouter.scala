@@ -36,11 +36,14 @@ abstract class ReplicatedEntityRouter[D <: ReplicatedData, E <: ReplicatedEntity
 
   /** INTERNAL API */
   // "public" api against the impl/testkit
-  final def _internalInitialData(initialData: Option[InternalReplicatedData], anySupport: AnySupport): Unit =
+  final def _internalInitialData(
+      initialData: Option[InternalReplicatedData],
+      anySupport: AnySupport,
+      keyCache: EncodedKeyCache[Any] = EncodedKeyCache.none[Any]): Unit =
     initialData match {
       case Some(d) => data = d.asInstanceOf[D]
       case _ =>
-        val dataFactory = new ReplicatedDataFactoryImpl(anySupport)
+        val dataFactory = new ReplicatedDataFactoryImpl(anySupport, keyCache)
         val emptyData = entity.emptyData(dataFactory)
         require(emptyData ne null, "Initial empty data for a replicated entity cannot be null")
         data = emptyData
@@ -26,7 +26,9 @@ private[kalix] final class ReplicatedMapImpl[K, V <: ReplicatedData](
     entries: Map[K, V] = Map.empty[K, V],
     added: Set[K] = Set.empty[K],
     removed: Set[K] = Set.empty[K],
-    cleared: Boolean = false)
+    cleared: Boolean = false,
+    dirty: Set[K] = Set.empty[K],
+    keyCache: EncodedKeyCache[K] = EncodedKeyCache.none[K])
     extends ReplicatedMap[K, V]
     with InternalReplicatedData {
 
@@ -46,7 +48,7 @@ private[kalix] final class ReplicatedMapImpl[K, V <: ReplicatedData](
   override def getOrElse(key: K, create: function.Function[ReplicatedDataFactory, V]): V =
     entries.getOrElse(
       key, {
-        val dataFactory = new ReplicatedDataFactoryImpl(anySupport)
+        val dataFactory = new ReplicatedDataFactoryImpl(anySupport, keyCache.as[Any])
         val data = create(dataFactory)
         if (data eq null) {
           throw new IllegalArgumentException(
@@ -61,7 +63,9 @@ private[kalix] final class ReplicatedMapImpl[K, V <: ReplicatedData](
       entries.updated(key, value),
       if (entries.contains(key)) added else added + key,
       removed,
-      cleared)
+      cleared,
+      dirty + key,
+      keyCache)
 
   override def remove(key: K): ReplicatedMapImpl[K, V] = {
     if (!entries.contains(key)) {
@@ -71,16 +75,16 @@ private[kalix] final class ReplicatedMapImpl[K, V <: ReplicatedData](
         clear()
       } else {
         if (added.contains(key)) {
-          new ReplicatedMapImpl(anySupport, entries - key, added - key, removed, cleared)
+          new ReplicatedMapImpl(anySupport, entries - key, added - key, removed, cleared, dirty - key, keyCache)
         } else {
-          new ReplicatedMapImpl(anySupport, entries - key, added, removed + key, cleared)
+          new ReplicatedMapImpl(anySupport, entries - key, added, removed + key, cleared, dirty - key, keyCache)
         }
       }
     }
   }
 
   override def clear(): ReplicatedMapImpl[K, V] =
-    new ReplicatedMapImpl[K, V](anySupport, cleared = true)
+    new ReplicatedMapImpl[K, V](anySupport, cleared = true, keyCache = keyCache)
 
   override def size: Int = entries.size
 
@@ -97,46 +101,54 @@ private[kalix] final class ReplicatedMapImpl[K, V <: ReplicatedData](
     if (cleared || added.nonEmpty || removed.nonEmpty) {
       true
     } else {
-      entries.values.exists(_.asInstanceOf[InternalReplicatedData].hasDelta)
+      // values can only be changed through update, so only the values of updated keys can have a delta
+      dirty.exists(key => entries.get(key).exists(_.asInstanceOf[InternalReplicatedData].hasDelta))
     }
 
   override def getDelta: ReplicatedEntityDelta.Delta = {
-    val updatedEntries = (entries -- added).collect {
-      case (key, changed) if changed.asInstanceOf[InternalReplicatedData].hasDelta =>
-        ReplicatedMapEntryDelta(
-          Some(anySupport.encodeScala(key)),
-          Some(ReplicatedEntityDelta(changed.asInstanceOf[InternalReplicatedData].getDelta)))
+    val updatedEntries = (dirty -- added).iterator.flatMap { key =>
+      entries.get(key).collect {
+        case changed if changed.asInstanceOf[InternalReplicatedData].hasDelta =>
+          ReplicatedMapEntryDelta(
+            Some(keyCache.encode(key, anySupport)),
+            Some(ReplicatedEntityDelta(changed.asInstanceOf[InternalReplicatedData].getDelta)))
+      }
     }
     val addedEntries = added.flatMap { key =>
       entries.get(key).map { value =>
         ReplicatedMapEntryDelta(
-          Some(anySupport.encodeScala(key)),
+          Some(keyCache.encode(key, anySupport)),
           Some(ReplicatedEntityDelta(value.asInstanceOf[InternalReplicatedData].getDelta)))
       }
     }
     ReplicatedEntityDelta.Delta.ReplicatedMap(
       ReplicatedMapDelta(
         cleared = cleared,
-        removed = removed.map(anySupport.encodeScala).toSeq,
+        removed = removed.map(keyCache.encode(_, anySupport)).toSeq,
         updated = updatedEntries.toSeq,
         added = addedEntries.toSeq))
   }
 
   override def resetDelta(): ReplicatedMapImpl[K, V] =
     if (!hasDelta) this
-    else
-      new ReplicatedMapImpl(
-        anySupport,
-        entries.view.mapValues(_.asInstanceOf[InternalReplicatedData].resetDelta().asInstanceOf[V]).toMap)
+    else {
+      // added keys are always in dirty as well
+      val resetEntries = dirty.foldLeft(entries) { (map, key) =>
+        map.get(key).fold(map) { value =>
+          map.updated(key, value.asInstanceOf[InternalReplicatedData].resetDelta().asInstanceOf[V])
+        }
+      }
+      new ReplicatedMapImpl(anySupport, resetEntries, keyCache = keyCache)
+    }
 
   override val applyDelta: PartialFunction[ReplicatedEntityDelta.Delta, ReplicatedMapImpl[K, V]] = {
     case ReplicatedEntityDelta.Delta.ReplicatedMap(ReplicatedMapDelta(cleared, removed, updated, added, _)) =>
       val reducedEntries =
         if (cleared) Map.empty[K, V]
-        else entries -- removed.map(key => anySupport.decodePossiblyPrimitive(key).asInstanceOf[K])
+        else entries -- removed.map(key => keyCache.decode(key, anySupport))
       val updatedEntries = updated.foldLeft(reducedEntries) {
         case (map, ReplicatedMapEntryDelta(Some(encodedKey), Some(ReplicatedEntityDelta(delta, _)), _)) =>
-          val key = anySupport.decodePossiblyPrimitive(encodedKey).asInstanceOf[K]
+          val key = keyCache.decode(encodedKey, anySupport)
           map.get(key) match {
             case Some(value) =>
               map.updated(key, value.asInstanceOf[InternalReplicatedData].applyDelta(delta).asInstanceOf[V])
@@ -146,11 +158,12 @@ private[kalix] final class ReplicatedMapImpl[K, V <: ReplicatedData](
       }
       val newEntries = added.foldLeft(updatedEntries) {
         case (map, ReplicatedMapEntryDelta(Some(encodedKey), Some(delta), _)) =>
-          val key = anySupport.decodePossiblyPrimitive(encodedKey).asInstanceOf[K]
+          val key = keyCache.decode(encodedKey, anySupport)
           map.updated(key, ReplicatedEntityDeltaTransformer.create(delta, anySupport).asInstanceOf[V])
         case (map, _) => map
       }
-      new ReplicatedMapImpl(anySupport, newEntries)
+      // values updated by the delta lose their own delta, the other changed ones keep it
+      new ReplicatedMapImpl(anySupport, newEntries, dirty = dirty.filter(newEntries.contains), keyCache = keyCache)
   }
 
   override def toString: String = s"ReplicatedMap(${entries.map { case (k, v) => s"$k->$v" }.mkString(",")})"
@@ -20,7 +20,10 @@ private[kalix] final class ReplicatedMultiMapImpl[K, V](
     anySupport: AnySupport,
     entries: Map[K, ReplicatedSetImpl[V]] = Map.empty[K, ReplicatedSetImpl[V]],
     removed: Set[K] = Set.empty[K],
-    cleared: Boolean = false)
+    cleared: Boolean = false,
+    dirty: Set[K] = Set.empty[K],
+    valueCount: Int = 0,
+    keyCache: EncodedKeyCache[K] = EncodedKeyCache.none[K])
     extends ReplicatedMultiMap[K, V]
     with InternalReplicatedData {
 
@@ -34,14 +37,35 @@ private[kalix] final class ReplicatedMultiMapImpl[K, V](
   override def get(key: K): JSet[V] = entries.get(key).fold(JCollections.emptySet[V])(_.elements)
 
   override def put(key: K, value: V): ReplicatedMultiMapImpl[K, V] = {
-    val values = entries.getOrElse(key, new ReplicatedSetImpl[V](anySupport))
+    val values = entries.getOrElse(key, new ReplicatedSetImpl[V](anySupport, keyCache = keyCache.as[V]))
     val updated = values.add(value)
-    new ReplicatedMultiMapImpl(anySupport, entries.updated(key, updated), removed, cleared)
+    if (updated eq values) this
+    else
+      new ReplicatedMultiMapImpl(
+        anySupport,
+        entries.updated(key, updated),
+        removed,
+        cleared,
+        dirty + key,
+        valueCount + updated.size - values.size,
+        keyCache)
   }
 
   /** for Scala SDK */
-  def putAll(key: K, values: Iterable[V]): ReplicatedMultiMapImpl[K, V] =
-    values.foldLeft(this) { case (map, value) => map.put(key, value) }
+  def putAll(key: K, values: Iterable[V]): ReplicatedMultiMapImpl[K, V] = {
+    val existing = entries.getOrElse(key, new ReplicatedSetImpl[V](anySupport, keyCache = keyCache.as[V]))
+    val updated = existing.addAll(values)
+    if (updated eq existing) this
+    else
+      new ReplicatedMultiMapImpl(
+        anySupport,
+        entries.updated(key, updated),
+        removed,
+        cleared,
+        dirty + key,
+        valueCount + updated.size - existing.size,
+        keyCache)
+  }
 
   override def putAll(key: K, values: JCollection[V]): ReplicatedMultiMapImpl[K, V] =
     putAll(key, values.asScala)
@@ -50,22 +74,38 @@ private[kalix] final class ReplicatedMultiMapImpl[K, V](
     entries.get(key).fold(this) { values =>
       val updated = values.remove(value)
       if (updated.isEmpty) removeAll(key)
-      else new ReplicatedMultiMapImpl(anySupport, entries.updated(key, updated), removed, cleared)
+      else if (updated eq values) this
+      else
+        new ReplicatedMultiMapImpl(
+          anySupport,
+          entries.updated(key, updated),
+          removed,
+          cleared,
+          dirty + key,
+          valueCount + updated.size - values.size,
+          keyCache)
     }
   }
 
   override def removeAll(key: K): ReplicatedMultiMapImpl[K, V] = {
-    if (!entries.contains(key)) {
-      this
-    } else {
-      new ReplicatedMultiMapImpl(anySupport, entries.removed(key), removed + key, cleared)
+    entries.get(key) match {
+      case None => this
+      case Some(values) =>
+        new ReplicatedMultiMapImpl(
+          anySupport,
+          entries.removed(key),
+          removed + key,
+          cleared,
+          dirty - key,
+          valueCount - values.size,
+          keyCache)
     }
   }
 
   override def clear(): ReplicatedMultiMapImpl[K, V] =
-    new ReplicatedMultiMapImpl[K, V](anySupport, cleared = true)
+    new ReplicatedMultiMapImpl[K, V](anySupport, cleared = true, keyCache = keyCache)
 
-  override def size: Int = entries.values.map(_.size).sum
+  override def size: Int = valueCount
 
   override def isEmpty: Boolean = entries.isEmpty
 
@@ -79,34 +119,49 @@ private[kalix] final class ReplicatedMultiMapImpl[K, V](
 
   override def keySet: JSet[K] = entries.keySet.asJava
 
-  override def hasDelta: Boolean = cleared || removed.nonEmpty || entries.values.exists(_.hasDelta)
+  // only the values of keys that have been changed since the last reset can have a delta
+  override def hasDelta: Boolean =
+    cleared || removed.nonEmpty || dirty.exists(key => entries.get(key).exists(_.hasDelta))
 
   override def getDelta: ReplicatedEntityDelta.Delta =
     ReplicatedEntityDelta.Delta.ReplicatedMultiMap(
       ReplicatedMultiMapDelta(
         cleared = cleared,
-        removed = removed.map(anySupport.encodeScala).toSeq,
-        updated = entries.collect {
-          case (key, values) if values.hasDelta =>
-            ReplicatedMultiMapEntryDelta(Some(anySupport.encodeScala(key)), values.getDelta.replicatedSet)
+        removed = removed.map(keyCache.encode(_, anySupport)).toSeq,
+        updated = dirty.iterator.flatMap { key =>
+          entries.get(key).collect {
+            case values if values.hasDelta =>
+              ReplicatedMultiMapEntryDelta(Some(keyCache.encode(key, anySupport)), values.getDelta.replicatedSet)
+          }
         }.toSeq))
 
   override def resetDelta(): ReplicatedMultiMapImpl[K, V] =
-    if (hasDelta) new ReplicatedMultiMapImpl(anySupport, entries.view.mapValues(_.resetDelta()).toMap) else this
+    if (hasDelta) {
+      val resetEntries = dirty.foldLeft(entries) { (map, key) =>
+        map.get(key).fold(map)(values => map.updated(key, values.resetDelta()))
+      }
+      new ReplicatedMultiMapImpl(anySupport, resetEntries, valueCount = valueCount, keyCache = keyCache)
+    } else this
 
   override val applyDelta: PartialFunction[ReplicatedEntityDelta.Delta, ReplicatedMultiMapImpl[K, V]] = {
     case ReplicatedEntityDelta.Delta.ReplicatedMultiMap(ReplicatedMultiMapDelta(cleared, removed, updated, _)) =>
       val reducedEntries =
         if (cleared) Map.empty[K, ReplicatedSetImpl[V]]
-        else entries -- removed.map(key => anySupport.decodePossiblyPrimitive(key).asInstanceOf[K])
+        else entries -- removed.map(key => keyCache.decode(key, anySupport))
       val updatedEntries = updated.foldLeft(reducedEntries) {
         case (map, ReplicatedMultiMapEntryDelta(Some(encodedKey), Some(delta), _)) =>
-          val key = anySupport.decodePossiblyPrimitive(encodedKey).asInstanceOf[K]
-          val values = map.getOrElse(key, new ReplicatedSetImpl[V](anySupport))
+          val key = keyCache.decode(encodedKey, anySupport)
+          val values = map.getOrElse(key, new ReplicatedSetImpl[V](anySupport, keyCache = keyCache.as[V]))
           map.updated(key, values.applyDelta(ReplicatedEntityDelta.Delta.ReplicatedSet(delta)))
         case (map, _) => map
       }
-      new ReplicatedMultiMapImpl(anySupport, updatedEntries)
+      // values updated by the delta lose their own delta, the other changed ones keep it
+      new ReplicatedMultiMapImpl(
+        anySupport,
+        updatedEntries,
+        dirty = dirty.filter(updatedEntries.contains),
+        valueCount = updatedEntries.valuesIterator.map(_.size).sum,
+        keyCache = keyCache)
   }
 
   override def toString: String = s"ReplicatedMultiMap(${entries.map { case (k, v) => s"$k->$v" }.mkString(",")})"
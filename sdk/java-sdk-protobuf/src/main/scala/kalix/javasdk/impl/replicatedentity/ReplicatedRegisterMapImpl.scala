@@ -18,7 +18,9 @@ private[kalix] final class ReplicatedRegisterMapImpl[K, V](
     anySupport: AnySupport,
     registers: Map[K, ReplicatedRegisterImpl[V]] = Map.empty[K, ReplicatedRegisterImpl[V]],
     removed: Set[K] = Set.empty[K],
-    cleared: Boolean = false)
+    cleared: Boolean = false,
+    dirty: Set[K] = Set.empty[K],
+    keyCache: EncodedKeyCache[K] = EncodedKeyCache.none[K])
     extends ReplicatedRegisterMap[K, V]
     with InternalReplicatedData {
 
@@ -39,19 +41,19 @@ private[kalix] final class ReplicatedRegisterMapImpl[K, V](
       customClockValue: Long): ReplicatedRegisterMapImpl[K, V] = {
     val register = registers.getOrElse(key, new ReplicatedRegisterImpl[V](anySupport))
     val updated = register.set(value, clock, customClockValue)
-    new ReplicatedRegisterMapImpl(anySupport, registers.updated(key, updated), removed, cleared)
+    new ReplicatedRegisterMapImpl(anySupport, registers.updated(key, updated), removed, cleared, dirty + key, keyCache)
   }
 
   override def remove(key: K): ReplicatedRegisterMapImpl[K, V] = {
     if (!registers.contains(key)) {
       this
     } else {
-      new ReplicatedRegisterMapImpl(anySupport, registers.removed(key), removed + key, cleared)
+      new ReplicatedRegisterMapImpl(anySupport, registers.removed(key), removed + key, cleared, dirty - key, keyCache)
     }
   }
 
   override def clear(): ReplicatedRegisterMapImpl[K, V] =
-    new ReplicatedRegisterMapImpl[K, V](anySupport, cleared = true)
+    new ReplicatedRegisterMapImpl[K, V](anySupport, cleared = true, keyCache = keyCache)
 
   override def size: Int = registers.size
 
@@ -64,34 +66,48 @@ private[kalix] final class ReplicatedRegisterMapImpl[K, V](
 
   override def keySet: java.util.Set[K] = keys.asJava
 
-  override def hasDelta: Boolean = cleared || removed.nonEmpty || registers.values.exists(_.hasDelta)
+  // only the registers of keys that have been changed since the last reset can have a delta
+  override def hasDelta: Boolean =
+    cleared || removed.nonEmpty || dirty.exists(key => registers.get(key).exists(_.hasDelta))
 
   override def getDelta: ReplicatedEntityDelta.Delta =
     ReplicatedEntityDelta.Delta.ReplicatedRegisterMap(
       ReplicatedRegisterMapDelta(
         cleared = cleared,
-        removed = removed.map(anySupport.encodeScala).toSeq,
-        updated = registers.collect {
-          case (key, register) if register.hasDelta =>
-            ReplicatedRegisterMapEntryDelta(Some(anySupport.encodeScala(key)), register.getDelta.register)
+        removed = removed.map(keyCache.encode(_, anySupport)).toSeq,
+        updated = dirty.iterator.flatMap { key =>
+          registers.get(key).collect {
+            case register if register.hasDelta =>
+              ReplicatedRegisterMapEntryDelta(Some(keyCache.encode(key, anySupport)), register.getDelta.register)
+          }
         }.toSeq))
 
   override def resetDelta(): ReplicatedRegisterMapImpl[K, V] =
-    if (hasDelta) new ReplicatedRegisterMapImpl(anySupport, registers.view.mapValues(_.resetDelta()).toMap) else this
+    if (hasDelta) {
+      val resetRegisters = dirty.foldLeft(registers) { (map, key) =>
+        map.get(key).fold(map)(register => map.updated(key, register.resetDelta()))
+      }
+      new ReplicatedRegisterMapImpl(anySupport, resetRegisters, keyCache = keyCache)
+    } else this
 
   override val applyDelta: PartialFunction[ReplicatedEntityDelta.Delta, ReplicatedRegisterMapImpl[K, V]] = {
     case ReplicatedEntityDelta.Delta.ReplicatedRegisterMap(ReplicatedRegisterMapDelta(cleared, removed, updated, _)) =>
       val reducedRegisters =
         if (cleared) Map.empty[K, ReplicatedRegisterImpl[V]]
-        else registers -- removed.map(key => anySupport.decodePossiblyPrimitive(key).asInstanceOf[K])
+        else registers -- removed.map(key => keyCache.decode(key, anySupport))
       val updatedRegisters = updated.foldLeft(reducedRegisters) {
         case (map, ReplicatedRegisterMapEntryDelta(Some(encodedKey), Some(delta), _)) =>
-          val key = anySupport.decodePossiblyPrimitive(encodedKey).asInstanceOf[K]
+          val key = keyCache.decode(encodedKey, anySupport)
           val register = map.getOrElse(key, new ReplicatedRegisterImpl[V](anySupport))
           map.updated(key, register.applyDelta(ReplicatedEntityDelta.Delta.Register(delta)))
         case (map, _) => map
       }
-      new ReplicatedRegisterMapImpl(anySupport, updatedRegisters)
+      // registers updated by the delta lose their own delta, the other changed ones keep it
+      new ReplicatedRegisterMapImpl(
+        anySupport,
+        updatedRegisters,
+        dirty = dirty.filter(updatedRegisters.contains),
+        keyCache = keyCache)
   }
 
   override def toString: String = s"ReplicatedRegisterMap(${registers.map { case (k, v) => s"$k->$v" }.mkString(",")})"
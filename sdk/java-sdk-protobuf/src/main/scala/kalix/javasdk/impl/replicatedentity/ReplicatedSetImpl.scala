@@ -4,6 +4,9 @@
 
 package kalix.javasdk.impl.replicatedentity
 
+import java.util.function.Consumer
+
+import scala.collection.mutable
 import scala.jdk.CollectionConverters._
 
 import kalix.javasdk.impl.AnySupport
@@ -16,7 +19,8 @@ private[kalix] class ReplicatedSetImpl[E](
     values: Set[E] = Set.empty[E],
     added: Set[E] = Set.empty[E],
     removed: Set[E] = Set.empty[E],
-    cleared: Boolean = false)
+    cleared: Boolean = false,
+    keyCache: EncodedKeyCache[E] = EncodedKeyCache.none[E])
     extends ReplicatedSet[E]
     with InternalReplicatedData {
 
@@ -41,9 +45,9 @@ private[kalix] class ReplicatedSetImpl[E](
       this
     } else {
       if (removed.contains(element)) {
-        new ReplicatedSetImpl(anySupport, values + element, added, removed - element, cleared)
+        new ReplicatedSetImpl(anySupport, values + element, added, removed - element, cleared, keyCache)
       } else {
-        new ReplicatedSetImpl(anySupport, values + element, added + element, removed, cleared)
+        new ReplicatedSetImpl(anySupport, values + element, added + element, removed, cleared, keyCache)
       }
     }
 
@@ -55,9 +59,9 @@ private[kalix] class ReplicatedSetImpl[E](
         clear()
       } else {
         if (added.contains(element)) {
-          new ReplicatedSetImpl(anySupport, values - element, added - element, removed, cleared)
+          new ReplicatedSetImpl(anySupport, values - element, added - element, removed, cleared, keyCache)
         } else {
-          new ReplicatedSetImpl(anySupport, values - element, added, removed + element, cleared)
+          new ReplicatedSetImpl(anySupport, values - element, added, removed + element, cleared, keyCache)
         }
       }
     }
@@ -75,7 +79,7 @@ private[kalix] class ReplicatedSetImpl[E](
 
   /** for Scala SDK */
   def addAll(elements: Iterable[E]): ReplicatedSetImpl[E] =
-    elements.foldLeft(this) { case (set, element) => set.add(element) }
+    mutateWith(_.addAll(elements))
 
   override def addAll(elements: java.util.Collection[E]): ReplicatedSetImpl[E] =
     addAll(elements.asScala)
@@ -85,17 +89,28 @@ private[kalix] class ReplicatedSetImpl[E](
     retainAll(elements.asJavaCollection)
 
   override def retainAll(elements: java.util.Collection[E]): ReplicatedSetImpl[E] =
-    values.foldLeft(this) { case (set, element) => if (!elements.contains(element)) set.remove(element) else set }
+    mutateWith(mutator => values.foreach(element => if (!elements.contains(element)) mutator.remove(element)))
 
   /** for Scala SDK */
   def removeAll(elements: Iterable[E]): ReplicatedSetImpl[E] =
-    elements.foldLeft(this) { case (set, element) => set.remove(element) }
+    mutateWith(_.removeAll(elements))
 
   override def removeAll(elements: java.util.Collection[E]): ReplicatedSetImpl[E] =
     removeAll(elements.asScala)
 
   override def clear(): ReplicatedSetImpl[E] =
-    new ReplicatedSetImpl[E](anySupport, cleared = true)
+    new ReplicatedSetImpl[E](anySupport, cleared = true, keyCache = keyCache)
+
+  override def mutate(changes: Consumer[ReplicatedSet.Mutator[E]]): ReplicatedSetImpl[E] =
+    mutateWith(changes.accept)
+
+  /** for Scala SDK */
+  def mutateWith(changes: ReplicatedSetImpl.Mutator[E] => Unit): ReplicatedSetImpl[E] = {
+    val mutator = new ReplicatedSetImpl.Mutator[E](anySupport, keyCache, this, values, added, removed, cleared)
+    try changes(mutator)
+    finally mutator.close()
+    mutator.result()
+  }
 
   override def hasDelta: Boolean = cleared || added.nonEmpty || removed.nonEmpty
 
@@ -103,22 +118,118 @@ private[kalix] class ReplicatedSetImpl[E](
     ReplicatedEntityDelta.Delta.ReplicatedSet(
       ReplicatedSetDelta(
         cleared,
-        removed = removed.map(anySupport.encodeScala).toSeq,
-        added = added.map(anySupport.encodeScala).toSeq))
+        removed = removed.map(keyCache.encode(_, anySupport)).toSeq,
+        added = added.map(keyCache.encode(_, anySupport)).toSeq))
 
   override def resetDelta(): ReplicatedSetImpl[E] =
-    if (hasDelta) new ReplicatedSetImpl(anySupport, values) else this
+    if (hasDelta) new ReplicatedSetImpl(anySupport, values, keyCache = keyCache) else this
 
   override val applyDelta: PartialFunction[ReplicatedEntityDelta.Delta, ReplicatedSetImpl[E]] = {
     case ReplicatedEntityDelta.Delta.ReplicatedSet(ReplicatedSetDelta(cleared, removed, added, _)) =>
       val updatedValue = {
         (if (cleared) Set.empty[E]
-         else values -- removed.map(element => anySupport.decodePossiblyPrimitive(element).asInstanceOf[E])) ++
-        added.map(element => anySupport.decodePossiblyPrimitive(element).asInstanceOf[E])
+         else values -- removed.map(element => keyCache.decode(element, anySupport))) ++
+        added.map(element => keyCache.decode(element, anySupport))
       }
-      new ReplicatedSetImpl(anySupport, updatedValue)
+      new ReplicatedSetImpl(anySupport, updatedValue, keyCache = keyCache)
   }
 
   override def toString: String = s"ReplicatedSet(${values.mkString(",")})"
 
 }
+
+private[kalix] object ReplicatedSetImpl {
+
+  /**
+   * Records changes to a set relative to its current values, which are only copied once the changes are complete.
+   * Follows the same rules for the delta as the single element operations of the set.
+   */
+  final class Mutator[E] private[ReplicatedSetImpl] (
+      anySupport: AnySupport,
+      keyCache: EncodedKeyCache[E],
+      original: ReplicatedSetImpl[E],
+      values: Set[E],
+      initialAdded: Set[E],
+      initialRemoved: Set[E],
+      initialCleared: Boolean)
+      extends ReplicatedSet.Mutator[E] {
+
+    // values is the base, the current elements are the base without removedValues plus addedValues
+    private var baseCleared = false
+    private val addedValues = mutable.HashSet.empty[E]
+    private val removedValues = mutable.HashSet.empty[E]
+    private var cleared = initialCleared
+    private val added = mutable.HashSet.from(initialAdded)
+    private val removed = mutable.HashSet.from(initialRemoved)
+    private var changed = false
+    private var closed = false
+
+    private def checkOpen(): Unit =
+      if (closed) throw new IllegalStateException("ReplicatedSet mutator used after mutate has returned")
+
+    private def inBase(element: E): Boolean = !baseCleared && values.contains(element)
+
+    override def size: Int = {
+      checkOpen()
+      (if (baseCleared) 0 else values.size) - removedValues.size + addedValues.size
+    }
+
+    override def contains(element: E): Boolean = {
+      checkOpen()
+      addedValues.contains(element) || (inBase(element) && !removedValues.contains(element))
+    }
+
+    override def add(element: E): Boolean =
+      if (contains(element)) false
+      else {
+        if (inBase(element)) removedValues -= element else addedValues += element
+        if (!removed.remove(element)) added += element
+        changed = true
+        true
+      }
+
+    override def remove(element: E): Boolean =
+      if (!contains(element)) false
+      else {
+        if (size == 1) clear() // just the to-be-removed element
+        else {
+          if (!addedValues.remove(element)) removedValues += element
+          if (!added.remove(element)) removed += element
+          changed = true
+        }
+        true
+      }
+
+    /** for Scala SDK */
+    def addAll(elements: Iterable[E]): Unit = elements.foreach(add)
+
+    override def addAll(elements: java.util.Collection[E]): Unit = addAll(elements.asScala)
+
+    /** for Scala SDK */
+    def removeAll(elements: Iterable[E]): Unit = elements.foreach(remove)
+
+    override def removeAll(elements: java.util.Collection[E]): Unit = removeAll(elements.asScala)
+
+    override def clear(): Unit = {
+      checkOpen()
+      baseCleared = true
+      addedValues.clear()
+      removedValues.clear()
+      added.clear()
+      removed.clear()
+      cleared = true
+      changed = true
+    }
+
+    private[ReplicatedSetImpl] def close(): Unit = closed = true
+
+    private[ReplicatedSetImpl] def result(): ReplicatedSetImpl[E] =
+      if (!changed) original
+      else {
+        val newValues =
+          if (baseCleared) addedValues.toSet
+          else (values -- removedValues) ++ addedValues
+        new ReplicatedSetImpl(anySupport, newValues, added.toSet, removed.toSet, cleared, keyCache)
+      }
+  }
+}
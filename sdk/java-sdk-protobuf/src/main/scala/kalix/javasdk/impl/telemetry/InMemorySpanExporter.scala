@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.telemetry
+
+import io.opentelemetry.sdk.common.CompletableResultCode
+import io.opentelemetry.sdk.trace.`export`.SpanExporter
+import io.opentelemetry.sdk.trace.data.SpanData
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import scala.jdk.CollectionConverters._
+
+/**
+ * Keeps finished spans in memory instead of sending them to a collector. Used to measure the tracing overhead on the
+ * command path without depending on a running collector.
+ *
+ * INTERNAL API
+ */
+private[kalix] final class InMemorySpanExporter extends SpanExporter {
+
+  private val spans = new ConcurrentLinkedQueue[SpanData]()
+  private val exportCalls = new AtomicLong()
+  private val stopped = new AtomicBoolean(false)
+
+  override def `export`(batch: java.util.Collection[SpanData]): CompletableResultCode =
+    if (stopped.get()) CompletableResultCode.ofFailure()
+    else {
+      exportCalls.incrementAndGet()
+      spans.addAll(batch)
+      CompletableResultCode.ofSuccess()
+    }
+
+  override def flush(): CompletableResultCode = CompletableResultCode.ofSuccess()
+
+  override def shutdown(): CompletableResultCode = {
+    stopped.set(true)
+    CompletableResultCode.ofSuccess()
+  }
+
+  /** All spans exported so far, in export order */
+  def finishedSpans: Seq[SpanData] = spans.asScala.toVector
+
+  /** Number of times the span processor called `export`, each call carrying one or more spans */
+  def exportCallCount: Long = exportCalls.get()
+
+  def reset(): Unit = {
+    spans.clear()
+    exportCalls.set(0)
+  }
+}
@@ -20,9 +20,15 @@ import io.opentelemetry.context.propagation.TextMapSetter
 import io.opentelemetry.context.{ Context => OtelContext }
 import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter
 import io.opentelemetry.sdk.OpenTelemetrySdk
+import io.opentelemetry.sdk.common.CompletableResultCode
 import io.opentelemetry.sdk.resources.Resource
+import io.opentelemetry.sdk.trace.ReadWriteSpan
+import io.opentelemetry.sdk.trace.ReadableSpan
 import io.opentelemetry.sdk.trace.SdkTracerProvider
+import io.opentelemetry.sdk.trace.SpanProcessor
+import io.opentelemetry.sdk.trace.`export`.BatchSpanProcessor
 import io.opentelemetry.sdk.trace.`export`.SimpleSpanProcessor
+import io.opentelemetry.sdk.trace.`export`.SpanExporter
 import io.opentelemetry.semconv.ServiceAttributes
 import kalix.javasdk.Metadata
 import kalix.javasdk.impl.MetadataImpl
@@ -70,6 +76,18 @@ final class Telemetry(system: ActorSystem) extends Extension {
 
   private val collectorEndpointSDK = system.settings.config.getString(TraceInstrumentation.TRACING_ENDPOINT)
 
+  private val tracingConfig = system.settings.config.getConfig(TraceInstrumentation.TRACING_CONFIG)
+
+  // one exporter and span processor for all components, created when the first instrumentation is requested
+  @volatile private var sharedSpanProcessor: Option[SpanProcessor] = None
+
+  /**
+   * Receives the finished spans when `kalix.telemetry.tracing.exporter` is set to `in-memory`.
+   *
+   * INTERNAL API
+   */
+  private[kalix] lazy val inMemorySpanExporter: InMemorySpanExporter = new InMemorySpanExporter
+
   implicit val ec: ExecutionContext = system.dispatcher
 
   /**
@@ -94,16 +112,76 @@ final class Telemetry(system: ActorSystem) extends Extension {
       NoOpInstrumentation
     } else {
       logger.debug("Instrumentation enabled. Set collector endpoint to [{}].", collectorEndpoint)
-      new TraceInstrumentation(collectorEndpoint, componentName, system, componentCategory)
+      new TraceInstrumentation(spanProcessor(collectorEndpoint), componentName, system, componentCategory)
+    }
+  }
+
+  private def spanProcessor(collectorEndpoint: String): SpanProcessor = synchronized {
+    sharedSpanProcessor match {
+      case Some(processor) => processor
+      case None =>
+        val exporter: SpanExporter = tracingConfig.getString("exporter") match {
+          case "otlp"      => OtlpGrpcSpanExporter.builder().setEndpoint(collectorEndpoint).build()
+          case "in-memory" => inMemorySpanExporter
+          case other =>
+            throw new IllegalArgumentException(
+              s"Unknown tracing exporter [$other], must be one of [otlp, in-memory] in [${TraceInstrumentation.TRACING_CONFIG}.exporter]")
+        }
+
+        val processor = tracingConfig.getString("span-processor") match {
+          case "batch" =>
+            val batchConfig = tracingConfig.getConfig("batch")
+            BatchSpanProcessor
+              .builder(exporter)
+              .setMaxQueueSize(batchConfig.getInt("max-queue-size"))
+              .setMaxExportBatchSize(batchConfig.getInt("max-export-batch-size"))
+              .setScheduleDelay(batchConfig.getDuration("schedule-delay"))
+              .setExporterTimeout(batchConfig.getDuration("export-timeout"))
+              .build()
+          case "simple" => SimpleSpanProcessor.create(exporter)
+          case other =>
+            throw new IllegalArgumentException(
+              s"Unknown span processor [$other], must be one of [batch, simple] in [${TraceInstrumentation.TRACING_CONFIG}.span-processor]")
+        }
+        logger.debug(
+          "Created shared span processor [{}] with exporter [{}].",
+          tracingConfig.getString("span-processor"),
+          tracingConfig.getString("exporter"))
+
+        // flushes the spans still queued when the system terminates
+        system.registerOnTermination(processor.close())
+        val shared = new SharedSpanProcessor(processor)
+        sharedSpanProcessor = Some(shared)
+        shared
     }
   }
 }
 
+/**
+ * Span processor shared by the tracer providers of all components. Each component keeps its own provider (and thereby
+ * its own `service.name` resource), closing one of them must not stop the export for the others, so shutting down is
+ * left to [[Telemetry]] when the actor system terminates.
+ */
+private final class SharedSpanProcessor(delegate: SpanProcessor) extends SpanProcessor {
+
+  override def onStart(parentContext: OtelContext, span: ReadWriteSpan): Unit = delegate.onStart(parentContext, span)
+
+  override def isStartRequired: Boolean = delegate.isStartRequired
+
+  override def onEnd(span: ReadableSpan): Unit = delegate.onEnd(span)
+
+  override def isEndRequired: Boolean = delegate.isEndRequired
+
+  override def forceFlush(): CompletableResultCode = delegate.forceFlush()
+
+  override def shutdown(): CompletableResultCode = CompletableResultCode.ofSuccess()
+}
+
 trait Instrumentation {
 
-  def buildSpan(service: Service, command: Command): Option[Span]
+  def buildSpan(service: Service, command: Command, metadata: MetadataImpl): Option[Span]
 
-  def buildSpan(service: Service, command: ActionCommand): Option[Span]
+  def buildSpan(service: Service, command: ActionCommand, metadata: MetadataImpl): Option[Span]
 
   def getTracer: Tracer
 
@@ -113,7 +191,8 @@ private[kalix] object TraceInstrumentation {
 
   val TRACE_PARENT_KEY = "traceparent"
   val TRACE_STATE_KEY = "tracestate"
-  val TRACING_ENDPOINT = "kalix.telemetry.tracing.collector-endpoint"
+  val TRACING_CONFIG = "kalix.telemetry.tracing"
+  val TRACING_ENDPOINT = s"$TRACING_CONFIG.collector-endpoint"
 
   private val logger: Logger = LoggerFactory.getLogger(getClass)
 
@@ -133,7 +212,7 @@ private[kalix] object TraceInstrumentation {
 }
 
 private final class TraceInstrumentation(
-    collectorEndpoint: String,
+    spanProcessor: SpanProcessor,
     componentName: String,
     system: ActorSystem,
     componentCategory: ComponentCategory)
@@ -149,12 +228,7 @@ private final class TraceInstrumentation(
         Resource.create(Attributes.of(ServiceAttributes.SERVICE_NAME, s"$tracePrefix($componentName)")))
     val sdkTracerProvider = SdkTracerProvider
       .builder()
-      .addSpanProcessor(
-        SimpleSpanProcessor.create(
-          OtlpGrpcSpanExporter
-            .builder()
-            .setEndpoint(collectorEndpoint)
-            .build()))
+      .addSpanProcessor(spanProcessor)
       .setResource(resource)
       .build()
 
@@ -171,12 +245,13 @@ private final class TraceInstrumentation(
    * Creates a span if it finds a trace parent in the command's metadata
    * @param service
    * @param command
+   * @param metadata
+   *   the command metadata, shared with the command context
    * @return
    */
-  override def buildSpan(service: Service, command: Command): Option[Span] = {
+  override def buildSpan(service: Service, command: Command, metadata: MetadataImpl): Option[Span] = {
     if (logger.isTraceEnabled) logger.trace("Building span for command [{}].", command)
-    val metadata = MetadataImpl.of(command.metadata.map(_.entries).getOrElse(Nil))
-    if (metadata.get(TRACE_PARENT_KEY).isPresent) {
+    if (metadata.traceParentScala.isDefined) {
       if (logger.isTraceEnabled) logger.trace("`traceparent` found")
 
       val context = openTelemetry.getPropagators.getTextMapPropagator
@@ -199,11 +274,10 @@ private final class TraceInstrumentation(
     }
   }
 
-  override def buildSpan(service: Service, command: ActionCommand): Option[Span] = {
+  override def buildSpan(service: Service, command: ActionCommand, metadata: MetadataImpl): Option[Span] = {
     if (logger.isTraceEnabled) logger.trace("Building span for action command [{}].", command)
 
-    val metadata = MetadataImpl.of(command.metadata.map(_.entries).getOrElse(Nil))
-    if (metadata.get(TRACE_PARENT_KEY).isPresent) {
+    if (metadata.traceParentScala.isDefined) {
       if (logger.isTraceEnabled) logger.trace("`traceparent` found")
 
       val context = openTelemetry.getPropagators.getTextMapPropagator
@@ -230,9 +304,9 @@ private final class TraceInstrumentation(
 
 private object NoOpInstrumentation extends Instrumentation {
 
-  override def buildSpan(service: Service, command: Command): Option[Span] = None
+  override def buildSpan(service: Service, command: Command, metadata: MetadataImpl): Option[Span] = None
 
-  override def buildSpan(service: Service, command: ActionCommand): Option[Span] = None
+  override def buildSpan(service: Service, command: ActionCommand, metadata: MetadataImpl): Option[Span] = None
 
   override def getTracer: Tracer = OpenTelemetry.noop().getTracer("noop")
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.timer
+
+import java.util.concurrent.atomic.LongAdder
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration.FiniteDuration
+import scala.jdk.DurationConverters._
+import scala.util.Try
+
+import akka.Done
+import akka.actor.ActorSystem
+import akka.actor.ClassicActorSystemProvider
+import akka.actor.ExtendedActorSystem
+import akka.actor.Extension
+import akka.actor.ExtensionId
+import akka.actor.ExtensionIdProvider
+import akka.grpc.scaladsl.SingleResponseRequestBuilder
+import com.google.protobuf.wrappers.StringValue
+import kalix.javasdk.impl.GrpcClients
+import kalix.timers.timers.SingleTimer
+import kalix.timers.timers.TimerService
+import kalix.timers.timers.TimerServiceClient
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+private[kalix] object TimerRegistrations extends ExtensionId[TimerRegistrations] with ExtensionIdProvider {
+  override def get(system: ActorSystem): TimerRegistrations = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): TimerRegistrations = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): TimerRegistrations = {
+    val window = system.settings.config.getDuration("kalix.timer.coalesce-window").toScala
+    new TimerRegistrations(system, window, new ProxyTimerService(system))
+  }
+
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  type Headers = Seq[(String, String)]
+
+  sealed trait TimerOperation {
+    def name: String
+  }
+  final case class AddTimer(timer: SingleTimer) extends TimerOperation {
+    override def name: String = timer.name
+  }
+  final case class RemoveTimer(name: String) extends TimerOperation
+
+  /**
+   * The calls to the timer service of the runtime, one operation per call since the protocol has no bulk operations.
+   */
+  trait TimerServiceCalls {
+    def send(operation: TimerOperation, headers: Headers): Future[Done]
+  }
+
+  private final class ProxyTimerService(system: ActorSystem) extends TimerServiceCalls {
+    private implicit val ec: ExecutionContext = ExecutionContext.parasitic
+
+    // looked up on first use, the runtime address is only known after discovery
+    private lazy val client =
+      GrpcClients(system).getProxyGrpcClient(classOf[TimerService]).asInstanceOf[TimerServiceClient]
+
+    override def send(operation: TimerOperation, headers: Headers): Future[Done] =
+      operation match {
+        case AddTimer(timer)   => withHeaders(client.addSingle(), headers).invoke(timer).map(_ => Done)
+        case RemoveTimer(name) => withHeaders(client.remove(), headers).invoke(StringValue(name)).map(_ => Done)
+      }
+
+    private def withHeaders[I, O](
+        callBuilder: SingleResponseRequestBuilder[I, O],
+        headers: Headers): SingleResponseRequestBuilder[I, O] =
+      headers.foldLeft(callBuilder) { case (builder, (key, value)) => builder.addHeader(key, value) }
+  }
+
+  private final class Pending(var operation: TimerOperation, var headers: Headers) {
+    var promises: List[Promise[Done]] = Nil
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Sends timer registrations and cancellations to the runtime. With a coalesce window, operations are collected for the
+ * duration of the window and only the last operation for each timer name is sent, since a registration replaces any
+ * earlier timer with the same name and a cancellation removes it. The futures of superseded operations complete with
+ * the outcome of the operation that replaced them.
+ */
+private[kalix] final class TimerRegistrations(
+    system: ActorSystem,
+    coalesceWindow: FiniteDuration,
+    timerService: TimerRegistrations.TimerServiceCalls)
+    extends Extension {
+  import TimerRegistrations._
+
+  private val log = LoggerFactory.getLogger(classOf[TimerRegistrations])
+
+  // guarded by this
+  private var pending = new java.util.LinkedHashMap[String, Pending]()
+  private var flushScheduled = false
+
+  private val sentCounter = new LongAdder
+  private val coalescedCounter = new LongAdder
+
+  /** Number of calls sent to the timer service */
+  def sent: Long = sentCounter.sum()
+
+  /** Number of operations that did not need a call of their own, because a later one for the same timer replaced them */
+  def coalesced: Long = coalescedCounter.sum()
+
+  def submit(operation: TimerOperation, headers: Headers): Future[Done] =
+    if (coalesceWindow.length == 0) send(operation, headers)
+    else {
+      val promise = Promise[Done]()
+      enqueue(operation, headers, promise)
+      promise.future
+    }
+
+  def submitAll(operations: Seq[TimerOperation], headers: Headers): Future[Done] =
+    if (coalesceWindow.length == 0) {
+      implicit val ec: ExecutionContext = ExecutionContext.parasitic
+      Future.traverse(operations)(send(_, headers)).map(_ => Done)
+    } else {
+      val promises = operations.map { operation =>
+        val promise = Promise[Done]()
+        enqueue(operation, headers, promise)
+        promise
+      }
+      implicit val ec: ExecutionContext = ExecutionContext.parasitic
+      Future.traverse(promises)(_.future).map(_ => Done)
+    }
+
+  private def send(operation: TimerOperation, headers: Headers): Future[Done] = {
+    sentCounter.increment()
+    try {
+      timerService.send(operation, headers)
+    } catch {
+      case e: Exception => Future.failed(e)
+    }
+  }
+
+  private def enqueue(operation: TimerOperation, headers: Headers, promise: Promise[Done]): Unit = {
+    val scheduleFlush = synchronized {
+      val existing = pending.get(operation.name)
+      val entry =
+        if (existing eq null) {
+          val created = new Pending(operation, headers)
+          pending.put(operation.name, created)
+          created
+        } else {
+          coalescedCounter.increment()
+          existing.operation = operation
+          existing.headers = headers
+          existing
+        }
+      entry.promises = promise :: entry.promises
+      if (flushScheduled) false
+      else {
+        flushScheduled = true
+        true
+      }
+    }
+    if (scheduleFlush)
+      system.scheduler.scheduleOnce(coalesceWindow)(flush())(system.dispatcher)
+  }
+
+  private def flush(): Unit = {
+    val toSend = synchronized {
+      val current = pending
+      pending = new java.util.LinkedHashMap[String, Pending]()
+      flushScheduled = false
+      current
+    }
+    if (log.isDebugEnabled)
+      log.debug("Sending [{}] timer operations, [{}] coalesced so far", toSend.size, coalesced)
+
+    toSend.values().forEach { entry =>
+      val promises = entry.promises
+      send(entry.operation, entry.headers).onComplete { (result: Try[Done]) =>
+        promises.foreach(_.tryComplete(result))
+      }(ExecutionContext.parasitic)
+    }
+  }
+}
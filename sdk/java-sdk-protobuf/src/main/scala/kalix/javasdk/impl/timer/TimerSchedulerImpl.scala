@@ -12,21 +12,19 @@ import scala.jdk.FutureConverters.FutureOps
 
 import akka.Done
 import akka.actor.ActorSystem
-import akka.grpc.scaladsl.SingleResponseRequestBuilder
 import com.google.protobuf.any.{ Any => ScalaPbAny }
 import com.google.protobuf.duration.{ Duration => ProtoDuration }
-import com.google.protobuf.wrappers.StringValue
 import kalix.javasdk.DeferredCall
 import kalix.javasdk.Metadata
-import kalix.javasdk.impl.GrpcClients
 import kalix.javasdk.impl.GrpcDeferredCall
 import kalix.javasdk.impl.MessageCodec
 import kalix.javasdk.impl.RestDeferredCall
+import kalix.javasdk.impl.timer.TimerRegistrations.AddTimer
+import kalix.javasdk.impl.timer.TimerRegistrations.RemoveTimer
+import kalix.javasdk.timer.SingleTimerRequest
 import kalix.javasdk.timer.TimerScheduler
 import kalix.timers.timers.Call
 import kalix.timers.timers.SingleTimer
-import kalix.timers.timers.TimerService
-import kalix.timers.timers.TimerServiceClient
 
 /** INTERNAL API */
 private[kalix] final class TimerSchedulerImpl(
@@ -35,6 +33,12 @@ private[kalix] final class TimerSchedulerImpl(
     val metadata: Metadata)
     extends TimerScheduler {
 
+  private lazy val registrations = TimerRegistrations(system)
+
+  // only text entries are passed on as headers
+  private lazy val headers: TimerRegistrations.Headers =
+    metadata.asScala.collect { case entry if entry.isText => entry.getKey -> entry.getValue }.toVector
+
   override def startSingleTimer[I, O](
       name: String,
       delay: Duration,
@@ -45,17 +49,31 @@ private[kalix] final class TimerSchedulerImpl(
       name: String,
       delay: Duration,
       maxRetries: Int,
-      deferredCall: DeferredCall[I, O]): CompletionStage[Done] = {
-    val timerServiceClient =
-      GrpcClients(system).getProxyGrpcClient(classOf[TimerService]).asInstanceOf[TimerServiceClient]
+      deferredCall: DeferredCall[I, O]): CompletionStage[Done] =
+    registrations.submit(AddTimer(singleTimer(name, delay, maxRetries, deferredCall)), headers).asJava
 
+  override def startSingleTimers(timers: java.util.List[SingleTimerRequest]): CompletionStage[Done] = {
+    val operations = timers.asScala.iterator.map { timer =>
+      AddTimer(singleTimer(timer.name, timer.delay, timer.maxRetries, timer.deferredCall))
+    }.toVector
+    registrations.submitAll(operations, headers).asJava
+  }
+
+  def cancel(name: String): CompletionStage[Done] =
+    registrations.submit(RemoveTimer(name), headers).asJava
+
+  private def singleTimer(
+      name: String,
+      delay: Duration,
+      maxRetries: Int,
+      deferredCall: DeferredCall[_, _]): SingleTimer = {
     val call = deferredCall match {
-      case grpcDeferredCall: GrpcDeferredCall[I, O] =>
+      case grpcDeferredCall: GrpcDeferredCall[_, _] =>
         Call(
           grpcDeferredCall.fullServiceName,
           grpcDeferredCall.methodName,
           Some(messageCodec.encodeScala(grpcDeferredCall.message)))
-      case restDeferredCall: RestDeferredCall[I, O] =>
+      case restDeferredCall: RestDeferredCall[_, _] =>
         Call(
           restDeferredCall.fullServiceName,
           restDeferredCall.methodName,
@@ -65,23 +83,7 @@ private[kalix] final class TimerSchedulerImpl(
         throw new IllegalStateException("Unknown DeferredCall implementation")
     }
 
-    val singleTimer = SingleTimer(name, Some(call), Some(ProtoDuration(delay)), maxRetries)
-    addHeaders(timerServiceClient.addSingle(), metadata).invoke(singleTimer).asJava.thenApply(_ => Done)
-  }
-
-  def cancel(name: String): CompletionStage[Done] = {
-    val timerServiceClient =
-      GrpcClients(system).getProxyGrpcClient(classOf[TimerService]).asInstanceOf[TimerServiceClient]
-    addHeaders(timerServiceClient.remove(), metadata).invoke(StringValue(name)).asJava.thenApply(_ => Done)
-  }
-
-  private def addHeaders[I, O](
-      callBuilder: SingleResponseRequestBuilder[I, O],
-      metadata: Metadata): SingleResponseRequestBuilder[I, O] = {
-    metadata.asScala.foldLeft(callBuilder) { case (builder, entry) =>
-      if (entry.isText) builder.addHeader(entry.getKey, entry.getValue)
-      else builder
-    }
+    SingleTimer(name, Some(call), Some(ProtoDuration(delay)), maxRetries)
   }
 
 }
@@ -7,30 +7,23 @@ package kalix.javasdk.impl.valueentity
 import akka.NotUsed
 import akka.actor.ActorSystem
 import akka.stream.scaladsl.{ Flow, Source }
-import io.grpc.Status
 import kalix.javasdk.KalixRunner.Configuration
-import kalix.javasdk.impl.ErrorHandling.BadRequestException
 import kalix.javasdk.impl.telemetry.{ Instrumentation, Telemetry, ValueEntityCategory }
 import kalix.protocol.component.Failure
-import org.slf4j.{ LoggerFactory, MDC }
-
-import scala.util.control.NonFatal
+import org.slf4j.LoggerFactory
 
 // FIXME these don't seem to be 'public API', more internals?
 import com.google.protobuf.Descriptors
 import kalix.javasdk.Metadata
 import kalix.javasdk.impl._
-import kalix.javasdk.impl.effect.{ EffectSupport, ErrorReplyImpl, MessageReplyImpl }
-import kalix.javasdk.impl.valueentity.ValueEntityEffectImpl.{ DeleteEntity, UpdateState }
-import kalix.javasdk.impl.valueentity.ValueEntityRouter.CommandResult
 import kalix.javasdk.valueentity._
-import kalix.protocol.value_entity.ValueEntityAction.Action.{ Delete, Update }
+import kalix.protocol.value_entity.ValueEntityAction.Action.Delete
 import kalix.protocol.value_entity.ValueEntityStreamIn.Message.{
   Command => InCommand,
   Empty => InEmpty,
   Init => InInit
 }
-import kalix.protocol.value_entity.ValueEntityStreamOut.Message.{ Failure => OutFailure, Reply => OutReply }
+import kalix.protocol.value_entity.ValueEntityStreamOut.Message.{ Failure => OutFailure }
 import kalix.protocol.value_entity._
 
 final class ValueEntityService(
@@ -80,6 +73,9 @@ final class ValueEntitiesImpl(
   private val pbCleanupDeletedValueEntityAfter =
     Some(com.google.protobuf.duration.Duration(configuration.cleanupDeletedValueEntityAfter))
 
+  // the same for every delete, so built once
+  private val deleteAction = Some(ValueEntityAction(Delete(ValueEntityDelete(pbCleanupDeletedValueEntityAfter))))
+
   /**
    * One stream will be established per active entity. Once established, the first message sent will be Init, which
    * contains the entity ID, and, a state if the entity has previously persisted one. Once the Init message is sent, one
@@ -128,6 +124,14 @@ final class ValueEntitiesImpl(
         throw new IllegalStateException("ValueEntityInitState is mandatory")
     }
 
+    val processor = new ValueEntityCommandProcessor(
+      service,
+      router,
+      thisEntityId,
+      instrumentations(service.serviceName),
+      deleteAction,
+      system)
+
     Flow[ValueEntityStreamIn]
       .map(_.message)
       .map {
@@ -138,69 +142,7 @@ final class ValueEntitiesImpl(
           throw ProtocolException(command, "No command payload for Value entity")
 
         case InCommand(command) =>
-          val metadata = MetadataImpl.of(command.metadata.map(_.entries.toVector).getOrElse(Nil))
-
-          if (log.isTraceEnabled) log.trace("Metadata entries [{}].", metadata.entries)
-          val span = instrumentations(service.serviceName).buildSpan(service, command)
-          span.foreach(s => MDC.put(Telemetry.TRACE_ID, s.getSpanContext.getTraceId))
-          try {
-            val cmd =
-              service.messageCodec.decodeMessage(
-                command.payload.getOrElse(throw ProtocolException(command, "No command payload")))
-            val context =
-              new CommandContextImpl(thisEntityId, command.name, command.id, metadata, system)
-
-            val CommandResult(effect: ValueEntityEffectImpl[_]) =
-              try {
-                router._internalHandleCommand(command.name, cmd, context)
-              } catch {
-                case BadRequestException(msg) =>
-                  CommandResult(new ValueEntityEffectImpl[Any].error(msg, Status.Code.INVALID_ARGUMENT))
-                case e: EntityException => throw e
-                case NonFatal(error) =>
-                  throw EntityException(command, s"Unexpected failure: $error", Some(error))
-              } finally {
-                context.deactivate() // Very important!
-              }
-
-            val serializedSecondaryEffect = effect.secondaryEffect match {
-              case MessageReplyImpl(message, metadata, sideEffects) =>
-                MessageReplyImpl(service.messageCodec.encodeJava(message), metadata, sideEffects)
-              case other => other
-            }
-
-            val clientAction =
-              serializedSecondaryEffect.replyToClientAction(service.messageCodec, command.id)
-
-            serializedSecondaryEffect match {
-              case _: ErrorReplyImpl[_] =>
-                ValueEntityStreamOut(OutReply(ValueEntityReply(commandId = command.id, clientAction = clientAction)))
-
-              case _ => // non-error
-                val action: Option[ValueEntityAction] = effect.primaryEffect match {
-                  case DeleteEntity =>
-                    Some(ValueEntityAction(Delete(ValueEntityDelete(pbCleanupDeletedValueEntityAfter))))
-                  case UpdateState(newState) =>
-                    val newStateScalaPbAny = service.messageCodec.encodeScala(newState)
-                    Some(ValueEntityAction(Update(ValueEntityUpdate(Some(newStateScalaPbAny)))))
-                  case _ =>
-                    None
-                }
-
-                ValueEntityStreamOut(
-                  OutReply(
-                    ValueEntityReply(
-                      command.id,
-                      clientAction,
-                      EffectSupport.sideEffectsFrom(service.messageCodec, serializedSecondaryEffect),
-                      action)))
-            }
-          } finally {
-            span.foreach { s =>
-              MDC.remove(Telemetry.TRACE_ID)
-              s.end()
-            }
-          }
+          processor.process(command)
 
         case InInit(_) =>
           throw ProtocolException(init, "Value entity already initiated")
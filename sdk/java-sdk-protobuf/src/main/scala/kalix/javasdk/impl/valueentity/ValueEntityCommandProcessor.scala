@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.valueentity
+
+import scala.util.control.NonFatal
+
+import akka.actor.ActorSystem
+import io.grpc.Status
+import kalix.javasdk.impl.EntityExceptions.EntityException
+import kalix.javasdk.impl.EntityExceptions.ProtocolException
+import kalix.javasdk.impl.ErrorHandling.BadRequestException
+import kalix.javasdk.impl.MetadataImpl
+import kalix.javasdk.impl.effect.EffectSupport
+import kalix.javasdk.impl.effect.ErrorReplyImpl
+import kalix.javasdk.impl.effect.ForwardReplyImpl
+import kalix.javasdk.impl.effect.MessageReplyImpl
+import kalix.javasdk.impl.effect.NoSecondaryEffectImpl
+import kalix.javasdk.impl.telemetry.Instrumentation
+import kalix.javasdk.impl.telemetry.Telemetry
+import kalix.javasdk.impl.valueentity.ValueEntityEffectImpl.DeleteEntity
+import kalix.javasdk.impl.valueentity.ValueEntityEffectImpl.UpdateState
+import kalix.protocol.component
+import kalix.protocol.component.ClientAction
+import kalix.protocol.entity.Command
+import kalix.protocol.value_entity.ValueEntityAction
+import kalix.protocol.value_entity.ValueEntityAction.Action.Update
+import kalix.protocol.value_entity.ValueEntityReply
+import kalix.protocol.value_entity.ValueEntityStreamOut
+import kalix.protocol.value_entity.ValueEntityStreamOut.Message.{ Reply => OutReply }
+import kalix.protocol.value_entity.ValueEntityUpdate
+import org.slf4j.LoggerFactory
+import org.slf4j.MDC
+
+/**
+ * INTERNAL API
+ *
+ * Handles the commands of one value entity. The effect is turned into the reply for the runtime in one pass, without
+ * encoding the reply into a copy of the effect first.
+ */
+private[impl] final class ValueEntityCommandProcessor(
+    service: ValueEntityService,
+    router: ValueEntityRouter[_, _],
+    entityId: String,
+    instrumentation: Instrumentation,
+    deleteAction: Option[ValueEntityAction],
+    system: ActorSystem) {
+
+  private val log = LoggerFactory.getLogger(classOf[ValueEntitiesImpl])
+
+  private val messageCodec = service.messageCodec
+
+  def process(command: Command): ValueEntityStreamOut = {
+    val metadata = command.metadata match {
+      case Some(protocolMetadata) if protocolMetadata.entries.nonEmpty => MetadataImpl.of(protocolMetadata.entries)
+      case _                                                           => MetadataImpl.Empty
+    }
+
+    if (log.isTraceEnabled) log.trace("Metadata entries [{}].", metadata.entries)
+    val span = instrumentation.buildSpan(service, command, metadata).orNull
+    if (span ne null) MDC.put(Telemetry.TRACE_ID, span.getSpanContext.getTraceId)
+    try {
+      val payload = command.payload match {
+        case Some(payload) => payload
+        case None          => throw ProtocolException(command, "No command payload")
+      }
+      val cmd = messageCodec.decodeMessage(payload)
+      val context = new CommandContextImpl(entityId, command.name, command.id, metadata, system)
+
+      val effect: ValueEntityEffectImpl[_] =
+        try {
+          router._internalHandleCommandEffect(command.name, cmd, context)
+        } catch {
+          case BadRequestException(msg) =>
+            new ValueEntityEffectImpl[Any].error(msg, Status.Code.INVALID_ARGUMENT)
+          case e: EntityException => throw e
+          case NonFatal(error) =>
+            throw EntityException(command, s"Unexpected failure: $error", Some(error))
+        } finally {
+          context.deactivate() // Very important!
+        }
+
+      ValueEntityStreamOut(OutReply(toReply(command.id, effect)))
+    } finally {
+      if (span ne null) {
+        MDC.remove(Telemetry.TRACE_ID)
+        span.end()
+      }
+    }
+  }
+
+  private def toReply(commandId: Long, effect: ValueEntityEffectImpl[_]): ValueEntityReply =
+    effect.secondaryEffect match {
+      case MessageReplyImpl(message, metadata, sideEffects) =>
+        val reply = EffectSupport.asProtocol(messageCodec.encodeJavaAsScala(message), metadata)
+        ValueEntityReply(
+          commandId,
+          Some(ClientAction(ClientAction.Action.Reply(reply))),
+          EffectSupport.sideEffectsFrom(messageCodec, sideEffects),
+          stateAction(effect))
+
+      case forward: ForwardReplyImpl[_] =>
+        ValueEntityReply(
+          commandId,
+          Some(ClientAction(ClientAction.Action.Forward(EffectSupport.asProtocol(messageCodec, forward)))),
+          EffectSupport.sideEffectsFrom(messageCodec, forward.sideEffects),
+          stateAction(effect))
+
+      case ErrorReplyImpl(description, status, _) =>
+        val failure =
+          component.Failure(commandId, description, grpcStatusCode = status.map(_.value()).getOrElse(0))
+        ValueEntityReply(commandId = commandId, clientAction = Some(ClientAction(ClientAction.Action.Failure(failure))))
+
+      case NoSecondaryEffectImpl(_) =>
+        throw new RuntimeException("No reply or forward returned by command handler!")
+    }
+
+  private def stateAction(effect: ValueEntityEffectImpl[_]): Option[ValueEntityAction] =
+    effect.primaryEffect match {
+      case DeleteEntity => deleteAction
+      case UpdateState(newState) =>
+        Some(ValueEntityAction(Update(ValueEntityUpdate(Some(messageCodec.encodeScala(newState))))))
+      case _ => None
+    }
+}
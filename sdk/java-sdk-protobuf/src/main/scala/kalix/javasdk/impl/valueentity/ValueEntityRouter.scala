@@ -30,6 +30,9 @@ abstract class ValueEntityRouter[S, E <: ValueEntity[S]](protected val entity: E
 
   private var state: Option[S] = None
 
+  // the context passed to the entity, only wrapped again when a different context is used
+  private var commandContext: Optional[CommandContext] = Optional.empty()
+
   private def stateOrEmpty(): S = state match {
     case None =>
       val emptyState = entity.emptyState()
@@ -48,10 +51,19 @@ abstract class ValueEntityRouter[S, E <: ValueEntity[S]](protected val entity: E
 
   /** INTERNAL API */
   // "public" api against the impl/testkit
-  final def _internalHandleCommand(commandName: String, command: Any, context: CommandContext): CommandResult = {
+  final def _internalHandleCommand(commandName: String, command: Any, context: CommandContext): CommandResult =
+    CommandResult(_internalHandleCommandEffect(commandName, command, context))
+
+  /** INTERNAL API */
+  // same as _internalHandleCommand, without wrapping the effect
+  final def _internalHandleCommandEffect(
+      commandName: String,
+      command: Any,
+      context: CommandContext): ValueEntityEffectImpl[Any] = {
+    if (commandContext.orElse(null) ne context) commandContext = Optional.of(context)
     val commandEffect =
       try {
-        entity._internalSetCommandContext(Optional.of(context))
+        entity._internalSetCommandContext(commandContext)
         entity._internalSetCurrentState(stateOrEmpty())
         handleCommand(commandName, stateOrEmpty(), command, context)
           .asInstanceOf[ValueEntityEffectImpl[Any]]
@@ -77,7 +89,7 @@ abstract class ValueEntityRouter[S, E <: ValueEntity[S]](protected val entity: E
       }
     }
 
-    CommandResult(commandEffect)
+    commandEffect
   }
 
   protected def handleCommand(
@@ -5,9 +5,7 @@
 package kalix.javasdk.impl.view
 
 import akka.actor.ActorSystem
-import akka.stream.scaladsl.Source
 import com.google.protobuf.Descriptors
-import com.google.protobuf.any.{ Any => ScalaPbAny }
 import kalix.javasdk.Metadata
 import kalix.javasdk.impl.Service
 import kalix.javasdk.impl.ViewFactory
@@ -22,6 +20,9 @@ import org.slf4j.LoggerFactory
 import org.slf4j.MDC
 
 import java.util.Optional
+import java.util.concurrent.atomic.LongAccumulator
+import java.util.concurrent.atomic.LongAdder
+import scala.jdk.DurationConverters._
 import scala.jdk.OptionConverters._
 import scala.util.control.NonFatal
 
@@ -58,105 +59,180 @@ final class ViewService(
 
 object ViewsImpl {
   private val log = LoggerFactory.getLogger(classOf[ViewsImpl])
+
+  /** What an update did to the row of its subject. */
+  private sealed trait UpdateOutcome
+  private final case class Updated(state: Any) extends UpdateOutcome
+  private case object Deleted extends UpdateOutcome
+  private case object Ignored extends UpdateOutcome
+
+  private val IgnoredOut = pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(pv.Upsert(None)))
+
+  /**
+   * Number of updates and time spent handling them for one view, reported and reset at every log interval.
+   */
+  private final class UpdateMetrics {
+    private val updates = new LongAdder
+    private val totalNanos = new LongAdder
+    private val maxNanos = new LongAccumulator((a, b) => math.max(a, b), 0L)
+
+    def record(nanos: Long): Unit = {
+      updates.increment()
+      totalNanos.add(nanos)
+      maxNanos.accumulate(nanos)
+    }
+
+    def logAndReset(viewId: String, intervalNanos: Long): Unit = {
+      val count = updates.sumThenReset()
+      val total = totalNanos.sumThenReset()
+      val max = maxNanos.getThenReset()
+      if (count > 0)
+        log.debug(
+          "View [{}] handled [{}] updates/s, update latency avg [{}] µs, max [{}] µs",
+          viewId,
+          count * 1000000000L / intervalNanos,
+          total / count / 1000,
+          max / 1000)
+    }
+  }
 }
 
 /** INTERNAL API */
 final class ViewsImpl(system: ActorSystem, _services: Map[String, ViewService]) extends pv.Views {
-  import ViewsImpl.log
+  import ViewsImpl._
 
   private final val services = _services.iterator.toMap
 
+  private val viewConfig = system.settings.config.getConfig("kalix.view")
+
+  private val updateMetrics: Map[String, UpdateMetrics] = {
+    val interval = viewConfig.getDuration("metrics-log-interval")
+    if (!log.isDebugEnabled || interval.isZero) Map.empty
+    else {
+      val metrics = services.map { case (name, _) => name -> new UpdateMetrics }
+      system.scheduler.scheduleWithFixedDelay(interval.toScala, interval.toScala)(() =>
+        metrics.foreach { case (name, m) => m.logAndReset(services(name).viewId, interval.toNanos) })(
+        system.dispatcher)
+      metrics
+    }
+  }
+
   /**
    * Handle a full duplex streamed session. One stream will be established per incoming message to the view service.
    *
    * The first message is ReceiveEvent and contain the request metadata, including the service name and command name.
+   *
+   * Every ReceiveEvent on the stream is answered, in order, each with a new view handler.
    */
   override def handle(in: akka.stream.scaladsl.Source[pv.ViewStreamIn, akka.NotUsed])
       : akka.stream.scaladsl.Source[pv.ViewStreamOut, akka.NotUsed] =
     // FIXME: see kalix-proxy/issues/209 and kalix-proxy/issues/207
-    // It is currently only implemented to support one request (ReceiveEvent) with one response (Upsert).
+    // It is currently only implemented to support requests (ReceiveEvent) with one response (Upsert) each.
     // The intention, and reason for full-duplex streaming, is that there should be able to have an interaction
     // with two main types of operations, loads, and updates, and with
     // each load there is an associated continuation, which in turn may return more operations, including more loads,
     // and so on recursively.
-    in.prefixAndTail(1)
-      .flatMapConcat {
-        case (Seq(pv.ViewStreamIn(pv.ViewStreamIn.Message.Receive(receiveEvent), _)), _) =>
-          services.get(receiveEvent.serviceName) match {
-            case Some(service: ViewService) =>
-              if (!service.factory.isPresent)
-                throw new IllegalArgumentException(
-                  s"Unexpected call to service [${receiveEvent.serviceName}] with viewId [${service.viewId}]: " +
-                  "this view has `transform_updates=false` set, so updates should be handled entirely by the proxy " +
-                  "and not reach the user function")
-
-              // FIXME should we really create a new handler instance per incoming command ???
-              val handler = service.factory.get.create(new ViewContextImpl(service.viewId))
-
-              val state: Option[Any] =
-                receiveEvent.bySubjectLookupResult.flatMap(row =>
-                  row.value.map(scalaPb => service.messageCodec.decodeMessage(scalaPb)))
-
-              val commandName = receiveEvent.commandName
-              val msg = service.messageCodec.decodeMessage(receiveEvent.payload.get)
-              val metadata = MetadataImpl.of(receiveEvent.metadata.map(_.entries.toVector).getOrElse(Nil))
-              val addedToMDC = metadata.traceContext.traceId().toScala match {
-                case Some(traceId) =>
-                  MDC.put(Telemetry.TRACE_ID, traceId)
-                  true
-                case None => false
-              }
-
-              val context = new UpdateContextImpl(service.viewId, commandName, metadata)
-
-              val effect =
-                try {
-                  handler._internalHandleUpdate(state, msg, context)
-                } catch {
-                  case e: ViewException => throw e
-                  case NonFatal(error) =>
-                    throw ViewException(context, s"View unexpected failure: ${error.getMessage}", Some(error))
-                } finally {
-                  if (addedToMDC) MDC.remove(Telemetry.TRACE_ID)
-                }
-
-              effect match {
-                case ViewUpdateEffectImpl.Update(newState) =>
-                  if (newState == null)
-                    throw ViewException(context, "updateState with null state is not allowed.", None)
-                  val serializedState = ScalaPbAny.fromJavaProto(service.messageCodec.encodeJava(newState))
-                  val upsert = pv.Upsert(Some(pv.Row(value = Some(serializedState))))
-                  val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(upsert))
-                  Source.single(out)
-                case ViewUpdateEffectImpl.Delete =>
-                  val delete = pv.Delete()
-                  val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Delete(delete))
-                  Source.single(out)
-                case ViewUpdateEffectImpl.Ignore =>
-                  // ignore incoming event
-                  val upsert = pv.Upsert(None)
-                  val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(upsert))
-                  Source.single(out)
-                case ViewUpdateEffectImpl.Error(e) =>
-                  Source.failed(new RuntimeException(e))
-              }
-
-            case None =>
-              val errMsg = s"Unknown service: ${receiveEvent.serviceName}"
-              log.error(errMsg)
-              Source.failed(new RuntimeException(errMsg))
-          }
-
-        case (Seq(), _) =>
-          log.warn("View stream closed before init.")
-          Source.empty[pv.ViewStreamOut]
-
-        case (Seq(pv.ViewStreamIn(other, _)), _) =>
-          val errMsg =
-            s"Kalix protocol failure: expected ReceiveEvent message, but got ${other.getClass.getName}"
-          Source.failed(new RuntimeException(errMsg))
+    in.map {
+      case pv.ViewStreamIn(pv.ViewStreamIn.Message.Receive(receiveEvent), _) =>
+        handleReceiveEvent(receiveEvent)
+      case pv.ViewStreamIn(other, _) =>
+        throw new RuntimeException(
+          s"Kalix protocol failure: expected ReceiveEvent message, but got ${other.getClass.getName}")
+    }.async
+
+  private def handleReceiveEvent(receiveEvent: pv.ReceiveEvent): pv.ViewStreamOut = {
+    val service = serviceFor(receiveEvent)
+    val metadata = MetadataImpl.of(receiveEvent.metadata.map(_.entries).getOrElse(Nil))
+    toStreamOut(service, applyUpdate(service, receiveEvent, lookupResult(service, receiveEvent), metadata))
+  }
+
+  private def serviceFor(receiveEvent: pv.ReceiveEvent): ViewService =
+    services.get(receiveEvent.serviceName) match {
+      case Some(service: ViewService) =>
+        if (!service.factory.isPresent)
+          throw new IllegalArgumentException(
+            s"Unexpected call to service [${receiveEvent.serviceName}] with viewId [${service.viewId}]: " +
+            "this view has `transform_updates=false` set, so updates should be handled entirely by the proxy " +
+            "and not reach the user function")
+        service
+
+      case None =>
+        val errMsg = s"Unknown service: ${receiveEvent.serviceName}"
+        log.error(errMsg)
+        throw new RuntimeException(errMsg)
+    }
+
+  private def lookupResult(service: ViewService, receiveEvent: pv.ReceiveEvent): Option[Any] =
+    receiveEvent.bySubjectLookupResult.flatMap(row =>
+      row.value.map(scalaPb => service.messageCodec.decodeMessage(scalaPb)))
+
+  private def applyUpdate(
+      service: ViewService,
+      receiveEvent: pv.ReceiveEvent,
+      state: Option[Any],
+      metadata: MetadataImpl): UpdateOutcome = {
+    val start = System.nanoTime()
+    val handler = service.factory.get.create(new ViewContextImpl(service.viewId))
+    val outcome = updateView(service, handler, receiveEvent, state, metadata)
+    updateMetrics.get(receiveEvent.serviceName).foreach(_.record(System.nanoTime() - start))
+    outcome
+  }
+
+  private def updateView(
+      service: ViewService,
+      handler: ViewUpdateRouter,
+      receiveEvent: pv.ReceiveEvent,
+      state: Option[Any],
+      metadata: MetadataImpl): UpdateOutcome = {
+    val commandName = receiveEvent.commandName
+    val msg = service.messageCodec.decodeMessage(receiveEvent.payload.get)
+    val addedToMDC = metadata.traceContext.traceId().toScala match {
+      case Some(traceId) =>
+        MDC.put(Telemetry.TRACE_ID, traceId)
+        true
+      case None => false
+    }
+
+    val context = new UpdateContextImpl(service.viewId, commandName, metadata)
+
+    val effect =
+      try {
+        handler._internalHandleUpdate(state, msg, context)
+      } catch {
+        case e: ViewException => throw e
+        case NonFatal(error) =>
+          throw ViewException(context, s"View unexpected failure: ${error.getMessage}", Some(error))
+      } finally {
+        if (addedToMDC) MDC.remove(Telemetry.TRACE_ID)
       }
-      .async
+
+    effect match {
+      case ViewUpdateEffectImpl.Update(newState) =>
+        if (newState == null)
+          throw ViewException(context, "updateState with null state is not allowed.", None)
+        Updated(newState)
+      case ViewUpdateEffectImpl.Delete =>
+        Deleted
+      case ViewUpdateEffectImpl.Ignore =>
+        // ignore incoming event
+        Ignored
+      case ViewUpdateEffectImpl.Error(e) =>
+        throw new RuntimeException(e)
+    }
+  }
+
+  private def toStreamOut(service: ViewService, outcome: UpdateOutcome): pv.ViewStreamOut =
+    outcome match {
+      case Updated(newState) =>
+        val serializedState = service.messageCodec.encodeJavaAsScala(newState)
+        val upsert = pv.Upsert(Some(pv.Row(value = Some(serializedState))))
+        pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(upsert))
+      case Deleted =>
+        val delete = pv.Delete()
+        pv.ViewStreamOut(pv.ViewStreamOut.Message.Delete(delete))
+      case Ignored =>
+        IgnoredOut
+    }
 
   private final class UpdateContextImpl(
       override val viewId: String,
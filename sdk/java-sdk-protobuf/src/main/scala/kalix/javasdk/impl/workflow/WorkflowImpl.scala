@@ -10,6 +10,7 @@ import scala.util.control.NonFatal
 
 import akka.NotUsed
 import akka.actor.ActorSystem
+import akka.stream.OverflowStrategy
 import akka.stream.scaladsl.Flow
 import akka.stream.scaladsl.Source
 import com.google.protobuf.duration
@@ -56,7 +57,10 @@ import kalix.protocol.workflow_entity.{ Pause => ProtoPause }
 import kalix.protocol.workflow_entity.{ NoTransition => ProtoNoTransition }
 import org.slf4j.LoggerFactory
 import java.util.Optional
+import java.util.concurrent.atomic.LongAccumulator
+import java.util.concurrent.atomic.LongAdder
 
+import scala.jdk.DurationConverters._
 import scala.jdk.OptionConverters._
 
 import kalix.javasdk.workflow.AbstractWorkflow
@@ -103,6 +107,64 @@ final class WorkflowImpl(system: ActorSystem, val services: Map[String, Workflow
 
   private implicit val ec: ExecutionContext = system.dispatcher
   private final val log = LoggerFactory.getLogger(this.getClass)
+  private val workflowSettings = system.settings.config.getConfig("kalix.workflow")
+  private val validateDefinitionCaching = workflowSettings.getBoolean("validate-definition-caching")
+  private val stepParallelism = workflowSettings.getInt("step-parallelism")
+
+  private val stepMetrics: Map[String, StepMetrics] = {
+    val interval = workflowSettings.getDuration("metrics-log-interval")
+    if (!log.isDebugEnabled || interval.isZero) Map.empty
+    else {
+      val metrics = services.map { case (name, _) => name -> new StepMetrics(name) }
+      system.scheduler.scheduleWithFixedDelay(interval.toScala, interval.toScala)(() =>
+        metrics.values.foreach(_.logAndReset()))(system.dispatcher)
+      metrics
+    }
+  }
+
+  /**
+   * Time steps of one workflow waited for a free slot and time spent executing them, reported and reset at every log
+   * interval.
+   */
+  private final class StepMetrics(serviceName: String) {
+    private val queued = new LongAdder
+    private val queuedNanos = new LongAdder
+    private val maxQueuedNanos = new LongAccumulator((a, b) => math.max(a, b), 0L)
+    private val executed = new LongAdder
+    private val executedNanos = new LongAdder
+    private val maxExecutedNanos = new LongAccumulator((a, b) => math.max(a, b), 0L)
+
+    def recordQueued(nanos: Long): Unit = {
+      queued.increment()
+      queuedNanos.add(nanos)
+      maxQueuedNanos.accumulate(nanos)
+    }
+
+    def recordExecuted(nanos: Long): Unit = {
+      executed.increment()
+      executedNanos.add(nanos)
+      maxExecutedNanos.accumulate(nanos)
+    }
+
+    def logAndReset(): Unit = {
+      val queuedCount = queued.sumThenReset()
+      val queuedTotal = queuedNanos.sumThenReset()
+      val queuedMax = maxQueuedNanos.getThenReset()
+      val executedCount = executed.sumThenReset()
+      val executedTotal = executedNanos.sumThenReset()
+      val executedMax = maxExecutedNanos.getThenReset()
+      if (queuedCount > 0 && executedCount > 0)
+        log.debug(
+          "Workflow [{}] started [{}] steps, queueing delay avg [{}] µs, max [{}] µs, " +
+          "execution time avg [{}] µs, max [{}] µs",
+          serviceName,
+          queuedCount,
+          queuedTotal / queuedCount / 1000,
+          queuedMax / 1000,
+          executedTotal / executedCount / 1000,
+          executedMax / 1000)
+    }
+  }
 
   override def handle(in: Source[WorkflowStreamIn, NotUsed]): Source[WorkflowStreamOut, NotUsed] =
     in.prefixAndTail(1)
@@ -175,6 +237,7 @@ final class WorkflowImpl(system: ActorSystem, val services: Map[String, Workflow
       services.getOrElse(init.serviceName, throw ProtocolException(init, s"Service not found: ${init.serviceName}"))
     val router: WorkflowRouter[_, _] =
       service.factory.create(new WorkflowContextImpl(init.entityId, system))
+    router._internalValidateDefinitionCaching(validateDefinitionCaching)
     val workflowId = init.entityId
 
     val workflowConfig =
@@ -255,96 +318,113 @@ final class WorkflowImpl(system: ActorSystem, val services: Map[String, Workflow
       }
     }
 
-    val flow = Flow[WorkflowStreamIn]
-      .map(_.message)
-      .mapAsync(1) {
-
-        case InCommand(command) if workflowId != command.entityId =>
-          Future.failed(ProtocolException(command, "Receiving Workflow is not the intended recipient of command"))
-
-        case InCommand(command) if command.payload.isEmpty =>
-          Future.failed(ProtocolException(command, "No command payload for Workflow"))
-
-        case InCommand(command) =>
-          val metadata = MetadataImpl.of(command.metadata.map(_.entries.toVector).getOrElse(Nil))
-
-          val context = new CommandContextImpl(workflowId, command.name, command.id, metadata, system)
-          val timerScheduler = new TimerSchedulerImpl(service.messageCodec, system, context.componentCallMetadata)
-
-          val cmd =
-            service.messageCodec.decodeMessage(
-              command.payload.getOrElse(throw ProtocolException(command, "No command payload")))
-
-          val CommandResult(effect) =
-            try {
-              router._internalHandleCommand(command.name, cmd, context, timerScheduler)
-            } catch {
-              case BadRequestException(msg) =>
-                CommandResult(WorkflowEffectImpl[Any]().error(msg, Status.Code.INVALID_ARGUMENT))
-              case e: WorkflowException => throw e
-              case NonFatal(error) =>
-                throw WorkflowException(command, s"Unexpected failure: $error", Some(error))
-            } finally {
-              context.deactivate() // Very important!
-            }
+    val metrics = stepMetrics.get(init.serviceName)
 
-          Future.successful(toProtoEffect(effect, command.id))
-
-        case Step(executeStep) =>
-          val context =
-            new CommandContextImpl(workflowId, executeStep.stepName, executeStep.commandId, Metadata.EMPTY, system)
-          val timerScheduler = new TimerSchedulerImpl(service.messageCodec, system, context.componentCallMetadata)
-          val stepResponse =
-            try {
-              executeStep.userState.foreach { state =>
-                val decoded = service.messageCodec.decodeMessage(state)
-                router._internalSetInitState(decoded, finished = false) // here we know that workflow is still running
-              }
-              router._internalHandleStep(
-                executeStep.commandId,
-                executeStep.input,
-                executeStep.stepName,
-                service.messageCodec,
-                timerScheduler,
-                context,
-                system.dispatcher)
-            } catch {
-              case e: WorkflowException => throw e
-              case NonFatal(ex) =>
-                throw WorkflowException(
-                  s"unexpected exception [${ex.getMessage}] while executing step [${executeStep.stepName}]",
-                  Some(ex))
-            }
+    def handleMessage(message: WorkflowStreamIn.Message, receivedAt: Long): Future[WorkflowStreamOut] = message match {
+      case InCommand(command) if workflowId != command.entityId =>
+        Future.failed(ProtocolException(command, "Receiving Workflow is not the intended recipient of command"))
+
+      case InCommand(command) if command.payload.isEmpty =>
+        Future.failed(ProtocolException(command, "No command payload for Workflow"))
 
-          stepResponse.map { stp =>
-            WorkflowStreamOut(WorkflowStreamOut.Message.Response(stp))
+      case InCommand(command) =>
+        val metadata = MetadataImpl.of(command.metadata.map(_.entries).getOrElse(Nil))
+
+        val context = new CommandContextImpl(workflowId, command.name, command.id, metadata, system)
+        val timerScheduler = new TimerSchedulerImpl(service.messageCodec, system, context.componentCallMetadata)
+
+        val cmd =
+          service.messageCodec.decodeMessage(
+            command.payload.getOrElse(throw ProtocolException(command, "No command payload")))
+
+        val CommandResult(effect) =
+          try {
+            router._internalHandleCommand(command.name, cmd, context, timerScheduler)
+          } catch {
+            case BadRequestException(msg) =>
+              CommandResult(WorkflowEffectImpl[Any]().error(msg, Status.Code.INVALID_ARGUMENT))
+            case e: WorkflowException => throw e
+            case NonFatal(error) =>
+              throw WorkflowException(command, s"Unexpected failure: $error", Some(error))
+          } finally {
+            context.deactivate() // Very important!
           }
 
-        case Transition(cmd) =>
-          val CommandResult(effect) =
-            try {
-              router._internalGetNextStep(cmd.stepName, cmd.result.get, service.messageCodec)
-            } catch {
-              case e: WorkflowException => throw e
-              case NonFatal(ex) =>
-                throw WorkflowException(
-                  s"unexpected exception [${ex.getMessage}] while executing transition for step [${cmd.stepName}]",
-                  Some(ex))
+        Future.successful(toProtoEffect(effect, command.id))
+
+      case Step(executeStep) =>
+        val startedAt = System.nanoTime()
+        metrics.foreach(_.recordQueued(startedAt - receivedAt))
+        val context =
+          new CommandContextImpl(workflowId, executeStep.stepName, executeStep.commandId, Metadata.EMPTY, system)
+        val timerScheduler = new TimerSchedulerImpl(service.messageCodec, system, context.componentCallMetadata)
+        val stepResponse =
+          try {
+            executeStep.userState.foreach { state =>
+              val decoded = service.messageCodec.decodeMessage(state)
+              router._internalSetInitState(decoded, finished = false) // here we know that workflow is still running
             }
+            router._internalHandleStep(
+              executeStep.commandId,
+              executeStep.input,
+              executeStep.stepName,
+              service.messageCodec,
+              timerScheduler,
+              context,
+              system.dispatcher)
+          } catch {
+            case e: WorkflowException => throw e
+            case NonFatal(ex) =>
+              throw WorkflowException(
+                s"unexpected exception [${ex.getMessage}] while executing step [${executeStep.stepName}]",
+                Some(ex))
+          }
 
-          Future.successful(toProtoEffect(effect, cmd.commandId))
+        stepResponse.map { stp =>
+          metrics.foreach(_.recordExecuted(System.nanoTime() - startedAt))
+          WorkflowStreamOut(WorkflowStreamOut.Message.Response(stp))
+        }
 
-        case Init(_) =>
-          throw ProtocolException(init, "Workflow already initiated")
+      case Transition(cmd) =>
+        val CommandResult(effect) =
+          try {
+            router._internalGetNextStep(cmd.stepName, cmd.result.get, service.messageCodec)
+          } catch {
+            case e: WorkflowException => throw e
+            case NonFatal(ex) =>
+              throw WorkflowException(
+                s"unexpected exception [${ex.getMessage}] while executing transition for step [${cmd.stepName}]",
+                Some(ex))
+          }
 
-        case Empty =>
-          throw ProtocolException(init, "Workflow received empty/unknown message")
+        Future.successful(toProtoEffect(effect, cmd.commandId))
 
-        case _ =>
-          // ignore, UpdateState from the runtime and update this case when introducing replication to Kalix
-          // currently added to satisfy the compiler
-          Future.successful(WorkflowStreamOut(WorkflowStreamOut.Message.Empty))
-      }
+      case Init(_) =>
+        throw ProtocolException(init, "Workflow already initiated")
+
+      case Empty =>
+        throw ProtocolException(init, "Workflow received empty/unknown message")
+
+      case _ =>
+        // ignore, UpdateState from the runtime and update this case when introducing replication to Kalix
+        // currently added to satisfy the compiler
+        Future.successful(WorkflowStreamOut(WorkflowStreamOut.Message.Empty))
+    }
+
+    val flow =
+      if (stepParallelism == 1)
+        Flow[WorkflowStreamIn].mapAsync(1)(in => handleMessage(in.message, System.nanoTime()))
+      else
+        Flow[WorkflowStreamIn]
+          .map(in => (in.message, System.nanoTime()))
+          // time spent here waiting for a free slot is reported as step queueing delay
+          .buffer(stepParallelism, OverflowStrategy.backpressure)
+          // commands, transitions and the start of steps are handled by this one stage, one by one and in the order
+          // they arrive, so the router and its state are never used concurrently
+          .map((handleMessage _).tupled)
+          // only the futures of asynchronous steps are still running here, the answers that are already complete are
+          // emitted in the order they were handled, a step response as soon as its call completes
+          .mapAsyncUnordered(stepParallelism)(identity)
 
     (flow, workflowConfig)
   }
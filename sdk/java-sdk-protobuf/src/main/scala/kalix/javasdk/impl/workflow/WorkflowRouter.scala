@@ -27,6 +27,7 @@ import kalix.javasdk.impl.RestDeferredCall
 import kalix.javasdk.impl.WorkflowExceptions.WorkflowException
 import kalix.javasdk.impl.workflow.WorkflowRouter.CommandHandlerNotFound
 import kalix.javasdk.impl.workflow.WorkflowRouter.CommandResult
+import kalix.javasdk.impl.workflow.WorkflowRouter.CompiledDefinition
 import kalix.javasdk.impl.workflow.WorkflowRouter.WorkflowStepNotFound
 import kalix.javasdk.impl.workflow.WorkflowRouter.WorkflowStepNotSupported
 import kalix.javasdk.timer.TimerScheduler
@@ -55,14 +56,49 @@ object WorkflowRouter {
   final case class WorkflowStepNotSupported(stepName: String) extends RuntimeException {
     override def getMessage: String = stepName
   }
+
+  /**
+   * INTERNAL API
+   *
+   * A workflow definition built once for a workflow instance, with its steps indexed by name.
+   */
+  private[kalix] final class CompiledDefinition[S](val definition: WorkflowDef[S]) {
+    val stepsByName: Map[String, AbstractWorkflow.Step] =
+      definition.getSteps.asScala.iterator.map(step => step.name() -> step).toMap
+
+    // what the runtime and the step lookups see of a definition, step inputs are only compared by presence since
+    // user classes don't necessarily implement equals
+    val shape: Seq[Any] = definitionShape(definition)
+  }
+
+  private def definitionShape(definition: WorkflowDef[_]): Seq[Any] = {
+    def recoverShape(strategy: AbstractWorkflow.RecoverStrategy[_]) =
+      (strategy.maxRetries, strategy.failoverStepName, strategy.failoverStepInput.isPresent)
+
+    Seq(
+      definition.getSteps.asScala.map(step => (step.name(), step.getClass, step.timeout())).toList,
+      definition.getStepConfigs.asScala
+        .map(config => (config.stepName, config.timeout, config.recoverStrategy.toScala.map(recoverShape)))
+        .toList,
+      definition.getWorkflowTimeout,
+      definition.getStepTimeout,
+      definition.getStepRecoverStrategy.toScala.map(recoverShape),
+      definition.getFailoverStepName,
+      definition.getFailoverStepInput.isPresent,
+      definition.getFailoverMaxRetries.toScala.map(_.maxRetries))
+  }
 }
 
 abstract class WorkflowRouter[S, W <: AbstractWorkflow[S]](protected val workflow: W) {
 
   private var state: Option[S] = None
   private var workflowFinished: Boolean = false
+  private var validateDefinitionCaching: Boolean = false
   private final val log = LoggerFactory.getLogger(this.getClass)
 
+  // the steps capture the workflow instance, so the definition can only be reused for this instance
+  private lazy val compiledDefinition: CompiledDefinition[S] = new CompiledDefinition(workflow.definition())
+
   private def stateOrEmpty(): S = state match {
     case None =>
       val emptyState = workflow.emptyState()
@@ -74,7 +110,25 @@ abstract class WorkflowRouter[S, W <: AbstractWorkflow[S]](protected val workflo
   }
 
   def _getWorkflowDefinition(): WorkflowDef[S] = {
-    workflow.definition()
+    compiledDefinition.definition
+  }
+
+  /** INTERNAL API */
+  // "public" api against the impl/testkit
+  def _internalValidateDefinitionCaching(enabled: Boolean): Unit =
+    validateDefinitionCaching = enabled
+
+  private def findStep(stepName: String): Option[AbstractWorkflow.Step] = {
+    val compiled = compiledDefinition
+    if (validateDefinitionCaching) {
+      // the definition is expected to be the same whatever the state, rebuild it to verify that
+      val rebuilt = workflow.definition()
+      if (new CompiledDefinition(rebuilt).shape != compiled.shape)
+        throw new IllegalStateException(
+          s"The definition of workflow ${workflow.getClass.getName} changed after it was first built, " +
+          "a workflow definition must not depend on the workflow state or on other mutable fields")
+    }
+    compiled.stepsByName.get(stepName)
   }
 
   /** INTERNAL API */
@@ -156,9 +210,8 @@ abstract class WorkflowRouter[S, W <: AbstractWorkflow[S]](protected val workflo
     workflow._internalSetCurrentState(stateOrEmpty())
     workflow._internalSetTimerScheduler(Optional.of(timerScheduler))
     workflow._internalSetCommandContext(Optional.of(commandContext))
-    val workflowDef = workflow.definition()
 
-    workflowDef.findByName(stepName).toScala match {
+    findStep(stepName) match {
       case Some(call: CallStep[_, _, _, _]) =>
         val decodedInput = input match {
           case Some(inputValue) => decodeInput(messageCodec, inputValue, call.callInputClass)
@@ -222,9 +275,8 @@ abstract class WorkflowRouter[S, W <: AbstractWorkflow[S]](protected val workflo
   def _internalGetNextStep(stepName: String, result: ScalaPbAny, messageCodec: MessageCodec): CommandResult = {
 
     workflow._internalSetCurrentState(stateOrEmpty())
-    val workflowDef = workflow.definition()
 
-    workflowDef.findByName(stepName).toScala match {
+    findStep(stepName) match {
       case Some(call: CallStep[_, _, _, _]) =>
         val effect =
           call.transitionFunc
@@ -12,11 +12,23 @@ import kalix.javasdk.impl.GrpcDeferredCall;
 import kalix.javasdk.impl.MetadataImpl;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
 
 import static io.grpc.Status.Code.INVALID_ARGUMENT;
 
 public class TransferWorkflow extends ProtoWorkflow<MoneyTransferApi.State> {
 
+  private final Supplier<CompletionStage<Empty>> remoteCalls;
+
+  public TransferWorkflow() {
+    this(() -> CompletableFuture.completedFuture(Empty.getDefaultInstance()));
+  }
+
+  /* to control when the remote calls complete */
+  public TransferWorkflow(Supplier<CompletionStage<Empty>> remoteCalls) {
+    this.remoteCalls = remoteCalls;
+  }
 
   @Override
   public MoneyTransferApi.State emptyState() {
@@ -34,8 +46,7 @@ public class TransferWorkflow extends ProtoWorkflow<MoneyTransferApi.State> {
     var remoteCall =
       step(remoteCallStepName)
         // just a dummy 'remote' call to exercise the API
-        .asyncCall(Empty.class, start ->
-          CompletableFuture.completedFuture(Empty.getDefaultInstance()))
+        .asyncCall(Empty.class, start -> remoteCalls.get())
         .andThen(Empty.class, i -> {
           var state = currentState().toBuilder().setLog("remote-call").build();
           var withdrawInput =
@@ -4,6 +4,7 @@
 
 package kalix.javasdk
 
+import java.io.ByteArrayOutputStream
 import java.util
 import java.util.Optional
 
@@ -11,6 +12,7 @@ import scala.beans.BeanProperty
 
 import akka.Done
 import com.google.protobuf.Any
+import com.google.protobuf.CodedOutputStream
 import com.google.protobuf.UnsafeByteOperations
 import kalix.javasdk.impl.ByteStringEncoding
 import org.scalatest.matchers.should.Matchers
@@ -134,6 +136,24 @@ class JsonSupportSpec extends AnyWordSpec with Matchers {
       decoded.isPresent() should ===(true)
       decoded.get().field should ===("foo")
     }
+
+    "encode to the same bytes as a fully copied primitive encoding" in {
+      val large = new MyJsonable
+      // larger than the initial output buffer, so the JSON spans several buffers
+      large.field = "x" * 1000
+      val any = JsonSupport.encodeJson(large)
+
+      val json = JsonSupport.getObjectMapper.writeValueAsBytes(large)
+      val baos = new ByteArrayOutputStream()
+      val stream = CodedOutputStream.newInstance(baos)
+      stream.writeBytes(1, UnsafeByteOperations.unsafeWrap(json))
+      stream.flush()
+      any.getValue.toByteArray shouldBe baos.toByteArray
+
+      JsonSupport.decodeJson(classOf[MyJsonable], any).field shouldBe large.field
+      // the pooled output is reset between encodes
+      JsonSupport.decodeJson(classOf[MyJsonable], JsonSupport.encodeJson(myJsonable)).field shouldBe "foo"
+    }
   }
 
 }
@@ -10,6 +10,7 @@ import com.example.shoppingcart.ShoppingCartApi
 import com.google.protobuf.any.{ Any => ScalaPbAny }
 import com.google.protobuf.{ Any => JavaPbAny }
 import com.google.protobuf.ByteString
+import com.google.protobuf.DynamicMessage
 import com.google.protobuf.Empty
 import org.scalatest.OptionValues
 import org.scalatest.matchers.should.Matchers
@@ -53,6 +54,31 @@ class AnySupportSpec extends AnyWordSpec with Matchers with OptionValues {
       decoded should ===(error)
     }
 
+    "encode dynamic messages of different types with their own type url" in {
+      val cart = DynamicMessage.newBuilder(ShoppingCartApi.Cart.getDescriptor).build()
+      val item = DynamicMessage.newBuilder(ShoppingCartApi.AddLineItem.getDescriptor).build()
+      // same class for both, the first type url must not be reused for the second
+      cart.getClass should ===(item.getClass)
+      anySupport.encodeScala(cart).typeUrl should ===("com.example/" + ShoppingCartApi.Cart.getDescriptor.getFullName)
+      anySupport.encodeScala(item).typeUrl should ===(
+        "com.example/" + ShoppingCartApi.AddLineItem.getDescriptor.getFullName)
+      anySupport.encodeScala(cart).typeUrl should ===("com.example/" + ShoppingCartApi.Cart.getDescriptor.getFullName)
+    }
+
+    "decode known types and types with another type url prefix" in {
+      // in the table of known types
+      anySupport.decodeMessage(anySupport.encodeScala(addLineItem)) should ===(addLineItem)
+      val cart =
+        ShoppingCartApi.Cart.newBuilder().addItems(ShoppingCartApi.LineItem.newBuilder().setName("item")).build()
+      anySupport.decodeMessage(anySupport.encodeScala(cart)) should ===(cart)
+      // not in the table, resolved from the type name
+      val otherPrefix =
+        ScalaPbAny("type.googleapis.com/" + addLineItem.getDescriptorForType.getFullName, addLineItem.toByteString)
+      anySupport.decodeMessage(otherPrefix) should ===(addLineItem)
+      val unknown = ScalaPbAny("com.example/com.example.Unknown", ByteString.EMPTY)
+      a[SerializationException] should be thrownBy anySupport.decodeMessage(unknown)
+    }
+
     "support resolving a service descriptor" in {
       val methods =
         anySupport.resolveServiceDescriptor(ShoppingCartApi.getDescriptor.findServiceByName("ShoppingCartService"))
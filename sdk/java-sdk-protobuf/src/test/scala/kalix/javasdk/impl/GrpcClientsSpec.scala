@@ -13,8 +13,13 @@ import kalix.javasdk.actionspec.actionspec_api.ActionSpecServiceClient
 import com.typesafe.config.ConfigFactory
 import org.scalatest.concurrent.ScalaFutures
 import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
 import org.scalatest.wordspec.AnyWordSpecLike
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+import java.nio.charset.StandardCharsets.UTF_8
 import java.util.concurrent.CompletionStage
+import java.util.concurrent.ConcurrentLinkedQueue
 
 import scala.annotation.nowarn
 import scala.concurrent.Promise
@@ -22,6 +27,14 @@ import scala.jdk.FutureConverters.FutureOps
 
 import akka.actor.ClassicActorSystemProvider
 import com.typesafe.config.Config
+import io.grpc.CallOptions
+import io.grpc.Channel
+import io.grpc.ClientCall
+import io.grpc.ClientInterceptors
+import io.grpc.ManagedChannel
+import io.grpc.Metadata
+import io.grpc.MethodDescriptor
+import io.grpc.Status
 
 // dummy instead of depending on actual generated Akka gRPC client to keep it simple
 trait PretendService {}
@@ -97,6 +110,216 @@ class GrpcClientsSpec
       val client = GrpcClients(system).getGrpcClient(classOf[ActionSpecService], "actual")
       client shouldBe a[ActionSpecServiceClient]
     }
+
+    "find the generated service of a descriptor" in {
+      val descriptor = ActionSpecService.descriptor.findServiceByName("ActionSpecService")
+      GrpcClients.serviceClassNames(descriptor) should contain(classOf[ActionSpecService].getName)
+    }
+
+    "create the clients of the prepared services when warming up" in {
+      val proxyInfo = ProxyInfoHolder(system)
+      proxyInfo.overrideProxyHost("warm-up-host")
+      proxyInfo.overridePort(9123)
+
+      val clients = GrpcClients(system)
+      val createdBefore = clients.clientsCreated
+      clients.prepareWarmUp(Seq(ActionSpecService.descriptor.findServiceByName("ActionSpecService")))
+      clients.warmUp().futureValue
+
+      clients.clientsCreated shouldBe createdBefore + 1
+      val warmedUp = clients.clientsCreated
+      clients.getComponentGrpcClient(classOf[ActionSpecService]) shouldBe a[ActionSpecServiceClient]
+      clients.clientsCreated shouldBe warmedUp
+    }
+
+    "share the proxy channel and shut it down once the runtime address changes" in {
+      val proxyInfo = ProxyInfoHolder(system)
+      proxyInfo.overrideProxyHost("first-runtime-host")
+      proxyInfo.overridePort(9124)
+
+      val clients = GrpcClients(system)
+      val first = clients.getProxyChannel()
+      clients.getProxyChannel() shouldBe theSameInstanceAs(first)
+
+      proxyInfo.overrideProxyHost("second-runtime-host")
+      val second = clients.getProxyChannel()
+      (second shouldNot be).theSameInstanceAs(first)
+      second.authority() shouldBe "second-runtime-host:9124"
+      first.asInstanceOf[ManagedChannel].isShutdown shouldBe true
+      second.asInstanceOf[ManagedChannel].isShutdown shouldBe false
+    }
   }
 
 }
+
+class GrpcClientsChannelPoolSpec
+    extends ScalaTestWithActorTestKit(ConfigFactory.parseString("""
+      |kalix.cross-service.channel-pool {
+      |  size = 2
+      |  picker = round-robin
+      |}
+      |""".stripMargin))
+    with AnyWordSpecLike
+    with Matchers {
+
+  "The GrpcClients extension with a channel pool" must {
+    "use the pooled clients for a service in turn" in {
+      val first = GrpcClients(system).getGrpcClient(classOf[PretendService], "a")
+      val second = GrpcClients(system).getGrpcClient(classOf[PretendService], "a")
+      val third = GrpcClients(system).getGrpcClient(classOf[PretendService], "a")
+
+      (second shouldNot be).theSameInstanceAs(first)
+      third shouldBe theSameInstanceAs(first)
+      GrpcClients(system).openClients shouldBe 2
+    }
+
+    "use the pooled channels to the runtime in turn" in {
+      val proxyInfo = ProxyInfoHolder(system)
+      proxyInfo.overrideProxyHost("runtime-host")
+      proxyInfo.overridePort(9125)
+
+      val first = GrpcClients(system).getProxyChannel()
+      val second = GrpcClients(system).getProxyChannel()
+      val third = GrpcClients(system).getProxyChannel()
+
+      (second shouldNot be).theSameInstanceAs(first)
+      third shouldBe theSameInstanceAs(first)
+    }
+  }
+}
+
+class GrpcClientsLeastLoadedSpec
+    extends ScalaTestWithActorTestKit(ConfigFactory.parseString("""
+      |kalix.cross-service.channel-pool {
+      |  size = 2
+      |  picker = least-loaded
+      |  max-concurrent-streams = 2
+      |}
+      |""".stripMargin))
+    with AnyWordSpecLike
+    with Matchers {
+
+  "The GrpcClients extension with a least-loaded channel pool" must {
+    "only open another channel once the open ones carry the max concurrent streams" in {
+      val clients = GrpcClients(system)
+      val first = clients.getGrpcClient(classOf[PretendService], "a")
+      val firstLoad = clients.channelLoadOf(first).get
+
+      firstLoad.callStarted()
+      clients.getGrpcClient(classOf[PretendService], "a") shouldBe theSameInstanceAs(first)
+      clients.openClients shouldBe 1
+
+      firstLoad.callStarted()
+      val second = clients.getGrpcClient(classOf[PretendService], "a")
+      (second shouldNot be).theSameInstanceAs(first)
+      clients.openClients shouldBe 2
+
+      // the channel with the fewest calls in flight is picked, the first one on a tie
+      clients.getGrpcClient(classOf[PretendService], "a") shouldBe theSameInstanceAs(second)
+      clients.channelLoadOf(second).get.callStarted()
+      firstLoad.callCompleted()
+      clients.getGrpcClient(classOf[PretendService], "a") shouldBe theSameInstanceAs(first)
+      firstLoad.callCompleted()
+      clients.channelLoadOf(second).get.callCompleted()
+      clients.getGrpcClient(classOf[PretendService], "a") shouldBe theSameInstanceAs(first)
+
+      // all channels at the max, the least loaded one is still used as no other channel can be opened
+      (1 to 3).foreach(_ => firstLoad.callStarted())
+      (1 to 2).foreach(_ => clients.channelLoadOf(second).get.callStarted())
+      clients.getGrpcClient(classOf[PretendService], "a") shouldBe theSameInstanceAs(second)
+      clients.openClients shouldBe 2
+    }
+  }
+}
+
+object InFlightInterceptorSpec {
+
+  private val stringMarshaller = new MethodDescriptor.Marshaller[String] {
+    override def stream(value: String): InputStream = new ByteArrayInputStream(value.getBytes(UTF_8))
+    override def parse(stream: InputStream): String = new String(stream.readAllBytes(), UTF_8)
+  }
+
+  val method: MethodDescriptor[String, String] =
+    MethodDescriptor
+      .newBuilder[String, String]()
+      .setType(MethodDescriptor.MethodType.UNARY)
+      .setFullMethodName("test.Service/Call")
+      .setRequestMarshaller(stringMarshaller)
+      .setResponseMarshaller(stringMarshaller)
+      .build()
+
+  /** A channel keeping its calls open until they are closed or cancelled, as the transport would */
+  final class HeldCallsChannel(failStart: Boolean) extends Channel {
+    val listeners = new ConcurrentLinkedQueue[ClientCall.Listener[_]]()
+
+    override def newCall[Req, Res](method: MethodDescriptor[Req, Res], callOptions: CallOptions): ClientCall[Req, Res] =
+      new ClientCall[Req, Res] {
+        private var listener: ClientCall.Listener[Res] = _
+
+        override def start(responseListener: ClientCall.Listener[Res], headers: Metadata): Unit =
+          if (failStart) throw new IllegalStateException("Call could not be started")
+          else {
+            listener = responseListener
+            listeners.add(responseListener)
+          }
+
+        override def cancel(message: String, cause: Throwable): Unit =
+          listener.onClose(Status.CANCELLED.withDescription(message).withCause(cause), new Metadata)
+
+        override def request(numMessages: Int): Unit = ()
+
+        override def halfClose(): Unit = ()
+
+        override def sendMessage(message: Req): Unit = ()
+      }
+
+    override def authority(): String = "held-calls"
+  }
+}
+
+class InFlightInterceptorSpec extends AnyWordSpec with Matchers {
+  import InFlightInterceptorSpec._
+
+  private def startCall(channel: Channel): ClientCall[String, String] = {
+    val call = channel.newCall(method, CallOptions.DEFAULT)
+    call.start(new ClientCall.Listener[String] {}, new Metadata)
+    call
+  }
+
+  "The in flight interceptor" must {
+    "count a call in flight until it is closed, also when it failed" in {
+      val load = new GrpcClients.ChannelLoad
+      val heldCalls = new HeldCallsChannel(failStart = false)
+      val channel = ClientInterceptors.intercept(heldCalls, new GrpcClients.InFlightInterceptor(load))
+
+      startCall(channel)
+      startCall(channel)
+      load.inFlight shouldBe 2
+
+      heldCalls.listeners.poll().onClose(Status.OK, new Metadata)
+      load.inFlight shouldBe 1
+      heldCalls.listeners.poll().onClose(Status.UNAVAILABLE.withDescription("connection lost"), new Metadata)
+      load.inFlight shouldBe 0
+    }
+
+    "release the count of a cancelled call" in {
+      val load = new GrpcClients.ChannelLoad
+      val channel =
+        ClientInterceptors.intercept(new HeldCallsChannel(failStart = false), new GrpcClients.InFlightInterceptor(load))
+
+      val call = startCall(channel)
+      load.inFlight shouldBe 1
+      call.cancel("no longer needed", null)
+      load.inFlight shouldBe 0
+    }
+
+    "release the count of a call that failed to start" in {
+      val load = new GrpcClients.ChannelLoad
+      val channel =
+        ClientInterceptors.intercept(new HeldCallsChannel(failStart = true), new GrpcClients.InFlightInterceptor(load))
+
+      an[IllegalStateException] should be thrownBy startCall(channel)
+      load.inFlight shouldBe 0
+    }
+  }
+}
@@ -170,6 +170,31 @@ class MetadataImplSpec extends AnyWordSpec with Matchers with OptionValues {
         .traceId() shouldBe Optional.empty()
 
     }
+
+    "look up keys ignoring case and in insertion order" in {
+      val meta = metadata("Foo" -> "1", "bar" -> "2", "FOO" -> "3")
+      meta.has("foo") shouldBe true
+      meta.get("fOo").toScala.value shouldBe "1"
+      meta.getAll("foo").asScala shouldBe Seq("1", "3")
+      meta.has("baz") shouldBe false
+    }
+
+    "keep existing entries when adding, setting and removing" in {
+      val original = metadata("foo" -> "1", "bar" -> "2")
+      val added = original.add("FOO", "3").set("bar", "4").remove("baz")
+      added.getAll("foo").asScala shouldBe Seq("1", "3")
+      added.get("bar").toScala.value shouldBe "4"
+      added.getAllKeys.asScala shouldBe Seq("foo", "FOO", "bar")
+      // the original is not changed
+      original.getAll("foo").asScala shouldBe Seq("1")
+      original.get("bar").toScala.value shouldBe "2"
+      original.remove("baz") shouldBe theSameInstanceAs(original)
+    }
+
+    "convert alternative CloudEvent keys when adding entries" in {
+      val meta = metadata().add("ce_id", "id")
+      meta.getAllKeys.asScala shouldBe Seq("ce-id")
+    }
   }
 
   private def metadata(entries: (String, String)*): Metadata = {
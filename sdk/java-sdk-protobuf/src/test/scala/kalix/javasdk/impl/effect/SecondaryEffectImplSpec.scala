@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.effect
+
+import io.grpc.Status
+import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.MetadataImpl
+import kalix.protocol.component
+import kalix.protocol.component.ClientAction
+import kalix.protocol.component.MetadataEntry
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class SecondaryEffectImplSpec extends AnyWordSpec with Matchers {
+
+  private val messageCodec = new AnySupport(Array.empty, getClass.getClassLoader)
+
+  "A secondary effect" should {
+
+    "reply with the message the entity encoded, and its metadata" in {
+      val message = messageCodec.encodeJavaAsScala("reply")
+      val metadata = MetadataImpl.of(Seq(MetadataEntry("key", MetadataEntry.Value.StringValue("value"))))
+
+      MessageReplyImpl(message, metadata, Vector.empty).replyToClientAction(messageCodec, 1) shouldBe Some(
+        ClientAction(ClientAction.Action.Reply(component.Reply(Some(message), MetadataImpl.toProtocol(metadata)))))
+    }
+
+    "fail with the error of the command" in {
+      val error = ErrorReplyImpl("boom", Some(Status.Code.NOT_FOUND), Vector.empty)
+
+      error.replyToClientAction(messageCodec, 2) shouldBe Some(
+        ClientAction(
+          ClientAction.Action.Failure(
+            component.Failure(2, "boom", grpcStatusCode = Status.Code.NOT_FOUND.value()))))
+    }
+  }
+}
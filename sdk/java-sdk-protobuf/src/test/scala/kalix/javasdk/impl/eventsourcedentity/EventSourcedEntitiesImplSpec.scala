@@ -4,6 +4,8 @@
 
 package kalix.javasdk.impl.eventsourcedentity
 
+import com.typesafe.config.Config
+import com.typesafe.config.ConfigFactory
 import io.grpc.Status.Code.INVALID_ARGUMENT
 import kalix.javasdk.eventsourcedentity._
 import kalix.testkit.TestProtocol
@@ -18,12 +20,27 @@ class EventSourcedEntitiesImplSpec extends AnyWordSpec with Matchers with Before
   import ShoppingCart.Item
   import ShoppingCart.Protocol._
 
-  val service: TestEventSourcedService = ShoppingCart.testService
+  val service: TestEventSourcedService = ShoppingCart.testService()
   val protocol: TestProtocol = TestProtocol(service.port)
 
+  val asyncSnapshotService: TestEventSourcedService =
+    ShoppingCart.testService(Some(ConfigFactory.parseString("kalix.event-sourced-entity.async-snapshot-encoding = on")))
+  val asyncSnapshotProtocol: TestProtocol = TestProtocol(asyncSnapshotService.port)
+
+  val parallelReplayService: TestEventSourcedService = ShoppingCart.testService(Some(ConfigFactory.parseString("""
+    kalix.event-sourced-entity.replay {
+      decode-parallelism = 8
+      buffer-size = 2
+    }""")))
+  val parallelReplayProtocol: TestProtocol = TestProtocol(parallelReplayService.port)
+
   override def afterAll(): Unit = {
     protocol.terminate()
     service.terminate()
+    asyncSnapshotProtocol.terminate()
+    asyncSnapshotService.terminate()
+    parallelReplayProtocol.terminate()
+    parallelReplayService.terminate()
   }
 
   "EventSourcedImpl" should {
@@ -75,6 +92,31 @@ class EventSourcedEntitiesImplSpec extends AnyWordSpec with Matchers with Before
       entity.passivate()
     }
 
+    "apply replayed events in order" in {
+      val entity = protocol.eventSourced.connect()
+      entity.send(init(ShoppingCart.Name, "cart"))
+      (1 to 20).foreach(n => entity.send(event(n, itemAdded("abc", "apple", n))))
+      entity.send(command(1, "cart", "GetCart", getShoppingCart("cart")))
+      entity.expect(reply(1, cart(Item("abc", "apple", (1 to 20).sum))))
+      entity.passivate()
+    }
+
+    "apply replayed events in order when decoding them in parallel" in {
+      val entity = parallelReplayProtocol.eventSourced.connect()
+      entity.send(init(ShoppingCart.Name, "cart"))
+      // two events for each item, the name of an item is the one of the first event applied for it
+      (1 to 40).foreach(n => entity.send(event(n, itemAdded(s"item-${(n + 1) / 2}", s"name-$n", 1))))
+      entity.send(command(1, "cart", "GetCart", getShoppingCart("cart")))
+      val items = (1 to 20).map(i => Item(s"item-$i", s"name-${2 * i - 1}", 2))
+      entity.expect(reply(1, cart(items: _*)))
+      // commands after the replay are still handled
+      entity.send(command(2, "cart", "AddItem", addItem("item-1", "apple", 1)))
+      entity.expect(reply(2, EmptyJavaMessage, persist(itemAdded("item-1", "apple", 1))))
+      entity.send(command(3, "cart", "GetCart", getShoppingCart("cart")))
+      entity.expect(reply(3, cart(items.head.copy(quantity = 3) +: items.tail: _*)))
+      entity.passivate()
+    }
+
     "fail when first message is not init" in {
       service.expectLogError("Terminating entity due to unexpected failure") {
         val entity = protocol.eventSourced.connect()
@@ -185,6 +227,23 @@ class EventSourcedEntitiesImplSpec extends AnyWordSpec with Matchers with Before
         entity.expectClosed()
       }
     }
+
+    "keep replies and snapshots in order when snapshots are encoded asynchronously" in {
+      val entity = asyncSnapshotProtocol.eventSourced.connect()
+      entity.send(init(ShoppingCart.Name, "cart"))
+      // sent without waiting for replies, so that commands are handled while snapshots are encoded
+      (1 to 6).foreach(n => entity.send(command(n, "cart", "AddItem", addItem("abc", "apple", n))))
+      entity.send(command(7, "cart", "GetCart", getShoppingCart("cart")))
+      (1 to 6).foreach { n =>
+        val events = persist(itemAdded("abc", "apple", n))
+        // snapshot every 2nd event, of the state after the command
+        val expectedEffects =
+          if (n % 2 == 0) events.withSnapshot(cartSnapshot(Item("abc", "apple", (1 to n).sum))) else events
+        entity.expect(reply(n, EmptyJavaMessage, expectedEffects))
+      }
+      entity.expect(reply(7, cart(Item("abc", "apple", (1 to 6).sum))))
+      entity.passivate()
+    }
   }
 }
 
@@ -195,11 +254,12 @@ object EventSourcedEntitiesImplSpec {
 
     val Name: String = ShoppingCartApi.getDescriptor.findServiceByName("ShoppingCartService").getFullName
 
-    def testService: TestEventSourcedService =
+    def testService(extraConfig: Option[Config] = None): TestEventSourcedService =
       TestEventSourced.service(
         CartEntityProvider
           .of(new CartEntity(_))
-          .withOptions(EventSourcedEntityOptions.defaults().withSnapshotEvery(2)))
+          .withOptions(EventSourcedEntityOptions.defaults().withSnapshotEvery(2)),
+        extraConfig)
 
     case class Item(id: String, name: String, quantity: Int)
 
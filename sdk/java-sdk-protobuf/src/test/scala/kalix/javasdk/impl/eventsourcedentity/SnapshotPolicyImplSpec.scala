@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.eventsourcedentity
+
+import kalix.javasdk.eventsourcedentity.SnapshotPolicy
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.time.Duration
+
+class SnapshotPolicyImplSpec extends AnyWordSpec with Matchers {
+
+  private def tracker(policy: SnapshotPolicy) = new SnapshotTracker(SnapshotPolicyImpl(policy))
+
+  "The SnapshotTracker" should {
+
+    "trigger a count based policy once enough events were persisted since the last snapshot" in {
+      val t = tracker(SnapshotPolicy.everyNumberOfEvents(3))
+      t.eventsPersisted(2, 10)
+      t.isDue shouldBe false
+      t.eventsPersisted(1, 10)
+      t.isDue shouldBe true
+      t.snapshotTaken()
+      t.isDue shouldBe false
+      t.eventsSinceSnapshot shouldBe 0
+    }
+
+    "count replayed events towards the next snapshot" in {
+      val t = tracker(SnapshotPolicy.everyNumberOfEvents(3))
+      t.eventReplayed(10, 1000)
+      t.eventReplayed(10, 1000)
+      t.isDue shouldBe false
+      t.eventsPersisted(1, 10)
+      t.isDue shouldBe true
+    }
+
+    "trigger a size based policy on the serialized size of events" in {
+      val t = tracker(SnapshotPolicy.everyEventBytes(100))
+      t.eventsPersisted(5, 99)
+      t.isDue shouldBe false
+      t.eventsPersisted(1, 1)
+      t.isDue shouldBe true
+    }
+
+    "trigger a replay time based policy from the measured cost of replaying events" in {
+      val t = tracker(SnapshotPolicy.whenReplayTimeExceeds(Duration.ofNanos(10000)))
+      t.eventsPersisted(100, 100)
+      // no estimate before anything was replayed
+      t.isDue shouldBe false
+
+      val replayed = tracker(SnapshotPolicy.whenReplayTimeExceeds(Duration.ofNanos(10000)))
+      replayed.eventReplayed(10, 1000)
+      replayed.isDue shouldBe false
+      replayed.eventsPersisted(9, 90)
+      replayed.estimatedReplayNanos shouldBe 10000
+      replayed.isDue shouldBe true
+    }
+
+    "trigger combined policies when any of them triggers" in {
+      val t = tracker(SnapshotPolicy.everyNumberOfEvents(10).or(SnapshotPolicy.everyEventBytes(100)))
+      t.eventsPersisted(1, 100)
+      t.isDue shouldBe true
+      t.snapshotTaken()
+      t.eventsPersisted(10, 10)
+      t.isDue shouldBe true
+    }
+
+    "reject invalid policies" in {
+      an[IllegalArgumentException] should be thrownBy SnapshotPolicy.everyNumberOfEvents(0)
+      an[IllegalArgumentException] should be thrownBy SnapshotPolicy.everyEventBytes(-1)
+      an[IllegalArgumentException] should be thrownBy SnapshotPolicy.whenReplayTimeExceeds(Duration.ZERO)
+    }
+  }
+}
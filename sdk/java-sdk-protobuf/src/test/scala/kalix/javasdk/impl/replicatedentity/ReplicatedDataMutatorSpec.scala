@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.replicatedentity
+
+import com.google.protobuf.Descriptors
+import kalix.javasdk.impl.AnySupport
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class ReplicatedDataMutatorSpec extends AnyWordSpec with Matchers {
+
+  private val anySupport = new AnySupport(Array.empty[Descriptors.FileDescriptor], getClass.getClassLoader)
+
+  "ReplicatedSet mutate" should {
+
+    val set = new ReplicatedSetImpl[String](anySupport).addAll(Seq("a", "b", "c")).resetDelta()
+
+    "result in the same set and delta as the single element operations" in {
+      val mutated = set.mutateWith { mutator =>
+        mutator.add("d") shouldBe true
+        mutator.add("a") shouldBe false
+        mutator.remove("b") shouldBe true
+        mutator.add("b") shouldBe true
+        mutator.remove("c") shouldBe true
+        mutator.remove("d") shouldBe true
+        mutator.add("e")
+        mutator.size shouldBe 3
+      }
+      val expected = set.add("d").remove("b").add("b").remove("c").remove("d").add("e")
+
+      mutated.elementsSet shouldBe expected.elementsSet
+      mutated.getDelta shouldBe expected.getDelta
+    }
+
+    "clear the set when the last element is removed" in {
+      val mutated = set.mutateWith(_.removeAll(Seq("a", "b", "c")))
+      mutated.getDelta shouldBe set.clear().getDelta
+    }
+
+    "return the unchanged set when nothing changed" in {
+      set.mutateWith(_.add("a")) should be theSameInstanceAs set
+    }
+
+    "not allow the mutator to be used after mutate has returned" in {
+      var leaked: ReplicatedSetImpl.Mutator[String] = null
+      set.mutateWith(leaked = _)
+      an[IllegalStateException] should be thrownBy leaked.add("x")
+    }
+  }
+
+  "ReplicatedCounterMap mutate" should {
+
+    val map = new ReplicatedCounterMapImpl[String](anySupport).increment("a", 1).increment("b", 2).resetDelta()
+
+    "result in the same map and delta as the single operations" in {
+      val mutated = map.mutateWith { mutator =>
+        mutator.increment("a", 5)
+        mutator.decrement("a", 2)
+        mutator.get("a") shouldBe 4
+        mutator.remove("b")
+        mutator.get("b") shouldBe 0
+        mutator.increment("c", 3)
+      }
+      val expected = map.increment("a", 5).decrement("a", 2).remove("b").increment("c", 3)
+
+      mutated.keys shouldBe expected.keys
+      mutated.get("a") shouldBe 4
+      mutated.get("c") shouldBe 3
+      mutated.getDelta shouldBe expected.getDelta
+    }
+
+    "only remove the keys that were in the map before the changes" in {
+      val mutated = map.mutateWith { mutator =>
+        mutator.increment("c", 3)
+        mutator.remove("c")
+        mutator.remove("d")
+        mutator.increment("a", 1)
+      }
+
+      mutated.keys shouldBe Set("a", "b")
+      mutated.getDelta.replicatedCounterMap.get.removed shouldBe empty
+      mutated.getDelta shouldBe map.increment("a", 1).getDelta
+    }
+  }
+}
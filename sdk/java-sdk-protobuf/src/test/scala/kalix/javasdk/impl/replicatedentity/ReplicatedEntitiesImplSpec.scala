@@ -4,9 +4,12 @@
 
 package kalix.javasdk.impl.replicatedentity
 
+import java.time.Duration
+
 import io.grpc.Status.Code.INVALID_ARGUMENT
 import kalix.javasdk.replicatedentity.CartEntity
 import kalix.javasdk.replicatedentity.CartEntityProvider
+import kalix.javasdk.replicatedentity.ReplicatedEntityOptions
 import kalix.protocol.replicated_entity.ReplicatedEntityDelta
 import kalix.testkit.TestProtocol
 import kalix.testkit.replicatedentity.ReplicatedEntityMessages
@@ -23,10 +26,20 @@ class ReplicatedEntitiesImplSpec extends AnyWordSpec with Matchers with BeforeAn
 
   private val service: TestReplicatedService = ShoppingCart.testService
   private val protocol: TestProtocol = TestProtocol(service.port)
+  private val coalescingService: TestReplicatedService = ShoppingCart.coalescingTestService()
+  private val coalescingProtocol: TestProtocol = TestProtocol(coalescingService.port)
+  // holds replies for longer than the tests wait for them
+  private val longWindowCoalescingService: TestReplicatedService =
+    ShoppingCart.coalescingTestService(window = Duration.ofMinutes(1))
+  private val longWindowCoalescingProtocol: TestProtocol = TestProtocol(longWindowCoalescingService.port)
 
   override def afterAll(): Unit = {
     protocol.terminate()
     service.terminate()
+    coalescingProtocol.terminate()
+    coalescingService.terminate()
+    longWindowCoalescingProtocol.terminate()
+    longWindowCoalescingService.terminate()
   }
 
   "ReplicatedEntitiesImpl" should {
@@ -84,6 +97,43 @@ class ReplicatedEntitiesImplSpec extends AnyWordSpec with Matchers with BeforeAn
         .passivate()
     }
 
+    "coalesce the deltas of consecutive commands when enabled" in {
+      coalescingProtocol.replicatedEntity
+        .connect()
+        .send(init(ShoppingCart.Name, "cart"))
+        .send(command(1, "cart", "GetCart", getShoppingCart("cart")))
+        .expect(reply(1, EmptyCart))
+        // held until the max number of commands is reached, one delta on the first reply
+        .send(command(2, "cart", "AddItem", addItem("a", "apple", 1)))
+        .send(command(3, "cart", "AddItem", addItem("a", "apple", 2)))
+        .send(command(4, "cart", "GetCart", getShoppingCart("cart")))
+        .expect(reply(2, EmptyJavaMessage, updated(domainLineItem("a", "apple", 3))))
+        .expect(reply(3, EmptyJavaMessage))
+        .expect(reply(4, cart(Item("a", "apple", 3))))
+        // held until the window has passed
+        .send(command(5, "cart", "AddItem", addItem("b", "banana", 4)))
+        .expect(reply(5, EmptyJavaMessage, updated(domainLineItem("b", "banana", 4))))
+        // sent before applying a delta from another replica
+        .send(command(6, "cart", "AddItem", addItem("c", "cantaloupe", 5)))
+        .send(delta(update(domainLineItem("a", "apple", 10))))
+        .expect(reply(6, EmptyJavaMessage, updated(domainLineItem("c", "cantaloupe", 5))))
+        .send(command(7, "cart", "RemoveCart", removeCart("cart")))
+        .expect(reply(7, EmptyJavaMessage, deleted))
+        .passivate()
+    }
+
+    "send the held replies when the entity is deleted" in {
+      longWindowCoalescingProtocol.replicatedEntity
+        .connect()
+        .send(init(ShoppingCart.Name, "cart"))
+        .send(command(1, "cart", "AddItem", addItem("a", "apple", 1)))
+        .send(command(2, "cart", "GetCart", getShoppingCart("cart")))
+        .send(delete)
+        .expect(reply(1, EmptyJavaMessage, updated(domainLineItem("a", "apple", 1))))
+        .expect(reply(2, cart(Item("a", "apple", 1))))
+        .passivate()
+    }
+
     "fail when first message is not init" in {
       service.expectLogError("Terminating entity due to unexpected failure") {
         val entity = protocol.replicatedEntity.connect()
@@ -215,6 +265,12 @@ object ReplicatedEntitiesImplSpec {
         CartEntityProvider
           .of(new CartEntity(_)))
 
+    def coalescingTestService(window: Duration = Duration.ofMillis(500)): TestReplicatedService =
+      TestReplicatedEntity.service(
+        CartEntityProvider
+          .of(new CartEntity(_))
+          .withOptions(ReplicatedEntityOptions.defaults().withDeltaCoalescing(window, 3)))
+
     case class Item(id: String, name: String, quantity: Int)
 
     object Protocol {
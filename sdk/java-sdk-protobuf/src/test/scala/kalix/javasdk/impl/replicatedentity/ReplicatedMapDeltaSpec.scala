@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.replicatedentity
+
+import com.google.protobuf.Descriptors
+import kalix.javasdk.impl.AnySupport
+import kalix.protocol.replicated_entity.ReplicatedEntityDelta
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class ReplicatedMapDeltaSpec extends AnyWordSpec with Matchers {
+
+  private val anySupport = new AnySupport(Array.empty[Descriptors.FileDescriptor], getClass.getClassLoader)
+
+  private def updatedKeys(delta: ReplicatedEntityDelta.Delta): Seq[Any] = delta match {
+    case ReplicatedEntityDelta.Delta.ReplicatedCounterMap(counterMap) =>
+      counterMap.updated.flatMap(_.key).map(anySupport.decodePossiblyPrimitive)
+    case ReplicatedEntityDelta.Delta.ReplicatedMultiMap(multiMap) =>
+      multiMap.updated.flatMap(_.key).map(anySupport.decodePossiblyPrimitive)
+    case other => fail(s"Unexpected delta $other")
+  }
+
+  "ReplicatedCounterMap" should {
+    "only include the changed counters in the delta" in {
+      val map = (1 to 10)
+        .foldLeft(new ReplicatedCounterMapImpl[String](anySupport)) { (map, i) => map.increment(s"key-$i", i) }
+        .resetDelta()
+      map.hasDelta shouldBe false
+
+      val changed = map.increment("key-3", 1).increment("key-7", 1).decrement("key-7", 1)
+      changed.hasDelta shouldBe true
+      updatedKeys(changed.getDelta) should contain only "key-3"
+
+      val reset = changed.resetDelta()
+      reset.hasDelta shouldBe false
+      reset.get("key-3") shouldBe 4
+      reset.get("key-7") shouldBe 7
+    }
+
+    "encode a key only once for all deltas" in {
+      val keyCache = new EncodedKeyCache[String]
+      var map = new ReplicatedCounterMapImpl[String](anySupport, keyCache = keyCache)
+      val deltas = (1 to 3).map { _ =>
+        map = map.increment("hot", 1)
+        val delta = map.getDelta
+        map = map.resetDelta()
+        delta
+      }
+      keyCache.misses shouldBe 1
+      keyCache.hits shouldBe 2
+
+      deltas.foldLeft(map)(_.applyDelta(_)).get("hot") shouldBe 6
+      keyCache.misses shouldBe 1
+      keyCache.hits shouldBe 5
+    }
+  }
+
+  "ReplicatedMultiMap" should {
+    "keep track of the number of values" in {
+      val map = new ReplicatedMultiMapImpl[String, String](anySupport)
+        .put("a", "1")
+        .put("a", "2")
+        .put("a", "2")
+        .put("b", "1")
+      map.size shouldBe 3
+      map.remove("a", "1").size shouldBe 2
+      map.remove("a", "3").size shouldBe 3
+      map.removeAll("a").size shouldBe 1
+      map.clear().size shouldBe 0
+      map.resetDelta().size shouldBe 3
+    }
+
+    "only include the changed keys in the delta" in {
+      val map = (1 to 10)
+        .foldLeft(new ReplicatedMultiMapImpl[String, String](anySupport)) { (map, i) => map.put(s"key-$i", "a") }
+        .resetDelta()
+      map.hasDelta shouldBe false
+
+      val changed = map.put("key-2", "b")
+      updatedKeys(changed.getDelta) should contain only "key-2"
+      changed.resetDelta().hasDelta shouldBe false
+
+      val applied = changed.applyDelta(changed.getDelta)
+      applied.size shouldBe 11
+    }
+
+    "share its key cache with the value sets" in {
+      val keyCache = new EncodedKeyCache[String]
+      val map = new ReplicatedMultiMapImpl[String, String](anySupport, keyCache = keyCache).put("a", "1").resetDelta()
+      map.put("a", "2").getDelta
+      keyCache.misses shouldBe 2
+      keyCache.hits shouldBe 0
+
+      map.put("2", "a").getDelta
+      keyCache.misses shouldBe 2
+      keyCache.hits shouldBe 2
+    }
+
+    "not count the keys when created without a key cache" in {
+      val map = new ReplicatedMultiMapImpl[String, String](anySupport).put("a", "1")
+      map.getDelta
+      EncodedKeyCache.none[String].misses shouldBe 0
+      EncodedKeyCache.none[String].hits shouldBe 0
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.telemetry
+
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import com.typesafe.config.Config
+import com.typesafe.config.ConfigFactory
+import io.opentelemetry.semconv.ServiceAttributes
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+object TelemetrySpec {
+  def config: Config = ConfigFactory.parseString("""
+     |kalix.telemetry.tracing {
+     |  collector-endpoint = "http://fakeurl:1234"
+     |  exporter = "in-memory"
+     |  span-processor = "batch"
+     |  batch {
+     |    max-export-batch-size = 10
+     |    schedule-delay = 200ms
+     |  }
+     |}
+     |""".stripMargin)
+}
+
+class TelemetrySpec extends ScalaTestWithActorTestKit(TelemetrySpec.config) with AnyWordSpecLike with Matchers {
+
+  private val telemetry = Telemetry(system)
+
+  "The Telemetry extension" must {
+
+    "export spans of all components through one shared exporter in batches" in {
+      val actionInstrumentation = telemetry.traceInstrumentation("my-action", ActionCategory)
+      val entityInstrumentation = telemetry.traceInstrumentation("my-entity", ValueEntityCategory)
+
+      (1 to 10).foreach { i =>
+        actionInstrumentation.getTracer.spanBuilder(s"action-$i").startSpan().end()
+        entityInstrumentation.getTracer.spanBuilder(s"entity-$i").startSpan().end()
+      }
+
+      val exporter = telemetry.inMemorySpanExporter
+      eventually {
+        exporter.finishedSpans should have size 20
+      }
+      // spans are not exported one by one
+      exporter.exportCallCount should be < 20L
+
+      // each component keeps its own service name
+      exporter.finishedSpans
+        .map(_.getResource.getAttribute(ServiceAttributes.SERVICE_NAME))
+        .toSet shouldBe Set("Action(my-action)", "Value Entity(my-entity)")
+    }
+  }
+}
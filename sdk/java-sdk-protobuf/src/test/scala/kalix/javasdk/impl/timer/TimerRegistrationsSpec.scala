@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.timer
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import kalix.javasdk.impl.timer.TimerRegistrations.AddTimer
+import kalix.javasdk.impl.timer.TimerRegistrations.RemoveTimer
+import kalix.testkit.TestTimerService
+import kalix.timers.timers.SingleTimer
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class TimerRegistrationsSpec extends ScalaTestWithActorTestKit with AnyWordSpecLike with Matchers {
+
+  import system.executionContext
+
+  private def add(name: String) = AddTimer(SingleTimer(name))
+
+  "TimerRegistrations" should {
+
+    "send every operation right away without a coalesce window" in {
+      val timerService = new TestTimerService
+      val registrations = new TimerRegistrations(system.classicSystem, Duration.Zero, timerService)
+
+      Future.sequence(Seq(add("a"), add("a"), RemoveTimer("b")).map(registrations.submit(_, Nil))).futureValue
+
+      timerService.calls shouldBe Seq(add("a"), add("a"), RemoveTimer("b"))
+      registrations.sent shouldBe 3
+      registrations.coalesced shouldBe 0
+    }
+
+    "only send the last operation for each timer within the coalesce window" in {
+      val timerService = new TestTimerService
+      val registrations = new TimerRegistrations(system.classicSystem, 100.millis, timerService)
+
+      val done = Seq(
+        registrations.submit(add("a"), Nil),
+        registrations.submitAll(Seq(add("b"), add("c")), Nil),
+        registrations.submit(add("a"), Nil),
+        registrations.submit(RemoveTimer("c"), Nil))
+      Future.sequence(done).futureValue
+
+      timerService.calls shouldBe Seq(add("a"), add("b"), RemoveTimer("c"))
+      registrations.sent shouldBe 3
+      registrations.coalesced shouldBe 2
+    }
+  }
+}
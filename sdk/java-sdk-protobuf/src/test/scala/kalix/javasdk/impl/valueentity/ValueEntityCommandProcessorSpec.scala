@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.valueentity
+
+import scala.collection.mutable
+
+import akka.actor.ActorSystem
+import akka.testkit.TestKit
+import com.example.valueentity.shoppingcart.domain.ShoppingCartDomain
+import io.grpc.Status.Code.INVALID_ARGUMENT
+import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.telemetry.Telemetry
+import kalix.javasdk.impl.telemetry.ValueEntityCategory
+import kalix.javasdk.valueentity.CartEntity
+import kalix.javasdk.valueentity.CartEntityProvider
+import kalix.javasdk.valueentity.CartEntityRouter
+import kalix.javasdk.valueentity.CommandContext
+import kalix.javasdk.valueentity.ValueEntity
+import kalix.javasdk.valueentity.ValueEntityContext
+import kalix.javasdk.valueentity.ValueEntityOptions
+import kalix.protocol.entity.Command
+import kalix.testkit.valueentity.ValueEntityMessages
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class ValueEntityCommandProcessorSpec extends AnyWordSpec with Matchers with BeforeAndAfterAll {
+  import ValueEntitiesImplSpec.ShoppingCart
+  import ShoppingCart.Item
+  import ShoppingCart.Protocol._
+  import ValueEntityMessages._
+
+  private val system = ActorSystem("ValueEntityCommandProcessorSpec")
+
+  override def afterAll(): Unit =
+    TestKit.shutdownActorSystem(system)
+
+  private val provider = CartEntityProvider.of(new CartEntity(_))
+  private val service = new ValueEntityService(
+    (context: ValueEntityContext) => provider.newRouter(context),
+    provider.serviceDescriptor,
+    provider.additionalDescriptors,
+    new AnySupport(provider.additionalDescriptors, getClass.getClassLoader),
+    provider.typeId,
+    ValueEntityOptions.defaults())
+
+  private def newRouter(entityId: String): ValueEntityRouter[_, _] =
+    service.factory.create(new ValueEntityContextImpl(entityId, system))
+
+  private def newProcessor(entityId: String, router: ValueEntityRouter[_, _]): ValueEntityCommandProcessor =
+    new ValueEntityCommandProcessor(
+      service,
+      router,
+      entityId,
+      Telemetry(system).traceInstrumentation(service.serviceName, ValueEntityCategory),
+      None,
+      system)
+
+  private def entityCommand(id: Long, entityId: String, name: String, payload: com.google.protobuf.Message): Command =
+    Command(entityId, id, name, messagePayload(payload))
+
+  "The value entity command processor" should {
+    "reply to commands" in {
+      val processor = newProcessor("cart", newRouter("cart"))
+      def process(command: Command) = processor.process(command).message
+
+      process(entityCommand(1, "cart", "GetCart", getShoppingCart("cart"))) shouldBe reply(1, EmptyCart)
+      val added = process(entityCommand(2, "cart", "AddItem", addItem("abc", "apple", 1)))
+      added shouldBe reply(2, EmptyJavaMessage, update(domainCart(Item("abc", "apple", 1))))
+      val fetched = process(entityCommand(3, "cart", "GetCart", getShoppingCart("cart")))
+      fetched shouldBe reply(3, cart(Item("abc", "apple", 1)))
+      val failed = process(entityCommand(4, "cart", "AddItem", addItem("foo", "bar", -1)))
+      failed shouldBe actionFailure(4, "Quantity for item foo must be greater than zero.", INVALID_ARGUMENT)
+      process(entityCommand(5, "cart", "RemoveCart", removeCart("cart"))) shouldBe reply(5, EmptyJavaMessage, delete())
+    }
+
+    "give each command its own context" in {
+      val contexts = mutable.ArrayBuffer.empty[CommandContext]
+      val router = new CartEntityRouter(new CartEntity(new ValueEntityContextImpl("cart", system))) {
+        override def handleCommand(
+            commandName: String,
+            state: ShoppingCartDomain.Cart,
+            command: Any,
+            context: CommandContext): ValueEntity.Effect[_] = {
+          contexts += context
+          super.handleCommand(commandName, state, command, context)
+        }
+      }
+      val processor = newProcessor("cart", router)
+      processor.process(entityCommand(1, "cart", "GetCart", getShoppingCart("cart")))
+      processor.process(entityCommand(2, "cart", "AddItem", addItem("abc", "apple", 1)))
+
+      // a context kept past its command still holds the data of that command
+      contexts.map(_.commandName) shouldBe Seq("GetCart", "AddItem")
+      contexts.map(_.commandId) shouldBe Seq(1L, 2L)
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.view
+
+import java.util.Optional
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+import scala.util.Try
+
+import akka.actor.ActorSystem
+import akka.stream.Materializer
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.testkit.TestKit
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import com.typesafe.config.ConfigFactory
+import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.MetadataImpl
+import kalix.javasdk.impl.ViewFactory
+import kalix.javasdk.shoppingcart.ShoppingCart
+import kalix.javasdk.shoppingcart.ShoppingCartViewModel
+import kalix.javasdk.shoppingcart.ShoppingCartViewModel.CartViewState
+import kalix.javasdk.view.View
+import kalix.javasdk.view.ViewCreationContext
+import kalix.javasdk.view.ViewOptions
+import kalix.protocol.component.Metadata
+import kalix.protocol.component.MetadataEntry
+import kalix.protocol.{ view => pv }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class ViewsImplSpec extends AnyWordSpec with Matchers {
+  import ViewsImplSpec._
+
+  private def withViews(config: String, views: (String, ViewOptions)*)(test: Views => Unit): Unit = {
+    val system = ActorSystem("ViewsImplSpec", ConfigFactory.parseString(config).withFallback(ConfigFactory.load()))
+    try test(new Views(system, views))
+    finally TestKit.shutdownActorSystem(system)
+  }
+
+  "The views" should {
+
+    "answer every update on a stream, each with a new handler" in {
+      val updates = Seq(
+        itemAdded(CartView, "cart-1", 2),
+        itemAdded(CartView, "cart-2", 3),
+        itemRemoved(CartView, "cart-1", 1, lookup = Some(cartState("cart-1", 2))),
+        itemRemoved(CartView, "cart-2", 3, lookup = Some(cartState("cart-2", 3))),
+        itemAdded(CartView, "cart-3", 1))
+      val expected = Seq(
+        upsert(cartState("cart-1", 2)),
+        upsert(cartState("cart-2", 3)),
+        upsert(cartState("cart-1", 1)),
+        delete,
+        upsert(cartState("cart-3", 1)))
+
+      withViews("", CartView -> ViewOptions.defaults()) { views =>
+        // the same answers with one stream per update, as the proxy does, and with all updates on one stream
+        updates.flatMap(update => views.updateOnOneStream(Seq(update))) shouldBe expected
+        views.updateOnOneStream(updates) shouldBe expected
+        views.created.size shouldBe updates.size * 2
+        views.created.asScala.map(_.subjectsSeen).toSeq shouldBe Seq.fill(2)(
+          Seq("cart-1", "cart-2", "cart-1", "cart-2", "cart-3").map(Seq(_))).flatten
+        views.created.asScala.exists(_.hasUpdateContext) shouldBe false
+      }
+    }
+  }
+}
+
+object ViewsImplSpec {
+  val CartView = "carts"
+
+  private val descriptors = Array(ShoppingCartViewModel.getDescriptor, ShoppingCart.getDescriptor)
+
+  /** Sets the user id of a cart from the event subject, and counts its items. */
+  final class CartViewImpl extends View[CartViewState] {
+    @volatile var subjectsSeen: Seq[String] = Vector.empty
+
+    override def emptyState(): CartViewState = CartViewState.getDefaultInstance
+
+    def hasUpdateContext: Boolean = Try(updateContext()).isSuccess
+
+    private def subject(): String = {
+      val subject = updateContext().eventSubject().get
+      subjectsSeen :+= subject
+      subject
+    }
+
+    def processAdded(state: CartViewState, added: ShoppingCart.ItemAdded): View.UpdateEffect[CartViewState] = {
+      val userId = subject()
+      val items = state.getNumberOfItems + added.getItem.getQuantity
+      effects().updateState(state.toBuilder.setUserId(userId).setNumberOfItems(items).build)
+    }
+
+    def processRemoved(state: CartViewState, removed: ShoppingCart.ItemRemoved): View.UpdateEffect[CartViewState] = {
+      val userId = subject()
+      val items = state.getNumberOfItems - removed.getQuantity
+      if (items <= 0) effects().deleteState()
+      else effects().updateState(state.toBuilder.setUserId(userId).setNumberOfItems(items).build)
+    }
+  }
+
+  final class CartViewRouter(view: CartViewImpl) extends ViewRouter[CartViewState, CartViewImpl](view) {
+    override def handleUpdate(eventName: String, state: CartViewState, event: Any): View.UpdateEffect[CartViewState] =
+      eventName match {
+        case "ProcessAdded"   => view.processAdded(state, event.asInstanceOf[ShoppingCart.ItemAdded])
+        case "ProcessRemoved" => view.processRemoved(state, event.asInstanceOf[ShoppingCart.ItemRemoved])
+        case _                => throw UpdateHandlerNotFound(eventName)
+      }
+  }
+
+  /** Cart views with the given ids and options, keeping track of the handlers created for them. */
+  final class Views(system: ActorSystem, views: Seq[(String, ViewOptions)]) {
+    val created = new ConcurrentLinkedQueue[CartViewImpl]()
+
+    private val factory: ViewFactory = (_: ViewCreationContext) => {
+      val view = new CartViewImpl
+      created.add(view)
+      new CartViewRouter(view)
+    }
+
+    val impl = new ViewsImpl(system, views.map { case (viewId, options) => viewId -> service(viewId, options) }.toMap)
+
+    private def service(viewId: String, options: ViewOptions): ViewService =
+      new ViewService(
+        Optional.of(factory),
+        ShoppingCartViewModel.getDescriptor.findServiceByName("ShoppingCartViewService"),
+        descriptors,
+        new AnySupport(descriptors, getClass.getClassLoader),
+        viewId,
+        options)
+
+    /** Sends all updates on one stream. */
+    def updateOnOneStream(updates: Seq[pv.ReceiveEvent]): Seq[pv.ViewStreamOut] =
+      Await.result(impl.handle(Source(updates.map(receive))).runWith(Sink.seq)(Materializer(system)), 5.seconds)
+  }
+
+  def cartState(userId: String, numberOfItems: Int): CartViewState =
+    CartViewState.newBuilder.setUserId(userId).setNumberOfItems(numberOfItems).build
+
+  def itemAdded(
+      viewId: String,
+      subject: String,
+      quantity: Int,
+      lookup: Option[CartViewState] = None): pv.ReceiveEvent = {
+    val item = ShoppingCart.LineItem.newBuilder.setProductId("product").setName("name").setQuantity(quantity)
+    update(viewId, "ProcessAdded", subject, ShoppingCart.ItemAdded.newBuilder.setItem(item).build, lookup)
+  }
+
+  def itemRemoved(
+      viewId: String,
+      subject: String,
+      quantity: Int,
+      lookup: Option[CartViewState] = None): pv.ReceiveEvent = {
+    val removed = ShoppingCart.ItemRemoved.newBuilder.setProductId("product").setQuantity(quantity).build
+    update(viewId, "ProcessRemoved", subject, removed, lookup)
+  }
+
+  private def update(
+      viewId: String,
+      eventName: String,
+      subject: String,
+      event: com.google.protobuf.Message,
+      lookup: Option[CartViewState]): pv.ReceiveEvent = {
+    val cloudEvent = Map(
+      MetadataImpl.CeSpecversion -> MetadataImpl.CeSpecversionValue,
+      MetadataImpl.CeId -> "id",
+      MetadataImpl.CeSource -> "source",
+      MetadataImpl.CeType -> event.getDescriptorForType.getFullName,
+      MetadataImpl.CeSubject -> subject)
+    val entries = cloudEvent.map { case (key, value) => MetadataEntry(key, MetadataEntry.Value.StringValue(value)) }
+    pv.ReceiveEvent(
+      serviceName = viewId,
+      commandName = eventName,
+      payload = Some(encode(event)),
+      metadata = Some(Metadata(entries.toSeq)),
+      bySubjectLookupResult = lookup.map(state => pv.Row(value = Some(encode(state)))))
+  }
+
+  private def encode(message: com.google.protobuf.Message): ScalaPbAny =
+    ScalaPbAny.fromJavaProto(com.google.protobuf.Any.pack(message))
+
+  def receive(receiveEvent: pv.ReceiveEvent): pv.ViewStreamIn =
+    pv.ViewStreamIn(pv.ViewStreamIn.Message.Receive(receiveEvent))
+
+  def upsert(state: CartViewState): pv.ViewStreamOut =
+    pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(pv.Upsert(Some(pv.Row(value = Some(encode(state)))))))
+
+  val delete: pv.ViewStreamOut = pv.ViewStreamOut(pv.ViewStreamOut.Message.Delete(pv.Delete()))
+}
@@ -15,16 +15,18 @@ import kalix.javasdk.workflow.WorkflowProvider
 
 object TestWorkflow {
 
-  def service(workflowProvider: WorkflowProvider[_, _]): TestWorkflow =
-    new TestWorkflow(workflowProvider)
+  def service(workflowProvider: WorkflowProvider[_, _], extraConfig: Option[Config] = None): TestWorkflow =
+    new TestWorkflow(workflowProvider, extraConfig)
 
 }
 
-class TestWorkflow(workflowProvider: WorkflowProvider[_, _]) {
+class TestWorkflow(workflowProvider: WorkflowProvider[_, _], extraConfig: Option[Config] = None) {
 
   val port: Int = SocketUtil.temporaryLocalPort()
 
-  val config: Config = ConfigFactory.load(ConfigFactory.parseString(s"""
+  val config: Config = ConfigFactory.load(
+    ConfigFactory
+      .parseString(s"""
     kalix {
       user-function-port = $port
       system.akka {
@@ -32,7 +34,7 @@ class TestWorkflow(workflowProvider: WorkflowProvider[_, _]) {
         coordinated-shutdown.exit-jvm = off
       }
     }
-  """))
+  """).withFallback(extraConfig.getOrElse(ConfigFactory.empty)))
 
   val runner: KalixRunner = new Kalix()
     .register(workflowProvider)
@@ -4,8 +4,17 @@
 
 package kalix.javasdk.impl.workflow
 
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.function.Supplier
+
+import scala.jdk.CollectionConverters._
+
 import com.example.workflow.transfer.MoneyTransferApi
 import com.google.protobuf.Empty
+import com.typesafe.config.Config
+import com.typesafe.config.ConfigFactory
 import io.grpc.Status.Code.INVALID_ARGUMENT
 import kalix.javasdk.impl.AnySupport
 import kalix.javasdk.impl.workflow.WorkflowImplSpec.MoneyTransfer
@@ -25,9 +34,22 @@ class WorkflowImplSpec extends AnyWordSpec with Matchers with BeforeAndAfterAll
   private val service: TestWorkflow = MoneyTransfer.testWorkflow
   private val protocol: TestProtocol = TestProtocol(service.port)
 
+  // remote calls of the workflows below only complete when the test completes them
+  private val remoteCalls = new LinkedBlockingQueue[CompletableFuture[Empty]]()
+  private val parallelStepsService: TestWorkflow = MoneyTransfer.testWorkflow(
+    () => {
+      val call = new CompletableFuture[Empty]()
+      remoteCalls.add(call)
+      call
+    },
+    ConfigFactory.parseString("kalix.workflow.step-parallelism = 2"))
+  private val parallelStepsProtocol: TestProtocol = TestProtocol(parallelStepsService.port)
+
   override def afterAll(): Unit = {
     protocol.terminate()
     service.terminate()
+    parallelStepsProtocol.terminate()
+    parallelStepsService.terminate()
   }
 
   private def assertState(state: Option[ScalaPbAny])(assertFunc: MoneyTransferApi.State => Unit): Unit =
@@ -233,6 +255,52 @@ class WorkflowImplSpec extends AnyWordSpec with Matchers with BeforeAndAfterAll
       depositEffect.transition.isEndTransition shouldBe true
       //-----------------------------------------------------------------
     }
+
+    "answer commands in order while asynchronous steps run when steps run in parallel" in {
+      val workflow = parallelStepsProtocol.workflow.connect()
+      val workflowId = "transfer"
+      workflow.send(init(MoneyTransfer.Name, workflowId))
+      workflow.expect(config())
+
+      workflow.send(command(1, workflowId, "Start", MoneyTransfer.transfer(workflowId, "foo", "bar", 10)))
+      val startState = workflow.expectNext().effect.value.userState.value
+
+      // two remote calls are started and left running
+      workflow.send(executeStep(2, "remoteCall", Empty.getDefaultInstance, startState))
+      workflow.send(executeStep(3, "remoteCall", Empty.getDefaultInstance, startState))
+
+      // the commands that follow are answered in order, each one seeing the state left by the previous one
+      workflow.send(command(4, workflowId, "SignOff", MoneyTransfer.owner("Alice")))
+      workflow.send(command(5, workflowId, "SignOff", MoneyTransfer.owner("John")))
+      val firstSignOff = workflow.expectNext().effect.value
+      firstSignOff.commandId shouldBe 4
+      assertState(firstSignOff.userState)(_.getSignOffsList.asScala shouldBe Seq("Alice"))
+      val secondSignOff = workflow.expectNext().effect.value
+      secondSignOff.commandId shouldBe 5
+      assertState(secondSignOff.userState)(_.getSignOffsList.asScala shouldBe Seq("Alice", "John"))
+
+      // both calls were started before the commands were handled, a step response is sent when its call completes
+      remoteCalls.size shouldBe 2
+      val firstCall = remoteCalls.poll()
+      val secondCall = remoteCalls.poll()
+      secondCall.complete(Empty.getDefaultInstance)
+      val secondResponse = workflow.expectNext().response.value
+      secondResponse.commandId shouldBe 3
+      secondResponse.response.isExecuted shouldBe true
+      firstCall.complete(Empty.getDefaultInstance)
+      val firstResponse = workflow.expectNext().response.value
+      firstResponse.commandId shouldBe 2
+      firstResponse.response.isExecuted shouldBe true
+
+      // the transition sees the state left by the last command
+      workflow.send(getNextStep(6, "remoteCall", Empty.getDefaultInstance))
+      val effectAfterRemoteCall = workflow.expectNext().effect.value
+      effectAfterRemoteCall.commandId shouldBe 6
+      assertState(effectAfterRemoteCall.userState) { state =>
+        state.getLog shouldBe "remote-call"
+        state.getSignOffsList.asScala shouldBe Seq("Alice", "John")
+      }
+    }
   }
 
 }
@@ -249,6 +317,9 @@ object WorkflowImplSpec {
     def testWorkflow: TestWorkflow =
       TestWorkflow.service(TransferWorkflowProvider.of(_ => new TransferWorkflow()));
 
+    def testWorkflow(remoteCalls: Supplier[CompletionStage[Empty]], extraConfig: Config): TestWorkflow =
+      TestWorkflow.service(TransferWorkflowProvider.of(_ => new TransferWorkflow(remoteCalls)), Some(extraConfig))
+
     def owner(name: String): MoneyTransferApi.Owner =
       MoneyTransferApi.Owner.newBuilder().setName(name).build()
 
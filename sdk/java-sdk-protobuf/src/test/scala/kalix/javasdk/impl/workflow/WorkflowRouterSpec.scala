@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.workflow
+
+import java.util.concurrent.CompletableFuture
+
+import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.workflow.WorkflowRouter.CommandHandlerNotFound
+import kalix.javasdk.impl.workflow.WorkflowRouter.WorkflowStepNotFound
+import kalix.javasdk.workflow.AbstractWorkflow
+import kalix.javasdk.workflow.CommandContext
+import kalix.javasdk.workflow.Workflow
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class WorkflowRouterSpec extends AnyWordSpec with Matchers {
+  import WorkflowRouterSpec._
+
+  private val messageCodec = new AnySupport(Array.empty, getClass.getClassLoader)
+
+  private def nextStep(router: StateDependentWorkflowRouter, stepName: String): WorkflowRouter.CommandResult =
+    router._internalGetNextStep(stepName, messageCodec.encodeScala("result"), messageCodec)
+
+  "The workflow router" should {
+
+    "build the definition once and look up steps in it" in {
+      val workflow = new StateDependentWorkflow
+      val router = new StateDependentWorkflowRouter(workflow)
+      router._internalSetInitState("initial", finished = false)
+
+      (1 to 3).foreach(_ => nextStep(router, "start").effect should not be null)
+      workflow.definitionsBuilt shouldBe 1
+
+      // the definition built for the new state has the extra step, the cached one is used for the lookup
+      router._internalSetInitState("extended", finished = false)
+      an[WorkflowStepNotFound] should be thrownBy nextStep(router, "extra")
+      workflow.definitionsBuilt shouldBe 1
+    }
+
+    "fail a step lookup when validating definition caching and the definition depends on the state" in {
+      val workflow = new StateDependentWorkflow
+      val router = new StateDependentWorkflowRouter(workflow)
+      router._internalValidateDefinitionCaching(true)
+      router._internalSetInitState("initial", finished = false)
+
+      nextStep(router, "start").effect should not be null
+
+      router._internalSetInitState("extended", finished = false)
+      val failure = intercept[IllegalStateException](nextStep(router, "start"))
+      failure.getMessage should include("changed after it was first built")
+    }
+  }
+}
+
+object WorkflowRouterSpec {
+
+  /** A workflow with a definition that wrongly depends on its state. */
+  final class StateDependentWorkflow extends Workflow[String] {
+    @volatile var definitionsBuilt = 0
+
+    override def definition(): AbstractWorkflow.WorkflowDef[String] = {
+      definitionsBuilt += 1
+      val definition = workflow().addStep(echo("start"))
+      if (currentState() == "extended") definition.addStep(echo("extra"))
+      else definition
+    }
+
+    private def echo(name: String): AbstractWorkflow.Step =
+      step(name)
+        .asyncCall[String, String](classOf[String], input => CompletableFuture.completedFuture(input))
+        .andThen(classOf[String], _ => effects().end())
+  }
+
+  final class StateDependentWorkflowRouter(stateDependentWorkflow: StateDependentWorkflow)
+      extends WorkflowRouter[String, StateDependentWorkflow](stateDependentWorkflow) {
+    override protected def handleCommand(
+        commandName: String,
+        state: String,
+        command: Any,
+        context: CommandContext): AbstractWorkflow.Effect[_] =
+      throw CommandHandlerNotFound(commandName)
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.testkit
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scala.concurrent.Future
+import scala.jdk.CollectionConverters._
+
+import akka.Done
+import kalix.javasdk.impl.timer.TimerRegistrations.Headers
+import kalix.javasdk.impl.timer.TimerRegistrations.TimerOperation
+import kalix.javasdk.impl.timer.TimerRegistrations.TimerServiceCalls
+
+/**
+ * Local stand-in for the timer service of the runtime, accepts every operation and keeps the calls it received.
+ */
+final class TestTimerService extends TimerServiceCalls {
+  private val received = new ConcurrentLinkedQueue[TimerOperation]()
+
+  override def send(operation: TimerOperation, headers: Headers): Future[Done] = {
+    received.add(operation)
+    Future.successful(Done)
+  }
+
+  def calls: Seq[TimerOperation] = received.asScala.toVector
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * INTERNAL API
+ *
+ * <p>Invokes a component method through a {@link MethodHandle} resolved once, with one entry point
+ * per number of parameters so that the common arities do not need an argument array.
+ *
+ * <p>Exceptions thrown by the method are wrapped in an {@link InvocationTargetException}, so
+ * failures surface exactly as they did with {@link Method#invoke(Object, Object...)}.
+ */
+public abstract class MethodHandleInvoker {
+
+  private MethodHandleInvoker() {}
+
+  public abstract Object invoke0(Object instance) throws InvocationTargetException;
+
+  public abstract Object invoke1(Object instance, Object arg) throws InvocationTargetException;
+
+  public abstract Object invoke2(Object instance, Object arg1, Object arg2)
+      throws InvocationTargetException;
+
+  public abstract Object invokeN(Object instance, Object[] args) throws InvocationTargetException;
+
+  public static MethodHandleInvoker of(Method method) {
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      // not accessible to a method handle lookup, keep the reflective call and its access rules
+      return new Reflective(method);
+    }
+    int arity = method.getParameterCount();
+    if (arity <= 2) {
+      // (Object, Object...)Object, so that invokeExact needs no boxing or casting at the call site
+      return new Exact(handle.asType(MethodType.genericMethodType(arity + 1)));
+    } else {
+      return new Spreading(handle.asSpreader(Object[].class, arity).asType(
+          MethodType.methodType(Object.class, Object.class, Object[].class)));
+    }
+  }
+
+  private static final class Exact extends MethodHandleInvoker {
+    private final MethodHandle handle;
+
+    Exact(MethodHandle handle) {
+      this.handle = handle;
+    }
+
+    @Override
+    public Object invoke0(Object instance) throws InvocationTargetException {
+      try {
+        return (Object) handle.invokeExact(instance);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+
+    @Override
+    public Object invoke1(Object instance, Object arg) throws InvocationTargetException {
+      try {
+        return (Object) handle.invokeExact(instance, arg);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+
+    @Override
+    public Object invoke2(Object instance, Object arg1, Object arg2)
+        throws InvocationTargetException {
+      try {
+        return (Object) handle.invokeExact(instance, arg1, arg2);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+
+    @Override
+    public Object invokeN(Object instance, Object[] args) throws InvocationTargetException {
+      switch (args.length) {
+        case 0:
+          return invoke0(instance);
+        case 1:
+          return invoke1(instance, args[0]);
+        default:
+          return invoke2(instance, args[0], args[1]);
+      }
+    }
+  }
+
+  private static final class Spreading extends MethodHandleInvoker {
+    private final MethodHandle handle;
+
+    Spreading(MethodHandle handle) {
+      this.handle = handle;
+    }
+
+    @Override
+    public Object invoke0(Object instance) throws InvocationTargetException {
+      return invokeN(instance, new Object[0]);
+    }
+
+    @Override
+    public Object invoke1(Object instance, Object arg) throws InvocationTargetException {
+      return invokeN(instance, new Object[] {arg});
+    }
+
+    @Override
+    public Object invoke2(Object instance, Object arg1, Object arg2)
+        throws InvocationTargetException {
+      return invokeN(instance, new Object[] {arg1, arg2});
+    }
+
+    @Override
+    public Object invokeN(Object instance, Object[] args) throws InvocationTargetException {
+      try {
+        return (Object) handle.invokeExact(instance, args);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+  }
+
+  private static final class Reflective extends MethodHandleInvoker {
+    private final Method method;
+
+    Reflective(Method method) {
+      this.method = method;
+    }
+
+    @Override
+    public Object invoke0(Object instance) throws InvocationTargetException {
+      return invokeN(instance, new Object[0]);
+    }
+
+    @Override
+    public Object invoke1(Object instance, Object arg) throws InvocationTargetException {
+      return invokeN(instance, new Object[] {arg});
+    }
+
+    @Override
+    public Object invoke2(Object instance, Object arg1, Object arg2)
+        throws InvocationTargetException {
+      return invokeN(instance, new Object[] {arg1, arg2});
+    }
+
+    @Override
+    public Object invokeN(Object instance, Object[] args) throws InvocationTargetException {
+      try {
+        return method.invoke(instance, args);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
@@ -7,6 +7,7 @@ package kalix.javasdk.client
 import java.lang.reflect.Method
 import java.lang.reflect.ParameterizedType
 import java.util
+import java.util.concurrent.ConcurrentHashMap
 
 import scala.jdk.CollectionConverters._
 import akka.http.scaladsl.model.HttpMethods
@@ -88,16 +89,36 @@ object ComponentCall {
     currMetadata
   }
 
-  private[client] def invoke[R](
-      params: Seq[scala.Any],
-      kalixClient: KalixClient,
-      method: Method,
-      ids: List[String],
-      callMetadata: Optional[Metadata]): DeferredCall[Any, R] = {
-
+  /**
+   * Everything about a call that only depends on the method, resolved on the first call and reused after that.
+   */
+  private final class CallPlan(
+      val requestMethod: RequestMethod,
+      val pathTemplate: String,
+      val returnType: Class[_],
+      val queryParams: Array[QueryParamParameter],
+      val pathParams: Array[PathParameter],
+      val bodyIndex: Option[Int],
+      // None when the id is not passed in by the caller, i.e. not an entity or workflow, or a generated id
+      val idNames: Option[Seq[String]])
+
+  // per declaring class so that the cache doesn't hold on to user classes
+  private val callPlans = new ClassValue[ConcurrentHashMap[Method, CallPlan]] {
+    override def computeValue(declaringClass: Class[_]): ConcurrentHashMap[Method, CallPlan] =
+      new ConcurrentHashMap[Method, CallPlan]()
+  }
+
+  private def callPlan(method: Method): CallPlan = {
+    val plans = callPlans.get(method.getDeclaringClass)
+    val plan = plans.get(method)
+    if (plan ne null) plan
+    else plans.computeIfAbsent(method, m => createCallPlan(m))
+  }
+
+  private def createCallPlan(method: Method): CallPlan = {
     val declaringClass = method.getDeclaringClass
 
-    val returnType: Class[R] = getReturnType(declaringClass, method)
+    val returnType: Class[_] = getReturnType(declaringClass, method)
 
     val restService: RestService = RestServiceIntrospector.inspectService(declaringClass)
     val restMethod: SyntheticRequestServiceMethod =
@@ -106,24 +127,40 @@ object ComponentCall {
         case None => throw new IllegalStateException(s"Method [${method.getName}] is not annotated as a REST endpoint.")
       }
 
-    val requestMethod: RequestMethod = restMethod.requestMethod
+    new CallPlan(
+      restMethod.requestMethod,
+      restMethod.parsedPath.path,
+      returnType,
+      restMethod.params.collect { case p: QueryParamParameter => p }.toArray,
+      restMethod.params.collect { case p: PathParameter => p }.toArray,
+      restMethod.params.collect { case p: BodyParameter => p }.map(_.param.getParameterIndex).headOption,
+      idNames(method))
+  }
 
-    val queryParams: Map[String, util.List[scala.Any]] = restMethod.params
-      .collect { case p: QueryParamParameter => p }
+  private[client] def invoke[R](
+      params: Seq[scala.Any],
+      kalixClient: KalixClient,
+      method: Method,
+      ids: List[String],
+      callMetadata: Optional[Metadata]): DeferredCall[Any, R] = {
+
+    val plan = callPlan(method)
+    val returnType = plan.returnType.asInstanceOf[Class[R]]
+    val requestMethod = plan.requestMethod
+
+    val queryParams: Map[String, util.List[scala.Any]] = plan.queryParams
       .map(p => (p.name, getQueryParam(params, p.param.getParameterIndex)))
       .toMap
 
-    val pathVariables: Map[String, ?] = restMethod.params
-      .collect { case p: PathParameter => p }
+    val pathVariables: Map[String, ?] = plan.pathParams
       .map(p => (p.name, getPathParam(params, p.param.getParameterIndex, p.name)))
-      .toMap ++ idVariables(ids, method)
+      .toMap ++ idVariables(ids, method, plan.idNames)
 
-    val bodyIndex = restMethod.params.collect { case p: BodyParameter => p }.map(_.param.getParameterIndex).headOption
-    val body = bodyIndex.map(params(_))
+    val body = plan.bodyIndex.map(params(_))
 
     val kalixClientImpl = kalixClient.asInstanceOf[RestKalixClientImpl]
 
-    val pathTemplate = restMethod.parsedPath.path
+    val pathTemplate = plan.pathTemplate
 
     val deferredCall =
       requestMethod match {
@@ -186,29 +223,34 @@ object ComponentCall {
     throw new IllegalStateException(s"HTTP $requestMethod not supported when calling $pathTemplate")
   }
 
-  private def idVariables(ids: List[String], method: Method): Map[String, String] = {
-
+  private def idNames(method: Method): Option[Seq[String]] = {
     val declaringClass = method.getDeclaringClass
     if (declaringClass.getAnnotation(classOf[TypeId]) == null) {
       //not an entity or workflows
-      Map.empty
+      None
     } else if (IdExtractor.shouldGenerateId(method)) {
-      Map.empty
+      None
     } else {
-      val idNames = IdExtractor.extractIds(declaringClass, method)
-      if (ids.isEmpty) {
-        throw new IllegalStateException(s"Id is missing when calling [${method.getName}] method")
-      } else if (ids.size != idNames.size) {
-        throw new IllegalStateException(
-          s"Expecting ${idNames.size} instead of ${ids.size} when calling [${method.getName}] method. Provide values for [${idNames
-            .mkString(", ")}] ids.")
-      } else if (idNames.size == 1) { //single key
-        Map(idNames.head -> ids.head)
-      } else { //compound key
-        idNames.zip(ids).toMap
-      }
+      Some(IdExtractor.extractIds(declaringClass, method))
     }
   }
+
+  private def idVariables(ids: List[String], method: Method, idNames: Option[Seq[String]]): Map[String, String] =
+    idNames match {
+      case None => Map.empty
+      case Some(idNames) =>
+        if (ids.isEmpty) {
+          throw new IllegalStateException(s"Id is missing when calling [${method.getName}] method")
+        } else if (ids.size != idNames.size) {
+          throw new IllegalStateException(
+            s"Expecting ${idNames.size} instead of ${ids.size} when calling [${method.getName}] method. Provide values for [${idNames
+              .mkString(", ")}] ids.")
+        } else if (idNames.size == 1) { //single key
+          Map(idNames.head -> ids.head)
+        } else { //compound key
+          idNames.zip(ids).toMap
+        }
+    }
 }
 
 // format: off
@@ -8,6 +8,7 @@ import java.lang.reflect.Method
 
 import com.fasterxml.jackson.annotation.JsonSubTypes
 import com.google.protobuf.Descriptors
+import kalix.javasdk.impl.reflection.MethodHandleInvoker
 import kalix.javasdk.impl.reflection.ParameterExtractor
 import org.slf4j.LoggerFactory
 
@@ -20,28 +21,30 @@ case class CommandHandler(
   val logger = LoggerFactory.getLogger(classOf[CommandHandler])
 
   /**
-   * This method will look up for a registered method that receives a super type of the incoming payload. It's only
-   * called when a direct method is not found.
+   * Registered methods that receive a super type of the incoming payload, by the typeUrl of each of its sub types. Only
+   * used when a direct method is not found.
    *
    * The incoming typeUrl is for one of the existing sub types, but the method itself is defined to receive a super
-   * type. Therefore we look up the method parameter to find out if one of its sub types matches the incoming typeUrl.
+   * type. Therefore the sub types declared on the method parameter are resolved once, instead of on every miss.
    */
-  private def lookupMethodAcceptingSubType(inputTypeUrl: String): Option[MethodInvoker] = {
-    methodInvokers.values.find { javaMethod =>
-      val lastParam = javaMethod.method.getParameterTypes.last
-      if (lastParam.getAnnotation(classOf[JsonSubTypes]) != null) {
-        lastParam.getAnnotation(classOf[JsonSubTypes]).value().exists { subType =>
-          inputTypeUrl == messageCodec
-            .typeUrlFor(subType.value()) //TODO requires more changes to be used with JsonMigration
-        }
-      } else false
+  private lazy val methodsAcceptingSubType: Map[String, MethodInvoker] =
+    methodInvokers.values.foldLeft(Map.empty[String, MethodInvoker]) { (acc, javaMethod) =>
+      javaMethod.method.getParameterTypes.lastOption.flatMap(p => Option(p.getAnnotation(classOf[JsonSubTypes]))) match {
+        case Some(subTypes) =>
+          subTypes.value().foldLeft(acc) { (acc, subType) =>
+            //TODO requires more changes to be used with JsonMigration
+            val typeUrl = messageCodec.typeUrlFor(subType.value())
+            // the first method found wins, like the linear scan did
+            if (acc.contains(typeUrl)) acc else acc.updated(typeUrl, javaMethod)
+          }
+        case None => acc
+      }
     }
-  }
 
   def lookupInvoker(inputTypeUrl: String): Option[MethodInvoker] =
     methodInvokers
       .get(messageCodec.removeVersion(inputTypeUrl))
-      .orElse(lookupMethodAcceptingSubType(inputTypeUrl))
+      .orElse(methodsAcceptingSubType.get(inputTypeUrl))
 
   def getInvoker(inputTypeUrl: String): MethodInvoker =
     lookupInvoker(inputTypeUrl).getOrElse {
@@ -59,15 +62,34 @@ object MethodInvoker {
 
 case class MethodInvoker(method: Method, parameterExtractors: Array[ParameterExtractor[InvocationContext, AnyRef]]) {
 
+  // resolved once when the component is registered, instead of going through Method.invoke on every call
+  private val invoker = MethodHandleInvoker.of(method)
+
   /**
    * To invoke methods with parameters an InvocationContext is necessary extract them from the message.
    */
   def invoke(componentInstance: AnyRef, invocationContext: InvocationContext): AnyRef =
-    method.invoke(componentInstance, parameterExtractors.map(e => e.extract(invocationContext)): _*)
+    parameterExtractors.length match {
+      case 0 => invoker.invoke0(componentInstance)
+      case 1 => invoker.invoke1(componentInstance, parameterExtractors(0).extract(invocationContext))
+      case 2 =>
+        invoker.invoke2(
+          componentInstance,
+          parameterExtractors(0).extract(invocationContext),
+          parameterExtractors(1).extract(invocationContext))
+      case _ =>
+        invoker.invokeN(componentInstance, parameterExtractors.map(e => e.extract(invocationContext)))
+    }
+
+  /**
+   * To invoke methods with arity one, with a parameter that doesn't need to be extracted from a message.
+   */
+  def invokeDirectly(componentInstance: AnyRef, parameter: AnyRef): AnyRef =
+    invoker.invoke1(componentInstance, parameter)
 
   /**
    * To invoke methods with arity zero.
    */
   def invoke(componentInstance: AnyRef): AnyRef =
-    method.invoke(componentInstance)
+    invoker.invoke0(componentInstance)
 }
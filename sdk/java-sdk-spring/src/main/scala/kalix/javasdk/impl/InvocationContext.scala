@@ -20,24 +20,42 @@ object InvocationContext {
   def apply(
       anyMessage: ScalaPbAny,
       methodDescriptor: Descriptors.Descriptor,
-      metadata: Metadata = Metadata.EMPTY): InvocationContext = {
-
-    val dynamicMessage =
-      if (AnySupport.isJsonTypeUrl(anyMessage.typeUrl) ||
-        anyMessage.typeUrl == BytesPrimitive.fullName) {
-        DynamicMessage
-          .newBuilder(methodDescriptor)
-          .setField(typeUrlField, anyMessage.typeUrl)
-          .setField(valueField, anyMessage.value)
-          .build()
-
-      } else {
-        DynamicMessage.parseFrom(methodDescriptor, anyMessage.value)
-      }
-
-    new InvocationContext(dynamicMessage, metadata)
-  }
+      metadata: Metadata = Metadata.EMPTY): InvocationContext =
+    new InvocationContext(anyMessage, methodDescriptor, metadata)
+
+  /**
+   * JSON and bytes payloads are passed to the handler as the `Any` they arrive in, anything else is the encoded input
+   * message of the method.
+   */
+  def isAnyPayload(typeUrl: String): Boolean =
+    AnySupport.isJsonTypeUrl(typeUrl) || typeUrl == BytesPrimitive.fullName
+
+  private def toDynamicMessage(anyMessage: ScalaPbAny, methodDescriptor: Descriptors.Descriptor): DynamicMessage =
+    if (isAnyPayload(anyMessage.typeUrl)) {
+      DynamicMessage
+        .newBuilder(methodDescriptor)
+        .setField(typeUrlField, anyMessage.typeUrl)
+        .setField(valueField, anyMessage.value)
+        .build()
+
+    } else {
+      DynamicMessage.parseFrom(methodDescriptor, anyMessage.value)
+    }
 }
-class InvocationContext(val message: DynamicMessage, val metadata: Metadata)
+
+/**
+ * The message is only materialized as a `DynamicMessage` when a parameter of the handler needs it, bodies are decoded
+ * straight from the incoming `Any`.
+ */
+class InvocationContext(val anyMessage: ScalaPbAny, methodDescriptor: Descriptors.Descriptor, val metadata: Metadata)
     extends DynamicMessageContext
-    with MetadataContext
+    with MetadataContext {
+
+  private var _message: DynamicMessage = _
+
+  override def message: DynamicMessage = {
+    // only used from the thread handling the command
+    if (_message eq null) _message = InvocationContext.toDynamicMessage(anyMessage, methodDescriptor)
+    _message
+  }
+}
@@ -41,10 +41,23 @@ private[kalix] class JsonMessageCodec extends MessageCodec {
       case scalaPbAny: ScalaPbAny     => scalaPbAny
       case httpResponse: HttpResponse => ScalaPbAny.fromJavaProto(encodeJava(httpResponse))
       case bytes: Array[Byte] => ScalaPbAny.fromJavaProto(JavaPbAny.pack(BytesValue.of(ByteString.copyFrom(bytes))))
-      case other => ScalaPbAny.fromJavaProto(JsonSupport.encodeJson(other, lookupTypeHintWithVersion(other)))
+      // straight to the Scala protobuf Any used by the protocol, without a Java protobuf Any in between
+      case other =>
+        val typeUrl = JsonSupport.KALIX_JSON + lookupTypeHintWithVersion(other)
+        ScalaPbAny(typeUrl, JsonSupport._internalEncodeJsonValue(other))
     }
   }
 
+  /**
+   * Byte arrays are encoded as JSON, like [[encodeJava]] does, rather than as the BytesValue of [[encodeScala]]. Entities
+   * have always stored and replied with them that way.
+   */
+  override def encodeJavaAsScala(value: Any): ScalaPbAny =
+    value match {
+      case bytes: Array[Byte] => ScalaPbAny.fromJavaProto(encodeJava(bytes))
+      case other              => encodeScala(other)
+    }
+
   override def encodeJava(value: Any): JavaPbAny = {
     if (value == null) throw NullSerializationException
     value match {
@@ -204,5 +217,8 @@ private[kalix] class StrictJsonMessageCodec(delegate: JsonMessageCodec) extends
   override def encodeJava(value: Any): JavaPbAny =
     delegate.encodeJava(value)
 
+  override def encodeJavaAsScala(value: Any): ScalaPbAny =
+    delegate.encodeJavaAsScala(value)
+
   override def typeUrlFor(clz: Class[_]): String = delegate.typeUrlFor(clz)
 }
@@ -6,13 +6,32 @@ package kalix.javasdk.impl.client
 
 import java.lang.invoke.SerializedLambda
 import java.lang.reflect.Method
+import java.util.concurrent.atomic.AtomicReference
 
 private[kalix] object MethodRefResolver {
 
+  // The JVM spins one class per method reference call site, so the class identifies the referenced method. A ClassValue
+  // doesn't keep the lambda classes, and their class loaders, from being unloaded.
+  private val resolved = new ClassValue[AtomicReference[Method]] {
+    override def computeValue(lambdaType: Class[_]): AtomicReference[Method] = new AtomicReference[Method]()
+  }
+
   /**
-   * Resolve the method ref for a lambda.
+   * Resolve the method ref for a lambda. The method is resolved once per lambda class and cached.
    */
   def resolveMethodRef(lambda: Any): Method = {
+    val cached = resolved.get(lambda.getClass)
+    val method = cached.get()
+    if (method ne null) method
+    else {
+      // racing resolutions resolve to the same method, so it doesn't matter which one is kept
+      val method = resolve(lambda)
+      cached.set(method)
+      method
+    }
+  }
+
+  private def resolve(lambda: Any): Method = {
     val lambdaType = lambda.getClass
 
     if (!classOf[java.io.Serializable].isInstance(lambda)) {
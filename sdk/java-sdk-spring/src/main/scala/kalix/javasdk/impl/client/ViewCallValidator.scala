@@ -5,6 +5,7 @@
 package kalix.javasdk.impl.client
 
 import java.lang.reflect.Method
+import java.util.concurrent.ConcurrentHashMap
 
 import kalix.javasdk.action.Action
 import kalix.javasdk.annotations.Query
@@ -17,7 +18,20 @@ import org.springframework.web.bind.annotation.RequestParam
 
 object ViewCallValidator {
 
+  // methods that passed validation, per declaring class so that the cache doesn't hold on to user classes
+  private val validated = new ClassValue[java.util.Set[Method]] {
+    override def computeValue(declaringClass: Class[_]): java.util.Set[Method] = ConcurrentHashMap.newKeySet[Method]()
+  }
+
   def validate(method: Method): Unit = {
+    val validatedMethods = validated.get(method.getDeclaringClass)
+    if (!validatedMethods.contains(method)) {
+      doValidate(method)
+      validatedMethods.add(method)
+    }
+  }
+
+  private def doValidate(method: Method): Unit = {
     val declaringClass = method.getDeclaringClass
     if (classOf[Action].isAssignableFrom(declaringClass)
       || classOf[ValueEntity[_]].isAssignableFrom(declaringClass)
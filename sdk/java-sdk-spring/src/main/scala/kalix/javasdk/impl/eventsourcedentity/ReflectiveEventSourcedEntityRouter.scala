@@ -50,8 +50,8 @@ class ReflectiveEventSourcedEntityRouter[S, E, ES <: EventSourcedEntity[S, E]](
       case _ => // processing runtime event coming from memory
         val typeName = messageCodec.typeUrlFor(event.getClass)
 
-        eventHandlerLookup(typeName).method
-          .invoke(entity, event.asInstanceOf[event.type])
+        eventHandlerLookup(typeName)
+          .invokeDirectly(entity, event.asInstanceOf[AnyRef])
           .asInstanceOf[S]
     }
   }
@@ -38,7 +38,8 @@ import com.google.protobuf.DynamicMessage
 import com.google.protobuf.descriptor.{ MethodOptions => spbMethodOptions }
 import com.google.protobuf.util.Durations
 import com.google.protobuf.util.Timestamps
-import kalix.javasdk.impl.http.HttpEndpointMethodDefinition.lookupFieldByName
+import kalix.javasdk.impl.http.HttpEndpointMethodDefinition.ParameterBinder
+import kalix.javasdk.impl.http.HttpEndpointMethodDefinition.parserFor
 import kalix.javasdk.impl.http.HttpEndpointMethodDefinition.parsingError
 import kalix.javasdk.impl.path.PathPatternParseException
 import org.slf4j.LoggerFactory
@@ -60,7 +61,11 @@ object HttpEndpointMethodDefinition {
 
   // For descriptive purposes so it's clear what these types do
   private type PathParameterEffect = (FieldDescriptor, Option[Any]) => Unit
-  private type ExtractPathParameters = (Matcher, PathParameterEffect) => Unit
+  // the raw value of each variable of the path template, by its position in the template starting from 1
+  private type PathValues = Int => String
+  private type ExtractPathParameters = (PathValues, PathParameterEffect) => Unit
+  // sets a field of the input message from the value(s) of the named parameter
+  private type ParameterBinder[V] = (String, V, DynamicMessage.Builder) => Unit
 
   // This is used to support the "*" custom pattern
   val ANY_METHOD =
@@ -267,9 +272,9 @@ object HttpEndpointMethodDefinition {
 
     (
       template,
-      (matcher, effect) => {
+      (pathValues, effect) => {
         pathFieldParsers.foreach { case ((_, field, parser), idx) =>
-          val rawValue = matcher.group(idx + 1)
+          val rawValue = pathValues(idx + 1)
           // When encoding, we need to be careful to only encode / if it's a single segment variable. But when
           // decoding, it doesn't matter, we decode %2F if it's there regardless.
           val decoded = URLDecoder.decode(rawValue, UTF_8)
@@ -305,6 +310,15 @@ object HttpEndpointMethodDefinition {
     desc.findFieldByName(selector) // TODO potentially start supporting path-like selectors with maximum nesting level?
 
   private def parsingError(msg: String): Nothing = throw ParsingException(new ErrorInfo(msg))
+
+  private final class NoParser(message: String) extends RuntimeException(message, null, false, false)
+
+  // the parser for values of the field, or why there is none
+  private def parserFor(field: FieldDescriptor): Either[String, String => Option[Any]] =
+    try Right(HttpEndpointMethod.suitableParserFor(field)(message => throw new NoParser(message)))
+    catch {
+      case e: NoParser => Left(e.getMessage)
+    }
 }
 
 final case class HttpEndpointMethodDefinition private (
@@ -317,11 +331,9 @@ final case class HttpEndpointMethodDefinition private (
     responseBodyDescriptor: Option[FieldDescriptor]) {
 
   // Making this a method so we can ensure it's used the same way
+  // paths are routed to a definition by a PathRouter, the regex is only used when checking a single definition
   private def pathMatcher(path: String): Matcher =
-    pathTemplate.regex.pattern
-      .matcher(
-        path
-      ) // FIXME path.toString is costly, and using Regexes are too, switch to using a generated parser instead
+    pathTemplate.regex.pattern.matcher(path)
 
   def matches(path: String): Boolean =
     pathMatcher(path).matches()
@@ -329,40 +341,33 @@ final case class HttpEndpointMethodDefinition private (
   private def lookupRequestFieldByPath(selector: String): Descriptors.FieldDescriptor =
     HttpEndpointMethodDefinition.lookupFieldByPath(methodDescriptor.getInputType, selector)
 
-  def parseTypedPathParametersInto(pathVariables: Map[String, ?], inputBuilder: DynamicMessage.Builder): Unit = {
-
-    //TODO fix exceptions msgs
+  def parseTypedPathParametersInto(pathVariables: Map[String, ?], inputBuilder: DynamicMessage.Builder): Unit =
     pathVariables.foreach { case (fieldName, value) =>
-      val field = lookupFieldByName(methodDescriptor.getInputType, fieldName) match {
+      typedPathParameterBinders.get(fieldName) match {
         case null =>
           parsingError(
             s"HTTP API path template for [${methodDescriptor.getFullName}] references an unknown field named [$fieldName], methDesc)")
-        case field =>
-          if (field.isMapField)
-            parsingError(
-              s"HTTP API path template for [${methodDescriptor.getFullName}] references [$fieldName] but that is a map field")
-          else if (field.isRepeated)
-            parsingError(
-              s"HTTP API path template for [${methodDescriptor.getFullName}] references [$fieldName] but that is a repeated fieldfield")
-          else {
-            val notSupported =
-              (message: String) => parsingError(s"HTTP API path for [${methodDescriptor.getFullName}]: $message")
-
-            //we don't need a parser, just to check if the type is supported
-            HttpEndpointMethod.suitableParserFor(field)(notSupported)
-            field
-          }
+        case binder => binder(fieldName, value, inputBuilder)
       }
-
-      inputBuilder.setField(field, value)
     }
-  }
 
   def parsePathParametersInto(path: String, inputBuilder: DynamicMessage.Builder): Unit = {
     val matcher = pathMatcher(path)
     matcher.find()
+    parsePathValuesInto(matcher.group(_), inputBuilder)
+  }
+
+  /**
+   * Sets the fields of the path template variables from their values as matched by a [[PathRouter]].
+   */
+  def parsePathParametersInto(pathValues: Array[String], inputBuilder: DynamicMessage.Builder): Unit =
+    parsePathValuesInto(group => pathValues(group - 1), inputBuilder)
+
+  private def parsePathValuesInto(
+      pathValues: HttpEndpointMethodDefinition.PathValues,
+      inputBuilder: DynamicMessage.Builder): Unit = {
     pathExtractor(
-      matcher,
+      pathValues,
       (field, value) =>
         inputBuilder.setField(
           field,
@@ -379,68 +384,121 @@ final case class HttpEndpointMethodDefinition private (
   private def requestError(msg: String): Nothing =
     throw IllegalRequestException(StatusCodes.BadRequest, new ErrorInfo(msg))
 
+  // The fields of the input message are checked and given a parser once, when the definition is extracted, so binding
+  // a parameter is a lookup by name. Query parameters selecting a field of a nested message are resolved per request.
+  private val typedPathParameterBinders = bindersByName(typedPathParameterBinder)
+  private val typedRequestParameterBinders = bindersByName(typedRequestParameterBinder)
+  private val requestParameterBinders = bindersByName(requestParameterBinder)
+
+  private def bindersByName[V](binder: FieldDescriptor => ParameterBinder[V]): util.Map[String, ParameterBinder[V]] = {
+    val binders = new util.HashMap[String, ParameterBinder[V]]()
+    methodDescriptor.getInputType.getFields.forEach(field => binders.put(field.getName, binder(field)))
+    binders
+  }
+
+  private def bindingFor[V](
+      binders: util.Map[String, ParameterBinder[V]],
+      selector: String,
+      binder: FieldDescriptor => ParameterBinder[V]): ParameterBinder[V] =
+    binders.get(selector) match {
+      case null =>
+        lookupRequestFieldByPath(selector) match {
+          case null  => requestError(s"Query parameter [$selector] refers to a non-existent field.")
+          case field => binder(field)
+        }
+      case bound => bound
+    }
+
+  private def typedPathParameterBinder(field: FieldDescriptor): ParameterBinder[scala.Any] =
+    if (field.isMapField)
+      (fieldName, _, _) =>
+        parsingError(
+          s"HTTP API path template for [${methodDescriptor.getFullName}] references [$fieldName] but that is a map field")
+    else if (field.isRepeated)
+      (fieldName, _, _) =>
+        parsingError(
+          s"HTTP API path template for [${methodDescriptor.getFullName}] references [$fieldName] but that is a repeated fieldfield")
+    else
+      //we don't need a parser, just to check if the type is supported
+      parserFor(field) match {
+        case Left(message) =>
+          (_, _, _) => parsingError(s"HTTP API path for [${methodDescriptor.getFullName}]: $message")
+        case Right(_) =>
+          (_, value, inputBuilder) => inputBuilder.setField(field, value)
+      }
+
+  private def typedRequestParameterBinder(field: FieldDescriptor): ParameterBinder[util.List[scala.Any]] =
+    if (field.getJavaType == FieldDescriptor.JavaType.MESSAGE)
+      (name, _, _) =>
+        requestError(s"Query parameter [$name] refers to a message type. Only scalar value types are supported.")
+    else if (field.isRepeated)
+      (_, values, inputBuilder) => values.forEach(v => inputBuilder.addRepeatedField(field, v))
+    else
+      (name, values, inputBuilder) =>
+        if (values.size() > 1) requestError(s"Query parameter [$name] has multiple values for a non-repeated field.")
+        else inputBuilder.setField(field, values.get(0))
+
+  private def requestParameterBinder(field: FieldDescriptor): ParameterBinder[List[String]] =
+    if (field.getJavaType == FieldDescriptor.JavaType.MESSAGE)
+      //this is actually not supported at the moment: https://github.com/lightbend/kalix-jvm-sdk/issues/1434
+      singleStringMessageParsers.get(field.getMessageType.getFullName) match {
+        case Some(parser) =>
+          (selector, values, inputBuilder) =>
+            try {
+              val parsed = parser(values.head)
+              inputBuilder.setField(field, parsed)
+            } catch {
+              case ex: Exception =>
+                requestError(
+                  s"Query parameter [$selector] refers to a field of message type [${field.getFullName}], but could not be parsed into that type. ${ex.getMessage}")
+            }
+        case None =>
+          (selector, _, _) =>
+            requestError(
+              s"Query parameter [$selector] refers to a message type. Only scalar value types and message types [${singleStringMessageParsers.keys
+                .mkString(", ")}] are supported.")
+      }
+    else
+      parserFor(field) match {
+        case Left(message) =>
+          (selector, values, _) =>
+            if (!field.isRepeated && values.size > 1)
+              requestError(s"Query parameter [$selector] has multiple values for a non-repeated field.")
+            else requestError(message)
+        case Right(parser) if field.isRepeated =>
+          (selector, values, inputBuilder) =>
+            values.foreach { v =>
+              inputBuilder.addRepeatedField(
+                field,
+                parser(v).getOrElse(requestError(s"Malformed query parameter [$selector].")))
+            }
+        case Right(parser) =>
+          (selector, values, inputBuilder) =>
+            if (values.size > 1)
+              requestError(s"Query parameter [$selector] has multiple values for a non-repeated field.")
+            else
+              inputBuilder.setField(
+                field,
+                parser(values.head).getOrElse(
+                  requestError(s"Malformed query parameter [$selector]. Expected field of type ${field.getType}.")))
+      }
+
   def parseTypedRequestParametersInto(
       queryParams: Map[String, util.List[scala.Any]],
-      inputBuilder: DynamicMessage.Builder): Unit = {
+      inputBuilder: DynamicMessage.Builder): Unit =
     queryParams.foreach { case (name, values) =>
       if (!values.isEmpty) {
-        lookupRequestFieldByPath(name) match {
-          case null => requestError(s"Query parameter [$name] refers to a non-existent field.")
-          case field if field.getJavaType == FieldDescriptor.JavaType.MESSAGE =>
-            requestError(s"Query parameter [$name] refers to a message type. Only scalar value types are supported.")
-          case field if !field.isRepeated && values.size() > 1 =>
-            requestError(s"Query parameter [$name] has multiple values for a non-repeated field.")
-          case field =>
-            if (field.isRepeated) {
-              values.forEach(v => {
-                inputBuilder.addRepeatedField(field, v)
-              })
-            } else {
-              inputBuilder.setField(field, values.get(0))
-            }
-        }
+        val binder = bindingFor(typedRequestParameterBinders, name, typedRequestParameterBinder)
+        binder(name, values, inputBuilder)
       }
     }
-  }
 
+  // FIXME verify that we can set nested fields from the inputBuilder type
   def parseRequestParametersInto(query: Map[String, List[String]], inputBuilder: DynamicMessage.Builder): Unit =
     query.foreach { case (selector, values) =>
       if (values.nonEmpty) {
-        lookupRequestFieldByPath(selector) match {
-          case null => requestError(s"Query parameter [$selector] refers to a non-existent field.")
-          case field if field.getJavaType == FieldDescriptor.JavaType.MESSAGE =>
-            //this is actually not supported at the moment: https://github.com/lightbend/kalix-jvm-sdk/issues/1434
-            singleStringMessageParsers.get(field.getMessageType.getFullName) match {
-              case Some(parser) =>
-                try {
-                  val parsed = parser(values.head)
-                  inputBuilder.setField(field, parsed)
-                } catch {
-                  case ex: Exception =>
-                    requestError(
-                      s"Query parameter [$selector] refers to a field of message type [${field.getFullName}], but could not be parsed into that type. ${ex.getMessage}")
-                }
-              case None =>
-                requestError(
-                  s"Query parameter [$selector] refers to a message type. Only scalar value types and message types [${singleStringMessageParsers.keys
-                    .mkString(", ")}] are supported.")
-            }
-          case field if !field.isRepeated && values.size > 1 =>
-            requestError(s"Query parameter [$selector] has multiple values for a non-repeated field.")
-          case field => // FIXME verify that we can set nested fields from the inputBuilder type
-            val x = HttpEndpointMethod.suitableParserFor(field)(requestError)
-            if (field.isRepeated) {
-              values.foreach { v =>
-                inputBuilder.addRepeatedField(
-                  field,
-                  x(v).getOrElse(requestError(s"Malformed query parameter [$selector].")))
-              }
-            } else
-              inputBuilder.setField(
-                field,
-                x(values.head).getOrElse(
-                  requestError(s"Malformed query parameter [$selector]. Expected field of type ${field.getType}.")))
-        }
+        val binder = bindingFor(requestParameterBinders, selector, requestParameterBinder)
+        binder(selector, values, inputBuilder)
       } // Ignore empty values
     }
 }
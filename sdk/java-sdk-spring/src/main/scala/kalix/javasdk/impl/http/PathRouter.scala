@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.http
+
+import java.util
+
+import kalix.javasdk.impl.http.PathTemplateParser.LiteralRoute
+import kalix.javasdk.impl.http.PathTemplateParser.ParsedTemplate
+import kalix.javasdk.impl.http.PathTemplateParser.RestRoute
+import kalix.javasdk.impl.http.PathTemplateParser.RouteSegment
+import kalix.javasdk.impl.http.PathTemplateParser.SingleRoute
+
+/**
+ * INTERNAL API
+ */
+object PathRouter {
+
+  /** The route picked for a path, with the values of the template variables in the order of the template fields */
+  final class Match[T](val route: T, val pathValues: Array[String])
+
+  def apply[T](routes: Seq[(ParsedTemplate, T)]): PathRouter[T] = {
+    val root = new Node[T]
+    var fallback = Vector.empty[Fallback[T]]
+    routes.iterator.zipWithIndex.foreach { case ((template, route), index) =>
+      template.routeSegments match {
+        case Some(segments) => insert(root, segments, template.fields.size, index, route)
+        case None           => fallback :+= new Fallback(index, template, route)
+      }
+    }
+    new PathRouter(root, fallback)
+  }
+
+  private def insert[T](root: Node[T], segments: List[RouteSegment], fields: Int, index: Int, route: T): Unit = {
+    val fieldDepths = new Array[Int](fields)
+    var node = root
+    var depth = 0
+    var rest = false
+    node.routeAdded(index)
+    segments.foreach {
+      case LiteralRoute(literal) =>
+        node = node.literals.computeIfAbsent(literal, _ => new Node[T])
+        node.routeAdded(index)
+        depth += 1
+      case SingleRoute(field) =>
+        if (node.wildcard eq null) node.wildcard = new Node[T]
+        if (field >= 0) fieldDepths(field) = depth
+        node = node.wildcard
+        node.routeAdded(index)
+        depth += 1
+      case RestRoute(field) =>
+        // only ever the last segment of a template
+        if (field >= 0) fieldDepths(field) = RestDepth
+        rest = true
+    }
+    val leaf = new Leaf(index, route, fieldDepths)
+    if (rest) node.restLeaves :+= leaf
+    else node.leaves :+= leaf
+  }
+
+  private[http] val RestDepth = -1
+
+  private[http] final class Leaf[T](val index: Int, val route: T, val fieldDepths: Array[Int])
+
+  private[http] final class Node[T] {
+    val literals = new util.HashMap[String, Node[T]]()
+    var wildcard: Node[T] = _
+    // templates ending at this node
+    var leaves: List[Leaf[T]] = Nil
+    // templates ending with a rest of path matcher after this node
+    var restLeaves: List[Leaf[T]] = Nil
+    // the first route added below this node, nothing below it can win over a match for an earlier route
+    var firstIndex: Int = Int.MaxValue
+
+    def routeAdded(index: Int): Unit =
+      if (index < firstIndex) firstIndex = index
+  }
+
+  private[http] final class Fallback[T](val index: Int, val template: ParsedTemplate, val route: T)
+}
+
+/**
+ * INTERNAL API
+ *
+ * Picks the route for a path with a trie of the segments of all templates, built once, instead of trying the regex of
+ * each template in turn. The path is split into segments once and the literal and wildcard children of each node are
+ * looked up, binding the segments matched by variables on the way. When several templates match, the route that was
+ * added first wins, the same as trying them in order. Templates that cannot be matched segment by segment are still
+ * matched by their regex.
+ */
+final class PathRouter[T] private (root: PathRouter.Node[T], fallback: Vector[PathRouter.Fallback[T]]) {
+  import PathRouter._
+
+  /**
+   * Find the first route with a template matching the path that is accepted by the given predicate.
+   */
+  def find(path: String)(accept: T => Boolean): Option[Match[T]] =
+    if (path.isEmpty || path.charAt(0) != '/') None
+    else {
+      val search = new Search(path, accept)
+      search.visit(root, 0)
+      val fallbackMatch = fallback.iterator
+        .takeWhile(_.index < search.bestIndex)
+        .filter(candidate => accept(candidate.route))
+        .map(candidate => candidate -> candidate.template.regex.pattern.matcher(path))
+        .collectFirst {
+          case (candidate, matcher) if matcher.matches() =>
+            new Match(candidate.route, Array.tabulate(matcher.groupCount())(group => matcher.group(group + 1)))
+        }
+      fallbackMatch.orElse(Option(search.best).map(leaf => new Match(leaf.route, search.bestValues)))
+    }
+
+  private final class Search(path: String, accept: T => Boolean) {
+    // the segments after the leading slash, and where in the path each of them starts
+    private val segmentCount = {
+      var count = 1
+      var i = 1
+      while (i < path.length) {
+        if (path.charAt(i) == '/') count += 1
+        i += 1
+      }
+      count
+    }
+    private val segments = new Array[String](segmentCount)
+    private val starts = new Array[Int](segmentCount)
+    locally {
+      var start = 1
+      var segment = 0
+      while (segment < segmentCount) {
+        var end = path.indexOf('/', start)
+        if (end < 0) end = path.length
+        segments(segment) = path.substring(start, end)
+        starts(segment) = start
+        start = end + 1
+        segment += 1
+      }
+    }
+    // the segments matched by wildcards on the way to the current node, by depth
+    private val wildcards = new Array[String](segmentCount)
+
+    var best: Leaf[T] = _
+    var bestValues: Array[String] = _
+
+    def bestIndex: Int = if (best eq null) Int.MaxValue else best.index
+
+    def visit(node: Node[T], depth: Int): Unit =
+      if (node.firstIndex < bestIndex) {
+        if (depth == segmentCount) {
+          consider(node.leaves, -1)
+        } else {
+          val segment = segments(depth)
+          val literal = node.literals.get(segment)
+          if (literal ne null) visit(literal, depth + 1)
+          // same as the [^/:]* of the template regex
+          if ((node.wildcard ne null) && segment.indexOf(':') < 0) {
+            wildcards(depth) = segment
+            visit(node.wildcard, depth + 1)
+          }
+          consider(node.restLeaves, starts(depth))
+        }
+      }
+
+    private def consider(leaves: List[Leaf[T]], restStart: Int): Unit =
+      leaves.foreach { leaf =>
+        if (leaf.index < bestIndex && accept(leaf.route)) {
+          best = leaf
+          bestValues = leaf.fieldDepths.map { depth =>
+            if (depth == RestDepth) path.substring(restStart) else wildcards(depth)
+          }
+        }
+      }
+  }
+}
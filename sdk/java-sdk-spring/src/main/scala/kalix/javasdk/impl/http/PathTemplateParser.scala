@@ -63,6 +63,34 @@ object PathTemplateParser extends Parsers {
         .r
     }
 
+    /**
+     * The template as segments for a [[PathRouter]], if it can be matched segment by segment. Templates with a verb,
+     * with variables matching more than `*` or `**` or with `**` before the last segment are only matched by their
+     * regex.
+     */
+    val routeSegments: Option[List[RouteSegment]] =
+      if (template.verb.isDefined) None
+      else {
+        var field = -1
+        val segments = template.segments.map {
+          case LiteralSegment(literal) => Some(LiteralRoute(literal))
+          case SingleSegmentMatcher    => Some(SingleRoute(-1))
+          case MultiSegmentMatcher()   => Some(RestRoute(-1))
+          case VariableSegment(_, nested) =>
+            field += 1
+            nested match {
+              case None | Some(SingleSegmentMatcher :: Nil) => Some(SingleRoute(field))
+              case Some((_: MultiSegmentMatcher) :: Nil)    => Some(RestRoute(field))
+              case Some(_)                                  => None
+            }
+        }
+        val restOnlyLast = segments.dropRight(1).forall {
+          case Some(RestRoute(_)) => false
+          case _                  => true
+        }
+        if (restOnlyLast && segments.forall(_.isDefined)) Some(segments.flatten) else None
+      }
+
     val fields: List[TemplateVariable] = {
       var found = Set.empty[List[String]]
       template.segments.collect {
@@ -82,6 +110,16 @@ object PathTemplateParser extends Parsers {
 
   final case class TemplateVariable(fieldPath: List[String], multi: Boolean)
 
+  /** A segment of a template as matched by a [[PathRouter]] */
+  sealed trait RouteSegment
+  final case class LiteralRoute(literal: String) extends RouteSegment
+
+  /** Any one segment, bound to the field with the given index, or -1 if it is not a variable */
+  final case class SingleRoute(field: Int) extends RouteSegment
+
+  /** The rest of the path, bound to the field with the given index, or -1 if it is not a variable */
+  final case class RestRoute(field: Int) extends RouteSegment
+
   @nowarn("msg=match may not be exhaustive") // for NoSuccess unapply
   final def parse(path: String): ParsedTemplate =
     template(new CharSequenceReader(path)) match {
@@ -9,10 +9,13 @@ import scala.jdk.OptionConverters._
 import com.google.protobuf.ByteString
 import com.google.protobuf.Descriptors
 import com.google.protobuf.DynamicMessage
+import com.google.protobuf.WireFormat
+import com.google.protobuf.any.{ Any => ScalaPbAny }
 import com.google.protobuf.{ Any => JavaPbAny }
 import kalix.javasdk.JsonSupport
 import kalix.javasdk.Metadata
 import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.InvocationContext
 import kalix.javasdk.impl.ErrorHandling.BadRequestException
 
 /**
@@ -28,50 +31,76 @@ trait MetadataContext {
 
 trait DynamicMessageContext {
   def message: DynamicMessage
+
+  /** The message as it was received, bodies are decoded from it without materializing the whole message */
+  def anyMessage: ScalaPbAny
 }
 
 object ParameterExtractors {
 
-  private def toAny(dm: DynamicMessage) = {
-    val bytes = dm.getField(JavaPbAny.getDescriptor.findFieldByName("value")).asInstanceOf[ByteString]
-    val typeUrl = dm.getField(JavaPbAny.getDescriptor.findFieldByName("type_url")).asInstanceOf[String]
-    // TODO: avoid creating a new JavaPbAny instance
-    // we want to reuse the typeUrl validation and reading logic (skip tag + jackson reader) from JsonSupport
-    // we need a new internal version that also handle DynamicMessages
-    JavaPbAny
-      .newBuilder()
-      .setTypeUrl(typeUrl)
-      .setValue(bytes)
-      .build()
-  }
-  private def decodeParam[T](dm: DynamicMessage, cls: Class[T]): T = {
+  private val AnyTypeUrlField = JavaPbAny.getDescriptor.findFieldByName("type_url")
+  private val AnyValueField = JavaPbAny.getDescriptor.findFieldByName("value")
+
+  private def decodeParam[T](typeUrl: String, value: ByteString, cls: Class[T]): T = {
     if (cls == classOf[Array[Byte]]) {
-      val bytes = dm.getField(JavaPbAny.getDescriptor.findFieldByName("value")).asInstanceOf[ByteString]
-      AnySupport.decodePrimitiveBytes(bytes).toByteArray.asInstanceOf[T]
+      AnySupport.decodePrimitiveBytes(value).toByteArray.asInstanceOf[T]
     } else {
-      JsonSupport.decodeJson(cls, toAny(dm))
+      JsonSupport._internalDecodeJson(cls, typeUrl, value)
     }
   }
 
-  private def decodeParamCollection[T, C <: java.util.Collection[T]](
-      dm: DynamicMessage,
-      cls: Class[T],
-      collectionType: Class[C]): C =
-    JsonSupport.decodeJsonCollection(cls, collectionType, toAny(dm))
+  /**
+   * Reads the `Any` in the given field of an encoded message, without parsing the other fields. Occurrences of the
+   * field are merged like the protobuf parser does, and a missing field reads as an empty `Any`.
+   */
+  private def readAnyField[T](message: ByteString, fieldNumber: Int)(decode: (String, ByteString) => T): T = {
+    var typeUrl = ""
+    var value = ByteString.EMPTY
+    val in = message.newCodedInput()
+    in.enableAliasing(true)
+    var done = false
+    while (!done) {
+      val tag = in.readTag()
+      if (tag == 0) done = true
+      else if (WireFormat.getTagFieldNumber(tag) == fieldNumber &&
+        WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+        val limit = in.pushLimit(in.readRawVarint32())
+        while (!in.isAtEnd) {
+          val anyTag = in.readTag()
+          WireFormat.getTagFieldNumber(anyTag) match {
+            case JavaPbAny.TYPE_URL_FIELD_NUMBER => typeUrl = in.readStringRequireUtf8()
+            case JavaPbAny.VALUE_FIELD_NUMBER    => value = in.readBytes()
+            case _                               => in.skipField(anyTag)
+          }
+        }
+        in.popLimit(limit)
+      } else in.skipField(tag)
+    }
+    decode(typeUrl, value)
+  }
 
   case class AnyBodyExtractor[T](cls: Class[_]) extends ParameterExtractor[DynamicMessageContext, T] {
-    override def extract(context: DynamicMessageContext): T =
-      decodeParam(context.message, cls.asInstanceOf[Class[T]])
+    override def extract(context: DynamicMessageContext): T = {
+      val any = context.anyMessage
+      if (InvocationContext.isAnyPayload(any.typeUrl)) {
+        decodeParam(any.typeUrl, any.value, cls.asInstanceOf[Class[T]])
+      } else {
+        val dm = context.message
+        decodeParam(
+          dm.getField(AnyTypeUrlField).asInstanceOf[String],
+          dm.getField(AnyValueField).asInstanceOf[ByteString],
+          cls.asInstanceOf[Class[T]])
+      }
+    }
   }
 
   class BodyExtractor[T](field: Descriptors.FieldDescriptor, cls: Class[_])
       extends ParameterExtractor[DynamicMessageContext, T] {
 
-    override def extract(context: DynamicMessageContext): T = {
-      context.message.getField(field) match {
-        case dm: DynamicMessage => decodeParam(dm, cls.asInstanceOf[Class[T]])
+    override def extract(context: DynamicMessageContext): T =
+      readAnyField(context.anyMessage.value, field.getNumber) { (typeUrl, value) =>
+        decodeParam(typeUrl, value, cls.asInstanceOf[Class[T]])
       }
-    }
   }
 
   class CollectionBodyExtractor[T, C <: java.util.Collection[T]](
@@ -80,11 +109,10 @@ object ParameterExtractors {
       collectionType: Class[C])
       extends ParameterExtractor[DynamicMessageContext, C] {
 
-    override def extract(context: DynamicMessageContext): C = {
-      context.message.getField(field) match {
-        case dm: DynamicMessage => decodeParamCollection(dm, cls, collectionType)
+    override def extract(context: DynamicMessageContext): C =
+      readAnyField(context.anyMessage.value, field.getNumber) { (typeUrl, value) =>
+        JsonSupport._internalDecodeJsonCollection(cls, collectionType, typeUrl, value)
       }
-    }
   }
 
   class FieldExtractor[T](field: Descriptors.FieldDescriptor, required: Boolean, deserialize: AnyRef => T)
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.spring.impl
+
+import java.io.InputStream
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.Locale
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.util.control.NonFatal
+
+import com.google.protobuf.ByteString
+import com.google.protobuf.{ Any => JavaPbAny }
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import io.grpc.CallOptions
+import io.grpc.Channel
+import io.grpc.ClientCall
+import io.grpc.{ Metadata => GrpcMetadata }
+import io.grpc.MethodDescriptor
+import io.grpc.Status
+import kalix.javasdk.DeferredCallResponseException
+import kalix.javasdk.JsonSupport
+import kalix.javasdk.Metadata
+import kalix.javasdk.StatusCode.ErrorCode
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+private[kalix] object GrpcComponentCalls {
+  private val log = LoggerFactory.getLogger(classOf[GrpcComponentCalls])
+
+  /** The request is the encoded input message, the value of the `Any` built for the call, sent as is */
+  private object RequestMarshaller extends MethodDescriptor.Marshaller[ByteString] {
+    override def stream(value: ByteString): InputStream = value.newInput()
+    override def parse(stream: InputStream): ByteString = ByteString.readFrom(stream)
+  }
+
+  /** Component methods called by the component client reply with an `Any` holding the JSON of the result */
+  private object ResponseMarshaller extends MethodDescriptor.Marshaller[JavaPbAny] {
+    override def stream(value: JavaPbAny): InputStream = value.toByteString.newInput()
+    override def parse(stream: InputStream): JavaPbAny = JavaPbAny.parseFrom(stream)
+  }
+
+  private def toErrorCode(status: Status): ErrorCode =
+    status.getCode match {
+      case Status.Code.INVALID_ARGUMENT   => ErrorCode.BAD_REQUEST
+      case Status.Code.UNAUTHENTICATED    => ErrorCode.UNAUTHORIZED
+      case Status.Code.PERMISSION_DENIED  => ErrorCode.FORBIDDEN
+      case Status.Code.NOT_FOUND          => ErrorCode.NOT_FOUND
+      case Status.Code.ALREADY_EXISTS     => ErrorCode.CONFLICT
+      case Status.Code.ABORTED            => ErrorCode.CONFLICT
+      case Status.Code.RESOURCE_EXHAUSTED => ErrorCode.TOO_MANY_REQUESTS
+      case Status.Code.UNAVAILABLE        => ErrorCode.SERVICE_UNAVAILABLE
+      case Status.Code.DEADLINE_EXCEEDED  => ErrorCode.GATEWAY_TIMEOUT
+      case _                              => ErrorCode.INTERNAL_SERVER_ERROR
+    }
+
+  /** Header values of text entries must be printable ASCII */
+  private def isAsciiHeaderValue(value: String): Boolean =
+    value.forall(c => c >= ' ' && c <= '~')
+
+  private def binaryValue(entry: Metadata.MetadataEntry): Array[Byte] =
+    if (entry.isBinary) {
+      val buffer = entry.getBinaryValue.duplicate()
+      val bytes = new Array[Byte](buffer.remaining())
+      buffer.get(bytes)
+      bytes
+    } else entry.getValue.getBytes(UTF_8)
+}
+
+/**
+ * INTERNAL API
+ *
+ * Calls component methods through the gRPC endpoint of the runtime instead of its HTTP endpoint. The request is the
+ * already encoded input message of the method, and the `Any` in the response is decoded into the return type straight
+ * from the received bytes, without the JSON codecs of the web client in between.
+ *
+ * @param channel
+ *   looked up for every call, so that a change of the runtime address is picked up
+ */
+private[kalix] final class GrpcComponentCalls(channel: () => Channel) {
+  import GrpcComponentCalls._
+
+  private val methods = new ConcurrentHashMap[String, MethodDescriptor[ByteString, JavaPbAny]]()
+
+  def call[R](
+      fullServiceName: String,
+      methodName: String,
+      message: ScalaPbAny,
+      metadata: Metadata,
+      returnType: Class[R]): CompletionStage[R] = {
+    val result = new CompletableFuture[R]()
+    val call = channel().newCall(methodDescriptor(fullServiceName, methodName), CallOptions.DEFAULT)
+    try {
+      call.start(
+        new ClientCall.Listener[JavaPbAny] {
+          private var response: JavaPbAny = _
+
+          override def onMessage(message: JavaPbAny): Unit =
+            response = message
+
+          override def onClose(status: Status, trailers: GrpcMetadata): Unit =
+            if (!status.isOk)
+              result.completeExceptionally(
+                DeferredCallResponseException(
+                  s"$fullServiceName/$methodName failed: $status",
+                  toErrorCode(status),
+                  status.asRuntimeException(trailers)))
+            else if (response eq null)
+              result.completeExceptionally(new IllegalStateException(s"No response for $fullServiceName/$methodName"))
+            else
+              try result.complete(JsonSupport.decodeJson(returnType, response))
+              catch {
+                case NonFatal(e) => result.completeExceptionally(e)
+              }
+        },
+        headers(metadata))
+      call.request(1)
+      call.sendMessage(message.value)
+      call.halfClose()
+    } catch {
+      case NonFatal(e) =>
+        call.cancel("Failed to send request", e)
+        result.completeExceptionally(e)
+    }
+    result
+  }
+
+  private def methodDescriptor(fullServiceName: String, methodName: String) = {
+    val fullMethodName = MethodDescriptor.generateFullMethodName(fullServiceName, methodName)
+    methods.computeIfAbsent(
+      fullMethodName,
+      _ =>
+        MethodDescriptor
+          .newBuilder(RequestMarshaller, ResponseMarshaller)
+          .setType(MethodDescriptor.MethodType.UNARY)
+          .setFullMethodName(fullMethodName)
+          .build())
+  }
+
+  /**
+   * Entries with a key ending in `-bin` are sent as binary headers, other text entries as ASCII headers. Entries that
+   * can't be sent as a gRPC header, because of their key or value, are left out.
+   */
+  private def headers(metadata: Metadata): GrpcMetadata = {
+    val headers = new GrpcMetadata()
+    metadata.forEach { entry =>
+      val key = entry.getKey.toLowerCase(Locale.ROOT)
+      try {
+        if (key.endsWith(GrpcMetadata.BINARY_HEADER_SUFFIX))
+          headers.put(GrpcMetadata.Key.of(key, GrpcMetadata.BINARY_BYTE_MARSHALLER), binaryValue(entry))
+        else if (entry.isText && isAsciiHeaderValue(entry.getValue))
+          headers.put(GrpcMetadata.Key.of(key, GrpcMetadata.ASCII_STRING_MARSHALLER), entry.getValue)
+        else
+          log.debug("Metadata entry [{}] can't be sent as a gRPC header, leaving it out", key)
+      } catch {
+        case e: IllegalArgumentException =>
+          log.debug("Metadata key [{}] is not a valid gRPC header name, leaving it out: {}", key, e.getMessage)
+      }
+    }
+    headers
+  }
+}
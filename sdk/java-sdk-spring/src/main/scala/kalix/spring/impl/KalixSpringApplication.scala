@@ -30,6 +30,7 @@ import kalix.javasdk.eventsourcedentity.EventSourcedEntity
 import kalix.javasdk.eventsourcedentity.EventSourcedEntityContext
 import kalix.javasdk.eventsourcedentity.EventSourcedEntityProvider
 import kalix.javasdk.impl.AclDescriptorFactory
+import kalix.javasdk.impl.GrpcClients
 import kalix.javasdk.impl.JsonMessageCodec
 import kalix.javasdk.impl.Validations
 import kalix.javasdk.impl.Validations.Invalid
@@ -295,6 +296,15 @@ case class KalixSpringApplication(applicationContext: ApplicationContext, config
 
   private def componentClient(context: Context): ComponentClient = {
     kalixClient.setWebClient(webClientProvider(context).localWebClient)
+    val system = context.materializer().system
+    system.settings.config.getString("kalix.component-client.transport") match {
+      case "grpc" =>
+        val grpcClients = GrpcClients(system)
+        kalixClient.setGrpcTransport(new GrpcComponentCalls(() => grpcClients.getProxyChannel()))
+      case "http" =>
+      case other =>
+        throw new IllegalArgumentException(s"Unknown kalix.component-client.transport [$other], must be http or grpc")
+    }
     // Important!
     // always new ComponentClient instance because we need to set the call context each time
     // and we should not share state between call
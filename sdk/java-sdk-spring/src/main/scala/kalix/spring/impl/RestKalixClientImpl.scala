@@ -33,6 +33,7 @@ import kalix.javasdk.impl.MetadataImpl
 import kalix.javasdk.impl.RestDeferredCall
 import kalix.javasdk.impl.http.HttpEndpointMethodDefinition
 import kalix.javasdk.impl.http.HttpEndpointMethodDefinition.ANY_METHOD
+import kalix.javasdk.impl.http.PathRouter
 import org.springframework.http.ResponseEntity
 import org.springframework.web.reactive.function.client.WebClient
 import org.springframework.web.reactive.function.client.WebClient.RequestHeadersSpec
@@ -40,12 +41,22 @@ import org.springframework.web.reactive.function.client.WebClient.RequestHeaders
 import org.springframework.web.reactive.function.client.WebClientResponseException
 import org.springframework.web.util.UriBuilder
 
+/**
+ * INTERNAL API
+ */
+private[kalix] object RestKalixClientImpl {
+  private val JsonReplyType = com.google.protobuf.Any.getDescriptor.getFullName
+}
+
 /**
  * INTERNAL API
  */
 final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixClient {
+  import RestKalixClientImpl._
 
   private var services: Seq[HttpEndpointMethodDefinition] = Seq.empty
+  // rebuilt when a component is registered, registration happens before the client is used
+  @volatile private var router: PathRouter[HttpEndpointMethodDefinition] = PathRouter(Nil)
 
   // At the time of creation, Proxy Discovery has not happened yet
   // and we need the ProxyInfo to build the WebClient, so we need a Promise[WebClient]
@@ -57,8 +68,16 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
 
   private val webClient: Future[WebClient] = promisedWebClient.future
 
+  // when set, typed calls to methods replying with JSON go through the gRPC endpoint of the runtime
+  @volatile private var grpcCalls: Option[GrpcComponentCalls] = None
+
+  def setGrpcTransport(calls: => GrpcComponentCalls): Unit = {
+    if (grpcCalls.isEmpty) grpcCalls = Some(calls)
+  }
+
   def registerComponent(descriptor: Descriptors.ServiceDescriptor): Unit = {
     services ++= HttpEndpointMethodDefinition.extractForService(descriptor)
+    router = PathRouter(services.map(d => d.pathTemplate -> d))
   }
 
   private def buildWrappedBody[P](
@@ -84,11 +103,12 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
 
   private def runGet[R](uriStr: String, returnType: Class[R]): DeferredCall[Any, R] = {
     val uri = Uri(uriStr)
-    matchMethodOrThrow(HttpMethods.GET, uri.path.toString()) { httpDef =>
+    matchMethodOrThrow(HttpMethods.GET, uri.path.toString()) { (httpDef, pathValues) =>
       requestToRestDefCall(
         uri,
         body = None,
         httpDef,
+        pathValues,
         (metadata: Metadata) =>
           webClient.flatMap { client =>
             val spec = client
@@ -125,11 +145,12 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
 
   private def runPost[R, P](uriStr: String, body: Option[P], returnType: Class[R]) = {
     val akkaUri = Uri(uriStr)
-    matchMethodOrThrow(HttpMethods.POST, akkaUri.path.toString()) { httpDef =>
+    matchMethodOrThrow(HttpMethods.POST, akkaUri.path.toString()) { (httpDef, pathValues) =>
       requestToRestDefCall(
         akkaUri,
         body,
         httpDef,
+        pathValues,
         (metadata: Metadata) =>
           webClient.flatMap { client =>
             val requestBodySpec = client
@@ -167,11 +188,12 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
 
   private def runPut[P, R](uriStr: String, body: Option[P], returnType: Class[R]): DeferredCall[Any, R] = {
     val akkaUri = Uri(uriStr)
-    matchMethodOrThrow(HttpMethods.PUT, akkaUri.path.toString()) { httpDef =>
+    matchMethodOrThrow(HttpMethods.PUT, akkaUri.path.toString()) { (httpDef, pathValues) =>
       requestToRestDefCall(
         akkaUri,
         body,
         httpDef,
+        pathValues,
         (metadata: Metadata) =>
           webClient.flatMap { client =>
             val requestBodySpec = client
@@ -203,11 +225,12 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
 
     val akkaUri = Uri(uriStr)
 
-    matchMethodOrThrow(HttpMethods.PATCH, akkaUri.path.toString()) { httpDef =>
+    matchMethodOrThrow(HttpMethods.PATCH, akkaUri.path.toString()) { (httpDef, pathValues) =>
       requestToRestDefCall(
         akkaUri,
         Some(body),
         httpDef,
+        pathValues,
         (metadata: Metadata) =>
           webClient.flatMap { client =>
             val requestBodySpec = client
@@ -237,11 +260,12 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
 
   private def runDelete[R](uriStr: String, returnType: Class[R]): DeferredCall[Any, R] = {
     val akkaUri = Uri(uriStr)
-    matchMethodOrThrow(HttpMethods.DELETE, akkaUri.path.toString()) { httpDef =>
+    matchMethodOrThrow(HttpMethods.DELETE, akkaUri.path.toString()) { (httpDef, pathValues) =>
       requestToRestDefCall(
         akkaUri,
         None,
         httpDef,
+        pathValues,
         (metadata: Metadata) =>
           webClient.flatMap { client =>
             val spec = client
@@ -267,12 +291,13 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
       queryParams: Map[String, util.List[scala.Any]],
       returnType: Class[R]): RestDeferredCall[Any, R] = {
 
-    matchMethodOrThrow(httpMethod, pathTemplate) { httpDef =>
+    matchMethodOrThrow(httpMethod, pathTemplate) { (httpDef, _) =>
       typedRequestToRestDefCall(
         pathVariables,
         queryParams,
         None,
         httpDef,
+        returnType,
         (metadata: Metadata) =>
           webClient.flatMap { client =>
 
@@ -320,12 +345,13 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
       body: Option[P],
       returnType: Class[R]): RestDeferredCall[Any, R] = {
 
-    matchMethodOrThrow(httpMethod, pathTemplate) { httpDef =>
+    matchMethodOrThrow(httpMethod, pathTemplate) { (httpDef, _) =>
       typedRequestToRestDefCall(
         pathVariables,
         queryParams,
         body,
         httpDef,
+        returnType,
         (metadata: Metadata) =>
           webClient.flatMap { client =>
             val requestBodySpec = requestBodyUriSpec(client, httpMethod)
@@ -376,6 +402,7 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
       queryParams: Map[String, util.List[scala.Any]],
       body: Option[P],
       httpDef: HttpEndpointMethodDefinition,
+      returnType: Class[R],
       asyncCall: Metadata => CompletionStage[R]): RestDeferredCall[Any, R] = {
 
     val inputBuilder = DynamicMessage.newBuilder(httpDef.methodDescriptor.getInputType)
@@ -384,29 +411,43 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
     httpDef.parseTypedRequestParametersInto(queryParams, inputBuilder)
 
     val wrappedBody = buildWrappedBody(httpDef, inputBuilder, body)
-
-    RestDeferredCall[Any, R](
-      message = wrappedBody,
-      metadata = MetadataImpl.Empty,
-      fullServiceName = httpDef.methodDescriptor.getService.getFullName,
-      methodName = httpDef.methodDescriptor.getName,
-      asyncCall = (metadata: Metadata) =>
-        asyncCall(metadata).exceptionally {
-          case responseException: WebClientResponseException =>
-            throw DeferredCallResponseException(
-              responseException.getMessage,
-              fromWebClientResponse(responseException),
-              responseException)
-          case other: Throwable => throw other
-        })
+    val fullServiceName = httpDef.methodDescriptor.getService.getFullName
+    val methodName = httpDef.methodDescriptor.getName
+
+    grpcCalls match {
+      // methods replying with raw bytes or an HttpResponse are only served as expected over HTTP
+      case Some(calls) if httpDef.methodDescriptor.getOutputType.getFullName == JsonReplyType =>
+        RestDeferredCall[Any, R](
+          message = wrappedBody,
+          metadata = MetadataImpl.Empty,
+          fullServiceName = fullServiceName,
+          methodName = methodName,
+          asyncCall =
+            (metadata: Metadata) => calls.call(fullServiceName, methodName, wrappedBody, metadata, returnType))
+      case _ =>
+        RestDeferredCall[Any, R](
+          message = wrappedBody,
+          metadata = MetadataImpl.Empty,
+          fullServiceName = fullServiceName,
+          methodName = methodName,
+          asyncCall = (metadata: Metadata) =>
+            asyncCall(metadata).exceptionally {
+              case responseException: WebClientResponseException =>
+                throw DeferredCallResponseException(
+                  responseException.getMessage,
+                  fromWebClientResponse(responseException),
+                  responseException)
+              case other: Throwable => throw other
+            })
+    }
   }
 
   private def matchMethodOrThrow[R](httpMethod: HttpMethod, path: String)(
-      createDefCall: => HttpEndpointMethodDefinition => RestDeferredCall[Any, R]) = {
-    services
-      .find(d => (d.methodPattern == ANY_METHOD || httpMethod == d.methodPattern) && d.matches(path))
-      .map {
-        createDefCall(_)
+      createDefCall: => (HttpEndpointMethodDefinition, Array[String]) => RestDeferredCall[Any, R]) = {
+    router
+      .find(path)(d => d.methodPattern == ANY_METHOD || httpMethod == d.methodPattern)
+      .map { found =>
+        createDefCall(found.route, found.pathValues)
       }
       .getOrElse(throw HttpMethodNotFoundException(httpMethod, path))
   }
@@ -415,11 +456,12 @@ final class RestKalixClientImpl(messageCodec: JsonMessageCodec) extends KalixCli
       uri: Uri,
       body: Option[P],
       httpDef: HttpEndpointMethodDefinition,
+      pathValues: Array[String],
       asyncCall: Metadata => CompletionStage[R]): RestDeferredCall[Any, R] = {
 
     val inputBuilder = DynamicMessage.newBuilder(httpDef.methodDescriptor.getInputType)
 
-    httpDef.parsePathParametersInto(uri.path.toString(), inputBuilder)
+    httpDef.parsePathParametersInto(pathValues, inputBuilder)
     httpDef.parseRequestParametersInto(uri.query().toMultiMap, inputBuilder)
 
     val wrappedBody = buildWrappedBody(httpDef, inputBuilder, body)
@@ -4,6 +4,7 @@
 
 package kalix.javasdk.client;
 
+import akka.japi.function.Function2;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
@@ -11,8 +12,10 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.any.Any;
 import kalix.javasdk.JsonSupport;
 import kalix.javasdk.Metadata;
+import kalix.javasdk.action.Action;
 import kalix.javasdk.impl.*;
 import kalix.javasdk.impl.client.ComponentClientImpl;
+import kalix.javasdk.impl.client.MethodRefResolver;
 import kalix.javasdk.impl.telemetry.Telemetry;
 import kalix.spring.impl.RestKalixClientImpl;
 import kalix.spring.testmodels.Message;
@@ -25,6 +28,8 @@ import kalix.spring.testmodels.view.ViewTestModels.UserByEmailWithGetWithoutAnno
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -90,6 +95,33 @@ class ComponentClientTest {
     assertMethodParamsMatch(targetMethod, call.message(), param);
   }
 
+  @Test
+  public void shouldReuseResolvedMethodRefForRepeatedCalls() throws InvalidProtocolBufferException {
+    //given
+    var action = descriptorFor(GetWithOneParam.class, messageCodec);
+    restKalixClient.registerComponent(action.serviceDescriptor());
+    var targetMethod = action.serviceDescriptor().findMethodByName("Message");
+    var resolvedMethods = new ArrayList<Method>();
+
+    for (String param : List.of("first", "second")) {
+      //when
+      RestDeferredCall<Any, Message> call = (RestDeferredCall<Any, Message>) componentClient.forAction()
+          .call(GetWithOneParam::message)
+          .params(param);
+      resolvedMethods.add(resolveMessageRef(GetWithOneParam::message));
+
+      //then
+      assertThat(call.methodName()).isEqualTo(targetMethod.getName());
+      assertMethodParamsMatch(targetMethod, call.message(), param);
+    }
+    // resolving again would give an equal but new Method instance
+    assertThat(resolvedMethods.get(1)).isSameAs(resolvedMethods.get(0));
+  }
+
+  private static Method resolveMessageRef(Function2<GetWithOneParam, String, Action.Effect<Message>> methodRef) {
+    return MethodRefResolver.resolveMethodRef(methodRef);
+  }
+
   @Test
   public void shouldReturnDeferredCallForGETRequestWithTwoParams() throws InvalidProtocolBufferException {
     //given
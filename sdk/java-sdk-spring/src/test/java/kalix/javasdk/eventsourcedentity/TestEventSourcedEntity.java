@@ -12,6 +12,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.nio.charset.StandardCharsets;
+
 @Id("id")
 @TypeId("es")
 @RequestMapping("/es")
@@ -30,6 +32,11 @@ public class TestEventSourcedEntity extends EventSourcedEntity<TestESState, Test
     return effects().reply(currentState());
   }
 
+  @GetMapping("/bytes")
+  public Effect<byte[]> getBytes() {
+    return effects().reply(currentState().s().getBytes(StandardCharsets.UTF_8));
+  }
+
   @EventHandler
   public TestESState apply(TestESEvent.Event1 event1) {
     return new TestESState(event1.s(), currentState().i(), currentState().b(), currentState().anotherString());
@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.nio.charset.StandardCharsets;
+
 @Id("id")
 @TypeId("ve")
 @RequestMapping("/ve")
@@ -29,4 +31,9 @@ public class TestValueEntity extends ValueEntity<TestVEState1> {
     return effects().reply(currentState());
   }
 
+  @GetMapping("/bytes")
+  public Effect<byte[]> getBytes() {
+    return effects().reply(currentState().s().getBytes(StandardCharsets.UTF_8));
+  }
+
 }
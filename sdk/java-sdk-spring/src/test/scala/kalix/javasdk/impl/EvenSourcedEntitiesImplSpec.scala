@@ -23,6 +23,8 @@ import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 import org.slf4j.LoggerFactory
 
+import java.nio.charset.StandardCharsets
+
 import scala.concurrent.{ ExecutionContext, Future }
 
 class EvenSourcedEntitiesImplSpec extends AnyWordSpec with Matchers with BeforeAndAfterAll {
@@ -57,6 +59,28 @@ class EvenSourcedEntitiesImplSpec extends AnyWordSpec with Matchers with BeforeA
       protocol.terminate()
       service.terminate()
     }
+
+    "reply with a byte array encoded as JSON" in {
+      val entityId = "1"
+      val jsonMessageCodec = new JsonMessageCodec()
+      val service = new TestEventSourcedService(
+        ReflectiveEventSourcedEntityProvider
+          .of[TestESState, TestESEvent, TestEventSourcedEntity](
+            classOf[TestEventSourcedEntity],
+            jsonMessageCodec,
+            _ => new TestEventSourcedEntity()))
+      val protocol = TestProtocol(service.port)
+      val entity = protocol.eventSourced.connect()
+
+      entity.send(init(classOf[TestEventSourcedEntity].getName, entityId))
+      entity.send(event(1, jsonMessageCodec.encodeJava(new OldEvent1("state"))))
+
+      entity.send(command(1, entityId, "GetBytes", emptySyntheticRequest("GetBytes")))
+      // not the BytesValue that encodeScala gives for byte arrays
+      entity.expect(reply(1, jsonMessageCodec.encodeJava("state".getBytes(StandardCharsets.UTF_8))))
+      protocol.terminate()
+      service.terminate()
+    }
   }
 
   "inject traces correctly into metadata and keeps trace_id in MDC" in {
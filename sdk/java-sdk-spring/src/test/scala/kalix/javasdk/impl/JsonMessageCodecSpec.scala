@@ -5,6 +5,7 @@
 package kalix.javasdk.impl
 
 import java.lang
+import java.nio.charset.StandardCharsets
 import java.util
 
 import com.fasterxml.jackson.annotation.JsonCreator
@@ -188,6 +189,20 @@ class JsonMessageCodecSpec extends AnyWordSpec with Matchers {
       reEncoded.value shouldBe encoded.getValue
     }
 
+    "encode for entities as encodeJava does" in {
+      val bytes = "abc".getBytes(StandardCharsets.UTF_8)
+      val encodedBytes = messageCodec.encodeJavaAsScala(bytes)
+      encodedBytes shouldBe ScalaPbAny.fromJavaProto(messageCodec.encodeJava(bytes))
+      encodedBytes.typeUrl should startWith(JsonSupport.KALIX_JSON)
+      // only encodeScala encodes byte arrays as BytesValue
+      messageCodec.encodeScala(bytes).typeUrl should not be encodedBytes.typeUrl
+
+      val value = SimpleClass("abc", 10)
+      messageCodec.encodeJavaAsScala(value) shouldBe ScalaPbAny.fromJavaProto(messageCodec.encodeJava(value))
+      messageCodec.encodeJavaAsScala(123) shouldBe ScalaPbAny.fromJavaProto(messageCodec.encodeJava(123))
+      new StrictJsonMessageCodec(messageCodec).encodeJavaAsScala(bytes) shouldBe encodedBytes
+    }
+
     "fail with the same" in {
       //fill the cache
       messageCodec.encodeJava(Dog("abc"))
@@ -9,6 +9,7 @@ import java.nio.charset.StandardCharsets
 
 import scala.jdk.CollectionConverters.CollectionHasAsScala
 
+import akka.http.scaladsl.model.IllegalRequestException
 import com.google.protobuf.ByteString
 import com.google.protobuf.Descriptors
 import com.google.protobuf.DynamicMessage
@@ -156,6 +157,17 @@ class RestKalixClientImplSpec extends AnyWordSpec with Matchers with BeforeAndAf
         }
       }
     }
+
+    "reject query params that can't be bound to the method" in {
+      val actionGet = ComponentDescriptor.descriptorFor(classOf[GetWithOneQueryParam], messageCodec)
+      restKalixClient.registerComponent(actionGet.serviceDescriptor)
+
+      val unknown = the[IllegalRequestException] thrownBy restKalixClient.get("/message?other=a", classOf[Message])
+      unknown.info.summary shouldBe "Query parameter [other] refers to a non-existent field."
+
+      val multiple = the[IllegalRequestException] thrownBy restKalixClient.get("/message?one=a&one=b", classOf[Message])
+      multiple.info.summary shouldBe "Query parameter [one] has multiple values for a non-repeated field."
+    }
   }
 
   private def assertRestDeferredCall[M, R](defCall: DeferredCall[M, R])(
@@ -20,6 +20,8 @@ import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 import org.slf4j.LoggerFactory
 
+import java.nio.charset.StandardCharsets
+
 import scala.concurrent.{ ExecutionContext, Future }
 
 class ValueEntitiesImplSpec extends AnyWordSpec with Matchers with BeforeAndAfterAll {
@@ -76,6 +78,24 @@ class ValueEntitiesImplSpec extends AnyWordSpec with Matchers with BeforeAndAfte
       service.terminate()
     }
 
+    "reply with a byte array encoded as JSON" in {
+      val entityId = "1"
+      val jsonMessageCodec = new JsonMessageCodec()
+      val service = new TestValueService(
+        ReflectiveValueEntityProvider
+          .of[TestVEState1, TestValueEntity](classOf[TestValueEntity], jsonMessageCodec, _ => new TestValueEntity()))
+      val protocol = TestProtocol(service.port)
+      val entity = protocol.valueEntity.connect()
+      entity.send(
+        init(classOf[TestValueEntity].getName, entityId, jsonMessageCodec.encodeJava(new TestVEState1("state", 1))))
+
+      entity.send(command(1, entityId, "GetBytes", emptySyntheticRequest("GetBytes")))
+      // not the BytesValue that encodeScala gives for byte arrays
+      entity.expect(reply(1, jsonMessageCodec.encodeJava("state".getBytes(StandardCharsets.UTF_8))))
+      protocol.terminate()
+      service.terminate()
+    }
+
     "Add the trace_id to the MDC" in {
       val entityId = "1"
       val jsonMessageCodec = new JsonMessageCodec()
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.http
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class PathRouterSpec extends AnyWordSpec with Matchers {
+
+  private def router(templates: (String, String)*): PathRouter[String] =
+    PathRouter(templates.map { case (path, route) => PathTemplateParser.parse(path) -> route })
+
+  private def route(
+      router: PathRouter[String],
+      path: String,
+      accept: String => Boolean = _ => true): Option[(String, List[String])] =
+    router.find(path)(accept).map(found => found.route -> found.pathValues.toList)
+
+  "The path router" should {
+    "route literal paths" in {
+      val paths = router("/cart/checkout" -> "checkout", "/cart/items" -> "items")
+      route(paths, "/cart/checkout") shouldBe Some("checkout" -> Nil)
+      route(paths, "/cart/items") shouldBe Some("items" -> Nil)
+      route(paths, "/cart") shouldBe None
+      route(paths, "/cart/other") shouldBe None
+      route(paths, "/cart/items/other") shouldBe None
+      route(paths, "cart/items") shouldBe None
+    }
+
+    "bind the segments matched by variables" in {
+      val paths = router("/cart/{cartId}/items/{itemId}" -> "item")
+      route(paths, "/cart/c1/items/i1") shouldBe Some("item" -> List("c1", "i1"))
+      route(paths, "/cart//items/i1") shouldBe Some("item" -> List("", "i1"))
+      route(paths, "/cart/c:1/items/i1") shouldBe None
+      route(paths, "/cart/c1/items") shouldBe None
+    }
+
+    "pick the first matching template in the order they were added" in {
+      val literalFirst = router("/cart/checkout" -> "checkout", "/cart/{cartId}" -> "cart")
+      route(literalFirst, "/cart/checkout") shouldBe Some("checkout" -> Nil)
+      route(literalFirst, "/cart/c1") shouldBe Some("cart" -> List("c1"))
+
+      val variableFirst = router("/cart/{cartId}" -> "cart", "/cart/checkout" -> "checkout")
+      route(variableFirst, "/cart/checkout") shouldBe Some("cart" -> List("checkout"))
+    }
+
+    "only pick accepted routes" in {
+      val paths = router("/cart/{cartId}" -> "get", "/cart/{cartId}" -> "delete", "/cart/checkout" -> "checkout")
+      route(paths, "/cart/c1", _ != "get") shouldBe Some("delete" -> List("c1"))
+      route(paths, "/cart/checkout", _ == "checkout") shouldBe Some("checkout" -> Nil)
+      route(paths, "/cart/c1", _ == "checkout") shouldBe None
+    }
+
+    "bind the rest of the path" in {
+      val paths = router("/files/{path=**}" -> "files", "/files/{dir}/index" -> "index")
+      route(paths, "/files/a/b/c") shouldBe Some("files" -> List("a/b/c"))
+      route(paths, "/files/") shouldBe Some("files" -> List(""))
+      route(paths, "/files/a/index") shouldBe Some("files" -> List("a/index"))
+      route(paths, "/files") shouldBe None
+    }
+
+    "match templates with verbs or variable templates by their regex" in {
+      val paths = router(
+        "/foo/{bar=*/a/*}/baz" -> "nested",
+        "/foo/{x}/{y}/{z}/baz" -> "segments",
+        "/foo/{bar}:watch" -> "watch")
+      route(paths, "/foo/bl/a/h/baz") shouldBe Some("nested" -> List("bl/a/h"))
+      route(paths, "/foo/bl/b/h/baz") shouldBe Some("segments" -> List("bl", "b", "h"))
+      route(paths, "/foo/blah:watch") shouldBe Some("watch" -> List("blah"))
+      route(paths, "/foo/blah") shouldBe None
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.javasdk.impl.reflection
+
+import java.lang.reflect.InvocationTargetException
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+object MethodHandleInvokerSpec {
+  class Component {
+    def none(): String = "none"
+    def one(a: String): String = s"one $a"
+    def two(a: String, b: java.lang.Integer): String = s"two $a $b"
+    def three(a: String, b: String, c: String): String = s"three $a $b $c"
+    def primitive(n: Int): Int = n + 1
+    def failing(): String = throw new IllegalStateException("boom")
+  }
+}
+
+class MethodHandleInvokerSpec extends AnyWordSpec with Matchers {
+  import MethodHandleInvokerSpec._
+
+  private val component = new Component
+  private def invoker(name: String): MethodHandleInvoker =
+    MethodHandleInvoker.of(classOf[Component].getMethods.find(_.getName == name).get)
+
+  "The MethodHandleInvoker" should {
+
+    "invoke methods of each arity" in {
+      invoker("none").invoke0(component) shouldBe "none"
+      invoker("one").invoke1(component, "a") shouldBe "one a"
+      invoker("two").invoke2(component, "a", Integer.valueOf(2)) shouldBe "two a 2"
+      invoker("three").invokeN(component, Array[AnyRef]("a", "b", "c")) shouldBe "three a b c"
+      invoker("one").invokeN(component, Array[AnyRef]("a")) shouldBe "one a"
+    }
+
+    "box and unbox primitive parameters and results" in {
+      invoker("primitive").invoke1(component, Integer.valueOf(1)) shouldBe 2
+    }
+
+    "wrap exceptions thrown by the method like Method.invoke does" in {
+      val exception = intercept[InvocationTargetException](invoker("failing").invoke0(component))
+      exception.getCause shouldBe an[IllegalStateException]
+      exception.getCause.getMessage shouldBe "boom"
+    }
+  }
+}
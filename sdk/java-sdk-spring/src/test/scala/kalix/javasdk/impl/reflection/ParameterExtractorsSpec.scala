@@ -48,10 +48,39 @@ class ParameterExtractorsSpec extends AnyWordSpec with Matchers {
         javaMethod.parameterExtractors.collect { case extractor: BodyExtractor[_] => extractor }.head
 
       val context = InvocationContext(wrappedMessage, method.requestMessageDescriptor)
-      bodyExtractor.extract(context)
+      bodyExtractor.extract(context) shouldBe new Message("test")
 
     }
 
+    "extract json payload when the request parameters come first" in {
+      val componentDescriptor = descriptorFor[EchoAction]
+      val method = componentDescriptor.commandHandlers("MessageBody")
+
+      val jsonBody = JsonSupport.encodeJson(new Message("test"))
+
+      val field = method.requestMessageDescriptor.findFieldByNumber(1)
+      val field2 = method.requestMessageDescriptor.findFieldByNumber(2)
+      val paramBytes = DynamicMessage
+        .newBuilder(method.requestMessageDescriptor)
+        .setField(field2, "param")
+        .build()
+        .toByteString
+      val bodyBytes = DynamicMessage
+        .newBuilder(method.requestMessageDescriptor)
+        .setField(field, jsonBody)
+        .build()
+        .toByteString
+
+      val wrappedMessage = ScalaPbAny().withValue(paramBytes.concat(bodyBytes))
+
+      val javaMethod = method.methodInvokers.values.head
+      val bodyExtractor: BodyExtractor[_] =
+        javaMethod.parameterExtractors.collect { case extractor: BodyExtractor[_] => extractor }.head
+
+      val context = InvocationContext(wrappedMessage, method.requestMessageDescriptor)
+      bodyExtractor.extract(context) shouldBe new Message("test")
+    }
+
     "reject non json payload" in {
       val componentDescriptor = descriptorFor[EchoAction]
 
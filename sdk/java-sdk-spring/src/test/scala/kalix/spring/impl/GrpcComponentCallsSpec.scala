@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2021-2024 Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package kalix.spring.impl
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+import scala.jdk.CollectionConverters._
+
+import com.google.protobuf.ByteString
+import com.google.protobuf.{ Any => JavaPbAny }
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import io.grpc.CallOptions
+import io.grpc.Channel
+import io.grpc.ClientCall
+import io.grpc.{ Metadata => GrpcMetadata }
+import io.grpc.MethodDescriptor
+import io.grpc.Status
+import kalix.javasdk.DeferredCallResponseException
+import kalix.javasdk.JsonSupport
+import kalix.javasdk.Metadata
+import kalix.javasdk.StatusCode.ErrorCode
+import kalix.spring.testmodels.Message
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class GrpcComponentCallsSpec extends AnyWordSpec with Matchers {
+  import GrpcComponentCallsSpec._
+
+  private val request = ScalaPbAny("type.kalix.io/test.Request", ByteString.copyFromUtf8("encoded request"))
+
+  private def call(runtime: RuntimeStandIn, metadata: Metadata = Metadata.EMPTY): CompletionStage[Message] =
+    new GrpcComponentCalls(() => runtime).call("test.Service", "Call", request, metadata, classOf[Message])
+
+  private def failureOf(result: CompletionStage[_]): Throwable =
+    intercept[ExecutionException](result.toCompletableFuture.get(3, TimeUnit.SECONDS)).getCause
+
+  "The gRPC component calls" should {
+
+    "send the encoded request and decode the JSON reply" in {
+      val runtime = new RuntimeStandIn(Some(JsonSupport.encodeJson(new Message("reply"))), Status.OK)
+      call(runtime).toCompletableFuture.get(3, TimeUnit.SECONDS) shouldBe new Message("reply")
+      runtime.fullMethodName shouldBe "test.Service/Call"
+      runtime.receivedRequest shouldBe request.value
+    }
+
+    "fail with the error code matching the status of a failed call" in {
+      val runtime = new RuntimeStandIn(None, Status.NOT_FOUND.withDescription("No such cart"))
+      failureOf(call(runtime)) match {
+        case failure: DeferredCallResponseException =>
+          failure.errorCode shouldBe ErrorCode.NOT_FOUND
+          failure.description should include("No such cart")
+        case other => fail(s"Unexpected failure $other")
+      }
+    }
+
+    "fail when the call completes without a reply" in {
+      val runtime = new RuntimeStandIn(None, Status.OK)
+      failureOf(call(runtime)) shouldBe an[IllegalStateException]
+    }
+
+    "send the metadata as headers, leaving out the entries that are not valid headers" in {
+      val runtime = new RuntimeStandIn(Some(JsonSupport.encodeJson(new Message("reply"))), Status.OK)
+      val metadata = Metadata.EMPTY
+        .add("X-Text", "value")
+        .addBinary("trace-bin", ByteBuffer.wrap(Array[Byte](1, 2, 3)))
+        .add("text-bin", "as bytes")
+        .add("invalid key", "value")
+        .add("non-ascii", "välue")
+        .addBinary("binary-without-suffix", ByteBuffer.wrap(Array[Byte](4)))
+      call(runtime, metadata).toCompletableFuture.get(3, TimeUnit.SECONDS)
+
+      def binaryHeader(key: String) = runtime.headers.get(GrpcMetadata.Key.of(key, GrpcMetadata.BINARY_BYTE_MARSHALLER))
+      runtime.headers.keys().asScala shouldBe Set("x-text", "trace-bin", "text-bin")
+      runtime.headers.get(GrpcMetadata.Key.of("x-text", GrpcMetadata.ASCII_STRING_MARSHALLER)) shouldBe "value"
+      binaryHeader("trace-bin") shouldBe Array[Byte](1, 2, 3)
+      binaryHeader("text-bin") shouldBe "as bytes".getBytes(UTF_8)
+    }
+  }
+}
+
+object GrpcComponentCallsSpec {
+
+  /**
+   * Stands in for the runtime, replying to every call with the given message, if any, and status. Requests and replies
+   * go through the marshallers of the method, as they would on the wire.
+   */
+  final class RuntimeStandIn(reply: Option[JavaPbAny], status: Status) extends Channel {
+    @volatile var fullMethodName: String = _
+    @volatile var receivedRequest: ByteString = _
+    @volatile var headers: GrpcMetadata = _
+
+    override def newCall[Req, Res](method: MethodDescriptor[Req, Res], callOptions: CallOptions): ClientCall[Req, Res] =
+      new ClientCall[Req, Res] {
+        private var listener: ClientCall.Listener[Res] = _
+
+        override def start(responseListener: ClientCall.Listener[Res], requestHeaders: GrpcMetadata): Unit = {
+          fullMethodName = method.getFullMethodName
+          headers = requestHeaders
+          listener = responseListener
+        }
+
+        override def request(numMessages: Int): Unit = ()
+
+        override def sendMessage(message: Req): Unit =
+          receivedRequest = ByteString.readFrom(method.streamRequest(message))
+
+        override def halfClose(): Unit = {
+          reply.foreach(message => listener.onMessage(method.parseResponse(message.toByteString.newInput())))
+          listener.onClose(status, new GrpcMetadata)
+        }
+
+        override def cancel(message: String, cause: Throwable): Unit =
+          listener.onClose(Status.CANCELLED.withDescription(message).withCause(cause), new GrpcMetadata)
+      }
+
+    override def authority(): String = "runtime"
+  }
+}
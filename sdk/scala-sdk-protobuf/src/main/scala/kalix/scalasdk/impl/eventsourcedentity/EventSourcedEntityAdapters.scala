@@ -19,6 +19,7 @@ import kalix.javasdk.eventsourcedentity.{ EventSourcedEntity => JavaSdkEventSour
 import kalix.javasdk.eventsourcedentity.{ EventSourcedEntityContext => JavaSdkEventSourcedEntityContext }
 import kalix.javasdk.eventsourcedentity.{ EventSourcedEntityOptions => JavaSdkEventSourcedEntityOptions }
 import kalix.javasdk.eventsourcedentity.{ EventSourcedEntityProvider => JavaSdkEventSourcedEntityProvider }
+import kalix.javasdk.eventsourcedentity.SnapshotPolicy
 import kalix.javasdk.impl.eventsourcedentity.{ EventSourcedEntityRouter => JavaSdkEventSourcedEntityRouter }
 import kalix.scalasdk.eventsourcedentity.CommandContext
 import kalix.scalasdk.eventsourcedentity.EventContext
@@ -65,7 +66,8 @@ private[scalasdk] final class JavaEventSourcedEntityProviderAdapter[S, ES <: Eve
 }
 
 private[scalasdk] final class JavaEventSourcedEntityOptionsAdapter(
-    scalaSdkEventSourcedEntityOptions: EventSourcedEntityOptions)
+    scalaSdkEventSourcedEntityOptions: EventSourcedEntityOptions,
+    override val snapshotPolicy: Optional[SnapshotPolicy] = Optional.empty())
     extends JavaSdkEventSourcedEntityOptions {
 
   def forwardHeaders(): java.util.Set[String] = scalaSdkEventSourcedEntityOptions.forwardHeaders.asJava
@@ -73,11 +75,16 @@ private[scalasdk] final class JavaEventSourcedEntityOptionsAdapter(
   def snapshotEvery(): Int = scalaSdkEventSourcedEntityOptions.snapshotEvery
 
   def withSnapshotEvery(numberOfEvents: Int) = new JavaEventSourcedEntityOptionsAdapter(
-    scalaSdkEventSourcedEntityOptions.withSnapshotEvery(numberOfEvents))
+    scalaSdkEventSourcedEntityOptions.withSnapshotEvery(numberOfEvents),
+    snapshotPolicy)
+
+  def withSnapshotPolicy(policy: SnapshotPolicy): JavaSdkEventSourcedEntityOptions =
+    new JavaEventSourcedEntityOptionsAdapter(scalaSdkEventSourcedEntityOptions, Optional.of(policy))
 
   def withForwardHeaders(headers: java.util.Set[String]): JavaSdkEventSourcedEntityOptions =
     new JavaEventSourcedEntityOptionsAdapter(
-      scalaSdkEventSourcedEntityOptions.withForwardHeaders(Set.from(headers.asScala)))
+      scalaSdkEventSourcedEntityOptions.withForwardHeaders(Set.from(headers.asScala)),
+      snapshotPolicy)
 
 }
 
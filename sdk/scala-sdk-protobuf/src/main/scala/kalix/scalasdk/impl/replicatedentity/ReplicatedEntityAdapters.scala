@@ -46,10 +46,13 @@ import kalix.scalasdk.replicatedentity.ReplicatedVote
 import kalix.scalasdk.replicatedentity.WriteConsistency
 import com.google.protobuf.Descriptors
 import java.util
+import java.time.Duration
 import java.util.Optional
 
 import scala.jdk.CollectionConverters.SetHasAsJava
 import scala.jdk.CollectionConverters.SetHasAsScala
+import scala.jdk.DurationConverters.JavaDurationOps
+import scala.jdk.DurationConverters.ScalaDurationOps
 import scala.jdk.OptionConverters.RichOptional
 
 private[scalasdk] final case class JavaReplicatedEntityProviderAdapter[D <: ReplicatedData, E <: ReplicatedEntity[D]](
@@ -122,6 +125,15 @@ private[scalasdk] final case class JavaReplicatedEntityOptionsAdapter(scalaSdkOp
     JavaReplicatedEntityOptionsAdapter(scalaSdkOptions.withWriteConsistency(scalaWriteConsistency))
   }
 
+  override def deltaCoalescingWindow(): Duration =
+    scalaSdkOptions.deltaCoalescingWindow.toJava
+
+  override def deltaCoalescingMaxCommands(): Int =
+    scalaSdkOptions.deltaCoalescingMaxCommands
+
+  override def withDeltaCoalescing(window: Duration, maxCommands: Int): JavaSdkReplicatedEntityOptions =
+    JavaReplicatedEntityOptionsAdapter(scalaSdkOptions.withDeltaCoalescing(window.toScala, maxCommands))
+
   override def passivationStrategy(): JavaSdkPassivationStrategy =
     PassivationStrategyConverters.toJava(scalaSdkOptions.passivationStrategy)
 
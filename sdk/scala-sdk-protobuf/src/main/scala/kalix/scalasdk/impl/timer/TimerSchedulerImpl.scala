@@ -4,32 +4,34 @@
 
 package kalix.scalasdk.impl.timer
 
-import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
 import scala.concurrent.duration.FiniteDuration
 import scala.jdk.DurationConverters.ScalaDurationOps
 
 import akka.Done
 import akka.actor.ActorSystem
-import akka.grpc.scaladsl.SingleResponseRequestBuilder
 import com.google.protobuf.duration.{ Duration => ProtoDuration }
-import com.google.protobuf.wrappers.StringValue
 import kalix.javasdk.impl.GrpcDeferredCall
-import kalix.javasdk.impl.GrpcClients
 import kalix.javasdk.impl.MessageCodec
+import kalix.javasdk.impl.timer.TimerRegistrations
+import kalix.javasdk.impl.timer.TimerRegistrations.AddTimer
+import kalix.javasdk.impl.timer.TimerRegistrations.RemoveTimer
 import kalix.scalasdk.DeferredCall
 import kalix.scalasdk.Metadata
 import kalix.scalasdk.impl.ScalaDeferredCallAdapter
 import kalix.scalasdk.timer.TimerScheduler
 import kalix.timers.timers.Call
 import kalix.timers.timers.SingleTimer
-import kalix.timers.timers.TimerService
-import kalix.timers.timers.TimerServiceClient
 
 /** INTERNAL API */
 private[kalix] final class TimerSchedulerImpl(messageCodec: MessageCodec, system: ActorSystem, metadata: Metadata)
     extends TimerScheduler {
 
+  private lazy val registrations = TimerRegistrations(system)
+
+  private lazy val headers: TimerRegistrations.Headers =
+    metadata.collect { case entry if entry.isText => entry.key -> entry.value }.toVector
+
   override def startSingleTimer[I, O](
       name: String,
       delay: FiniteDuration,
@@ -41,9 +43,6 @@ private[kalix] final class TimerSchedulerImpl(messageCodec: MessageCodec, system
       delay: FiniteDuration,
       maxRetries: Int,
       deferredCall: DeferredCall[I, O]): Future[Done] = {
-    val timerServiceClient =
-      GrpcClients(system).getProxyGrpcClient(classOf[TimerService]).asInstanceOf[TimerServiceClient]
-
     val deferredCallImpl =
       deferredCall match {
         case ScalaDeferredCallAdapter(deferredCallImpl: GrpcDeferredCall[I, O] @unchecked) => deferredCallImpl
@@ -60,25 +59,9 @@ private[kalix] final class TimerSchedulerImpl(messageCodec: MessageCodec, system
         Some(messageCodec.encodeScala(deferredCall.message)))
 
     val singleTimer = SingleTimer(name, Some(call), Some(ProtoDuration(delay.toJava)))
-    addHeaders(timerServiceClient.addSingle(), metadata)
-      .invoke(singleTimer)
-      .map(_ => Done)(ExecutionContext.parasitic)
+    registrations.submit(AddTimer(singleTimer), headers)
   }
 
-  override def cancel(name: String): Future[Done] = {
-    val timerServiceClient =
-      GrpcClients(system).getProxyGrpcClient(classOf[TimerService]).asInstanceOf[TimerServiceClient]
-    addHeaders(timerServiceClient.remove(), metadata)
-      .invoke(StringValue(name))
-      .map(_ => Done)(ExecutionContext.parasitic)
-  }
-
-  private def addHeaders[I, O](
-      callBuilder: SingleResponseRequestBuilder[I, O],
-      metadata: Metadata): SingleResponseRequestBuilder[I, O] = {
-    metadata.foldLeft(callBuilder) { case (builder, entry) =>
-      if (entry.isText) builder.addHeader(entry.key, entry.value)
-      else builder
-    }
-  }
+  override def cancel(name: String): Future[Done] =
+    registrations.submit(RemoveTimer(name), headers)
 }
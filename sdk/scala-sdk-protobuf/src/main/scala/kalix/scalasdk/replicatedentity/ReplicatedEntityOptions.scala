@@ -8,6 +8,9 @@ import kalix.scalasdk
 import kalix.scalasdk.EntityOptions
 import kalix.scalasdk.PassivationStrategy
 
+import scala.concurrent.duration.Duration
+import scala.concurrent.duration.FiniteDuration
+
 trait ReplicatedEntityOptions extends EntityOptions {
 
   def passivationStrategy: PassivationStrategy
@@ -33,6 +36,46 @@ trait ReplicatedEntityOptions extends EntityOptions {
    *   new replicated entity options with write consistency setting
    */
   def withWriteConsistency(writeConsistency: WriteConsistency): ReplicatedEntityOptions
+
+  /**
+   * Get the window in which the changes of consecutive commands are combined into one delta, see
+   * [[withDeltaCoalescing]].
+   *
+   * @return
+   *   the delta coalescing window, zero when every command sends its own delta
+   */
+  def deltaCoalescingWindow: FiniteDuration = Duration.Zero
+
+  /**
+   * Get the maximum number of commands whose changes are combined into one delta.
+   *
+   * @return
+   *   the maximum number of commands for one delta
+   */
+  def deltaCoalescingMaxCommands: Int = 1
+
+  /**
+   * Combine the changes of consecutive commands into one delta. Once a command changes the replicated data, its reply
+   * and the replies of the commands that follow are held back until the window has passed or the given number of
+   * commands have been handled. They are then sent together, in order and with their command ids, and the first of
+   * them carries one delta with all the changes.
+   *
+   * This reduces the number of deltas to replicate for entities receiving bursts of updates, such as a counter
+   * incremented by many clients, at the cost of delaying replies by up to the window. Held replies are sent right away
+   * when a delta from another replica arrives or the entity is deleted.
+   *
+   * Implementations of these options that predate delta coalescing do not support it, and throw an
+   * `UnsupportedOperationException`.
+   *
+   * @param window
+   *   how long replies are held after the first change, zero disables coalescing
+   * @param maxCommands
+   *   the maximum number of commands for one delta, must be greater than zero
+   * @return
+   *   new replicated entity options with delta coalescing
+   */
+  def withDeltaCoalescing(window: FiniteDuration, maxCommands: Int): ReplicatedEntityOptions =
+    throw new UnsupportedOperationException(s"${getClass.getName} does not support delta coalescing")
 }
 
 object ReplicatedEntityOptions {
@@ -42,7 +85,9 @@ object ReplicatedEntityOptions {
   private[kalix] final case class ReplicatedEntityOptionsImpl(
       passivationStrategy: PassivationStrategy,
       forwardHeaders: Set[String],
-      writeConsistency: WriteConsistency)
+      writeConsistency: WriteConsistency,
+      override val deltaCoalescingWindow: FiniteDuration = Duration.Zero,
+      override val deltaCoalescingMaxCommands: Int = 1)
       extends ReplicatedEntityOptions {
 
     override def withForwardHeaders(headers: Set[String]): ReplicatedEntityOptions =
@@ -61,5 +106,11 @@ object ReplicatedEntityOptions {
      */
     override def withWriteConsistency(writeConsistency: WriteConsistency): ReplicatedEntityOptions =
       copy(writeConsistency = writeConsistency)
+
+    override def withDeltaCoalescing(window: FiniteDuration, maxCommands: Int): ReplicatedEntityOptions = {
+      require(window >= Duration.Zero, s"window must not be negative, was [$window]")
+      require(maxCommands > 0, s"maxCommands must be greater than 0, was [$maxCommands]")
+      copy(deltaCoalescingWindow = window, deltaCoalescingMaxCommands = maxCommands)
+    }
   }
 }